@@ -64,8 +64,19 @@ public class SpatialiteDatabase implements AutoCloseable {
      * Opens a connection for the Sqlite database in dbFile then loads the required extensions for Spatialite.
      */
     protected SpatialiteDatabase(String dbFile) throws SQLException {
+        this(dbFile, false);
+    }
+
+    /**
+     * Opens a connection for the Sqlite database in dbFile then loads the required extensions for Spatialite.
+     *
+     * @param readOnly If true the connection cannot modify the database. Any number of read only connections can read
+     *                 the same file at once without locking each other out.
+     */
+    protected SpatialiteDatabase(String dbFile, boolean readOnly) throws SQLException {
         SQLiteConfig config = new SQLiteConfig();
         config.enableLoadExtension(true);
+        config.setReadOnly(readOnly);
         this.connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile, config.toProperties());
         initSpatiaLite();
         this.geoFactory = new GeometryFactory();
@@ -140,6 +151,13 @@ public class SpatialiteDatabase implements AutoCloseable {
         connection.commit();
     }
 
+    /**
+     * Pass through rollback function of the connection.
+     */
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
     @FunctionalInterface
     public interface ResultProcessor<T> extends Function<ResultSet, T> {
         default T apply(ResultSet set){
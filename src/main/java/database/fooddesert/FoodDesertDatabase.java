@@ -1,9 +1,12 @@
 package database.fooddesert;
 
 import database.SpatialiteDatabase;
+import fooddesertserver.FoodDesertGeometry;
 import fooddesertserver.GroceryStore;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
 import org.sqlite.SQLiteErrorCode;
 
 import java.sql.PreparedStatement;
@@ -23,7 +26,8 @@ import java.util.List;
  *         All coordinates inserted into this database should be in WebMercator (EPSG 3857).
  *         Likewise, all coordinates retreived from this database will be projected in WebMercator.
  *
- *         This class is Thread safe.
+ *         This class is Thread safe. Every method that writes shares one connection so, they are synchronized on the
+ *         database to keep one thread's writes out of another thread's transaction.
  */
 public class FoodDesertDatabase extends SpatialiteDatabase {
 
@@ -37,6 +41,52 @@ public class FoodDesertDatabase extends SpatialiteDatabase {
     private static final String SEARCHED_ID_COLUMN = "id";
     private static final String SEARCHED_BUFFER_COLUMN = "buffer";
 
+    /* Walking distance buffers of stores. Buffers depend on the road network so, each is tagged with the fingerprint
+     * of the network it was computed from (see RoadGraph.fingerprint) and, with the name of the shape drawn around
+     * the reached edges. Buffers are stored as WKB since they are never queried spatially. */
+    private static final String STORE_BUFFER_TABLE = "store_buffers";
+    private static final String STORE_BUFFER_STORE_COLUMN = "store_id";
+    private static final String STORE_BUFFER_RADIUS_COLUMN = "radius";
+    private static final String STORE_BUFFER_SHAPE_COLUMN = "shape";
+    private static final String STORE_BUFFER_VERSION_COLUMN = "network_version";
+    private static final String STORE_BUFFER_BUFFER_COLUMN = "buffer";
+
+    /* Walking distance from road network nodes to their nearest store (see StoreDistanceField). Only nodes within the
+     * radius of a store have a row. The field table records the number of stores each field was computed from so that
+     * a field missing some stores is recomputed. */
+    private static final String STORE_DISTANCE_TABLE = "store_distances";
+    private static final String STORE_DISTANCE_VERSION_COLUMN = "network_version";
+    private static final String STORE_DISTANCE_RADIUS_COLUMN = "radius";
+    private static final String STORE_DISTANCE_NODE_COLUMN = "node_id";
+    private static final String STORE_DISTANCE_DISTANCE_COLUMN = "distance";
+
+    private static final String STORE_DISTANCE_FIELD_TABLE = "store_distance_fields";
+    private static final String STORE_DISTANCE_FIELD_STORES_COLUMN = "store_count";
+
+    /* Food deserts of slippy map tiles, tagged with the fingerprint of the network they were computed from. Each row
+     * keeps the extent of the stores that its tile depends on so that adding a store deletes exactly the tiles it
+     * changes. Geometry is stored as WKB in the projection it is served in. */
+    private static final String TILE_TABLE = "food_desert_tiles";
+    private static final String TILE_ZOOM_COLUMN = "zoom";
+    private static final String TILE_X_COLUMN = "tile_x";
+    private static final String TILE_Y_COLUMN = "tile_y";
+    private static final String TILE_VERSION_COLUMN = "network_version";
+    private static final String TILE_MIN_X_COLUMN = "min_x";
+    private static final String TILE_MIN_Y_COLUMN = "min_y";
+    private static final String TILE_MAX_X_COLUMN = "max_x";
+    private static final String TILE_MAX_Y_COLUMN = "max_y";
+    private static final String TILE_DESERT_AREA_COLUMN = "desert_area";
+    private static final String TILE_TOTAL_AREA_COLUMN = "total_area";
+    private static final String TILE_GEOMETRY_COLUMN = "geometry";
+
+    /**
+     * Receives the rows of a stored distance field.
+     */
+    @FunctionalInterface
+    public interface StoreDistanceConsumer {
+        void accept(int nodeId, double distance);
+    }
+
     /**
      * Opens a connection and constructs an interface for accessing the database in
      * dbFile. This should only be called on a database that was created by a call
@@ -47,6 +97,73 @@ public class FoodDesertDatabase extends SpatialiteDatabase {
      */
     public FoodDesertDatabase(String dbFile) throws SQLException {
         super(dbFile);
+        createStoreBufferTable();
+        createStoreDistanceTables();
+        createTileTable();
+    }
+
+    /* The store buffer table is created on open rather than in createDatabase so that databases created before it
+     * existed gain it too. A table from before buffers were tagged with their shape is dropped and created again,
+     * it only holds buffers that can be computed again. */
+    private void createStoreBufferTable() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            boolean exists = false;
+            boolean hasShape = false;
+            try (ResultSet columns = stmt.executeQuery("PRAGMA table_info(" + STORE_BUFFER_TABLE + ")")) {
+                while (columns.next()) {
+                    exists = true;
+                    hasShape |= STORE_BUFFER_SHAPE_COLUMN.equals(columns.getString("name"));
+                }
+            }
+            if (exists && !hasShape) {
+                stmt.execute("DROP TABLE " + STORE_BUFFER_TABLE);
+            }
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + STORE_BUFFER_TABLE + "("
+                    + STORE_BUFFER_STORE_COLUMN + " INTEGER NOT NULL, "
+                    + STORE_BUFFER_RADIUS_COLUMN + " REAL NOT NULL, "
+                    + STORE_BUFFER_SHAPE_COLUMN + " TEXT NOT NULL, "
+                    + STORE_BUFFER_VERSION_COLUMN + " INTEGER NOT NULL, "
+                    + STORE_BUFFER_BUFFER_COLUMN + " BLOB NOT NULL, "
+                    + "PRIMARY KEY (" + STORE_BUFFER_STORE_COLUMN + ", " + STORE_BUFFER_RADIUS_COLUMN + ", "
+                    + STORE_BUFFER_SHAPE_COLUMN + ", " + STORE_BUFFER_VERSION_COLUMN + "))");
+        }
+    }
+
+    private void createTileTable() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TILE_TABLE + "("
+                    + TILE_ZOOM_COLUMN + " INTEGER NOT NULL, "
+                    + TILE_X_COLUMN + " INTEGER NOT NULL, "
+                    + TILE_Y_COLUMN + " INTEGER NOT NULL, "
+                    + TILE_VERSION_COLUMN + " INTEGER NOT NULL, "
+                    + TILE_MIN_X_COLUMN + " REAL NOT NULL, "
+                    + TILE_MIN_Y_COLUMN + " REAL NOT NULL, "
+                    + TILE_MAX_X_COLUMN + " REAL NOT NULL, "
+                    + TILE_MAX_Y_COLUMN + " REAL NOT NULL, "
+                    + TILE_DESERT_AREA_COLUMN + " REAL NOT NULL, "
+                    + TILE_TOTAL_AREA_COLUMN + " REAL NOT NULL, "
+                    + TILE_GEOMETRY_COLUMN + " BLOB NOT NULL, "
+                    + "PRIMARY KEY (" + TILE_ZOOM_COLUMN + ", " + TILE_X_COLUMN + ", " + TILE_Y_COLUMN + ", "
+                    + TILE_VERSION_COLUMN + "))");
+        }
+    }
+
+    private void createStoreDistanceTables() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + STORE_DISTANCE_TABLE + "("
+                    + STORE_DISTANCE_VERSION_COLUMN + " INTEGER NOT NULL, "
+                    + STORE_DISTANCE_RADIUS_COLUMN + " REAL NOT NULL, "
+                    + STORE_DISTANCE_NODE_COLUMN + " INTEGER NOT NULL, "
+                    + STORE_DISTANCE_DISTANCE_COLUMN + " REAL NOT NULL, "
+                    + "PRIMARY KEY (" + STORE_DISTANCE_VERSION_COLUMN + ", " + STORE_DISTANCE_RADIUS_COLUMN + ", "
+                    + STORE_DISTANCE_NODE_COLUMN + "))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + STORE_DISTANCE_FIELD_TABLE + "("
+                    + STORE_DISTANCE_VERSION_COLUMN + " INTEGER NOT NULL, "
+                    + STORE_DISTANCE_RADIUS_COLUMN + " REAL NOT NULL, "
+                    + STORE_DISTANCE_FIELD_STORES_COLUMN + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + STORE_DISTANCE_VERSION_COLUMN + ", " + STORE_DISTANCE_RADIUS_COLUMN + "))");
+        }
     }
 
     /**
@@ -99,7 +216,14 @@ public class FoodDesertDatabase extends SpatialiteDatabase {
      *         id in the database
      * @throws SQLException
      */
-    public GroceryStore insertStore(GroceryStore store) throws SQLException {
+    public synchronized GroceryStore insertStore(GroceryStore store) throws SQLException {
+        GroceryStore inserted = insertNewStore(store);
+        return inserted != null ? inserted : store.setId(lastInsertId());
+    }
+
+    /* Insert a store unless a store at the same location exists. Returns the store with its new id or null if it was a
+     * duplicate. */
+    private GroceryStore insertNewStore(GroceryStore store) throws SQLException {
         if (store.hasId()) {
             throw new IllegalArgumentException("Store already exists in database!");
         }
@@ -124,37 +248,85 @@ public class FoodDesertDatabase extends SpatialiteDatabase {
                 if(sqlEx.getErrorCode() != SQLiteErrorCode.SQLITE_CONSTRAINT.code) {
                     throw sqlEx;
                 }
+                return null;
             }
         }
 
-        int id;
-        sql = "SELECT last_insert_rowid();";
+        return store.setId(lastInsertId());
+    }
+
+    private int lastInsertId() throws SQLException {
+        String sql = "SELECT last_insert_rowid();";
         try (Statement stmt = connection.createStatement()) {
             ResultSet res = stmt.executeQuery(sql);
             res.next();
-            id = res.getInt(1);
+            return res.getInt(1);
         }
-
-        return store.setId(id);
     }
 
     /**
      * Insert all of a collection of stores into the database.
      *
      * @param stores
+     * @return The stores that were not in the database yet, with their ids set. Stores at the location of an existing
+     *         store are left out.
      * @throws SQLException
      */
-    public void insertAll(Iterable<GroceryStore> stores) throws SQLException {
+    public synchronized List<GroceryStore> insertAll(Iterable<GroceryStore> stores) throws SQLException {
+        List<GroceryStore> inserted = new ArrayList<>();
         connection.setAutoCommit(false);
-        for(GroceryStore s : stores) {
-            insertStore(s);
+        try {
+            for(GroceryStore s : stores) {
+                GroceryStore store = insertNewStore(s);
+                if(store != null) {
+                    inserted.add(store);
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
         }
-        connection.commit();
-        connection.setAutoCommit(true);
+        return inserted;
+    }
+
+    public List<GroceryStore> insertAll(GroceryStore... stores) throws SQLException {
+        return insertAll(Arrays.asList(stores));
     }
 
-    public void insertAll(GroceryStore... stores) throws SQLException {
-        insertAll(Arrays.asList(stores));
+    /**
+     * @return Number of stores in the database.
+     */
+    public int countStores() throws SQLException, ParseException {
+        String sql = "SELECT count(*) FROM " + GROCERY_TABLE + ";";
+        return queryWithResult(sql, result -> result.getInt(1));
+    }
+
+    /**
+     * @return Largest id of a store in the database or -1 if there are no stores. Stores inserted later have larger
+     *         ids.
+     */
+    public int selectMaxStoreId() throws SQLException, ParseException {
+        String sql = "SELECT coalesce(max(" + GROCERY_ID_COLUMN + "), -1) FROM " + GROCERY_TABLE + ";";
+        return queryWithResult(sql, result -> result.getInt(1));
+    }
+
+    /**
+     * @return Every store in the database.
+     */
+    public List<GroceryStore> selectAllStores() throws SQLException, ParseException {
+        String sql =
+            "SELECT " + GROCERY_ID_COLUMN + ", " + GROCERY_NAME_COLUMN + ", AsText(" + GROCERY_LOCATION_COLUMN + ") " +
+            "FROM " + GROCERY_TABLE + ";";
+
+        List<GroceryStore> stores = new ArrayList<>();
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet selected = stmt.executeQuery(sql);
+            while (selected.next()) {
+                Point location = (Point) geomReader.get().read(selected.getString(3));
+                stores.add(new GroceryStore(selected.getInt(1), selected.getString(2), location.getCoordinate()));
+            }
+        }
+        return stores;
     }
 
     /**
@@ -197,7 +369,7 @@ public class FoodDesertDatabase extends SpatialiteDatabase {
      * @param buffer The are that has been searched for stores.
      * @throws SQLException
      */
-    public void insertSearchedBuffer(MultiPolygon buffer) throws SQLException {
+    public synchronized void insertSearchedBuffer(MultiPolygon buffer) throws SQLException {
         String sql =
             "INSERT INTO " + SEARCHED_TABLE + " ( " + SEARCHED_BUFFER_COLUMN + ") " +
             "VALUES (GeomFromText(? , " + EPSG + "));";
@@ -290,16 +462,397 @@ public class FoodDesertDatabase extends SpatialiteDatabase {
         return querySingleGeometryResult(sql, searchFrameWKT, searchFrameWKT, searchFrameWKT);
     }
 
+    /**
+     * Look up the cached walking distance buffer of a store.
+     *
+     * @param storeId Id of a store in the grocery store table.
+     * @param radius Walking distance in meters that the buffer was computed for.
+     * @param shape Name of the shape drawn around the edges reached within radius.
+     * @param networkVersion Fingerprint of the road network in use.
+     * @return The buffer or null if none was stored for this store, radius, shape and network.
+     */
+    public Geometry selectStoreBuffer(int storeId, double radius, String shape, long networkVersion) throws SQLException, ParseException {
+        String sql =
+            "SELECT " + STORE_BUFFER_BUFFER_COLUMN + " " +
+            "FROM " + STORE_BUFFER_TABLE + " " +
+            "WHERE " + STORE_BUFFER_STORE_COLUMN + " = ? " +
+            "  AND " + STORE_BUFFER_RADIUS_COLUMN + " = ? " +
+            "  AND " + STORE_BUFFER_SHAPE_COLUMN + " = ? " +
+            "  AND " + STORE_BUFFER_VERSION_COLUMN + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, storeId);
+            stmt.setDouble(2, radius);
+            stmt.setString(3, shape);
+            stmt.setLong(4, networkVersion);
+
+            ResultSet result = stmt.executeQuery();
+            if (result.next()) {
+                return new WKBReader(geoFactory).read(result.getBytes(1));
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Store the walking distance buffer of a store, replacing any buffer stored for the same store, radius, shape and
+     * network.
+     */
+    public synchronized void insertStoreBuffer(int storeId, double radius, String shape, long networkVersion, Geometry buffer) throws SQLException {
+        String sql =
+            "INSERT OR REPLACE INTO " + STORE_BUFFER_TABLE + " ( " + STORE_BUFFER_STORE_COLUMN + ", "
+                + STORE_BUFFER_RADIUS_COLUMN + ", " + STORE_BUFFER_SHAPE_COLUMN + ", " + STORE_BUFFER_VERSION_COLUMN + ", "
+                + STORE_BUFFER_BUFFER_COLUMN + ") " +
+            "VALUES ( ?, ?, ?, ?, ? );";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, storeId);
+            stmt.setDouble(2, radius);
+            stmt.setString(3, shape);
+            stmt.setLong(4, networkVersion);
+            stmt.setBytes(5, new WKBWriter().write(buffer));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete every store buffer that was not computed from the given network. Buffers of an older network can never
+     * be used again once the network changes.
+     *
+     * @return Number of buffers deleted.
+     */
+    public synchronized int deleteStaleStoreBuffers(long networkVersion) throws SQLException {
+        String sql =
+            "DELETE FROM " + STORE_BUFFER_TABLE + " " +
+            "WHERE " + STORE_BUFFER_VERSION_COLUMN + " != ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, networkVersion);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return Every radius that store buffers are stored for under a network version.
+     */
+    public double[] selectStoreBufferRadii(long networkVersion) throws SQLException {
+        String sql =
+            "SELECT DISTINCT " + STORE_BUFFER_RADIUS_COLUMN + " " +
+            "FROM " + STORE_BUFFER_TABLE + " " +
+            "WHERE " + STORE_BUFFER_VERSION_COLUMN + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, networkVersion);
+            ResultSet result = stmt.executeQuery();
+            List<Double> radii = new ArrayList<>();
+            while (result.next()) {
+                radii.add(result.getDouble(1));
+            }
+            return radii.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /**
+     * Carry the store buffers of one radius over to an edited version of the network. Buffers of stores close enough
+     * to the edited area to reach it are deleted so they get recomputed, every other buffer is still valid and is
+     * moved to the new version.
+     *
+     * @param area Bounding box of every node and edge that the edit added, moved or removed.
+     * @param reach WebMercator distance from a store past which a walk of this radius cannot reach.
+     * @return Number of buffers deleted.
+     */
+    public synchronized int retagStoreBuffers(long oldVersion, long newVersion, double radius, Envelope area, double reach)
+            throws SQLException {
+        String deleteSql =
+            "DELETE FROM " + STORE_BUFFER_TABLE + " " +
+            "WHERE " + STORE_BUFFER_VERSION_COLUMN + " = ? " +
+            "  AND " + STORE_BUFFER_RADIUS_COLUMN + " = ? " +
+            "  AND " + STORE_BUFFER_STORE_COLUMN + " IN (" +
+                "SELECT " + GROCERY_ID_COLUMN + " " +
+                "FROM " + GROCERY_TABLE + " " +
+                "WHERE Distance(" + GROCERY_LOCATION_COLUMN + ", BuildMbr(?, ?, ?, ?, " + EPSG + ")) <= ?);";
+        /* a buffer already computed for the new version is just as valid as the one carried over */
+        String updateSql =
+            "UPDATE OR REPLACE " + STORE_BUFFER_TABLE + " " +
+            "SET " + STORE_BUFFER_VERSION_COLUMN + " = ? " +
+            "WHERE " + STORE_BUFFER_VERSION_COLUMN + " = ? " +
+            "  AND " + STORE_BUFFER_RADIUS_COLUMN + " = ?;";
+
+        connection.setAutoCommit(false);
+        try {
+            int deleted;
+            try (PreparedStatement stmt = connection.prepareStatement(deleteSql)) {
+                stmt.setLong(1, oldVersion);
+                stmt.setDouble(2, radius);
+                stmt.setDouble(3, area.getMinX());
+                stmt.setDouble(4, area.getMinY());
+                stmt.setDouble(5, area.getMaxX());
+                stmt.setDouble(6, area.getMaxY());
+                stmt.setDouble(7, reach);
+                deleted = stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(updateSql)) {
+                stmt.setLong(1, newVersion);
+                stmt.setLong(2, oldVersion);
+                stmt.setDouble(3, radius);
+                stmt.executeUpdate();
+            }
+            connection.commit();
+            return deleted;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * @return Number of stores the stored distance field for a network and radius was computed from or -1 if there is
+     *         no stored field.
+     */
+    public int selectStoreDistanceFieldStoreCount(long networkVersion, double radius) throws SQLException {
+        String sql =
+            "SELECT " + STORE_DISTANCE_FIELD_STORES_COLUMN + " " +
+            "FROM " + STORE_DISTANCE_FIELD_TABLE + " " +
+            "WHERE " + STORE_DISTANCE_VERSION_COLUMN + " = ? " +
+            "  AND " + STORE_DISTANCE_RADIUS_COLUMN + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, networkVersion);
+            stmt.setDouble(2, radius);
+
+            ResultSet result = stmt.executeQuery();
+            return result.next() ? result.getInt(1) : -1;
+        }
+    }
+
+    /**
+     * Read every node distance of the stored distance field for a network and radius.
+     */
+    public void selectStoreDistances(long networkVersion, double radius, StoreDistanceConsumer consumer) throws SQLException {
+        String sql =
+            "SELECT " + STORE_DISTANCE_NODE_COLUMN + ", " + STORE_DISTANCE_DISTANCE_COLUMN + " " +
+            "FROM " + STORE_DISTANCE_TABLE + " " +
+            "WHERE " + STORE_DISTANCE_VERSION_COLUMN + " = ? " +
+            "  AND " + STORE_DISTANCE_RADIUS_COLUMN + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, networkVersion);
+            stmt.setDouble(2, radius);
+
+            ResultSet result = stmt.executeQuery();
+            while (result.next()) {
+                consumer.accept(result.getInt(1), result.getDouble(2));
+            }
+        }
+    }
+
+    /**
+     * Store changed node distances of a distance field along with the number of stores it now covers. Everything is
+     * written in a single transaction so, the store count always matches the distances.
+     *
+     * @param nodeIds Ids of the changed nodes.
+     * @param distances New distance of each changed node.
+     * @param count Number of leading entries of nodeIds and distances to store.
+     */
+    public synchronized void insertStoreDistances(long networkVersion, double radius, int storeCount, int[] nodeIds,
+                                     double[] distances, int count) throws SQLException {
+        String distanceSql =
+            "INSERT OR REPLACE INTO " + STORE_DISTANCE_TABLE + " ( " + STORE_DISTANCE_VERSION_COLUMN + ", "
+                + STORE_DISTANCE_RADIUS_COLUMN + ", " + STORE_DISTANCE_NODE_COLUMN + ", " + STORE_DISTANCE_DISTANCE_COLUMN + ") " +
+            "VALUES ( ?, ?, ?, ? );";
+        String fieldSql =
+            "INSERT OR REPLACE INTO " + STORE_DISTANCE_FIELD_TABLE + " ( " + STORE_DISTANCE_VERSION_COLUMN + ", "
+                + STORE_DISTANCE_RADIUS_COLUMN + ", " + STORE_DISTANCE_FIELD_STORES_COLUMN + ") " +
+            "VALUES ( ?, ?, ? );";
+
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement stmt = connection.prepareStatement(distanceSql)) {
+                for (int i = 0; i < count; i++) {
+                    stmt.setLong(1, networkVersion);
+                    stmt.setDouble(2, radius);
+                    stmt.setInt(3, nodeIds[i]);
+                    stmt.setDouble(4, distances[i]);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(fieldSql)) {
+                stmt.setLong(1, networkVersion);
+                stmt.setDouble(2, radius);
+                stmt.setInt(3, storeCount);
+                stmt.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Delete every stored distance field except the one for the given network and radius. Fields that do not match
+     * the current store count are deleted too since, they have to be recomputed from scratch.
+     *
+     * @return Number of node distances deleted.
+     */
+    public synchronized int deleteStaleStoreDistances(long networkVersion, double radius, int storeCount) throws SQLException {
+        String fieldSql =
+            "DELETE FROM " + STORE_DISTANCE_FIELD_TABLE + " " +
+            "WHERE " + STORE_DISTANCE_VERSION_COLUMN + " != ? " +
+            "   OR " + STORE_DISTANCE_RADIUS_COLUMN + " != ? " +
+            "   OR " + STORE_DISTANCE_FIELD_STORES_COLUMN + " != ?;";
+        String distanceSql =
+            "DELETE FROM " + STORE_DISTANCE_TABLE + " " +
+            "WHERE NOT EXISTS (" +
+                "SELECT * FROM " + STORE_DISTANCE_FIELD_TABLE + " f " +
+                "WHERE f." + STORE_DISTANCE_VERSION_COLUMN + " = " + STORE_DISTANCE_TABLE + "." + STORE_DISTANCE_VERSION_COLUMN + " " +
+                "  AND f." + STORE_DISTANCE_RADIUS_COLUMN + " = " + STORE_DISTANCE_TABLE + "." + STORE_DISTANCE_RADIUS_COLUMN + ");";
+
+        try (PreparedStatement stmt = connection.prepareStatement(fieldSql)) {
+            stmt.setLong(1, networkVersion);
+            stmt.setDouble(2, radius);
+            stmt.setInt(3, storeCount);
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(distanceSql)) {
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @param extent Area that any store the tile depends on lies in. A tile stored with an extent that does not cover
+     *               it may not have been deleted when a store was added to the difference so, it is not returned.
+     * @return The food deserts of a tile or null if none were stored for this tile, network and extent.
+     */
+    public FoodDesertGeometry selectFoodDesertTile(int zoom, int x, int y, long networkVersion, Envelope extent)
+            throws SQLException, ParseException {
+        String sql =
+            "SELECT " + TILE_GEOMETRY_COLUMN + ", " + TILE_DESERT_AREA_COLUMN + ", " + TILE_TOTAL_AREA_COLUMN + " " +
+            "FROM " + TILE_TABLE + " " +
+            "WHERE " + TILE_ZOOM_COLUMN + " = ? " +
+            "  AND " + TILE_X_COLUMN + " = ? " +
+            "  AND " + TILE_Y_COLUMN + " = ? " +
+            "  AND " + TILE_VERSION_COLUMN + " = ? " +
+            "  AND " + TILE_MIN_X_COLUMN + " <= ? AND " + TILE_MAX_X_COLUMN + " >= ? " +
+            "  AND " + TILE_MIN_Y_COLUMN + " <= ? AND " + TILE_MAX_Y_COLUMN + " >= ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, zoom);
+            stmt.setInt(2, x);
+            stmt.setInt(3, y);
+            stmt.setLong(4, networkVersion);
+            stmt.setDouble(5, extent.getMinX());
+            stmt.setDouble(6, extent.getMaxX());
+            stmt.setDouble(7, extent.getMinY());
+            stmt.setDouble(8, extent.getMaxY());
+
+            ResultSet result = stmt.executeQuery();
+            if (result.next()) {
+                Geometry geometry = new WKBReader(geoFactory).read(result.getBytes(1));
+                return new FoodDesertGeometry(geometry, result.getDouble(2), result.getDouble(3));
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Store the food deserts of a tile, replacing any stored for the same tile and network.
+     *
+     * @param extent Area in database coordinates that any store the tile depends on lies in.
+     */
+    public synchronized void insertFoodDesertTile(int zoom, int x, int y, long networkVersion, Envelope extent, FoodDesertGeometry tile)
+            throws SQLException {
+        String sql =
+            "INSERT OR REPLACE INTO " + TILE_TABLE + " ( " + TILE_ZOOM_COLUMN + ", " + TILE_X_COLUMN + ", "
+                + TILE_Y_COLUMN + ", " + TILE_VERSION_COLUMN + ", " + TILE_MIN_X_COLUMN + ", " + TILE_MIN_Y_COLUMN + ", "
+                + TILE_MAX_X_COLUMN + ", " + TILE_MAX_Y_COLUMN + ", " + TILE_DESERT_AREA_COLUMN + ", "
+                + TILE_TOTAL_AREA_COLUMN + ", " + TILE_GEOMETRY_COLUMN + ") " +
+            "VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? );";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, zoom);
+            stmt.setInt(2, x);
+            stmt.setInt(3, y);
+            stmt.setLong(4, networkVersion);
+            stmt.setDouble(5, extent.getMinX());
+            stmt.setDouble(6, extent.getMinY());
+            stmt.setDouble(7, extent.getMaxX());
+            stmt.setDouble(8, extent.getMaxY());
+            stmt.setDouble(9, tile.getFoodDesertArea());
+            stmt.setDouble(10, tile.getQueriedArea());
+            stmt.setBytes(11, new WKBWriter().write(tile.getFoodDesertGeometry()));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete the tiles of every network whose extent contains one of the stores. These are the tiles that may have
+     * changed when the stores were added.
+     *
+     * @param stores Stores in database coordinates.
+     * @return Number of tiles deleted.
+     */
+    public synchronized int deleteFoodDesertTiles(List<GroceryStore> stores) throws SQLException {
+        String sql =
+            "DELETE FROM " + TILE_TABLE + " " +
+            "WHERE " + TILE_MIN_X_COLUMN + " <= ? AND " + TILE_MAX_X_COLUMN + " >= ? " +
+            "  AND " + TILE_MIN_Y_COLUMN + " <= ? AND " + TILE_MAX_Y_COLUMN + " >= ?;";
+
+        connection.setAutoCommit(false);
+        try {
+            int deleted = 0;
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (GroceryStore store : stores) {
+                    Coordinate location = store.getLocation();
+                    stmt.setDouble(1, location.x);
+                    stmt.setDouble(2, location.x);
+                    stmt.setDouble(3, location.y);
+                    stmt.setDouble(4, location.y);
+                    deleted += stmt.executeUpdate();
+                }
+            }
+            connection.commit();
+            return deleted;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Delete every tile that was not computed from the given network.
+     *
+     * @return Number of tiles deleted.
+     */
+    public synchronized int deleteStaleFoodDesertTiles(long networkVersion) throws SQLException {
+        String sql =
+            "DELETE FROM " + TILE_TABLE + " " +
+            "WHERE " + TILE_VERSION_COLUMN + " != ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, networkVersion);
+            return stmt.executeUpdate();
+        }
+    }
+
     /**
      * Delete the contents of this database while preserving the structure
      * @throws SQLException
      */
-    public void truncate() throws SQLException {
+    public synchronized void truncate() throws SQLException {
         String sql0 = "DELETE FROM " + GROCERY_TABLE + ";";
         String sql1 = "DELETE FROM " + SEARCHED_TABLE + ";";
+        String sql2 = "DELETE FROM " + STORE_BUFFER_TABLE + ";";
+        String sql3 = "DELETE FROM " + STORE_DISTANCE_TABLE + ";";
+        String sql4 = "DELETE FROM " + STORE_DISTANCE_FIELD_TABLE + ";";
+        String sql5 = "DELETE FROM " + TILE_TABLE + ";";
         try (Statement stmt = connection.createStatement()) {
             stmt.executeUpdate(sql0);
             stmt.executeUpdate(sql1);
+            stmt.executeUpdate(sql2);
+            stmt.executeUpdate(sql3);
+            stmt.executeUpdate(sql4);
+            stmt.executeUpdate(sql5);
         }
     }
 
@@ -2,23 +2,33 @@ package database.network;
 
 import database.SpatialiteDatabase; import fooddesertserver.FoodDesertQueryHandler;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import roadgraph.ArrayRoadGraph;
+import roadgraph.GraphTile;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class NetworkDatabase extends SpatialiteDatabase {
     private static final Logger logger = LoggerFactory.getLogger(FoodDesertQueryHandler.class);
 
     private static final String NODE_TABLE = "network_nodes";
     private static final String NODE_ID = "node_id";
+    private static final String OSM_ID = "osm_id";
     private static final String CARDINALITY = "cardinality";
     private static final String NODE_GEOMETRY = "geometry";
 
@@ -27,8 +37,22 @@ public class NetworkDatabase extends SpatialiteDatabase {
     private static final String NODE_FROM = "node_from";
     private static final String NODE_TO = "node_to";
     private static final String LENGTH = "length";
+    private static final String EDGE_CLASS = "class";
+    private static final String EDGE_NAME = "name";
     private static final String EDGE_GEOMETRY = "geometry";
 
+    /* Walkable OSM ways and their nodes as they were imported. OsmChangeApplier re-cuts ways into edges from these. */
+    private static final String OSM_NODE_TABLE = "osm_nodes";
+    private static final String OSM_NODE_X = "x";
+    private static final String OSM_NODE_Y = "y";
+
+    private static final String OSM_WAY_TABLE = "osm_ways";
+    private static final String OSM_WAY_NODE_COUNT = "node_count";
+
+    private static final String OSM_WAY_NODE_TABLE = "osm_way_nodes";
+    private static final String OSM_WAY_NODE_WAY = "way_id";
+    private static final String OSM_WAY_NODE_SEQUENCE = "seq";
+    private static final String OSM_WAY_NODE_NODE = "node_id";
 
     /**
      * Opens a connection for the Sqlite database in dbFile then loads the required extensions for Spatialite.
@@ -39,6 +63,534 @@ public class NetworkDatabase extends SpatialiteDatabase {
         super(dbFile);
     }
 
+    /**
+     * Opens a connection for the Sqlite database in dbFile then loads the required extensions for Spatialite.
+     *
+     * @param readOnly Open a read only connection. Use one read only connection per thread to load subgraphs in
+     *                 parallel.
+     */
+    public NetworkDatabase(String dbFile, boolean readOnly) throws SQLException {
+        super(dbFile, readOnly);
+    }
+
+    /**
+     * Create a database holding empty network tables with the same layout as the tables created by mknetwork. Node and
+     * edge ids are the integer primary keys of their tables so, they equal the ROWIDs returned by spatial index queries.
+     * Fill the tables with a NetworkWriter then call createIndices.
+     *
+     * @param dbFile Database file to create. It should not exist yet.
+     */
+    public static NetworkDatabase createDatabase(String dbFile) throws SQLException {
+        NetworkDatabase database = new NetworkDatabase(dbFile);
+
+        try (Statement stmt = database.connection.createStatement()) {
+            stmt.execute("SELECT InitSpatialMetaData(1)");
+
+            stmt.execute("CREATE TABLE " + NODE_TABLE + "(" + NODE_ID + " INTEGER NOT NULL PRIMARY KEY, "
+                    + OSM_ID + " INTEGER, " + CARDINALITY + " INTEGER NOT NULL)");
+            stmt.execute("SELECT AddGeometryColumn('" + NODE_TABLE + "', '" + NODE_GEOMETRY + "', " + EPSG
+                    + ", 'POINT', 2)");
+
+            stmt.execute("CREATE TABLE " + EDGE_TABLE + "(" + EDGE_ID + " INTEGER NOT NULL PRIMARY KEY, "
+                    + OSM_ID + " INTEGER, " + EDGE_CLASS + " TEXT, " + NODE_FROM + " INTEGER NOT NULL, "
+                    + NODE_TO + " INTEGER NOT NULL, " + EDGE_NAME + " TEXT, " + LENGTH + " DOUBLE NOT NULL)");
+            stmt.execute("SELECT AddGeometryColumn('" + EDGE_TABLE + "', '" + EDGE_GEOMETRY + "', " + EPSG
+                    + ", 'LINESTRING', 2)");
+
+            stmt.execute("CREATE TABLE " + OSM_NODE_TABLE + "(" + OSM_ID + " INTEGER NOT NULL PRIMARY KEY, "
+                    + OSM_NODE_X + " DOUBLE NOT NULL, " + OSM_NODE_Y + " DOUBLE NOT NULL)");
+            stmt.execute("CREATE TABLE " + OSM_WAY_TABLE + "(" + OSM_ID + " INTEGER NOT NULL PRIMARY KEY, "
+                    + EDGE_CLASS + " TEXT, " + EDGE_NAME + " TEXT, " + OSM_WAY_NODE_COUNT + " INTEGER NOT NULL)");
+            stmt.execute("CREATE TABLE " + OSM_WAY_NODE_TABLE + "(" + OSM_WAY_NODE_WAY + " INTEGER NOT NULL, "
+                    + OSM_WAY_NODE_SEQUENCE + " INTEGER NOT NULL, " + OSM_WAY_NODE_NODE + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + OSM_WAY_NODE_WAY + ", " + OSM_WAY_NODE_SEQUENCE + "))");
+        }
+
+        return database;
+    }
+
+    /**
+     * Create the spatial and attribute indices used by the queries of this class. Building them once the tables are
+     * full is much faster than updating them on every insert.
+     */
+    public void createIndices() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SELECT CreateSpatialIndex('" + NODE_TABLE + "', '" + NODE_GEOMETRY + "')");
+            stmt.execute("SELECT CreateSpatialIndex('" + EDGE_TABLE + "', '" + EDGE_GEOMETRY + "')");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_edge_node_to ON " + EDGE_TABLE + " (" + NODE_TO + ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_edge_node_from ON " + EDGE_TABLE + " (" + NODE_FROM + ")");
+            /* lookups made by OsmChangeApplier */
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_edge_osm_id ON " + EDGE_TABLE + " (" + OSM_ID + ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_node_osm_id ON " + NODE_TABLE + " (" + OSM_ID + ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_osm_way_node_node ON " + OSM_WAY_NODE_TABLE + " ("
+                    + OSM_WAY_NODE_NODE + ")");
+        }
+    }
+
+    /**
+     * Start a bulk insert into the network tables.
+     */
+    public NetworkWriter openWriter() throws SQLException {
+        return new NetworkWriter();
+    }
+
+    /**
+     * Inserts nodes, edges and the OSM ways they were cut from in batches inside a single transaction. Nothing is visible to other connections until
+     * finish is called, closing the writer without calling finish rolls every insert back.
+     *
+     * This class is not thread safe.
+     */
+    public final class NetworkWriter implements AutoCloseable {
+        private static final int BATCH_SIZE = 10000;
+
+        private final PreparedStatement nodeStmt;
+        private final PreparedStatement edgeStmt;
+        private final PreparedStatement osmNodeStmt;
+        private final PreparedStatement osmWayStmt;
+        private final PreparedStatement osmWayNodeStmt;
+        private final WKBWriter wkbWriter = new WKBWriter();
+        private int nodeBatchSize;
+        private int edgeBatchSize;
+        private int osmNodeBatchSize;
+        private int osmWayBatchSize;
+        private boolean finished;
+
+        private NetworkWriter() throws SQLException {
+            connection.setAutoCommit(false);
+            nodeStmt = connection.prepareStatement(
+                    "INSERT INTO " + NODE_TABLE + " (" + NODE_ID + ", " + OSM_ID + ", " + CARDINALITY + ", "
+                            + NODE_GEOMETRY + ") " +
+                    "VALUES (?, ?, ?, MakePoint(?, ?, " + EPSG + "))");
+            edgeStmt = connection.prepareStatement(
+                    "INSERT INTO " + EDGE_TABLE + " (" + EDGE_ID + ", " + OSM_ID + ", " + EDGE_CLASS + ", "
+                            + NODE_FROM + ", " + NODE_TO + ", " + EDGE_NAME + ", " + LENGTH + ", "
+                            + EDGE_GEOMETRY + ") " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, GeomFromWKB(?, " + EPSG + "))");
+            osmNodeStmt = connection.prepareStatement(
+                    "INSERT INTO " + OSM_NODE_TABLE + " (" + OSM_ID + ", " + OSM_NODE_X + ", " + OSM_NODE_Y + ") " +
+                    "VALUES (?, ?, ?)");
+            osmWayStmt = connection.prepareStatement(
+                    "INSERT INTO " + OSM_WAY_TABLE + " (" + OSM_ID + ", " + EDGE_CLASS + ", " + EDGE_NAME + ", "
+                            + OSM_WAY_NODE_COUNT + ") " +
+                    "VALUES (?, ?, ?, ?)");
+            osmWayNodeStmt = connection.prepareStatement(
+                    "INSERT INTO " + OSM_WAY_NODE_TABLE + " (" + OSM_WAY_NODE_WAY + ", " + OSM_WAY_NODE_SEQUENCE + ", "
+                            + OSM_WAY_NODE_NODE + ") " +
+                    "VALUES (?, ?, ?)");
+        }
+
+        public void addNode(int nodeId, long osmId, int cardinality, double x, double y) throws SQLException {
+            nodeStmt.setInt(1, nodeId);
+            nodeStmt.setLong(2, osmId);
+            nodeStmt.setInt(3, cardinality);
+            nodeStmt.setDouble(4, x);
+            nodeStmt.setDouble(5, y);
+            nodeStmt.addBatch();
+            if (++nodeBatchSize == BATCH_SIZE) {
+                nodeStmt.executeBatch();
+                nodeBatchSize = 0;
+            }
+        }
+
+        /**
+         * @param highwayClass Value of the highway tag of the OSM way the edge is part of.
+         * @param name Street name or null.
+         * @param length Length in meters.
+         */
+        public void addEdge(int edgeId, long osmId, String highwayClass, String name, int nodeFrom, int nodeTo,
+                            double length, LineString geometry) throws SQLException {
+            edgeStmt.setInt(1, edgeId);
+            edgeStmt.setLong(2, osmId);
+            edgeStmt.setString(3, highwayClass);
+            edgeStmt.setInt(4, nodeFrom);
+            edgeStmt.setInt(5, nodeTo);
+            edgeStmt.setString(6, name);
+            edgeStmt.setDouble(7, length);
+            edgeStmt.setBytes(8, wkbWriter.write(geometry));
+            edgeStmt.addBatch();
+            if (++edgeBatchSize == BATCH_SIZE) {
+                edgeStmt.executeBatch();
+                edgeBatchSize = 0;
+            }
+        }
+
+        /**
+         * @param x WebMercator x of a node used by a walkable way.
+         * @param y WebMercator y of the node.
+         */
+        public void addOsmNode(long osmId, double x, double y) throws SQLException {
+            osmNodeStmt.setLong(1, osmId);
+            osmNodeStmt.setDouble(2, x);
+            osmNodeStmt.setDouble(3, y);
+            osmNodeStmt.addBatch();
+            if (++osmNodeBatchSize == BATCH_SIZE) {
+                osmNodeStmt.executeBatch();
+                osmNodeBatchSize = 0;
+            }
+        }
+
+        public void addOsmWay(OsmWay way) throws SQLException {
+            long[] nodeIds = way.getNodeIds();
+            osmWayStmt.setLong(1, way.getId());
+            osmWayStmt.setString(2, way.getHighwayClass());
+            osmWayStmt.setString(3, way.getName());
+            osmWayStmt.setInt(4, nodeIds.length);
+            osmWayStmt.addBatch();
+            for (int i = 0; i < nodeIds.length; i++) {
+                osmWayNodeStmt.setLong(1, way.getId());
+                osmWayNodeStmt.setInt(2, i);
+                osmWayNodeStmt.setLong(3, nodeIds[i]);
+                osmWayNodeStmt.addBatch();
+            }
+            /* ways average around ten nodes so, node rows are flushed in batches of about BATCH_SIZE */
+            if (++osmWayBatchSize == BATCH_SIZE / 10) {
+                osmWayStmt.executeBatch();
+                osmWayNodeStmt.executeBatch();
+                osmWayBatchSize = 0;
+            }
+        }
+
+        /**
+         * Insert the remaining batches and commit.
+         */
+        public void finish() throws SQLException {
+            nodeStmt.executeBatch();
+            edgeStmt.executeBatch();
+            osmNodeStmt.executeBatch();
+            osmWayStmt.executeBatch();
+            osmWayNodeStmt.executeBatch();
+            nodeBatchSize = 0;
+            edgeBatchSize = 0;
+            osmNodeBatchSize = 0;
+            osmWayBatchSize = 0;
+            connection.commit();
+            finished = true;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (!finished) {
+                    connection.rollback();
+                }
+            } finally {
+                nodeStmt.close();
+                edgeStmt.close();
+                osmNodeStmt.close();
+                osmWayStmt.close();
+                osmWayNodeStmt.close();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * @return True if this database holds the OSM ways the network was cut from, which OsmChangeApplier needs. Networks
+     *         imported before those tables existed, or by spatialite_osm_net, have to be imported again.
+     */
+    public boolean hasOsmTables() throws SQLException, ParseException {
+        String sql =
+                "SELECT count(*) " +
+                "FROM sqlite_master " +
+                "WHERE type = 'table' AND name IN (?, ?, ?);";
+        return queryWithResult(sql, result -> result.getInt(1) == 3,
+                               OSM_NODE_TABLE, OSM_WAY_TABLE, OSM_WAY_NODE_TABLE);
+    }
+
+    /**
+     * @return WebMercator x and y of an OSM node used by a walkable way or null if no walkable way uses it.
+     */
+    public double[] selectOsmNode(long osmId) throws SQLException {
+        String sql =
+                "SELECT " + OSM_NODE_X + ", " + OSM_NODE_Y + " " +
+                "FROM " + OSM_NODE_TABLE + " " +
+                "WHERE " + OSM_ID + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            ResultSet result = stmt.executeQuery();
+            if (result.next()) {
+                return new double[]{result.getDouble(1), result.getDouble(2)};
+            } else {
+                return null;
+            }
+        }
+    }
+
+    public void upsertOsmNode(long osmId, double x, double y) throws SQLException {
+        String sql =
+                "INSERT OR REPLACE INTO " + OSM_NODE_TABLE + " (" + OSM_ID + ", " + OSM_NODE_X + ", " + OSM_NODE_Y + ") " +
+                "VALUES (?, ?, ?);";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            stmt.setDouble(2, x);
+            stmt.setDouble(3, y);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void deleteOsmNode(long osmId) throws SQLException {
+        executeUpdate("DELETE FROM " + OSM_NODE_TABLE + " WHERE " + OSM_ID + " = ?;", osmId);
+    }
+
+    /**
+     * @return The walkable way with this id or null if there is none.
+     */
+    public OsmWay selectOsmWay(long osmId) throws SQLException {
+        String waySql =
+                "SELECT " + EDGE_CLASS + ", " + EDGE_NAME + ", " + OSM_WAY_NODE_COUNT + " " +
+                "FROM " + OSM_WAY_TABLE + " " +
+                "WHERE " + OSM_ID + " = ?;";
+        String nodeSql =
+                "SELECT " + OSM_WAY_NODE_NODE + " " +
+                "FROM " + OSM_WAY_NODE_TABLE + " " +
+                "WHERE " + OSM_WAY_NODE_WAY + " = ? " +
+                "ORDER BY " + OSM_WAY_NODE_SEQUENCE + ";";
+
+        String highwayClass;
+        String name;
+        long[] nodeIds;
+        try (PreparedStatement stmt = connection.prepareStatement(waySql)) {
+            stmt.setLong(1, osmId);
+            ResultSet result = stmt.executeQuery();
+            if (!result.next()) {
+                return null;
+            }
+            highwayClass = result.getString(1);
+            name = result.getString(2);
+            nodeIds = new long[result.getInt(3)];
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(nodeSql)) {
+            stmt.setLong(1, osmId);
+            ResultSet result = stmt.executeQuery();
+            for (int i = 0; i < nodeIds.length && result.next(); i++) {
+                nodeIds[i] = result.getLong(1);
+            }
+        }
+        return new OsmWay(osmId, highwayClass, name, nodeIds);
+    }
+
+    /**
+     * Insert a walkable way or replace the way with the same id.
+     */
+    public void replaceOsmWay(OsmWay way) throws SQLException {
+        deleteOsmWay(way.getId());
+
+        long[] nodeIds = way.getNodeIds();
+        String waySql =
+                "INSERT INTO " + OSM_WAY_TABLE + " (" + OSM_ID + ", " + EDGE_CLASS + ", " + EDGE_NAME + ", "
+                        + OSM_WAY_NODE_COUNT + ") " +
+                "VALUES (?, ?, ?, ?);";
+        try (PreparedStatement stmt = connection.prepareStatement(waySql)) {
+            stmt.setLong(1, way.getId());
+            stmt.setString(2, way.getHighwayClass());
+            stmt.setString(3, way.getName());
+            stmt.setInt(4, nodeIds.length);
+            stmt.executeUpdate();
+        }
+
+        String nodeSql =
+                "INSERT INTO " + OSM_WAY_NODE_TABLE + " (" + OSM_WAY_NODE_WAY + ", " + OSM_WAY_NODE_SEQUENCE + ", "
+                        + OSM_WAY_NODE_NODE + ") " +
+                "VALUES (?, ?, ?);";
+        try (PreparedStatement stmt = connection.prepareStatement(nodeSql)) {
+            for (int i = 0; i < nodeIds.length; i++) {
+                stmt.setLong(1, way.getId());
+                stmt.setInt(2, i);
+                stmt.setLong(3, nodeIds[i]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    public void deleteOsmWay(long osmId) throws SQLException {
+        executeUpdate("DELETE FROM " + OSM_WAY_NODE_TABLE + " WHERE " + OSM_WAY_NODE_WAY + " = ?;", osmId);
+        executeUpdate("DELETE FROM " + OSM_WAY_TABLE + " WHERE " + OSM_ID + " = ?;", osmId);
+    }
+
+    /**
+     * @return Ids of the walkable ways using an OSM node.
+     */
+    public long[] selectWaysUsingNode(long osmId) throws SQLException {
+        String sql =
+                "SELECT DISTINCT " + OSM_WAY_NODE_WAY + " " +
+                "FROM " + OSM_WAY_NODE_TABLE + " " +
+                "WHERE " + OSM_WAY_NODE_NODE + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            ResultSet result = stmt.executeQuery();
+            List<Long> wayIds = new ArrayList<>();
+            while (result.next()) {
+                wayIds.add(result.getLong(1));
+            }
+            return wayIds.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * Count the uses of an OSM node the way the importer does: once per appearance in a walkable way and, once more
+     * when it is the first or last node of the way. A node used at least twice ends edges.
+     */
+    public int countOsmNodeUses(long osmId) throws SQLException, ParseException {
+        String sql =
+                "SELECT count(*) + total(n." + OSM_WAY_NODE_SEQUENCE + " = 0) "
+                        + "+ total(n." + OSM_WAY_NODE_SEQUENCE + " = w." + OSM_WAY_NODE_COUNT + " - 1) " +
+                "FROM " + OSM_WAY_NODE_TABLE + " n " +
+                "JOIN " + OSM_WAY_TABLE + " w ON w." + OSM_ID + " = n." + OSM_WAY_NODE_WAY + " " +
+                "WHERE n." + OSM_WAY_NODE_NODE + " = ?;";
+        return queryWithResult(sql, result -> result.getInt(1), String.valueOf(osmId));
+    }
+
+    /**
+     * @return The edges cut from an OSM way.
+     */
+    public List<Edge> selectEdgesOfWay(long osmId) throws SQLException, ParseException {
+        String sql =
+                "SELECT " + EDGE_ID + ", " + NODE_FROM + ", " + NODE_TO + ", " + LENGTH + ", AsBinary(" + EDGE_GEOMETRY + ") " +
+                "FROM " + EDGE_TABLE + " " +
+                "WHERE " + OSM_ID + " = ?;";
+
+        WKBReader wkbReader = new WKBReader(geoFactory);
+        List<Edge> edges = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            ResultSet result = stmt.executeQuery();
+            while (result.next()) {
+                LineString edgeGeom = (LineString) wkbReader.read(result.getBytes(5));
+                edges.add(new Edge(result.getInt(1), result.getInt(2), result.getInt(3), result.getDouble(4),
+                                   edgeGeom));
+            }
+        }
+        return edges;
+    }
+
+    public void deleteEdgesOfWay(long osmId) throws SQLException {
+        executeUpdate("DELETE FROM " + EDGE_TABLE + " WHERE " + OSM_ID + " = ?;", osmId);
+    }
+
+    /**
+     * Insert an edge with a new id.
+     *
+     * @param osmId Id of the way the edge was cut from.
+     * @return Id of the new edge.
+     */
+    public int insertEdge(long osmId, String highwayClass, String name, int nodeFrom, int nodeTo, double length,
+                          LineString geometry) throws SQLException {
+        String sql =
+                "INSERT INTO " + EDGE_TABLE + " (" + OSM_ID + ", " + EDGE_CLASS + ", " + NODE_FROM + ", " + NODE_TO
+                        + ", " + EDGE_NAME + ", " + LENGTH + ", " + EDGE_GEOMETRY + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, GeomFromWKB(?, " + EPSG + "));";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            stmt.setString(2, highwayClass);
+            stmt.setInt(3, nodeFrom);
+            stmt.setInt(4, nodeTo);
+            stmt.setString(5, name);
+            stmt.setDouble(6, length);
+            stmt.setBytes(7, new WKBWriter().write(geometry));
+            stmt.executeUpdate();
+        }
+        return lastInsertId();
+    }
+
+    /**
+     * @return Id of the network node made from an OSM node or -1 if that node does not end any edge.
+     */
+    public int selectNetworkNodeId(long osmId) throws SQLException {
+        String sql =
+                "SELECT " + NODE_ID + " " +
+                "FROM " + NODE_TABLE + " " +
+                "WHERE " + OSM_ID + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            ResultSet result = stmt.executeQuery();
+            return result.next() ? result.getInt(1) : -1;
+        }
+    }
+
+    /**
+     * Insert a network node with a new id and no edges. Call refreshNetworkNode once its edges are inserted.
+     *
+     * @return Id of the new node.
+     */
+    public int insertNetworkNode(long osmId, double x, double y) throws SQLException {
+        String sql =
+                "INSERT INTO " + NODE_TABLE + " (" + OSM_ID + ", " + CARDINALITY + ", " + NODE_GEOMETRY + ") " +
+                "VALUES (?, 0, MakePoint(?, ?, " + EPSG + "));";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, osmId);
+            stmt.setDouble(2, x);
+            stmt.setDouble(3, y);
+            stmt.executeUpdate();
+        }
+        return lastInsertId();
+    }
+
+    public void moveNetworkNode(int nodeId, double x, double y) throws SQLException {
+        String sql =
+                "UPDATE " + NODE_TABLE + " " +
+                "SET " + NODE_GEOMETRY + " = MakePoint(?, ?, " + EPSG + ") " +
+                "WHERE " + NODE_ID + " = ?;";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDouble(1, x);
+            stmt.setDouble(2, y);
+            stmt.setInt(3, nodeId);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Recount the edges ending at a network node after its edges changed. A node left without edges is deleted.
+     *
+     * @return The new cardinality of the node.
+     */
+    public int refreshNetworkNode(int nodeId) throws SQLException, ParseException {
+        String countSql =
+                "SELECT (SELECT count(*) FROM " + EDGE_TABLE + " WHERE " + NODE_FROM + " = ?) " +
+                     "+ (SELECT count(*) FROM " + EDGE_TABLE + " WHERE " + NODE_TO + " = ?);";
+        String id = String.valueOf(nodeId);
+        int cardinality = queryWithResult(countSql, result -> result.getInt(1), id, id);
+
+        if (cardinality == 0) {
+            executeUpdate("DELETE FROM " + NODE_TABLE + " WHERE " + NODE_ID + " = ?;", nodeId);
+        } else {
+            String sql =
+                    "UPDATE " + NODE_TABLE + " " +
+                    "SET " + CARDINALITY + " = ? " +
+                    "WHERE " + NODE_ID + " = ?;";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, cardinality);
+                stmt.setInt(2, nodeId);
+                stmt.executeUpdate();
+            }
+        }
+        return cardinality;
+    }
+
+    /* Run a statement taking a single id. */
+    private void executeUpdate(String sql, long id) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    private int lastInsertId() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet result = stmt.executeQuery("SELECT last_insert_rowid();");
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
     private static Node readResultNode(ResultSet result) throws SQLException, ParseException {
        int nodeId = result.getInt(1);
        int cardinality = result.getInt(2);
@@ -94,4 +646,158 @@ public class NetworkDatabase extends SpatialiteDatabase {
         };
         return queryWithResult(sql, processor, String.valueOf(node.getId()), String.valueOf(node.getId()));
     }
+
+    /**
+     * Read the entire network into an in memory graph. This issues exactly two queries, one for each table, so it
+     * should be done once at startup rather than per request. Nodes and edges are numbered along a Hilbert curve (see
+     * ArrayRoadGraph.hilbertOrdered), use nodeId and nodeIndex to translate to and from the ids of this database.
+     *
+     * @return A graph containing every node and edge in this database.
+     */
+    public ArrayRoadGraph loadRoadGraph() throws SQLException, ParseException {
+        String nodeSql =
+                "SELECT " + NODE_ID + ", X(" + NODE_GEOMETRY + "), Y(" + NODE_GEOMETRY + ") " +
+                "FROM " + NODE_TABLE + ";";
+        String edgeSql =
+                "SELECT " + EDGE_ID + ", " + NODE_FROM + ", " + NODE_TO + ", " + LENGTH + ", AsBinary(" + EDGE_GEOMETRY + ") " +
+                "FROM " + EDGE_TABLE + ";";
+
+        /* rows come back in id order, which is scattered across space */
+        ArrayRoadGraph graph = ArrayRoadGraph.hilbertOrdered(loadGraph(nodeSql, edgeSql));
+        logger.info("loaded road graph with " + graph.nodeCount() + " nodes and " + graph.edgeCount() + " edges");
+        return graph;
+    }
+
+    /**
+     * Read the part of the network inside the bounding rectangle of an area into an in memory graph. This issues two
+     * spatial index queries, one for each table, so a search of the area costs two round trips instead of one per
+     * visited node. Edges with an end point outside of the rectangle are left out.
+     *
+     * @param bounds Area to load. Only its bounding rectangle is used.
+     * @return A graph of the nodes inside bounds and the edges between them.
+     */
+    public ArrayRoadGraph loadSubgraph(Geometry bounds) throws SQLException, ParseException {
+        String nodeSql =
+                "SELECT " + NODE_ID + ", X(" + NODE_GEOMETRY + "), Y(" + NODE_GEOMETRY + ") " +
+                "FROM " + NODE_TABLE + " " +
+                "WHERE " + NODE_ID + " IN (" +
+                    spatialIndexSubQuery(NODE_TABLE) + ");";
+        String edgeSql =
+                "SELECT " + EDGE_ID + ", " + NODE_FROM + ", " + NODE_TO + ", " + LENGTH + ", AsBinary(" + EDGE_GEOMETRY + ") " +
+                "FROM " + EDGE_TABLE + " " +
+                "WHERE " + EDGE_ID + " IN (" +
+                    spatialIndexSubQuery(EDGE_TABLE) + ");";
+
+        String boundsWKT = geoFactory.toGeometry(bounds.getEnvelopeInternal()).toText();
+        return loadGraph(nodeSql, edgeSql, boundsWKT);
+    }
+
+    /**
+     * Read one tile of the network for a TiledGraphSource. The tile owns the nodes with minX <= x < maxX and
+     * minY <= y < maxY and every edge starting at one of them, wherever that edge ends. Like loadSubgraph, this issues
+     * two spatial index queries.
+     */
+    public GraphTile loadTile(double minX, double minY, double maxX, double maxY) throws SQLException, ParseException {
+        String nodeSql =
+                "SELECT " + NODE_ID + ", X(" + NODE_GEOMETRY + "), Y(" + NODE_GEOMETRY + ") " +
+                "FROM " + NODE_TABLE + " " +
+                "WHERE " + NODE_ID + " IN (" +
+                    spatialIndexSubQuery(NODE_TABLE) + ");";
+        /* an edge starting in the tile has its first point in the tile so, its bounding box overlaps the tile */
+        String edgeSql =
+                "SELECT " + EDGE_ID + ", " + NODE_FROM + ", " + NODE_TO + ", " + LENGTH + ", AsBinary(" + EDGE_GEOMETRY + ") " +
+                "FROM " + EDGE_TABLE + " " +
+                "WHERE " + EDGE_ID + " IN (" +
+                    spatialIndexSubQuery(EDGE_TABLE) + ");";
+
+        String tileWKT = geoFactory.toGeometry(new Envelope(minX, maxX, minY, maxY)).toText();
+        GraphTile.Builder builder = new GraphTile.Builder();
+        Set<Integer> ownedNodes = new HashSet<>();
+
+        try (PreparedStatement stmt = connection.prepareStatement(nodeSql)) {
+            stmt.setString(1, tileWKT);
+            ResultSet nodes = stmt.executeQuery();
+            while (nodes.next()) {
+                double x = nodes.getDouble(2);
+                double y = nodes.getDouble(3);
+                /* nodes on the upper and right borders belong to the next tile over */
+                if (x >= minX && x < maxX && y >= minY && y < maxY) {
+                    builder.addNode(nodes.getInt(1), x, y);
+                    ownedNodes.add(nodes.getInt(1));
+                }
+            }
+        }
+
+        WKBReader wkbReader = new WKBReader(geoFactory);
+        try (PreparedStatement stmt = connection.prepareStatement(edgeSql)) {
+            stmt.setString(1, tileWKT);
+            ResultSet edges = stmt.executeQuery();
+            while (edges.next()) {
+                if (ownedNodes.contains(edges.getInt(2))) {
+                    LineString edgeGeom = (LineString) wkbReader.read(edges.getBytes(5));
+                    builder.addEdge(edges.getInt(1), edges.getInt(2), edges.getInt(3), edges.getDouble(4),
+                                    edgeGeom.getCoordinateSequence());
+                }
+            }
+        }
+
+        GraphTile tile = builder.build();
+        logger.info("loaded network tile with " + tile.nodeCount() + " nodes and " + tile.edgeCount() + " edges");
+        return tile;
+    }
+
+    /* Build a graph from a node query selecting (id, x, y) and an edge query selecting (id, from, to, length, WKB).
+     * Both queries are given the same string arguments. */
+    private ArrayRoadGraph loadGraph(String nodeSql, String edgeSql, String... args) throws SQLException, ParseException {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+
+        /* WKB is used rather than WKT for edges because parsing it is considerably cheaper and, there are a lot of edges. */
+        WKBReader wkbReader = new WKBReader(geoFactory);
+
+        try (PreparedStatement stmt = connection.prepareStatement(nodeSql)) {
+            for (int i = 0; i < args.length; i++) {
+                stmt.setString(i + 1, args[i]);
+            }
+            ResultSet nodes = stmt.executeQuery();
+            while (nodes.next()) {
+                builder.addNode(nodes.getInt(1), nodes.getDouble(2), nodes.getDouble(3));
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(edgeSql)) {
+            for (int i = 0; i < args.length; i++) {
+                stmt.setString(i + 1, args[i]);
+            }
+            ResultSet edges = stmt.executeQuery();
+            while (edges.next()) {
+                LineString edgeGeom = (LineString) wkbReader.read(edges.getBytes(5));
+                builder.addEdge(edges.getInt(1), edges.getInt(2), edges.getInt(3), edges.getDouble(4),
+                                edgeGeom.getCoordinateSequence());
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Compute a version number for the contents of the network tables without loading them. It is built from
+     * aggregates over every node and edge so, it changes whenever the network is re-imported or edited. This plays the
+     * role of RoadGraph.fingerprint when the network is searched through loadSubgraph.
+     */
+    public long networkVersion() throws SQLException, ParseException {
+        String sql =
+                "SELECT count(*), total(" + EDGE_ID + "), total(" + NODE_FROM + " * 31.0 + " + NODE_TO + "), " +
+                       "total(" + LENGTH + "), total(" + EDGE_ID + " * " + LENGTH + "), " +
+                       "total(X(StartPoint(" + EDGE_GEOMETRY + "))), total(Y(EndPoint(" + EDGE_GEOMETRY + "))), " +
+                       "total(NumPoints(" + EDGE_GEOMETRY + ")) " +
+                "FROM " + EDGE_TABLE + ";";
+
+        return queryWithResult(sql, result -> {
+            long version = 17;
+            for (int i = 1; i <= 8; i++) {
+                version = 31 * version + Double.doubleToLongBits(result.getDouble(i));
+            }
+            return version;
+        });
+    }
 }
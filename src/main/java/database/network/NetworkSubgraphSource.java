@@ -0,0 +1,79 @@
+package database.network;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.RoadGraph;
+import roadgraph.RoadGraphSource;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A RoadGraphSource that loads only the part of the network needed by each search from a NetworkDatabase (see
+ * NetworkDatabase.loadSubgraph). Memory use is bounded by the size of the searched area rather than the size of the
+ * network, at the cost of two queries per search.
+ *
+ * Each load borrows a connection from a fixed set so, searches on different threads load their subgraphs in parallel
+ * up to the number of connections and wait beyond that.
+ */
+public class NetworkSubgraphSource implements RoadGraphSource, AutoCloseable {
+
+    private final BlockingQueue<NetworkDatabase> connections;
+    private final long version;
+
+    /**
+     * @param networkDb Database to load subgraphs from. It must stay open for as long as this source is used. Loads
+     *                  are done one at a time.
+     */
+    public NetworkSubgraphSource(NetworkDatabase networkDb) throws SQLException, ParseException {
+        this.connections = new ArrayBlockingQueue<>(1);
+        this.connections.add(networkDb);
+        this.version = networkDb.networkVersion();
+    }
+
+    /**
+     * Open read only connections to a network database. They are closed by close.
+     *
+     * @param connectionCount Number of connections and therefore, the number of subgraphs loaded at once.
+     */
+    public NetworkSubgraphSource(String networkDbFile, int connectionCount) throws SQLException, ParseException {
+        this.connections = new ArrayBlockingQueue<>(connectionCount);
+        for (int i = 0; i < connectionCount; i++) {
+            connections.add(new NetworkDatabase(networkDbFile, true));
+        }
+        this.version = connections.peek().networkVersion();
+    }
+
+    @Override
+    public RoadGraph graphFor(Geometry bounds) throws SQLException, ParseException {
+        NetworkDatabase networkDb;
+        try {
+            networkDb = connections.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a network database connection.", e);
+        }
+
+        try {
+            return networkDb.loadSubgraph(bounds);
+        } finally {
+            connections.add(networkDb);
+        }
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Close every connection of this source. No search may be running.
+     */
+    @Override
+    public void close() throws SQLException {
+        for (NetworkDatabase networkDb : connections) {
+            networkDb.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package database.network;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an entry into the osm_ways table: a walkable OSM way as it was imported, before it was cut into
+ * edges of the network.
+ */
+public class OsmWay {
+    private final long id;
+    private final String highwayClass;
+    private final String name;
+    private final long[] nodeIds;
+
+    public OsmWay(long id, String highwayClass, String name, long[] nodeIds) {
+        this.id = id;
+        this.highwayClass = highwayClass;
+        this.name = name;
+        this.nodeIds = nodeIds.clone();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getHighwayClass() {
+        return highwayClass;
+    }
+
+    /**
+     * @return Value of the name tag of the way or null.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return OSM ids of the nodes of the way in order.
+     */
+    public long[] getNodeIds() {
+        /* copying to maintain immutability of OsmWay class. */
+        return nodeIds.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OsmWay)) return false;
+        OsmWay way = (OsmWay) o;
+        return id == way.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "OsmWay{" +
+                "id=" + id +
+                ", highwayClass='" + highwayClass + '\'' +
+                ", name='" + name + '\'' +
+                ", nodeIds=" + Arrays.toString(nodeIds) +
+                '}';
+    }
+}
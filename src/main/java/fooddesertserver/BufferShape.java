@@ -0,0 +1,52 @@
+package fooddesertserver;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+/**
+ * Draws the polygon of a walking distance buffer around the road edges reached by a search. This is the last step of
+ * every network buffer and, different shapes trade accuracy against speed.
+ *
+ * Implementations must be thread safe.
+ */
+public interface BufferShape {
+
+    /**
+     * The concave hull of the reached edges, with border edges of at most 100 meters. See ConcaveHullShape.
+     */
+    BufferShape HULL = new ConcaveHullShape(100);
+
+    /**
+     * The reached edges widened by 50 meters on either side. See EdgeBufferShape.
+     */
+    BufferShape EDGES = new EdgeBufferShape(50, 2);
+
+    /**
+     * @param edgeLines Geometry of every reached edge. Not empty.
+     * @return The buffer in the same coordinates as the edges.
+     */
+    Geometry shape(Geometry[] edgeLines, GeometryFactory factory);
+
+    /**
+     * @return Name of this shape. Buffers are cached under this name so, it must change whenever the shape does.
+     */
+    String name();
+
+    /**
+     * Parse the value of a shape query parameter. Names are case insensitive.
+     *
+     * @param param Query parameter or null.
+     * @return The named shape or HULL if param is null.
+     */
+    static BufferShape parse(String param) {
+        if (param == null) {
+            return HULL;
+        }
+        for (BufferShape shape : new BufferShape[]{HULL, EDGES}) {
+            if (shape.name().equalsIgnoreCase(param)) {
+                return shape;
+            }
+        }
+        throw new IllegalArgumentException("No buffer shape named " + param);
+    }
+}
@@ -0,0 +1,32 @@
+package fooddesertserver;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opensphere.geometry.algorithm.ArrayConcaveHull;
+
+/**
+ * Draws a buffer as the concave hull of the points of the reached edges. The hull follows the outline of the reached
+ * network closely where it is dense but, on a sparse network it spans large areas between streets that are far apart
+ * and, its cost grows with the number of points.
+ */
+public class ConcaveHullShape implements BufferShape {
+
+    private final double threshold;
+
+    /**
+     * @param threshold Longest border edge of the hull in meters. Gaps between streets narrower than this are filled.
+     */
+    public ConcaveHullShape(double threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Geometry shape(Geometry[] edgeLines, GeometryFactory factory) {
+        return new ArrayConcaveHull(factory.createGeometryCollection(edgeLines), threshold).getConcaveHull();
+    }
+
+    @Override
+    public String name() {
+        return threshold == 100 ? "hull" : "hull" + threshold;
+    }
+}
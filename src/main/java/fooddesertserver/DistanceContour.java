@@ -0,0 +1,142 @@
+package fooddesertserver;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+import org.locationtech.jts.triangulate.IncrementalDelaunayTriangulator;
+import org.locationtech.jts.triangulate.quadedge.QuadEdgeSubdivision;
+import org.locationtech.jts.triangulate.quadedge.Vertex;
+import roadgraph.RoadGraph;
+import roadgraph.WebMercator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Draws the area within walking distance of the nearest store from the walking distances of the road network nodes
+ * in a frame. The nodes are triangulated once and, every triangle is cut where the distance, interpolated linearly
+ * along its sides, reaches the threshold (marching triangles). The pieces inside the threshold are merged with a
+ * cascaded union. Several thresholds are cut from the same triangulation in the same sweep over the triangles.
+ *
+ * The work depends on the number of nodes in the frame only. The stores are already accounted for by the distances,
+ * unlike buffers that are drawn and merged once per store.
+ *
+ * A node with no store within the threshold has no distance to interpolate. Along a side from such a node to a node
+ * that is within the threshold, the distance is taken to grow as if walking in a straight line on the ground from the
+ * nearer node.
+ * This is the same distance that StoreDistanceIndex.walkingDistance gives a point near that node.
+ *
+ * This class is thread safe.
+ */
+public class DistanceContour {
+
+    private final GeometryFactory geoFactory;
+
+    public DistanceContour(GeometryFactory geoFactory) {
+        this.geoFactory = geoFactory;
+    }
+
+    /**
+     * @param roadGraph Graph holding the nodes of the frame.
+     * @param frame Nodes inside this rectangle are triangulated. Points outside of their triangulation are never
+     *              within the threshold.
+     * @param distance Walking distance from a node to the nearest store or positive infinity if it is at least the
+     *                 threshold.
+     * @param threshold Walking distance in meters.
+     * @return The area where the interpolated distance is less than threshold.
+     */
+    public Geometry reachable(RoadGraph roadGraph, Envelope frame, IntToDoubleFunction distance, double threshold) {
+        return reachable(roadGraph, frame, distance, new double[]{threshold})[0];
+    }
+
+    /**
+     * Contour the same distances at several thresholds.
+     *
+     * @param distance Walking distance from a node to the nearest store or positive infinity if it is at least the
+     *                 largest threshold.
+     * @return The area within each threshold, in the same order as thresholds.
+     */
+    public Geometry[] reachable(RoadGraph roadGraph, Envelope frame, IntToDoubleFunction distance, double[] thresholds) {
+        Geometry[] reachable = new Geometry[thresholds.length];
+        List<Vertex> sites = new ArrayList<>();
+        Envelope siteEnvelope = new Envelope();
+        roadGraph.nodesInside(frame.getMinX(), frame.getMinY(), frame.getMaxX(), frame.getMaxY(), node -> {
+            double x = roadGraph.nodeX(node);
+            double y = roadGraph.nodeY(node);
+            sites.add(new NodeVertex(x, y, distance.applyAsDouble(node)));
+            siteEnvelope.expandToInclude(x, y);
+        });
+        if (sites.size() < 3) {
+            Arrays.fill(reachable, geoFactory.createGeometryCollection());
+            return reachable;
+        }
+
+        QuadEdgeSubdivision triangulation = new QuadEdgeSubdivision(siteEnvelope, 0);
+        new IncrementalDelaunayTriangulator(triangulation).insertSites(sites);
+
+        List<List<Polygon>> pieces = new ArrayList<>(thresholds.length);
+        for (int t = 0; t < thresholds.length; t++) {
+            pieces.add(new ArrayList<>());
+        }
+        Coordinate[] ring = new Coordinate[6];
+        @SuppressWarnings("unchecked")
+        List<Vertex[]> triangles = triangulation.getTriangleVertices(false);
+        for (Vertex[] triangle : triangles) {
+            for (int t = 0; t < thresholds.length; t++) {
+                double threshold = thresholds[t];
+                int n = 0;
+                for (int i = 0; i < 3; i++) {
+                    NodeVertex a = (NodeVertex) triangle[i];
+                    NodeVertex b = (NodeVertex) triangle[(i + 1) % 3];
+                    boolean aInside = a.distance < threshold;
+                    if (aInside) {
+                        ring[n++] = a.getCoordinate();
+                    }
+                    if (aInside != (b.distance < threshold)) {
+                        ring[n++] = aInside ? crossing(a, b, threshold) : crossing(b, a, threshold);
+                    }
+                }
+                if (n > 0) {
+                    ring[n++] = ring[0];
+                    pieces.get(t).add(geoFactory.createPolygon(Arrays.copyOf(ring, n)));
+                }
+            }
+        }
+
+        for (int t = 0; t < thresholds.length; t++) {
+            Geometry union = CascadedPolygonUnion.union(pieces.get(t));
+            reachable[t] = union == null ? geoFactory.createGeometryCollection() : union;
+        }
+        return reachable;
+    }
+
+    /**
+     * @return Point on the side from inside to outside where the interpolated distance equals threshold.
+     */
+    private static Coordinate crossing(NodeVertex inside, NodeVertex outside, double threshold) {
+        double dx = outside.getX() - inside.getX();
+        double dy = outside.getY() - inside.getY();
+        double outsideDistance = outside.distance;
+        if (outsideDistance == Double.POSITIVE_INFINITY) {
+            double side = WebMercator.groundDistance(inside.getX(), inside.getY(), outside.getX(), outside.getY());
+            outsideDistance = Math.max(threshold, inside.distance + side);
+        }
+        double t = (threshold - inside.distance) / (outsideDistance - inside.distance);
+        return new Coordinate(inside.getX() + t * dx, inside.getY() + t * dy);
+    }
+
+    /* A triangulated node along with its walking distance. */
+    private static final class NodeVertex extends Vertex {
+        private final double distance;
+
+        NodeVertex(double x, double y, double distance) {
+            super(x, y);
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fooddesertserver;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a buffer as every reached edge widened by a fixed distance, the area a pedestrian on those streets can reach
+ * by stepping off of them. Unlike a hull it never covers the space between distant streets.
+ *
+ * Each edge is buffered with few segments per quarter circle, which is all the round ends of short street segments
+ * need, and the pieces are merged with a cascaded union. Nearby pieces are merged first so, the cost grows with the
+ * number of edges times the log of it rather than with its square.
+ */
+public class EdgeBufferShape implements BufferShape {
+
+    private final double width;
+    private final int quadrantSegments;
+
+    /**
+     * @param width Distance in meters that each edge is widened by on either side.
+     * @param quadrantSegments Number of segments used to approximate a quarter circle at the ends of each edge.
+     */
+    public EdgeBufferShape(double width, int quadrantSegments) {
+        this.width = width;
+        this.quadrantSegments = quadrantSegments;
+    }
+
+    @Override
+    public Geometry shape(Geometry[] edgeLines, GeometryFactory factory) {
+        List<Geometry> pieces = new ArrayList<>(edgeLines.length);
+        for (Geometry edgeLine : edgeLines) {
+            pieces.add(edgeLine.buffer(width, quadrantSegments));
+        }
+        Geometry union = CascadedPolygonUnion.union(pieces);
+        return union == null ? factory.createGeometryCollection() : union;
+    }
+
+    @Override
+    public String name() {
+        return width == 50 && quadrantSegments == 2 ? "edges" : "edges" + width + "x" + quadrantSegments;
+    }
+}
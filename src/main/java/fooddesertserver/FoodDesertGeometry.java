@@ -21,6 +21,18 @@ public class FoodDesertGeometry {
         this.foodDesertArea = foodDesertArea;
     }
 
+    public Geometry getFoodDesertGeometry() {
+        return foodDesertGeometry;
+    }
+
+    public double getFoodDesertArea() {
+        return foodDesertArea;
+    }
+
+    public double getQueriedArea() {
+        return queriedArea;
+    }
+
     public static class JsonSerializer implements com.google.gson.JsonSerializer<FoodDesertGeometry> {
 
         @Override
@@ -0,0 +1,52 @@
+package fooddesertserver;
+
+/**
+ * Ways of computing the area within walking distance of the grocery stores in a search frame.
+ */
+public enum FoodDesertMode {
+    /**
+     * Search the road network once per store and union the buffers. Overlapping neighbourhoods of nearby stores are
+     * searched once per store.
+     */
+    PER_STORE,
+
+    /**
+     * Like PER_STORE but, the buffers of different stores are computed at the same time on a pool with one thread per
+     * core. Buffers are independent so, this scales with the number of cores when a frame holds many stores whose
+     * buffers are not cached yet.
+     */
+    PARALLEL,
+
+    /**
+     * Search the road network once, starting from every store at the same time. Each node is settled once so, the
+     * cost depends on the size of the network in the frame rather than on the number of stores.
+     */
+    MULTI_SOURCE,
+
+    /**
+     * Give every network node in the frame its walking distance to the nearest store and draw the contour at the
+     * buffer radius over a triangulation of the nodes. When the whole network is in memory the distances come from
+     * the store distance index and no search is run at all. See DistanceContour.
+     */
+    CONTOUR,
+
+    /**
+     * Approximate the food deserts on a grid with a fixed number of cells, each tested by the walking distance at its
+     * center, and draw polygons only from the final mask. The time taken barely depends on the number of stores or
+     * network edges in the frame, which suits views of a whole region. See RasterGrid.
+     */
+    RASTER;
+
+    /**
+     * Parse the value of a mode query parameter. Names are case insensitive.
+     *
+     * @param param Query parameter or null.
+     * @return The named mode or PER_STORE if param is null.
+     */
+    public static FoodDesertMode parse(String param) {
+        if (param == null) {
+            return PER_STORE;
+        }
+        return valueOf(param.toUpperCase());
+    }
+}
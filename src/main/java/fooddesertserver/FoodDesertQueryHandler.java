@@ -1,21 +1,30 @@
 package fooddesertserver;
 
 import database.fooddesert.FoodDesertDatabase;
-import database.network.Edge;
-import database.network.NetworkDatabase;
-import database.network.Node;
 import grocerystoresource.GroceryStoreSource;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.simplify.VWSimplifier;
 import org.locationtech.jts.triangulate.VoronoiDiagramBuilder;
 import org.osgeo.proj4j.*;
-import org.opensphere.geometry.algorithm.ConcaveHull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import roadgraph.ContractionHierarchy;
+import roadgraph.NetworkSearch;
+import roadgraph.RoadGraph;
+import roadgraph.RoadGraphSource;
+import roadgraph.SearchPool;
+import roadgraph.WebMercator;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 /**
@@ -24,7 +33,8 @@ import java.util.stream.Collectors;
  * implement the main functionalities of the FoodDesertServer. These include determining if a given point is in a food
  * desert, finding all grocery stores in an area and, determining the closest store to a point.
  *
- * This class is thread safe. See FoodDesertDatabase and GooglePlacesClient for details.
+ * This class is thread safe. See FoodDesertDatabase and GooglePlacesClient for details. The road network can be
+ * replaced with reloadNetwork while requests are running.
  */
 public class FoodDesertQueryHandler {
 
@@ -38,19 +48,77 @@ public class FoodDesertQueryHandler {
      * (4*quadrant segments) must be divisible by 5 for generated buffers to work with a hexagonal tiling.*/
     private static final int BUFFER_QUADRANT_SEGMENTS = 9;
 
+    /* Walking distance radius of every buffer. See getBufferRadiusMeters. */
+    private static final double METERS_IN_MILE = 1609.34;
+
+    /* Number of store buffers kept in memory. Buffers that do not fit are still read from the database. */
+    private static final int STORE_BUFFER_CACHE_SIZE = 4096;
+
+    /* Number of searches kept for reuse. Every thread that searches at once needs its own. */
+    private static final int SEARCH_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    /* Cells along the longer side of the grid used by FoodDesertMode.RASTER. */
+    private static final int RASTER_CELLS = 256;
+
+    /* Number of food desert tiles kept in memory and the range of zoom levels they are served at. Below the minimum,
+     * a single tile holds so many stores and streets that it is better computed with getFoodDesertGeometry. */
+    private static final int TILE_CACHE_SIZE = 1024;
+    public static final int MIN_TILE_ZOOM = 10;
+    public static final int MAX_TILE_ZOOM = 20;
+
+    /* Computes store buffers in PARALLEL mode. Its threads are daemons so, it never keeps the server alive. */
+    private static final ForkJoinPool bufferPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     private final FoodDesertDatabase foodDb;
-    private final NetworkDatabase networkDb;
     private final GroceryStoreSource placesClient;
     private final GeometryFactory geoFactory;
+    private final DistanceContour distanceContour;
+    private final TreeUnion treeUnion;
+
+    /* Each request reads this once and uses that network until it returns so, a reload never changes the network
+     * under a running request. */
+    private volatile RoadNetwork network;
+
+    /* Held by reloadNetwork so, only one new network is prepared at a time. */
+    private final Object reloadLock = new Object();
+
+    /* Stores found while a new network is prepared. Its store distance index may have been computed before they were
+     * inserted so, they are added to it again before it is swapped in. Guarded by storeLock. */
+    private final Object storeLock = new Object();
+    private List<GroceryStore> storesAddedDuringReload;
+
+    /* Held from reading the unsearched area until it is marked searched so, concurrent requests over the same area
+     * do not both query the Places API for it and insert its stores twice. */
+    private final Object searchLock = new Object();
 
     private final CoordinateTransform dbToSrc, srcToDb;
 
 
-    public FoodDesertQueryHandler(FoodDesertDatabase foodDb, NetworkDatabase networkDb, GroceryStoreSource placesClient) {
+    /**
+     * @param graphSource Supplies the road network used for walking distance buffers. Use RoadGraphSource.of with a
+     *                    graph loaded once (see NetworkDatabase.loadRoadGraph) when the network fits in memory or, a
+     *                    NetworkSubgraphSource to load only the area of each search. Cached store buffers computed
+     *                    from any other network are deleted. If the source holds the whole network, points are
+     *                    tested against stores by walking distance using a StoreDistanceIndex, which is computed
+     *                    now if the database has none for this network.
+     */
+    public FoodDesertQueryHandler(FoodDesertDatabase foodDb, RoadGraphSource graphSource, GroceryStoreSource placesClient) throws SQLException, ParseException {
+        this(foodDb, graphSource, null, placesClient);
+    }
+
+    /**
+     * @param hierarchy Contraction hierarchy of the graph supplied by graphSource or null. When the graph of a search
+     *                  matches the hierarchy the search is answered with PHAST instead of Dijkstra.
+     */
+    public FoodDesertQueryHandler(FoodDesertDatabase foodDb, RoadGraphSource graphSource, ContractionHierarchy hierarchy,
+                                  GroceryStoreSource placesClient) throws SQLException, ParseException {
         this.foodDb = foodDb;
-        this.networkDb = networkDb;
         this.placesClient = placesClient;
+        this.network = new RoadNetwork(1, foodDb, graphSource, hierarchy, METERS_IN_MILE, STORE_BUFFER_CACHE_SIZE,
+                                       TILE_CACHE_SIZE, SEARCH_POOL_SIZE);
         this.geoFactory = new GeometryFactory();
+        this.distanceContour = new DistanceContour(geoFactory);
+        this.treeUnion = new TreeUnion(bufferPool, geoFactory);
 
         /* Construct coordinate system transformations between the store source and
          * database. */
@@ -66,6 +134,48 @@ public class FoodDesertQueryHandler {
     }
 
 
+    /**
+     * Replace the road network without stopping the server. The new network is prepared completely, including its
+     * store distance index, before it is swapped in at once. Requests that started before the swap finish on the old
+     * network and, requests that start after it use the new one.
+     *
+     * @param graphSource Supplies the new network, see the constructor.
+     * @param hierarchy Contraction hierarchy of the new network or null.
+     * @return Version of the new network, see getNetworkVersion.
+     */
+    public long reloadNetwork(RoadGraphSource graphSource, ContractionHierarchy hierarchy) throws SQLException, ParseException {
+        synchronized(reloadLock) {
+            synchronized(storeLock) {
+                storesAddedDuringReload = new ArrayList<>();
+            }
+            try {
+                RoadNetwork next = new RoadNetwork(network.getVersion() + 1, foodDb, graphSource, hierarchy,
+                                                   METERS_IN_MILE, STORE_BUFFER_CACHE_SIZE, TILE_CACHE_SIZE,
+                                                   SEARCH_POOL_SIZE);
+                synchronized(storeLock) {
+                    if(next.getStoreDistances() != null && !storesAddedDuringReload.isEmpty()){
+                        next.getStoreDistances().addStores(storesAddedDuringReload);
+                    }
+                    next.getTileCache().storesAdded(storesAddedDuringReload);
+                    network = next;
+                }
+                logger.info("road network version " + next.getVersion() + " loaded");
+                return next.getVersion();
+            } finally {
+                synchronized(storeLock) {
+                    storesAddedDuringReload = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of road networks loaded so far. This starts at 1 and increases with every reloadNetwork.
+     */
+    public long getNetworkVersion() {
+        return network.getVersion();
+    }
+
     /**
      * Test a point to see if it is in a food desert. This function queries both
      * the local database and the google places API. New data obtained from the places
@@ -73,13 +183,15 @@ public class FoodDesertQueryHandler {
      */
     public boolean isInFoodDesert(Coordinate p) throws SQLException, ParseException{
         Coordinate dbCoord = projSrcToDb(p);
-        if(!foodDb.inSearchedBuffer(dbCoord)) {
-            insertAllPlacesQueries(p);
-
-            Point coordPoint = geoFactory.createPoint(projSrcToDb(p));
-            double bufferRadius = getBufferRadiusMeters(p);
-            Polygon buffer = (Polygon) coordPoint.buffer(bufferRadius);
-            foodDb.insertSearchedBuffer(buffer);
+        synchronized(searchLock) {
+            if(!foodDb.inSearchedBuffer(dbCoord)) {
+                insertAllPlacesQueries(p);
+
+                Point coordPoint = geoFactory.createPoint(projSrcToDb(p));
+                double bufferRadius = getBufferRadiusMeters(p);
+                Polygon buffer = (Polygon) coordPoint.buffer(bufferRadius);
+                foodDb.insertSearchedBuffer(buffer);
+            }
         }
         return isInFoodDesertUnchecked(p);
     }
@@ -92,8 +204,18 @@ public class FoodDesertQueryHandler {
     private boolean isInFoodDesertUnchecked(Coordinate p) throws SQLException, ParseException {
         Point coordPoint = geoFactory.createPoint(projSrcToDb(p));
         double bufferRadius = getBufferRadiusMeters(p);
-        Geometry buffer = coordPoint.buffer(bufferRadius);
 
+        /* with the whole network in memory this is a nearest node lookup and an array read */
+        StoreDistanceIndex storeDistances = network.getStoreDistances();
+        if(storeDistances != null){
+            double walkingDistance = storeDistances.walkingDistance(coordPoint.getCoordinate());
+            if(!Double.isNaN(walkingDistance)){
+                return walkingDistance >= bufferRadius;
+            }
+        }
+
+        /* away from the network, fall back to straight line distance */
+        Geometry buffer = coordPoint.buffer(bufferRadius);
         List<GroceryStore> stores = foodDb.selectStore(buffer);
         return stores.isEmpty();
     }
@@ -104,7 +226,7 @@ public class FoodDesertQueryHandler {
      * This method does not update the searched buffer so, the caller must do this themselves.
      * @param ps Centers of queries
      */
-    private void insertAllPlacesQueries(Collection<Coordinate> ps) throws SQLException {
+    private void insertAllPlacesQueries(Collection<Coordinate> ps) throws SQLException, ParseException {
         Collection<GroceryStore> allStores = new ArrayList<>();
 
         /* Loop through all coordinates and make queries before database insert.
@@ -124,7 +246,17 @@ public class FoodDesertQueryHandler {
 
         }
 
-        foodDb.insertAll(allStores);
+        List<GroceryStore> newStores = foodDb.insertAll(allStores);
+        synchronized(storeLock) {
+            StoreDistanceIndex storeDistances = network.getStoreDistances();
+            if(storeDistances != null){
+                storeDistances.addStores(newStores);
+            }
+            network.getTileCache().storesAdded(newStores);
+            if(storesAddedDuringReload != null){
+                storesAddedDuringReload.addAll(newStores);
+            }
+        }
     }
 
     /**
@@ -133,7 +265,7 @@ public class FoodDesertQueryHandler {
      * This method does not update the searched buffer so, the caller must do this themselves.
      * @param ps Centers of queries.
      */
-    private void insertAllPlacesQueries(Coordinate... ps) throws SQLException {
+    private void insertAllPlacesQueries(Coordinate... ps) throws SQLException, ParseException {
         insertAllPlacesQueries(Arrays.asList(ps));
     }
 
@@ -158,60 +290,62 @@ public class FoodDesertQueryHandler {
          * points are within the bounding rectangle and adjacent points are separated by radius*sqrt(3) units */
 
         Geometry projectedSearchFrame = new PointTransformer(this::projSrcToDb).transform(searchFrame);
-        Geometry unsearchedBuffer = foodDb.selectUnsearchedBuffer(projectedSearchFrame);
+        synchronized(searchLock) {
+            Geometry unsearchedBuffer = foodDb.selectUnsearchedBuffer(projectedSearchFrame);
 
-        VWSimplifier simplifier = new VWSimplifier(unsearchedBuffer);
-        simplifier.setDistanceTolerance(1);
-        simplifier.setEnsureValid(true);
-        Geometry simpleUnsearchedBuffer = simplifier.getResultGeometry();
+            VWSimplifier simplifier = new VWSimplifier(unsearchedBuffer);
+            simplifier.setDistanceTolerance(1);
+            simplifier.setEnsureValid(true);
+            Geometry simpleUnsearchedBuffer = simplifier.getResultGeometry();
 
-        double radius = getBufferRadiusMeters(simpleUnsearchedBuffer.getCoordinate());
-        Envelope boundingRect = simpleUnsearchedBuffer.getEnvelopeInternal();
+            double radius = getBufferRadiusMeters(simpleUnsearchedBuffer.getCoordinate());
+            Envelope boundingRect = simpleUnsearchedBuffer.getEnvelopeInternal();
 
-        if(!simpleUnsearchedBuffer.isValid()){
-            throw new IllegalStateException("Unsearched buffer was invalid! Check database and correct any invalid geometries." +
-                simpleUnsearchedBuffer.toText());
-        }
+            if(!simpleUnsearchedBuffer.isValid()){
+                throw new IllegalStateException("Unsearched buffer was invalid! Check database and correct any invalid geometries." +
+                    simpleUnsearchedBuffer.toText());
+            }
 
-        /* This loop collects coordinates to query rather than actualy making the queries. */
-        Collection<Coordinate> queryCoordinates = new ArrayList<>();
-        int i = 0;
-        double x,y;
-        do{
-            x = boundingRect.getMinX() + radius * i * 1.5;
-            y = boundingRect.getMinY() + radius * Math.sqrt(3) * i / 2.0;
-
-            double yPrime;
-            int j = -i/2;
-            do {
-                yPrime = y + (radius * Math.sqrt(3) * j);
-                Point queryPoint = geoFactory.createPoint(new Coordinate(x,yPrime));
-
-                /* Buffer.intersects(unsearchedBuffer) was returning true when I really shouldn't.
-                 * This happens because of how circles are approximated by JTS. A circle generated by JTS is represented
-                 * as an n-gon for some large enough n to look like a circle on the map.
-                 *
-                 * This is a problem because the default number of segments used per quadrant is 8 (total 32 quadrants).
-                 * Since 32 is not divisible by 6, the the vertices of the tiled hexagons are not guaranteed to line up
-                 * with vertices of the buffer. This caused some areas that should be marked as searched to not be covered.
-                 *
-                 * The solution was to change the number of segments used in the buffer to a number divisible by 6. */
-                Geometry buffer = queryPoint.buffer(radius, BUFFER_QUADRANT_SEGMENTS);
-
-                if(buffer.intersects(simpleUnsearchedBuffer)){
-                    queryCoordinates.add(projDbToSrc(queryPoint.getCoordinate()));
-                }
-                j++;
+            /* This loop collects coordinates to query rather than actualy making the queries. */
+            Collection<Coordinate> queryCoordinates = new ArrayList<>();
+            int i = 0;
+            double x,y;
+            do{
+                x = boundingRect.getMinX() + radius * i * 1.5;
+                y = boundingRect.getMinY() + radius * Math.sqrt(3) * i / 2.0;
+
+                double yPrime;
+                int j = -i/2;
+                do {
+                    yPrime = y + (radius * Math.sqrt(3) * j);
+                    Point queryPoint = geoFactory.createPoint(new Coordinate(x,yPrime));
+
+                    /* Buffer.intersects(unsearchedBuffer) was returning true when I really shouldn't.
+                     * This happens because of how circles are approximated by JTS. A circle generated by JTS is represented
+                     * as an n-gon for some large enough n to look like a circle on the map.
+                     *
+                     * This is a problem because the default number of segments used per quadrant is 8 (total 32 quadrants).
+                     * Since 32 is not divisible by 6, the the vertices of the tiled hexagons are not guaranteed to line up
+                     * with vertices of the buffer. This caused some areas that should be marked as searched to not be covered.
+                     *
+                     * The solution was to change the number of segments used in the buffer to a number divisible by 6. */
+                    Geometry buffer = queryPoint.buffer(radius, BUFFER_QUADRANT_SEGMENTS);
+
+                    if(buffer.intersects(simpleUnsearchedBuffer)){
+                        queryCoordinates.add(projDbToSrc(queryPoint.getCoordinate()));
+                    }
+                    j++;
 
-            } while (yPrime <= boundingRect.getMaxY());
-            i++;
-        } while(boundingRect.contains(x,y));
+                } while (yPrime <= boundingRect.getMaxY());
+                i++;
+            } while(boundingRect.contains(x,y));
 
-        /* place query at each coordinate. */
-        insertAllPlacesQueries(queryCoordinates);
+            /* place query at each coordinate. */
+            insertAllPlacesQueries(queryCoordinates);
 
-        /* entire area that was unsearched has now been searched */
-        foodDb.insertSearchedBuffer(simpleUnsearchedBuffer);
+            /* entire area that was unsearched has now been searched */
+            foodDb.insertSearchedBuffer(simpleUnsearchedBuffer);
+        }
 
         /*project data back to source projection before returning*/
         return foodDb.selectStore(projectedSearchFrame)
@@ -250,19 +384,60 @@ public class FoodDesertQueryHandler {
     }
 
     public FoodDesertGeometry getFoodDesertGeometry(Geometry searchFrame) throws SQLException, ParseException {
-        /* Buffer search frame to account for stores outside of search frame that still effect food desert status. */
+        return getFoodDesertGeometry(searchFrame, FoodDesertMode.PER_STORE);
+    }
+
+    public FoodDesertGeometry getFoodDesertGeometry(Geometry searchFrame, FoodDesertMode mode) throws SQLException, ParseException {
+        return getFoodDesertGeometry(searchFrame, mode, BufferShape.HULL);
+    }
+
+    /**
+     * Compute the food deserts in a search frame.
+     *
+     * @param mode How the area within walking distance of the stores is computed. See FoodDesertMode.
+     * @param shape How the polygon of each walking distance buffer is drawn from the reached edges. See BufferShape.
+     */
+    public FoodDesertGeometry getFoodDesertGeometry(Geometry searchFrame, FoodDesertMode mode, BufferShape shape) throws SQLException, ParseException {
+        return getFoodDesertGeometry(network, searchFrame, mode, shape);
+    }
+
+    private FoodDesertGeometry getFoodDesertGeometry(RoadNetwork network, Geometry searchFrame, FoodDesertMode mode, BufferShape shape)
+            throws SQLException, ParseException {
         Geometry projectedSearchFrame = new PointTransformer(this::projSrcToDb).transform(searchFrame);
-        Geometry bufferedSearchFrame = projectedSearchFrame.buffer(getBufferRadiusMeters(projectedSearchFrame.getCoordinate()));
+        Geometry bufferedSearchFrame = storeSearchFrame(projectedSearchFrame);
         Geometry srcBufferedSearchFrame  = new PointTransformer(this::projDbToSrc).transform(bufferedSearchFrame);
 
         List<GroceryStore> stores = getAllGroceryStores(srcBufferedSearchFrame);
-        Geometry union = geoFactory.createGeometryCollection();
 
-        for(GroceryStore store : stores){
-            Coordinate location = projSrcToDb(store.getLocation());
-            Geometry buffer = networkBuffer(location, bufferedSearchFrame);
+        if(mode == FoodDesertMode.RASTER){
+            List<Coordinate> locations = stores.stream()
+                                               .map(s -> projSrcToDb(s.getLocation()))
+                                               .collect(Collectors.toList());
+            return rasterFoodDeserts(network, locations, projectedSearchFrame, bufferedSearchFrame);
+        }
 
-            union = union.union(buffer);
+        Geometry union;
+        if(mode == FoodDesertMode.MULTI_SOURCE){
+            List<Coordinate> locations = stores.stream()
+                                               .map(s -> projSrcToDb(s.getLocation()))
+                                               .collect(Collectors.toList());
+            union = multiSourceNetworkBuffer(network, locations, bufferedSearchFrame, shape);
+        } else if(mode == FoodDesertMode.CONTOUR){
+            List<Coordinate> locations = stores.stream()
+                                               .map(s -> projSrcToDb(s.getLocation()))
+                                               .collect(Collectors.toList());
+            union = contourBuffers(network, locations, bufferedSearchFrame,
+                                   new double[]{getBufferRadiusMeters(projectedSearchFrame.getCoordinate())})[0];
+        } else if(mode == FoodDesertMode.PARALLEL){
+            union = treeUnion.union(parallelStoreBuffers(network, stores, shape));
+            network.getStoreBufferCache().flush();
+        } else {
+            List<Geometry> buffers = new ArrayList<>(stores.size());
+            for(GroceryStore store : stores){
+                buffers.add(storeBuffer(network, store, shape));
+            }
+            union = treeUnion.union(buffers);
+            network.getStoreBufferCache().flush();
         }
 
         Geometry projectedFoodDesert = projectedSearchFrame.difference(union);
@@ -271,76 +446,428 @@ public class FoodDesertQueryHandler {
         return new FoodDesertGeometry(foodDeserts, projectedFoodDesert.getArea(), projectedSearchFrame.getArea());
     }
 
+    /**
+     * Buffer search frame to account for stores outside of search frame that still effect food desert status. The
+     * walking distance is in ground meters so, it is scaled to WebMercator units at the frame, like the extent of a
+     * FoodDesertTileCache tile.
+     *
+     * @param projectedSearchFrame Search frame in database coordinates.
+     * @return The buffered frame in database coordinates.
+     */
+    private Geometry storeSearchFrame(Geometry projectedSearchFrame) {
+        return storeSearchFrame(projectedSearchFrame, getBufferRadiusMeters(projectedSearchFrame.getCoordinate()));
+    }
+
+    /**
+     * @param radius Walking distance in meters.
+     */
+    private Geometry storeSearchFrame(Geometry projectedSearchFrame, double radius) {
+        Envelope frame = projectedSearchFrame.getEnvelopeInternal();
+        return projectedSearchFrame.buffer(WebMercator.reach(radius, frame.getMinY(), frame.getMaxY()));
+    }
+
+    /**
+     * Get the buffers of many stores at once by running storeBuffer for each store on the buffer pool. Searches only
+     * share the road graph, which is immutable, and the store buffer cache, which is thread safe.
+     *
+     * @return Buffers in the same order as stores.
+     */
+    private List<Geometry> parallelStoreBuffers(RoadNetwork network, List<GroceryStore> stores, BufferShape shape) throws SQLException, ParseException {
+        List<Callable<Geometry>> tasks = new ArrayList<>(stores.size());
+        for(GroceryStore store : stores){
+            tasks.add(() -> storeBuffer(network, store, shape));
+        }
+
+        List<Geometry> buffers = new ArrayList<>(stores.size());
+        try {
+            for(Future<Geometry> buffer : bufferPool.invokeAll(tasks)){
+                buffers.add(buffer.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while computing store buffers.", e);
+        } catch (ExecutionException e) {
+            /* rethrow the failure of the first failed store as if it had happened on this thread */
+            Throwable cause = e.getCause();
+            if(cause instanceof SQLException){
+                throw (SQLException) cause;
+            } else if(cause instanceof ParseException){
+                throw (ParseException) cause;
+            } else if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
+        return buffers;
+    }
+
+    /**
+     * Get the walking distance buffer of a store from the store buffer cache or, compute and cache it if it is not
+     * there. Newly computed buffers are only written to the database by the next flush of the cache.
+     *
+     * @param store A store in the source projection that has an id in the food desert database.
+     * @return The buffer in database coordinates.
+     */
+    private Geometry storeBuffer(RoadNetwork network, GroceryStore store, BufferShape shape) throws SQLException, ParseException {
+        Coordinate location = projSrcToDb(store.getLocation());
+        double radius = getBufferRadiusMeters(location);
+
+        StoreBufferCache storeBufferCache = network.getStoreBufferCache();
+        Geometry buffer = storeBufferCache.get(store.getId(), radius, shape.name());
+        if(buffer == null){
+            /* Every node within walking distance is also within this envelope so, the buffer does not depend on the
+             * search frame of the request that first computed it. The radius is in ground meters and is scaled to
+             * WebMercator units at the store. */
+            Envelope reach = new Envelope(location);
+            reach.expandBy(WebMercator.reach(radius, location.y, location.y));
+            buffer = networkBuffer(network, location, geoFactory.toGeometry(reach), shape);
+            storeBufferCache.put(store.getId(), radius, shape.name(), buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Compute the area within walking distance of a point by searching the road graph. The graph of bufferBounds is
+     * fetched from the graph source once and, the search itself runs entirely in memory.
+     *
+     * @param center Start of the search in database coordinates.
+     * @param bufferBounds Nodes outside of this geometry are not visited.
+     * @return Concave hull of the edges reached by the search.
+     */
     public Geometry networkBuffer(Coordinate center, Geometry bufferBounds) throws SQLException, ParseException {
-        networkDb.setAutoCommit(false);
+        return networkBuffer(network, center, bufferBounds, BufferShape.HULL);
+    }
 
-        Node intialNode = networkDb.getNearestNode(center, getBufferRadiusMeters(center));
+    /**
+     * @param shape How the buffer is drawn from the edges reached by the search.
+     */
+    public Geometry networkBuffer(Coordinate center, Geometry bufferBounds, BufferShape shape) throws SQLException, ParseException {
+        return networkBuffer(network, center, bufferBounds, shape);
+    }
+
+    private Geometry networkBuffer(RoadNetwork network, Coordinate center, Geometry bufferBounds, BufferShape shape) throws SQLException, ParseException {
+        RoadGraph roadGraph = network.getGraphSource().graphFor(bufferBounds);
+        double radius = getBufferRadiusMeters(center);
+        int initialNode = roadGraph.nearestNode(center.x, center.y, radius);
 
         /* There is no node inside the search are,
          * return an empty geometry as the bufer.*/
-        if(intialNode == null){
+        if(initialNode < 0){
             logger.info("empty network buffer at " + center.toString());
             return geoFactory.createGeometryCollection();
         }
 
-        Queue<Node> searchQueue = new LinkedList<>();
-        Map<Integer, Node> visitedSet = new HashMap<>();
-        Set<Edge> visitedEdgeSet = new HashSet<>();
-        intialNode.setDistance(0);
-        searchQueue.offer(intialNode);
+        Geometry[] edgeLines;
+        SearchPool<NetworkSearch> pool = network.searchPool(roadGraph);
+        NetworkSearch search = pool.acquire();
+        try {
+            search.search(initialNode, radius, boundsFilter(roadGraph, bufferBounds));
 
-        while(!searchQueue.isEmpty()){
-            Node current = searchQueue.poll();
-            if(!visitedSet.containsKey(current.getId())){
-                visitedSet.put(current.getId(), current);
+            edgeLines = new Geometry[search.reachedEdgeCount()];
+            for(int i = 0; i < edgeLines.length; i++){
+                edgeLines[i] = roadGraph.edgeGeometry(search.reachedEdge(i), geoFactory);
+            }
+        } finally {
+            pool.release(search);
+        }
 
-                if(current.getEdges() == null){
-                    List<Edge> edges = networkDb.getEdges(current);
-                    current.setEdges(edges);
-                }
+        return shape.shape(edgeLines, geoFactory);
+    }
 
-                for(Edge e : current.getEdges()){
-                    double newDistance = current.getDistance() + e.getLength();
-                    int nextId= e.getNode_from() == current.getId() ? e.getNode_to() : e.getNode_from();
-                    if(visitedSet.containsKey(nextId)){
-                        Node next = visitedSet.get(nextId);
-                        if(newDistance < next.getDistance()){
-                            next.setDistance(newDistance);
-                            visitedSet.remove(next.getId());
-                            searchQueue.offer(next);
-                        }
-                    } else if (newDistance < getBufferRadiusMeters(center)) {
-                        Node next = networkDb.getNode(nextId);
-                        if(bufferBounds.contains(geoFactory.createPoint(next.getGeometry()))){
-                            next.setDistance(newDistance);
-                            searchQueue.offer(next);
-                            visitedEdgeSet.add(e);
+    /**
+     * Compute the area within walking distance of any of a set of points with a single search of the road graph
+     * started from all of them at once. The search labels every reached edge with its nearest point so, the edges are
+     * split into one group per point and each group is shaped separately. The result is the union of these shapes.
+     *
+     * Every node is settled once no matter how many points there are so, the search costs the same as one buffer
+     * over the whole area instead of one buffer per point.
+     *
+     * @param centers Start points of the search in database coordinates.
+     * @param bufferBounds Nodes outside of this geometry are not visited.
+     */
+    public Geometry multiSourceNetworkBuffer(List<Coordinate> centers, Geometry bufferBounds) throws SQLException, ParseException {
+        return multiSourceNetworkBuffer(network, centers, bufferBounds, BufferShape.HULL);
+    }
+
+    /**
+     * @param shape How the buffer of each point is drawn from the edges reached from it.
+     */
+    public Geometry multiSourceNetworkBuffer(List<Coordinate> centers, Geometry bufferBounds, BufferShape shape) throws SQLException, ParseException {
+        return multiSourceNetworkBuffer(network, centers, bufferBounds, shape);
+    }
+
+    private Geometry multiSourceNetworkBuffer(RoadNetwork network, List<Coordinate> centers, Geometry bufferBounds, BufferShape shape) throws SQLException, ParseException {
+        RoadGraph roadGraph = network.getGraphSource().graphFor(bufferBounds);
+
+        double radius = 0;
+        for(Coordinate center : centers){
+            radius = Math.max(radius, getBufferRadiusMeters(center));
+        }
+
+        int[] sources = new int[centers.size()];
+        int sourceCount = snapCenters(roadGraph, centers, radius, sources);
+        if(sourceCount == 0){
+            return geoFactory.createGeometryCollection();
+        }
+
+        /* group reached edges by the source they were reached from */
+        Map<Integer, List<Geometry>> edgesBySource = new HashMap<>();
+        SearchPool<NetworkSearch> pool = network.searchPool(roadGraph);
+        NetworkSearch search = pool.acquire();
+        try {
+            search.search(sources, sourceCount, radius, boundsFilter(roadGraph, bufferBounds));
+
+            for(int i = 0; i < search.reachedEdgeCount(); i++){
+                LineString edgeLine = roadGraph.edgeGeometry(search.reachedEdge(i), geoFactory);
+                edgesBySource.computeIfAbsent(search.reachedEdgeOrigin(i), s -> new ArrayList<>()).add(edgeLine);
+            }
+        } finally {
+            pool.release(search);
+        }
+
+        List<Geometry> buffers = new ArrayList<>(edgesBySource.size());
+        for(List<Geometry> edgeLines : edgesBySource.values()){
+            buffers.add(shape.shape(edgeLines.toArray(new Geometry[0]), geoFactory));
+        }
+        return treeUnion.union(buffers);
+    }
+
+    /**
+     * Snap every center in one call then drop the ones with no node within their own radius on the ground.
+     *
+     * @param radius Largest radius of any center in meters.
+     * @param sources Receives the nodes of the centers that were kept, in the order of centers.
+     * @return Number of centers that were kept.
+     */
+    private int snapCenters(RoadGraph roadGraph, List<Coordinate> centers, double radius, int[] sources) {
+        double[] xs = new double[centers.size()];
+        double[] ys = new double[centers.size()];
+        for(int i = 0; i < centers.size(); i++){
+            xs[i] = centers.get(i).x;
+            ys[i] = centers.get(i).y;
+        }
+
+        double minY = Arrays.stream(ys).min().orElse(0);
+        double maxY = Arrays.stream(ys).max().orElse(0);
+        int[] snapped = new int[centers.size()];
+        roadGraph.nearestNodes(xs, ys, centers.size(), WebMercator.reach(radius, minY, maxY), snapped);
+
+        int sourceCount = 0;
+        for(int i = 0; i < centers.size(); i++){
+            int node = snapped[i];
+            if(node < 0 || WebMercator.groundDistance(xs[i], ys[i], roadGraph.nodeX(node), roadGraph.nodeY(node))
+                    > getBufferRadiusMeters(centers.get(i))){
+                logger.info("empty network buffer at " + centers.get(i).toString());
+                continue;
+            }
+            sources[sourceCount++] = node;
+        }
+        return sourceCount;
+    }
+
+    /**
+     * Compute the area within each of several walking distances of any of a set of stores by contouring the walking
+     * distance from every network node in bounds to its nearest store, see DistanceContour. If the whole network is
+     * in memory and the store distance index reaches far enough, the distances are read from the index. Otherwise
+     * they come from a single search out to the largest threshold started from every store at once, as in
+     * multiSourceNetworkBuffer.
+     *
+     * @param centers Stores in database coordinates. Unused when the store distance index is used.
+     * @param bounds Only nodes inside the envelope of bounds are contoured.
+     * @param thresholds Walking distances in meters.
+     * @return The area within each threshold, in the same order as thresholds.
+     */
+    private Geometry[] contourBuffers(RoadNetwork network, List<Coordinate> centers, Geometry bounds, double[] thresholds)
+            throws SQLException, ParseException {
+        Envelope frame = bounds.getEnvelopeInternal();
+        double radius = Arrays.stream(thresholds).max().orElse(0);
+
+        StoreDistanceIndex storeDistances = network.getStoreDistances();
+        if(storeDistances != null && radius <= storeDistances.getRadius()){
+            return distanceContour.reachable(storeDistances.getGraph(), frame, storeDistances::distance, thresholds);
+        }
+
+        RoadGraph roadGraph = network.getGraphSource().graphFor(bounds);
+        int[] sources = new int[centers.size()];
+        int sourceCount = snapCenters(roadGraph, centers, radius, sources);
+        if(sourceCount == 0){
+            Geometry[] empty = new Geometry[thresholds.length];
+            Arrays.fill(empty, geoFactory.createGeometryCollection());
+            return empty;
+        }
+
+        SearchPool<NetworkSearch> pool = network.searchPool(roadGraph);
+        NetworkSearch search = pool.acquire();
+        try {
+            search.search(sources, sourceCount, radius, boundsFilter(roadGraph, bounds));
+            return distanceContour.reachable(roadGraph, frame, search::distance, thresholds);
+        } finally {
+            pool.release(search);
+        }
+    }
+
+    /**
+     * Approximate the food deserts of a search frame on a RasterGrid. A cell is within walking distance of a store if
+     * the walking distance at its center is, measured as in StoreDistanceIndex.walkingDistance. If the whole network
+     * is in memory that is all the work there is. Otherwise the node distances come from a single search started from
+     * every store at once. The desert mask is the frame mask minus the reached mask and, both areas are counted from
+     * the masks.
+     *
+     * @param centers Stores in database coordinates. Unused when the store distance index is used.
+     * @param projectedSearchFrame Search frame in database coordinates.
+     * @param bounds Nodes outside of this geometry are not searched.
+     */
+    private FoodDesertGeometry rasterFoodDeserts(RoadNetwork network, List<Coordinate> centers,
+                                                 Geometry projectedSearchFrame, Geometry bounds) throws SQLException, ParseException {
+        RasterGrid grid = new RasterGrid(projectedSearchFrame.getEnvelopeInternal(), RASTER_CELLS);
+        double radius = getBufferRadiusMeters(projectedSearchFrame.getCoordinate());
+
+        BitSet reached;
+        StoreDistanceIndex storeDistances = network.getStoreDistances();
+        if(storeDistances != null){
+            reached = grid.cellsWhere((x, y) -> storeDistances.walkingDistance(new Coordinate(x, y)) < radius);
+        } else {
+            RoadGraph roadGraph = network.getGraphSource().graphFor(bounds);
+            int[] sources = new int[centers.size()];
+            int sourceCount = snapCenters(roadGraph, centers, radius, sources);
+            if(sourceCount == 0){
+                reached = new BitSet();
+            } else {
+                SearchPool<NetworkSearch> pool = network.searchPool(roadGraph);
+                NetworkSearch search = pool.acquire();
+                try {
+                    search.search(sources, sourceCount, radius, boundsFilter(roadGraph, bounds));
+                    Envelope frame = projectedSearchFrame.getEnvelopeInternal();
+                    double snapReach = WebMercator.reach(radius, frame.getMinY(), frame.getMaxY());
+                    reached = grid.cellsWhere((x, y) -> {
+                        int node = roadGraph.nearestNode(x, y, snapReach);
+                        if(node < 0){
+                            return false;
                         }
-                    }
+                        double walk = WebMercator.groundDistance(x, y, roadGraph.nodeX(node), roadGraph.nodeY(node));
+                        return walk + search.distance(node) < radius;
+                    });
+                } finally {
+                    pool.release(search);
                 }
-
             }
         }
 
-        networkDb.commit();
-        networkDb.setAutoCommit(true);
+        BitSet frame = grid.cellsInside(projectedSearchFrame, geoFactory);
+        BitSet desert = (BitSet) frame.clone();
+        desert.andNot(reached);
 
-        Geometry[] edgeLines = visitedEdgeSet.stream()
-                                             .map(Edge::getGeometry)
-                                             .toArray(Geometry[]::new);
-        GeometryCollection collection = geoFactory.createGeometryCollection(edgeLines);
+        /* cells along the edge of the frame reach past it by up to half a cell */
+        Geometry projectedFoodDesert = grid.polygonize(desert, geoFactory).intersection(projectedSearchFrame);
+        Geometry foodDeserts = new PointTransformer(this::projDbToSrc).transform(projectedFoodDesert);
 
-        //This is random more or less random right now
-        final int THRESHOLD = 100;
-        Geometry buffer = new ConcaveHull(collection, THRESHOLD).getConcaveHull();
+        return new FoodDesertGeometry(foodDeserts, grid.area(desert), grid.area(frame));
+    }
 
-        return buffer;
+    /**
+     * @return A test that accepts nodes of roadGraph inside of bounds.
+     */
+    private IntPredicate boundsFilter(RoadGraph roadGraph, Geometry bounds) {
+        if(bounds.isRectangle()){
+            /* store buffer bounds are rectangles, test those without allocating a point for every node */
+            Envelope envelope = bounds.getEnvelopeInternal();
+            return node -> envelope.contains(roadGraph.nodeX(node), roadGraph.nodeY(node));
+        }
+        PreparedGeometry preparedBounds = PreparedGeometryFactory.prepare(bounds);
+        return node -> preparedBounds.contains(
+                geoFactory.createPoint(new Coordinate(roadGraph.nodeX(node), roadGraph.nodeY(node))));
+    }
+
+    /**
+     * Compute the food deserts in a search frame for several walking distances at once. The stores and the walking
+     * distance of every network node are found once for the largest distance and, every band is contoured from the
+     * same triangulation (see FoodDesertMode.CONTOUR) so, this costs little more than a single band.
+     *
+     * @param thresholds Walking distances in meters. A point is in the food desert of a threshold if no store is
+     *                   within that distance.
+     * @return The food deserts of each threshold, in the same order as thresholds.
+     */
+    public List<FoodDesertGeometry> getFoodDesertBands(Geometry searchFrame, double[] thresholds) throws SQLException, ParseException {
+        if(thresholds.length == 0 || Arrays.stream(thresholds).anyMatch(t -> !(t > 0))){
+            throw new IllegalArgumentException("Thresholds must be a non-empty list of positive distances.");
+        }
+        double maxThreshold = Arrays.stream(thresholds).max().getAsDouble();
+
+        Geometry projectedSearchFrame = new PointTransformer(this::projSrcToDb).transform(searchFrame);
+        Geometry bufferedSearchFrame = storeSearchFrame(projectedSearchFrame, maxThreshold);
+        Geometry srcBufferedSearchFrame  = new PointTransformer(this::projDbToSrc).transform(bufferedSearchFrame);
+
+        List<GroceryStore> stores = getAllGroceryStores(srcBufferedSearchFrame);
+        List<Coordinate> locations = stores.stream()
+                                           .map(s -> projSrcToDb(s.getLocation()))
+                                           .collect(Collectors.toList());
+        Geometry[] reachable = contourBuffers(this.network, locations, bufferedSearchFrame, thresholds);
+
+        List<FoodDesertGeometry> bands = new ArrayList<>(thresholds.length);
+        for(Geometry union : reachable){
+            Geometry projectedFoodDesert = projectedSearchFrame.difference(union);
+            Geometry foodDeserts = new PointTransformer(this::projDbToSrc).transform(projectedFoodDesert);
+            bands.add(new FoodDesertGeometry(foodDeserts, projectedFoodDesert.getArea(), projectedSearchFrame.getArea()));
+        }
+        return bands;
+    }
+
+    public List<FoodDesertGeometry> getFoodDesertBands(Envelope searchFrame, double[] thresholds) throws SQLException, ParseException {
+        return getFoodDesertBands(geoFactory.toGeometry(searchFrame), thresholds);
+    }
+
+    /**
+     * Get the food deserts of a slippy map tile from the tile cache or, compute and cache them if they are not there.
+     * Tiles are computed in FoodDesertMode.RASTER with one cell per pixel of a 256 pixel tile and, stay cached until
+     * a store is added within walking distance of the tile or the network changes.
+     *
+     * @param zoom Zoom level from MIN_TILE_ZOOM to MAX_TILE_ZOOM.
+     * @param x Column of the tile, counted from the west.
+     * @param y Row of the tile, counted from the north.
+     */
+    public FoodDesertGeometry getFoodDesertTile(int zoom, int x, int y) throws SQLException, ParseException {
+        if(zoom < MIN_TILE_ZOOM || zoom > MAX_TILE_ZOOM){
+            throw new IllegalArgumentException("Tiles are served from zoom " + MIN_TILE_ZOOM + " to " + MAX_TILE_ZOOM + ".");
+        }
+        if(x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom){
+            throw new IllegalArgumentException("No tile " + zoom + "/" + x + "/" + y + ".");
+        }
+
+        RoadNetwork network = this.network;
+        FoodDesertTileCache tileCache = network.getTileCache();
+        FoodDesertGeometry tile = tileCache.get(zoom, x, y);
+        if(tile == null){
+            Geometry projectedTile = geoFactory.toGeometry(FoodDesertTileCache.tileEnvelope(zoom, x, y));
+            Geometry srcTile = new PointTransformer(this::projDbToSrc).transform(projectedTile);
+
+            /* Look up the stores around the tile before it is started. The stores this lookup inserts are included in
+             * the tile so, they must not keep it from being cached. */
+            getAllGroceryStores(new PointTransformer(this::projDbToSrc).transform(storeSearchFrame(projectedTile)));
+
+            long generation = tileCache.start();
+            try {
+                tile = getFoodDesertGeometry(network, srcTile, FoodDesertMode.RASTER, BufferShape.HULL);
+                tileCache.put(zoom, x, y, tile, generation);
+            } finally {
+                tileCache.finish(generation);
+            }
+        }
+        return tile;
     }
 
     public FoodDesertGeometry getFoodDesertGeometry(Envelope searchFrame) throws SQLException, ParseException {
         return getFoodDesertGeometry(geoFactory.toGeometry(searchFrame));
     }
 
+    public FoodDesertGeometry getFoodDesertGeometry(Envelope searchFrame, FoodDesertMode mode) throws SQLException, ParseException {
+        return getFoodDesertGeometry(geoFactory.toGeometry(searchFrame), mode);
+    }
+
+    public FoodDesertGeometry getFoodDesertGeometry(Envelope searchFrame, FoodDesertMode mode, BufferShape shape) throws SQLException, ParseException {
+        return getFoodDesertGeometry(geoFactory.toGeometry(searchFrame), mode, shape);
+    }
+
     /**
      * Generate a buffer radius around a point that represents the area in which
      * there must be a grocery store for the point to not be in a food
@@ -353,7 +880,6 @@ public class FoodDesertQueryHandler {
      * to when talking to the Place API or other code that uses Web Mercator
      */
     public double getBufferRadiusMeters(Coordinate p) {
-        final double METERS_IN_MILE = 1609.34;
         return METERS_IN_MILE;
     }
 
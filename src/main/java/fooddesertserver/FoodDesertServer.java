@@ -4,10 +4,18 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import database.fooddesert.FoodDesertDatabase;
 import database.network.NetworkDatabase;
+import database.network.NetworkSubgraphSource;
 import grocerystoresource.GooglePlacesClient;
 import grocerystoresource.GroceryStoreSource;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.CompactRoadGraph;
+import roadgraph.ContractionHierarchy;
+import roadgraph.RoadGraph;
+import roadgraph.RoadGraphFile;
+import roadgraph.RoadGraphSource;
+import roadgraph.TiledGraphSource;
 import spark.Request;
 
 import java.io.FileInputStream;
@@ -17,18 +25,40 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import static spark.Spark.get;
 import static spark.Spark.staticFiles;
 
 public class FoodDesertServer {
 
+    /* Side length in meters and number of tiles kept in memory when the network is loaded with --tiles. */
+    private static final double TILE_SIZE = 5000;
+    private static final int TILE_CACHE_SIZE = 64;
+
+    /* Seconds between checks for a replaced network when started with --watch. */
+    private static final int WATCH_PERIOD = 30;
+
     private static void printUsage() {
-        System.out.println("Usage: java -jar FoodDesertServer.jar database_file network_database_file [google_api_key]");
+        System.out.println("Usage: java -jar FoodDesertServer.jar [--subgraph | --tiles | --ch ch_file | --compact] [--watch] database_file network_database_file [google_api_key]");
+        System.out.println("\t--subgraph: load only the part of the network database needed by each search instead of the");
+        System.out.println("\t\twhole network at startup. Use this when the network does not fit in memory. Cannot be used");
+        System.out.println("\t\twith a graph file.");
+        System.out.println("\t--tiles: load the network database in " + (int) TILE_SIZE + " meter tiles as searches need them and,");
+        System.out.println("\t\tkeep the " + TILE_CACHE_SIZE + " most recently used tiles in memory. Cannot be used with a graph file.");
+        System.out.println("\t--ch: answer walking distance searches with a contraction hierarchy built from the network by");
+        System.out.println("\t\tmkch. Cannot be combined with --subgraph or --tiles.");
+        System.out.println("\t--compact: keep the whole network in memory in a compact encoding that rounds coordinates and");
+        System.out.println("\t\tlengths to decimeters. Cannot be combined with the other options.");
+        System.out.println("\t--watch: load the network again in the background when network_database_file or ch_file is");
+        System.out.println("\t\treplaced and, switch to it without a restart. Cannot be combined with --subgraph or --tiles.");
         System.out.println("\tdatabase_file: SqLite database file containing tables created by this server.");
-        System.out.println("\tnetwork_database_file: SqLite database file containing tables created by spatialite_osm_net");
+        System.out.println("\tnetwork_database_file: SqLite database file containing tables created by mknetwork");
+        System.out.println("\t\tor a graph file compiled from one by mkgraph.");
         System.out.println("\tgoogle_api_key: a valid key for the Google Places API. If omitted, this\n\t\tprogram will look for a Java properties file containing a key value pair:");
         System.out.println("\t\tgoogle_api_key=$YOUR_API_KEY");
     }
@@ -98,14 +128,74 @@ public class FoodDesertServer {
         get("/food_deserts", (request, response) -> {
             Envelope queryArea = parseRequestEnvelope(request);
 
-            FoodDesertGeometry result = queryHandler.getFoodDesertGeometry(queryArea);
+            /* optional ?mode=multi_source searches from all stores at once, ?mode=parallel buffers stores on every core,
+             * ?mode=contour draws the contour of the walking distance of the network nodes, ?mode=raster approximates
+             * the food deserts on a grid for wide views */
+            FoodDesertMode mode = FoodDesertMode.parse(request.queryParams("mode"));
+            /* optional ?shape=edges draws buffers as widened streets instead of concave hulls */
+            BufferShape shape = BufferShape.parse(request.queryParams("shape"));
+
+            FoodDesertGeometry result = queryHandler.getFoodDesertGeometry(queryArea, mode, shape);
+
+            return gson.toJson(result);
+        });
+
+        get("/food_deserts/tiles/:z/:x/:y", (request, response) -> {
+            int zoom = Integer.parseInt(request.params(":z"));
+            int x = Integer.parseInt(request.params(":x"));
+            int y = Integer.parseInt(request.params(":y"));
+
+            FoodDesertGeometry result = queryHandler.getFoodDesertTile(zoom, x, y);
+
+            return gson.toJson(result);
+        });
+
+        get("/food_desert_bands", (request, response) -> {
+            Envelope queryArea = parseRequestEnvelope(request);
+
+            /* comma separated walking distances in meters, e.g. ?thresholds=804.67,1609.34,3218.69 */
+            double[] thresholds = Arrays.stream(request.queryParams("thresholds").split(","))
+                                        .mapToDouble(t -> Double.parseDouble(t.trim()))
+                                        .toArray();
+
+            List<FoodDesertGeometry> result = queryHandler.getFoodDesertBands(queryArea, thresholds);
 
             return gson.toJson(result);
         });
     }
 
-    public static void main(String[] args) throws IOException, SQLException {
-        if(args.length < 2) {
+    public static void main(String[] args) throws IOException, SQLException, ParseException {
+        boolean subgraph = false;
+        boolean tiles = false;
+        String chFile = null;
+        boolean compact = false;
+        boolean watch = false;
+        while(args.length > 0 && args[0].startsWith("--")) {
+            if(args[0].equals("--subgraph")) {
+                subgraph = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if(args[0].equals("--tiles")) {
+                tiles = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if(args[0].equals("--compact")) {
+                compact = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if(args[0].equals("--watch")) {
+                watch = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if(args[0].equals("--ch") && args.length > 1) {
+                chFile = args[1];
+                args = Arrays.copyOfRange(args, 2, args.length);
+            } else {
+                printUsage();
+                return;
+            }
+        }
+
+        /* a hierarchy covers the whole network, it cannot be used with the partial graphs of subgraph or tile mode */
+        /* a compact graph has its own fingerprint so, no hierarchy was built from it */
+        if(args.length < 2 || (subgraph && tiles) || ((subgraph || tiles || compact) && chFile != null)
+                || ((compact || watch) && (subgraph || tiles))) {
             printUsage();
             return;
         }
@@ -139,19 +229,85 @@ public class FoodDesertServer {
             database = FoodDesertDatabase.createDatabase(dbFile);
         }
 
-        /*Network database must exists and cannot be created at runtime*/
-        NetworkDatabase networkDatabase;
+        /*Network database must exists and cannot be created at runtime.
+         * A compiled graph file is memory mapped which makes startup almost instant. Otherwise, the whole network is
+         * read into memory once so, the database is not needed after this. In subgraph mode the database stays open
+         * and each search loads just its own area. In tile mode the database also stays open and tiles are loaded and
+         * evicted as searches move around the network. A contraction hierarchy must have been built from the same whole
+         * network, reading it fails otherwise. A compact graph is encoded from the whole network once it is loaded. With
+         * --watch, the whole network is loaded again whenever its files are replaced.*/
+        RoadGraphSource graphSource;
+        ContractionHierarchy hierarchy = null;
         Path networDbPath = Paths.get(networkDbFile);
         if (Files.exists(networDbPath, LinkOption.NOFOLLOW_LINKS)) {
-            networkDatabase = new NetworkDatabase(networkDbFile);
+            boolean graphFile = RoadGraphFile.isGraphFile(networDbPath);
+            /* parts of the network are loaded through the spatial index of a network database, a graph file has none */
+            if ((subgraph || tiles) && graphFile) {
+                printUsage();
+                return;
+            }
+
+            if (subgraph) {
+                /* one read only connection per core so, parallel store buffers load their subgraphs at the same time */
+                graphSource = new NetworkSubgraphSource(networkDbFile, Runtime.getRuntime().availableProcessors());
+            } else if (tiles) {
+                NetworkDatabase networkDatabase = new NetworkDatabase(networkDbFile);
+                graphSource = new TiledGraphSource(networkDatabase::loadTile, networkDatabase.networkVersion(),
+                                                   TILE_SIZE, TILE_CACHE_SIZE);
+            } else {
+                RoadGraph graph = loadWholeGraph(networDbPath, compact);
+                graphSource = RoadGraphSource.of(graph);
+
+                if (chFile != null) {
+                    hierarchy = ContractionHierarchy.read(Paths.get(chFile), graph);
+                }
+            }
         } else {
-            System.out.println("Cannot start server without existing network database.\n Create a database using spatialite_osm_net then try again.");
+            System.out.println("Cannot start server without existing network database.\n Create a database using mknetwork then try again.");
             return;
         }
 
         GroceryStoreSource client = new GooglePlacesClient(googleApiKey);
-        FoodDesertQueryHandler queryHandler = new FoodDesertQueryHandler(database, networkDatabase, client);
+        FoodDesertQueryHandler queryHandler = new FoodDesertQueryHandler(database, graphSource, hierarchy, client);
+
+        if(watch) {
+            /* requests keep running on the current network while the new one loads, see reloadNetwork */
+            List<Path> watched = new ArrayList<>();
+            watched.add(networDbPath);
+            Path chPath = chFile == null ? null : Paths.get(chFile);
+            if(chPath != null) {
+                watched.add(chPath);
+            }
+            boolean compactReload = compact;
+            new NetworkFileWatcher(watched, () -> {
+                RoadGraph graph = loadWholeGraph(networDbPath, compactReload);
+                ContractionHierarchy newHierarchy = chPath == null ? null : ContractionHierarchy.read(chPath, graph);
+                queryHandler.reloadNetwork(RoadGraphSource.of(graph), newHierarchy);
+            }).start(WATCH_PERIOD, TimeUnit.SECONDS);
+        }
 
         setupRoutes(queryHandler);
     }
+
+    /**
+     * Load the whole network from a graph file, which is memory mapped, or from a network database, which is read into
+     * memory and closed.
+     *
+     * @param compact Encode the graph as a CompactRoadGraph.
+     */
+    private static RoadGraph loadWholeGraph(Path networkDbPath, boolean compact) throws IOException, SQLException, ParseException {
+        RoadGraph graph;
+        if (RoadGraphFile.isGraphFile(networkDbPath)) {
+            graph = RoadGraphFile.map(networkDbPath);
+        } else {
+            try (NetworkDatabase networkDatabase = new NetworkDatabase(networkDbPath.toString())) {
+                graph = networkDatabase.loadRoadGraph();
+            }
+        }
+        if (compact) {
+            /* encoding a mapped graph file keeps only the compact copy on the heap */
+            graph = CompactRoadGraph.of(graph);
+        }
+        return graph;
+    }
 }
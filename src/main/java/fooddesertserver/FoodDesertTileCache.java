@@ -0,0 +1,239 @@
+package fooddesertserver;
+
+import database.fooddesert.FoodDesertDatabase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.WebMercator;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Caches the food deserts of slippy map tiles. Recently used tiles are kept in memory with least recently used
+ * eviction and, every tile is also written to the tile table of the FoodDesertDatabase so that it survives restarts.
+ *
+ * The food deserts of a tile only depend on the road network and on the stores within walking distance of the tile.
+ * Tiles are tied to one version of the network, like StoreBufferCache, and a tile is deleted when a store is added
+ * within its extent: the tile buffered by the walking distance.
+ *
+ * A tile is computed or read between a call to start and a call to finish. A store added within its extent in the
+ * meantime may be missing from it so, put does not cache it. Stores added anywhere else do not affect it.
+ *
+ * This class is thread safe.
+ */
+public class FoodDesertTileCache {
+
+    /* Half the width of the WebMercator world, which is the square that tile 0/0/0 covers. */
+    private static final double WORLD_HALF_WIDTH = 20037508.342789244;
+
+    private final FoodDesertDatabase foodDb;
+    private final long networkVersion;
+    private final double radius;
+
+    private final Map<Key, FoodDesertGeometry> memory;
+
+    /* Counts calls to storesAdded. */
+    private long generation;
+
+    /* Number of tiles between start and finish by the generation they were started in. */
+    private final TreeMap<Long, Integer> running = new TreeMap<>();
+
+    /* Stores added since the oldest running tile was started, oldest first. Nothing is kept while no tile runs. */
+    private final ArrayDeque<AddedStore> addedStores = new ArrayDeque<>();
+
+    /**
+     * @param networkVersion Fingerprint of the road network that tiles are computed from.
+     * @param radius Walking distance in meters from a tile within which a store can change its food deserts.
+     * @param capacity Maximum number of tiles kept in memory.
+     */
+    public FoodDesertTileCache(FoodDesertDatabase foodDb, long networkVersion, double radius, int capacity) throws SQLException {
+        this.foodDb = foodDb;
+        this.networkVersion = networkVersion;
+        this.radius = radius;
+        this.memory = new LinkedHashMap<Key, FoodDesertGeometry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FoodDesertGeometry> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        foodDb.deleteStaleFoodDesertTiles(networkVersion);
+    }
+
+    /**
+     * @return The area covered by a tile in WebMercator (EPSG 3857) coordinates.
+     */
+    public static Envelope tileEnvelope(int zoom, int x, int y) {
+        double size = 2 * WORLD_HALF_WIDTH / (1 << zoom);
+        return new Envelope(-WORLD_HALF_WIDTH + x * size, -WORLD_HALF_WIDTH + (x + 1) * size,
+                            WORLD_HALF_WIDTH - (y + 1) * size, WORLD_HALF_WIDTH - y * size);
+    }
+
+    /**
+     * @return The food deserts of a tile or null if they have not been computed for this network since the last store
+     *         was added near the tile.
+     */
+    public FoodDesertGeometry get(int zoom, int x, int y) throws SQLException, ParseException {
+        Key key = new Key(zoom, x, y);
+        long generation;
+        synchronized (this) {
+            FoodDesertGeometry tile = memory.get(key);
+            if (tile != null) {
+                return tile;
+            }
+            generation = start();
+        }
+
+        try {
+            FoodDesertGeometry tile = foodDb.selectFoodDesertTile(zoom, x, y, networkVersion, extent(zoom, x, y));
+            if (tile != null) {
+                synchronized (this) {
+                    /* the tile may have been deleted from the database while it was being read */
+                    if (storeAddedSince(zoom, x, y, generation)) {
+                        return null;
+                    }
+                    memory.put(key, tile);
+                }
+            }
+            return tile;
+        } finally {
+            finish(generation);
+        }
+    }
+
+    /**
+     * Start computing a tile. Every call must be followed by a call to finish with the returned generation once the
+     * tile has been passed to put or, its computation failed.
+     *
+     * @return The current generation.
+     */
+    public synchronized long start() {
+        running.merge(generation, 1, Integer::sum);
+        return generation;
+    }
+
+    /**
+     * @param generation Generation returned by start.
+     */
+    public synchronized void finish(long generation) {
+        running.computeIfPresent(generation, (g, count) -> count > 1 ? count - 1 : null);
+        long oldest = running.isEmpty() ? this.generation : running.firstKey();
+        while (!addedStores.isEmpty() && addedStores.peekFirst().generation <= oldest) {
+            addedStores.removeFirst();
+        }
+    }
+
+    /**
+     * Add a tile to the cache and write it to the database. The tile is dropped if a store was added within its extent
+     * since it was started since, it may not include that store.
+     *
+     * @param generation Generation returned by start before the tile was computed.
+     * @return Whether the tile was cached.
+     */
+    public synchronized boolean put(int zoom, int x, int y, FoodDesertGeometry tile, long generation) throws SQLException {
+        if (storeAddedSince(zoom, x, y, generation)) {
+            return false;
+        }
+        memory.put(new Key(zoom, x, y), tile);
+        foodDb.insertFoodDesertTile(zoom, x, y, networkVersion, extent(zoom, x, y), tile);
+        return true;
+    }
+
+    /* Whether a store was added within the extent of a tile after generation. */
+    private boolean storeAddedSince(int zoom, int x, int y, long generation) {
+        Envelope extent = null;
+        for (AddedStore store : addedStores) {
+            if (store.generation <= generation) {
+                continue;
+            }
+            if (extent == null) {
+                extent = extent(zoom, x, y);
+            }
+            if (extent.contains(store.location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delete every tile, in memory and in the database, that the new stores may change.
+     *
+     * @param stores Newly added stores in database coordinates.
+     */
+    public synchronized void storesAdded(List<GroceryStore> stores) throws SQLException {
+        if (stores.isEmpty()) {
+            return;
+        }
+        generation++;
+        if (!running.isEmpty()) {
+            for (GroceryStore store : stores) {
+                addedStores.addLast(new AddedStore(generation, store.getLocation()));
+            }
+        }
+
+        Iterator<Key> keys = memory.keySet().iterator();
+        while (keys.hasNext()) {
+            Key key = keys.next();
+            Envelope extent = extent(key.zoom, key.x, key.y);
+            for (GroceryStore store : stores) {
+                Coordinate location = store.getLocation();
+                if (extent.contains(location)) {
+                    keys.remove();
+                    break;
+                }
+            }
+        }
+        foodDb.deleteFoodDesertTiles(stores);
+    }
+
+    /* The area that a store has to be in to change the food deserts of a tile. The radius is scaled to WebMercator
+     * units at the tile. */
+    private Envelope extent(int zoom, int x, int y) {
+        Envelope extent = tileEnvelope(zoom, x, y);
+        extent.expandBy(WebMercator.reach(radius, extent.getMinY(), extent.getMaxY()));
+        return extent;
+    }
+
+    private static final class AddedStore {
+        private final long generation;
+        private final Coordinate location;
+
+        AddedStore(long generation, Coordinate location) {
+            this.generation = generation;
+            this.location = location;
+        }
+    }
+
+    private static final class Key {
+        private final int zoom;
+        private final int x;
+        private final int y;
+
+        Key(int zoom, int x, int y) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return zoom == key.zoom && x == key.x && y == key.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(zoom, x, y);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package fooddesertserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the files of a road network and runs an action once any of them has been replaced. A change is only acted on
+ * after the files have stayed the same for a whole poll so, a file that is still being copied is not read.
+ *
+ * Replace a watched file by moving a new file over it. Graph files are memory mapped and, writing over one in place
+ * changes the graph under the searches that are still running on it.
+ *
+ * The action runs on a single daemon thread so, it never overlaps itself and never keeps the server alive.
+ */
+class NetworkFileWatcher {
+
+    private final Logger logger = LoggerFactory.getLogger(NetworkFileWatcher.class);
+
+    /**
+     * Loads the network again. Any exception is logged and, the action is not run again until the files change.
+     */
+    interface Action {
+        void run() throws Exception;
+    }
+
+    private final List<Path> files;
+    private final Action action;
+
+    /* state of the files when the action last ran and, a change seen by the last poll that has not settled yet */
+    private List<Object> loadedState;
+    private List<Object> changedState;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param files Files the network is loaded from. Their current contents are taken to be already loaded.
+     */
+    NetworkFileWatcher(List<Path> files, Action action) {
+        this.files = new ArrayList<>(files);
+        this.action = action;
+        this.loadedState = state();
+    }
+
+    /**
+     * Start polling every period on a background thread.
+     */
+    synchronized void start(long period, TimeUnit unit) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "network-file-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, period, period, unit);
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Check the files once and run the action if they changed before the previous poll and not since.
+     */
+    synchronized void poll() {
+        List<Object> state = state();
+        if (state == null || state.equals(loadedState)) {
+            /* a missing file is most likely in the middle of being replaced */
+            changedState = null;
+            return;
+        }
+        if (!state.equals(changedState)) {
+            changedState = state;
+            return;
+        }
+
+        loadedState = state;
+        changedState = null;
+        try {
+            action.run();
+        } catch (Exception e) {
+            logger.error("Could not load the changed road network, keeping the current one.", e);
+        }
+    }
+
+    /**
+     * @return Identity, modification time and size of every file or null if one of them cannot be read. A file moved
+     *         into place has a new identity even if its time and size were copied from the old one.
+     */
+    private List<Object> state() {
+        List<Object> state = new ArrayList<>(3 * files.size());
+        for (Path file : files) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                state.addAll(Arrays.asList(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size()));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,139 @@
+package fooddesertserver;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A grid of square cells covering a rectangle in database coordinates. Sets of cells, such as the cells of a search
+ * frame or the cells within walking distance of a store, are masks with one bit per cell so, they are combined and
+ * counted a word at a time. A mask is only turned back into polygons at the very end.
+ *
+ * Cell (x, y) is bit y * width + x of a mask. A cell belongs to an area when its center does.
+ */
+final class RasterGrid {
+
+    /**
+     * Tests whether a cell center in database coordinates belongs to a mask.
+     */
+    interface CellTest {
+        boolean test(double x, double y);
+    }
+
+    private final double minX, minY;
+    private final double cellSize;
+    private final int width, height;
+
+    /**
+     * @param envelope Rectangle to cover. The last row and column may reach past it.
+     * @param cells Number of cells along the longer side of envelope. The resolution follows from the size of the
+     *              envelope so, the number of cells does not depend on how far the view is zoomed out.
+     */
+    RasterGrid(Envelope envelope, int cells) {
+        this.minX = envelope.getMinX();
+        this.minY = envelope.getMinY();
+        double size = Math.max(envelope.getWidth(), envelope.getHeight()) / cells;
+        this.cellSize = size > 0 ? size : 1;
+        this.width = Math.max(1, (int) Math.ceil(envelope.getWidth() / cellSize));
+        this.height = Math.max(1, (int) Math.ceil(envelope.getHeight() / cellSize));
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return Mask of the cells whose centers pass test.
+     */
+    BitSet cellsWhere(CellTest test) {
+        BitSet mask = new BitSet(width * height);
+        for (int y = 0; y < height; y++) {
+            double centerY = minY + (y + 0.5) * cellSize;
+            for (int x = 0; x < width; x++) {
+                if (test.test(minX + (x + 0.5) * cellSize, centerY)) {
+                    mask.set(y * width + x);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return Mask of the cells whose centers are inside area.
+     */
+    BitSet cellsInside(Geometry area, GeometryFactory geoFactory) {
+        if (area.isRectangle()) {
+            Envelope envelope = area.getEnvelopeInternal();
+            return cellsWhere(envelope::contains);
+        }
+        PreparedGeometry preparedArea = PreparedGeometryFactory.prepare(area);
+        return cellsWhere((x, y) -> preparedArea.contains(geoFactory.createPoint(new Coordinate(x, y))));
+    }
+
+    /**
+     * @return Area covered by the cells of mask.
+     */
+    double area(BitSet mask) {
+        return mask.cardinality() * cellSize * cellSize;
+    }
+
+    /**
+     * Turn a mask into polygons. Each row is split into runs of set cells and, a run is stacked onto the run right
+     * below it when both cover the same columns. The resulting rectangles share their edges exactly so, a cascaded
+     * union merges them into the outline of the mask. The cost depends on the number of runs, not on what the mask
+     * was computed from.
+     */
+    Geometry polygonize(BitSet mask, GeometryFactory geoFactory) {
+        List<Geometry> rectangles = new ArrayList<>();
+        /* runs of the previous row by their first and last column, along with the row each run started at */
+        Map<Long, Integer> open = new HashMap<>();
+        for (int y = 0; y < height; y++) {
+            Map<Long, Integer> next = new HashMap<>();
+            int rowStart = y * width;
+            int rowEnd = rowStart + width;
+            for (int start = mask.nextSetBit(rowStart); start >= 0 && start < rowEnd; start = mask.nextSetBit(start)) {
+                int end = Math.min(mask.nextClearBit(start), rowEnd);
+                long run = ((long) (start - rowStart) << 32) | (end - rowStart);
+                Integer startRow = open.remove(run);
+                next.put(run, startRow == null ? y : startRow);
+                start = end;
+            }
+            for (Map.Entry<Long, Integer> closed : open.entrySet()) {
+                rectangles.add(rectangle(closed.getKey(), closed.getValue(), y, geoFactory));
+            }
+            open = next;
+        }
+        for (Map.Entry<Long, Integer> closed : open.entrySet()) {
+            rectangles.add(rectangle(closed.getKey(), closed.getValue(), height, geoFactory));
+        }
+
+        Geometry union = CascadedPolygonUnion.union(rectangles);
+        return union == null ? geoFactory.createGeometryCollection() : union;
+    }
+
+    /* The cells of a run from startRow up to, but not including, endRow. */
+    private Geometry rectangle(long run, int startRow, int endRow, GeometryFactory geoFactory) {
+        int startColumn = (int) (run >>> 32);
+        int endColumn = (int) run;
+        return geoFactory.toGeometry(new Envelope(minX + startColumn * cellSize, minX + endColumn * cellSize,
+                                                  minY + startRow * cellSize, minY + endRow * cellSize));
+    }
+}
@@ -0,0 +1,113 @@
+package fooddesertserver;
+
+import database.fooddesert.FoodDesertDatabase;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.ContractionHierarchy;
+import roadgraph.DijkstraSearch;
+import roadgraph.NetworkSearch;
+import roadgraph.PhastSearch;
+import roadgraph.RoadGraph;
+import roadgraph.RoadGraphSource;
+import roadgraph.SearchPool;
+
+import java.sql.SQLException;
+
+/**
+ * One version of the road network along with everything that FoodDesertQueryHandler derives from it: the contraction
+ * hierarchy, the store buffer cache, the food desert tile cache, the store distance index and the pooled searches. The handler replaces its
+ * RoadNetwork as a whole when the network is reloaded so, a request keeps using the one it started with.
+ *
+ * This class is thread safe.
+ */
+final class RoadNetwork {
+
+    private final long version;
+    private final RoadGraphSource graphSource;
+    private final ContractionHierarchy hierarchy;
+    private final StoreBufferCache storeBufferCache;
+    private final FoodDesertTileCache tileCache;
+    private final StoreDistanceIndex storeDistances;
+    private final int searchPoolSize;
+    private volatile SearchPool<NetworkSearch> searchPool;
+
+    /**
+     * Prepare a network for requests. If the source holds the whole network, this computes the store distance index
+     * and builds the nearest node index and searches of the graph so, the first requests do not have to.
+     *
+     * @param version Number of networks the handler has loaded, counting this one.
+     * @param radius Largest walking distance that is ever searched.
+     * @param cacheSize Number of store buffers kept in memory.
+     * @param tileCacheSize Number of food desert tiles kept in memory.
+     * @param searchPoolSize Number of searches kept for reuse.
+     */
+    RoadNetwork(long version, FoodDesertDatabase foodDb, RoadGraphSource graphSource, ContractionHierarchy hierarchy,
+                double radius, int cacheSize, int tileCacheSize, int searchPoolSize) throws SQLException, ParseException {
+        this.version = version;
+        this.graphSource = graphSource;
+        this.hierarchy = hierarchy;
+        this.searchPoolSize = searchPoolSize;
+        this.storeBufferCache = new StoreBufferCache(foodDb, graphSource.version(), cacheSize);
+        this.tileCache = new FoodDesertTileCache(foodDb, graphSource.version(), radius, tileCacheSize);
+
+        RoadGraph wholeGraph = graphSource.wholeGraph();
+        if (wholeGraph == null) {
+            this.storeDistances = null;
+        } else {
+            this.storeDistances = new StoreDistanceIndex(foodDb, wholeGraph, radius);
+            if (wholeGraph.nodeCount() > 0) {
+                wholeGraph.nearestNode(wholeGraph.nodeX(0), wholeGraph.nodeY(0), 0);
+            }
+            searchPool(wholeGraph);
+        }
+    }
+
+    /**
+     * @return Number of networks the handler has loaded, counting this one. Anything kept in memory should be tagged
+     *         with this so, it is not mixed up with results from another version of the network.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    RoadGraphSource getGraphSource() {
+        return graphSource;
+    }
+
+    StoreBufferCache getStoreBufferCache() {
+        return storeBufferCache;
+    }
+
+    FoodDesertTileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * @return The store distance index of the whole network or null if the graph source loads it piece by piece.
+     */
+    StoreDistanceIndex getStoreDistances() {
+        return storeDistances;
+    }
+
+    /**
+     * @return The pool of searches over roadGraph. Graph sources that hand out one graph for every search keep
+     *         reusing the same searches, other sources get a new pool whenever the graph changes.
+     */
+    SearchPool<NetworkSearch> searchPool(RoadGraph roadGraph) {
+        SearchPool<NetworkSearch> pool = searchPool;
+        if (pool == null || pool.getGraph() != roadGraph) {
+            pool = new SearchPool<>(roadGraph, this::newSearch, searchPoolSize);
+            searchPool = pool;
+        }
+        return pool;
+    }
+
+    /**
+     * @return A PHAST search if the hierarchy was built from roadGraph, otherwise a Dijkstra search.
+     */
+    private NetworkSearch newSearch(RoadGraph roadGraph) {
+        if (hierarchy != null && hierarchy.isFor(roadGraph)) {
+            return new PhastSearch(roadGraph, hierarchy);
+        }
+        return new DijkstraSearch(roadGraph);
+    }
+}
@@ -0,0 +1,139 @@
+package fooddesertserver;
+
+import database.fooddesert.FoodDesertDatabase;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the walking distance buffers of grocery stores. Recently used buffers are kept in memory with least recently
+ * used eviction and, every buffer is also written to the store buffer table of the FoodDesertDatabase so that it
+ * survives restarts.
+ *
+ * A cache is tied to one version of the road network. Buffers computed from any other network are deleted from the
+ * database when the cache is created.
+ *
+ * This class is thread safe.
+ */
+public class StoreBufferCache {
+
+    private final FoodDesertDatabase foodDb;
+    private final long networkVersion;
+
+    private final Map<Key, Geometry> memory;
+
+    /* buffers added since the last flush. These are in memory but not yet in the database. */
+    private final List<Key> pendingKeys = new ArrayList<>();
+    private final List<Geometry> pendingBuffers = new ArrayList<>();
+
+    /**
+     * @param networkVersion Fingerprint of the road network that buffers are computed from.
+     * @param capacity Maximum number of buffers kept in memory.
+     */
+    public StoreBufferCache(FoodDesertDatabase foodDb, long networkVersion, int capacity) throws SQLException {
+        this.foodDb = foodDb;
+        this.networkVersion = networkVersion;
+        this.memory = new LinkedHashMap<Key, Geometry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Geometry> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        foodDb.deleteStaleStoreBuffers(networkVersion);
+    }
+
+    public long getNetworkVersion() {
+        return networkVersion;
+    }
+
+    /**
+     * @param shape Name of the BufferShape that drew the buffer.
+     * @return The buffer of a store or null if it has not been computed for this radius, shape and network.
+     */
+    public Geometry get(int storeId, double radius, String shape) throws SQLException, ParseException {
+        Key key = new Key(storeId, radius, shape);
+        synchronized (this) {
+            Geometry buffer = memory.get(key);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+
+        Geometry buffer = foodDb.selectStoreBuffer(storeId, radius, shape, networkVersion);
+        if (buffer != null) {
+            synchronized (this) {
+                memory.put(key, buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Add a buffer to the cache. It is available from memory immediately but, is only written to the database by the
+     * next call to flush.
+     */
+    public synchronized void put(int storeId, double radius, String shape, Geometry buffer) {
+        Key key = new Key(storeId, radius, shape);
+        memory.put(key, buffer);
+        pendingKeys.add(key);
+        pendingBuffers.add(buffer);
+    }
+
+    /**
+     * Write every buffer added since the last flush to the database in a single transaction.
+     */
+    public synchronized void flush() throws SQLException {
+        if (pendingKeys.isEmpty()) {
+            return;
+        }
+
+        /* the database's writers synchronize on it so, holding it keeps their writes out of this transaction */
+        synchronized (foodDb) {
+            foodDb.setAutoCommit(false);
+            try {
+                for (int i = 0; i < pendingKeys.size(); i++) {
+                    Key key = pendingKeys.get(i);
+                    foodDb.insertStoreBuffer(key.storeId, key.radius, key.shape, networkVersion, pendingBuffers.get(i));
+                }
+                foodDb.commit();
+            } finally {
+                foodDb.setAutoCommit(true);
+            }
+        }
+
+        pendingKeys.clear();
+        pendingBuffers.clear();
+    }
+
+    private static final class Key {
+        private final int storeId;
+        private final double radius;
+        private final String shape;
+
+        Key(int storeId, double radius, String shape) {
+            this.storeId = storeId;
+            this.radius = radius;
+            this.shape = shape;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return storeId == key.storeId && Double.compare(key.radius, radius) == 0 && shape.equals(key.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(storeId, radius, shape);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package fooddesertserver;
+
+import database.fooddesert.FoodDesertDatabase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.RoadGraph;
+import roadgraph.StoreDistanceField;
+import roadgraph.WebMercator;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a StoreDistanceField of the whole road network in step with the grocery stores of a FoodDesertDatabase. The
+ * field is saved in the database so, it is only computed from scratch when the network changes or, stores were added
+ * without going through this index. Stores added through addStores update the field and the saved copy
+ * incrementally.
+ *
+ * This class is thread safe.
+ */
+public class StoreDistanceIndex {
+
+    private final FoodDesertDatabase foodDb;
+    private final long networkVersion;
+    private final StoreDistanceField field;
+
+    /* Number of stores the field covers and the largest of their ids. Stores are added in the order they were
+     * inserted so, a store with a smaller id was already counted. */
+    private int storeCount;
+    private int lastStoreId = -1;
+
+    /* nodes changed by the current call to addStores along with their new distances */
+    private int[] changedNodeIds = new int[64];
+    private double[] changedDistances = new double[64];
+    private int changedCount;
+
+    /**
+     * Load the saved field of graph or compute it if there is none.
+     *
+     * @param graph The whole road network.
+     * @param radius Largest walking distance that is ever queried.
+     */
+    public StoreDistanceIndex(FoodDesertDatabase foodDb, RoadGraph graph, double radius) throws SQLException, ParseException {
+        this.foodDb = foodDb;
+        this.networkVersion = graph.fingerprint();
+        this.field = new StoreDistanceField(graph, radius);
+
+        int savedCount, savedLastId;
+        /* the database's writers synchronize on it so, the count and the id are of the same stores */
+        synchronized (foodDb) {
+            savedCount = foodDb.countStores();
+            savedLastId = foodDb.selectMaxStoreId();
+        }
+        foodDb.deleteStaleStoreDistances(networkVersion, radius, savedCount);
+        if (foodDb.selectStoreDistanceFieldStoreCount(networkVersion, radius) == savedCount) {
+            foodDb.selectStoreDistances(networkVersion, radius, (nodeId, distance) -> {
+                int node = graph.nodeIndex(nodeId);
+                if (node >= 0) {
+                    field.lower(node, distance);
+                }
+            });
+            storeCount = savedCount;
+            lastStoreId = savedLastId;
+        } else {
+            addStores(foodDb.selectAllStores());
+        }
+    }
+
+    /**
+     * Add stores that were just inserted into the database to the field and save the nodes that moved closer to a
+     * store. Stores that are at least the radius away from every network node on the ground cannot be walked to and
+     * are left out of the field.
+     *
+     * @param stores New stores in database coordinates, in the order they were inserted. Stores that were added
+     *               before are not counted again.
+     */
+    public synchronized void addStores(List<GroceryStore> stores) throws SQLException, ParseException {
+        RoadGraph graph = field.getGraph();
+        int[] storeNodes = new int[stores.size()];
+        int storeNodeCount = 0;
+        for (GroceryStore store : stores) {
+            if (store.getId() > lastStoreId) {
+                storeCount++;
+                lastStoreId = store.getId();
+            }
+            Coordinate location = store.getLocation();
+            int node = graph.nearestNode(location.x, location.y,
+                                         WebMercator.reach(field.getRadius(), location.y, location.y));
+            if (node >= 0 && WebMercator.groundDistance(location.x, location.y, graph.nodeX(node), graph.nodeY(node))
+                             < field.getRadius()) {
+                storeNodes[storeNodeCount++] = node;
+            }
+        }
+
+        changedCount = 0;
+        field.addStores(storeNodes, storeNodeCount, node -> {
+            if (changedCount == changedNodeIds.length) {
+                changedNodeIds = Arrays.copyOf(changedNodeIds, 2 * changedCount);
+                changedDistances = Arrays.copyOf(changedDistances, 2 * changedCount);
+            }
+            changedNodeIds[changedCount] = graph.nodeId(node);
+            changedDistances[changedCount] = field.distance(node);
+            changedCount++;
+        });
+
+        foodDb.insertStoreDistances(networkVersion, field.getRadius(), storeCount, changedNodeIds,
+                                    changedDistances, changedCount);
+    }
+
+    /**
+     * @return The road network the field covers.
+     */
+    public RoadGraph getGraph() {
+        return field.getGraph();
+    }
+
+    /**
+     * @return Largest walking distance the field holds.
+     */
+    public double getRadius() {
+        return field.getRadius();
+    }
+
+    /**
+     * @return Walking distance from a node of the graph to the nearest store or positive infinity if it is at least
+     *         the radius.
+     */
+    public double distance(int node) {
+        return field.distance(node);
+    }
+
+    /**
+     * Walking distance from a point to the nearest store: the straight line distance on the ground from the point to
+     * its nearest network node plus the walking distance from that node.
+     *
+     * @param p A point in database coordinates.
+     * @return The distance, positive infinity if it is at least the radius or, NaN if there is no network node within
+     *         the radius of p.
+     */
+    public double walkingDistance(Coordinate p) {
+        RoadGraph graph = field.getGraph();
+        int node = graph.nearestNode(p.x, p.y, WebMercator.reach(field.getRadius(), p.y, p.y));
+        if (node < 0) {
+            return Double.NaN;
+        }
+        double offset = WebMercator.groundDistance(p.x, p.y, graph.nodeX(node), graph.nodeY(node));
+        if (offset >= field.getRadius()) {
+            return Double.NaN;
+        }
+        double distance = offset + field.distance(node);
+        return distance < field.getRadius() ? distance : Double.POSITIVE_INFINITY;
+    }
+}
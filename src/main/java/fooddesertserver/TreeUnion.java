@@ -0,0 +1,102 @@
+package fooddesertserver;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+import roadgraph.HilbertCurve;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Unions many polygons, such as the walking distance buffers of the stores in a frame, by tree reduction on a fork
+ * join pool. Adding polygons to one growing union one at a time overlays the whole union again for every polygon,
+ * which is quadratic in the number of polygons. Here the list is split in halves that are unioned in parallel and
+ * then merged so, every polygon takes part in a logarithmic number of overlays.
+ *
+ * The polygons are first sorted along a Hilbert curve through the centers of their envelopes. Neighbouring polygons
+ * end up in the same half and, are merged while they are still small, which removes most of their overlap early.
+ *
+ * Inputs without area, like the line that a concave hull of collinear edges collapses to, do not change the area of
+ * the union and are left out.
+ *
+ * This class is thread safe.
+ */
+public class TreeUnion {
+
+    /* A task with this many polygons or fewer unions them on its own thread with a cascaded union, which is faster
+     * than splitting further once the tasks are this small. */
+    private static final int LEAF_SIZE = 16;
+
+    private final ForkJoinPool pool;
+    private final GeometryFactory geoFactory;
+
+    public TreeUnion(ForkJoinPool pool, GeometryFactory geoFactory) {
+        this.pool = pool;
+        this.geoFactory = geoFactory;
+    }
+
+    /**
+     * @return The union of every polygonal geometry in geometries or an empty geometry if there is none.
+     */
+    public Geometry union(List<? extends Geometry> geometries) {
+        List<Geometry> polygons = new ArrayList<>(geometries.size());
+        for (Geometry geometry : geometries) {
+            if (geometry instanceof Polygonal && !geometry.isEmpty()) {
+                polygons.add(geometry);
+            }
+        }
+        if (polygons.isEmpty()) {
+            return geoFactory.createGeometryCollection();
+        }
+
+        double[] xs = new double[polygons.size()];
+        double[] ys = new double[polygons.size()];
+        for (int i = 0; i < polygons.size(); i++) {
+            Coordinate center = polygons.get(i).getEnvelopeInternal().centre();
+            xs[i] = center.x;
+            ys[i] = center.y;
+        }
+        int[] order = HilbertCurve.sortPoints(xs, ys, polygons.size());
+        Geometry[] sorted = new Geometry[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = polygons.get(order[i]);
+        }
+
+        return pool.invoke(new UnionTask(sorted, 0, sorted.length));
+    }
+
+    /* Unions sorted[start, end). */
+    private final class UnionTask extends RecursiveTask<Geometry> {
+        private final Geometry[] sorted;
+        private final int start, end;
+
+        UnionTask(Geometry[] sorted, int start, int end) {
+            this.sorted = sorted;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Geometry compute() {
+            if (end - start <= LEAF_SIZE) {
+                List<Geometry> leaf = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    leaf.add(sorted[i]);
+                }
+                Geometry union = CascadedPolygonUnion.union(leaf);
+                return union == null ? geoFactory.createGeometryCollection() : union;
+            }
+
+            int middle = (start + end) >>> 1;
+            UnionTask left = new UnionTask(sorted, start, middle);
+            left.fork();
+            Geometry right = new UnionTask(sorted, middle, end).compute();
+            return left.join().union(right);
+        }
+    }
+}
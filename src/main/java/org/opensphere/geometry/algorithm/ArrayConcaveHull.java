@@ -0,0 +1,369 @@
+/*
+ * This file is part of the OpenSphere project which aims to
+ * develop geospatial algorithms.
+ *
+ * Copyright (C) 2012 Eric Grosso
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * For more information, contact:
+ * Eric Grosso, eric.grosso.os@gmail.com
+ *
+ */
+package org.opensphere.geometry.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.linemerge.LineMerger;
+import org.locationtech.jts.triangulate.ConformingDelaunayTriangulationBuilder;
+import org.locationtech.jts.triangulate.quadedge.QuadEdge;
+import org.locationtech.jts.triangulate.quadedge.QuadEdgeSubdivision;
+import org.locationtech.jts.triangulate.quadedge.QuadEdgeTriangle;
+import org.locationtech.jts.triangulate.quadedge.Vertex;
+import org.locationtech.jts.util.UniqueCoordinateArrayFilter;
+
+/**
+ * Computes the same concave hull as {@link ConcaveHull}, with the
+ * Duckham and al. (2008) algorithm, in a fraction of the time.
+ *
+ * <p>
+ * Edges, triangles and vertices of the triangulation are numbered and
+ * held in int arrays instead of maps of objects: every edge knows the
+ * triangles on either side of it and every triangle knows its three
+ * edges. Border edges and border vertices are bit sets and, the border
+ * edges that are longer than the threshold wait in a binary heap of
+ * edge numbers ordered by length. Removing the longest border edge
+ * therefore costs a few array reads and a heap operation.
+ *
+ * <p>
+ * ConcaveHull removes border edges of exactly equal length in an order
+ * that depends on identity hash codes so, when there are such ties the
+ * two may remove them in a different order. Unlike ConcaveHull, points
+ * that all lie on one line return that line even when its segments are
+ * longer than the threshold.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+public class ArrayConcaveHull {
+
+	private final Geometry geometry;
+	private final GeometryFactory geomFactory;
+	private final double threshold;
+
+	/* the quad edge, end vertices and length of every edge */
+	private QuadEdge[] quadEdges;
+	private int[] edgeOrigins;
+	private int[] edgeDestinations;
+	private double[] edgeLengths;
+
+	/* triangles on either side of edge e are edgeTriangles[2e] and
+	 * edgeTriangles[2e + 1], -1 where there is none */
+	private int[] edgeTriangles;
+
+	/* edges of triangle t are triangleEdges[3t .. 3t + 2] */
+	private int[] triangleEdges;
+
+	private BitSet borderEdges;
+	private BitSet borderVertices;
+
+	/* border edges longer than the threshold, longest first */
+	private int[] heap;
+	private int heapSize;
+
+	/**
+	 * Create a new concave hull construction for the input {@link Geometry}.
+	 *
+	 * @param geometry
+	 * 		geometry whose points are hulled
+	 * @param threshold
+	 * 		maximum length of border edges
+	 */
+	public ArrayConcaveHull(Geometry geometry, double threshold) {
+		this.geometry = geometry;
+		this.geomFactory = geometry.getFactory();
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Returns a {@link Geometry} that represents the concave hull of the input
+	 * geometry according to the threshold.
+	 *
+	 * @return if the concave hull contains 3 or more points, a {@link Polygon};
+	 * 2 points, a {@link LineString};
+	 * 1 point, a {@link Point};
+	 * 0 points, an empty {@link GeometryCollection}.
+	 */
+	public Geometry getConcaveHull() {
+		UniqueCoordinateArrayFilter filter = new UniqueCoordinateArrayFilter();
+		this.geometry.apply(filter);
+		Coordinate[] coordinates = filter.getCoordinates();
+
+		if (coordinates.length == 0) {
+			return this.geomFactory.createGeometryCollection(null);
+		}
+		if (coordinates.length == 1) {
+			return this.geomFactory.createPoint(coordinates[0]);
+		}
+		if (coordinates.length == 2) {
+			return this.geomFactory.createLineString(coordinates);
+		}
+
+		return concaveHull();
+	}
+
+	/**
+	 * Create the concave hull.
+	 */
+	private Geometry concaveHull() {
+		// the sites are the unique coordinates of the geometry
+		ConformingDelaunayTriangulationBuilder cdtb = new ConformingDelaunayTriangulationBuilder();
+		cdtb.setSites(this.geometry);
+		QuadEdgeSubdivision qes = cdtb.getSubdivision();
+
+		// triangles that do not touch the frame, these must be listed
+		// before the frame edges are deleted
+		@SuppressWarnings("unchecked")
+		List<QuadEdgeTriangle> qeTriangles = QuadEdgeTriangle.createOn(qes);
+
+		// edges of the convex hull of the sites are the first border
+		List<QuadEdge> qeFrame = new ArrayList<QuadEdge>();
+		List<QuadEdge> qeBorder = new ArrayList<QuadEdge>();
+		for (Object o : qes.getEdges()) {
+			QuadEdge qe = (QuadEdge) o;
+			if (qes.isFrameEdge(qe)) {
+				qeFrame.add(qe);
+			} else if (qes.isFrameBorderEdge(qe)) {
+				qeBorder.add(qe);
+			}
+		}
+		for (QuadEdge qe : qeFrame) {
+			qes.delete(qe);
+		}
+
+		indexEdges(qes.getEdges());
+		indexTriangles(qeTriangles);
+
+		this.borderEdges = new BitSet(this.quadEdges.length);
+		this.heap = new int[this.quadEdges.length];
+		this.heapSize = 0;
+		for (QuadEdge qe : qeBorder) {
+			addBorderEdge((Integer) qe.getData());
+		}
+
+		// remove the triangle behind the longest border edge until every
+		// border edge is short enough or cannot be removed
+		while (this.heapSize > 0 && this.edgeLengths[this.heap[0]] > this.threshold) {
+			int edge = pollHeap();
+			int triangle = this.edgeTriangles[2 * edge] >= 0
+					? this.edgeTriangles[2 * edge] : this.edgeTriangles[2 * edge + 1];
+
+			// an edge without a triangle only happens when every point
+			// is on one line, an irregular triangle would split the
+			// border in two and, a triangle with every vertex on the
+			// border would pinch it. These edges stay on the border.
+			if (triangle < 0 || neighbourCount(triangle) == 1 || isBorderTriangle(triangle)) {
+				continue;
+			}
+
+			this.borderEdges.clear(edge);
+			this.edgeTriangles[2 * edge] = -1;
+			this.edgeTriangles[2 * edge + 1] = -1;
+			for (int k = 0; k < 3; k++) {
+				int other = this.triangleEdges[3 * triangle + k];
+				if (other != edge) {
+					removeTriangle(other, triangle);
+					addBorderEdge(other);
+				}
+			}
+		}
+
+		// concave hull creation
+		List<LineString> edges = new ArrayList<LineString>();
+		for (int e = this.borderEdges.nextSetBit(0); e >= 0; e = this.borderEdges.nextSetBit(e + 1)) {
+			LineSegment s = this.quadEdges[e].toLineSegment();
+			s.normalize();
+			edges.add(s.toGeometry(this.geomFactory));
+		}
+
+		// merge
+		LineMerger lineMerger = new LineMerger();
+		lineMerger.add(edges);
+		LineString merge = (LineString) lineMerger.getMergedLineStrings().iterator().next();
+
+		if (merge.isRing()) {
+			return this.geomFactory.createPolygon(
+					this.geomFactory.createLinearRing(merge.getCoordinateSequence()), null);
+		}
+		return merge;
+	}
+
+	/**
+	 * Number the edges of the subdivision. The number of each edge is
+	 * stored as the data of both of its directions so, triangles can
+	 * find it.
+	 */
+	private void indexEdges(Collection<?> qeEdges) {
+		int edgeCount = qeEdges.size();
+		this.quadEdges = new QuadEdge[edgeCount];
+		this.edgeOrigins = new int[edgeCount];
+		this.edgeDestinations = new int[edgeCount];
+		this.edgeLengths = new double[edgeCount];
+
+		Map<Vertex, Integer> vertices = new IdentityHashMap<Vertex, Integer>();
+		int e = 0;
+		for (Object o : qeEdges) {
+			QuadEdge qe = (QuadEdge) o;
+			Integer id = e;
+			qe.setData(id);
+			qe.sym().setData(id);
+
+			this.quadEdges[e] = qe;
+			this.edgeOrigins[e] = vertexIndex(vertices, qe.orig());
+			this.edgeDestinations[e] = vertexIndex(vertices, qe.dest());
+			// the same length ConcaveHull sorts its edges by
+			this.edgeLengths[e] = qe.orig().getCoordinate().distance(qe.dest().getCoordinate());
+			e++;
+		}
+		this.borderVertices = new BitSet(vertices.size());
+	}
+
+	private static int vertexIndex(Map<Vertex, Integer> vertices, Vertex vertex) {
+		Integer index = vertices.get(vertex);
+		if (index == null) {
+			index = vertices.size();
+			vertices.put(vertex, index);
+		}
+		return index;
+	}
+
+	private void indexTriangles(List<QuadEdgeTriangle> qeTriangles) {
+		this.triangleEdges = new int[3 * qeTriangles.size()];
+		this.edgeTriangles = new int[2 * this.quadEdges.length];
+		Arrays.fill(this.edgeTriangles, -1);
+
+		int t = 0;
+		for (QuadEdgeTriangle qet : qeTriangles) {
+			for (int k = 0; k < 3; k++) {
+				int edge = (Integer) qet.getEdge(k).getData();
+				this.triangleEdges[3 * t + k] = edge;
+				this.edgeTriangles[this.edgeTriangles[2 * edge] < 0 ? 2 * edge : 2 * edge + 1] = t;
+			}
+			t++;
+		}
+	}
+
+	/**
+	 * @return number of triangles that share an edge with triangle
+	 */
+	private int neighbourCount(int triangle) {
+		int count = 0;
+		for (int k = 0; k < 3; k++) {
+			int edge = this.triangleEdges[3 * triangle + k];
+			int a = this.edgeTriangles[2 * edge];
+			int b = this.edgeTriangles[2 * edge + 1];
+			if ((a >= 0 && a != triangle) || (b >= 0 && b != triangle)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if every vertex of triangle is on the border
+	 */
+	private boolean isBorderTriangle(int triangle) {
+		for (int k = 0; k < 3; k++) {
+			int edge = this.triangleEdges[3 * triangle + k];
+			if (!this.borderVertices.get(this.edgeOrigins[edge])
+					|| !this.borderVertices.get(this.edgeDestinations[edge])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void removeTriangle(int edge, int triangle) {
+		if (this.edgeTriangles[2 * edge] == triangle) {
+			this.edgeTriangles[2 * edge] = -1;
+		} else if (this.edgeTriangles[2 * edge + 1] == triangle) {
+			this.edgeTriangles[2 * edge + 1] = -1;
+		}
+	}
+
+	/**
+	 * Put an edge and its vertices on the border. Edges at least as long
+	 * as the threshold become candidates for removal.
+	 */
+	private void addBorderEdge(int edge) {
+		this.borderEdges.set(edge);
+		this.borderVertices.set(this.edgeOrigins[edge]);
+		this.borderVertices.set(this.edgeDestinations[edge]);
+		if (this.edgeLengths[edge] >= this.threshold) {
+			int position = this.heapSize++;
+			while (position > 0) {
+				int parent = (position - 1) >>> 1;
+				if (!before(edge, this.heap[parent])) {
+					break;
+				}
+				this.heap[position] = this.heap[parent];
+				position = parent;
+			}
+			this.heap[position] = edge;
+		}
+	}
+
+	private int pollHeap() {
+		int first = this.heap[0];
+		int last = this.heap[--this.heapSize];
+		int position = 0;
+		int half = this.heapSize >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < this.heapSize && before(this.heap[child + 1], this.heap[child])) {
+				child++;
+			}
+			if (!before(this.heap[child], last)) {
+				break;
+			}
+			this.heap[position] = this.heap[child];
+			position = child;
+		}
+		this.heap[position] = last;
+		return first;
+	}
+
+	/* longer edges first, ties by edge number so the order does not
+	 * depend on the heap layout */
+	private boolean before(int a, int b) {
+		double la = this.edgeLengths[a];
+		double lb = this.edgeLengths[b];
+		return la > lb || (la == lb && a < b);
+	}
+}
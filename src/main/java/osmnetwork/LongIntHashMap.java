@@ -0,0 +1,87 @@
+package osmnetwork;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values. OSM ids do not fit in an int and, an importer holds one entry
+ * per node of the walkable network so, boxing every entry in a HashMap would cost several times the memory.
+ *
+ * This class is not thread safe.
+ */
+final class LongIntHashMap {
+
+    static final int MISSING = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The value of key or MISSING if key is not in the map.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                return values[slot];
+            }
+            if(keys[slot] == EMPTY) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Map key to value, replacing any previous value. Long.MIN_VALUE cannot be used as a key.
+     */
+    void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while(keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if(keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+
+        /* keep the load factor under one half */
+        if(2 * size > keys.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        Arrays.fill(keys, EMPTY);
+        values = new int[2 * oldValues.length];
+        size = 0;
+        for(int slot = 0; slot < oldKeys.length; slot++) {
+            if(oldKeys[slot] != EMPTY) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    /* OSM ids are mostly sequential so, mix the bits before masking them */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,42 @@
+package osmnetwork;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Receives the walking network built by an OsmNetworkImporter. Edges are delivered as ways are read, nodes are
+ * delivered once every edge is known since, only then is their cardinality known.
+ *
+ * Node ids are dense, starting at 1, and are not OSM ids. Coordinates are in WebMercator (EPSG 3857) and lengths are
+ * in meters, like the tables read by NetworkDatabase.
+ */
+interface NetworkSink {
+
+    void addNode(int nodeId, long osmId, int cardinality, double x, double y) throws SQLException, IOException;
+
+    /**
+     * @param osmId Id of the way the edge was cut from.
+     * @param highwayClass Value of the highway tag of the way.
+     * @param name Value of the name tag of the way or null.
+     * @param coordinates Packed x,y pairs holding the edge geometry from nodeFrom to nodeTo.
+     * @param points Number of leading points of coordinates in the edge geometry.
+     */
+    void addEdge(int edgeId, long osmId, String highwayClass, String name, int nodeFrom, int nodeTo, double length,
+                 double[] coordinates, int points) throws SQLException, IOException;
+
+    /**
+     * Receive a node of a walkable way as it is in OSM, whether or not it ends an edge. Sinks that cannot apply change
+     * files later have no use for it.
+     */
+    default void addOsmNode(long osmId, double x, double y) throws SQLException, IOException {
+    }
+
+    /**
+     * Receive a walkable way as it is in OSM.
+     *
+     * @param nodeIds Holds the OSM ids of the nodes of the way at [start, start + count).
+     */
+    default void addOsmWay(long osmId, String highwayClass, String name, long[] nodeIds, int start, int count)
+            throws SQLException, IOException {
+    }
+}
@@ -0,0 +1,405 @@
+package osmnetwork;
+
+import database.fooddesert.FoodDesertDatabase;
+import database.network.Edge;
+import database.network.NetworkDatabase;
+import database.network.OsmWay;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.WebMercator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line tool that applies an OSM change file (osc) to a network database written by OsmNetworkImporter, so a
+ * local edit to the map does not require importing the whole extract again. This is normally run through the
+ * applychanges script.
+ *
+ * The database keeps every walkable way and its nodes as they were in OSM. Changes are applied to those first, then
+ * every way that was changed, or that uses a node that was moved, deleted or started or stopped ending edges, is cut
+ * again with the same WayCutter the importer uses. The edges of those ways are replaced and, network nodes are added,
+ * moved or deleted to match. Everything happens in one transaction so, a failure leaves the database as it was.
+ *
+ * The applier reports the bounding box of every node and edge that was added, moved or removed. Only store buffers
+ * and tiles that can reach that area need to be recomputed. When a food desert database is given, store buffers far
+ * from the area are carried over to the new network version and the others are deleted. Graph files and contraction
+ * hierarchies compiled from the database still have to be compiled again.
+ *
+ * Change files hold the new version of every changed element but not of the nodes a changed way uses. A way that
+ * becomes walkable is cut at any of its nodes that neither the database nor the change file has coordinates for, like
+ * the importer does for nodes missing from an extract.
+ */
+public class OsmChangeApplier {
+
+    private final Path changeFile;
+
+    /* New coordinates of every created or modified node, null for deleted nodes. */
+    private final Map<Long, double[]> nodeChanges = new LinkedHashMap<>();
+    /* New version of every created or modified way that is walkable, null for other ways. */
+    private final Map<Long, OsmWay> wayChanges = new LinkedHashMap<>();
+
+    /* OSM nodes whose coordinates changed, network ids of OSM nodes and whether OSM nodes end edges. Filled as ways
+     * are cut again. */
+    private final Set<Long> movedNodes = new HashSet<>();
+    private final Map<Long, Integer> networkNodeIds = new HashMap<>();
+    private final Map<Long, Boolean> nodeEnds = new HashMap<>();
+
+    private final WayCutter cutter = new WayCutter();
+    private final GeometryFactory factory = new GeometryFactory();
+
+    public OsmChangeApplier(Path changeFile) {
+        this.changeFile = changeFile;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: applychanges network_db change_file [food_desert_db]");
+        System.out.println("\tnetwork_db: Network database created by mknetwork.");
+        System.out.println("\tchange_file: OSM change file (osc), optionally gzip compressed.");
+        System.out.println("\tfood_desert_db: Database whose cached store buffers are carried over to the new network.");
+    }
+
+    public static void main(String[] args) throws IOException, SQLException, ParseException {
+        if(args.length < 2) {
+            printUsage();
+            return;
+        }
+
+        Path networkPath = Paths.get(args[0]);
+        Path changePath = Paths.get(args[1]);
+        Path foodDesertPath = args.length > 2 ? Paths.get(args[2]) : null;
+
+        for(Path path : Arrays.asList(networkPath, changePath, foodDesertPath)) {
+            if(path != null && !Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                System.out.println("File " + path + " does not exist.");
+                return;
+            }
+        }
+
+        try (NetworkDatabase database = new NetworkDatabase(networkPath.toString())) {
+            if(!database.hasOsmTables()) {
+                System.out.println("Network database " + networkPath + " does not hold the OSM ways it was built "
+                        + "from. Import it again with mknetwork.");
+                return;
+            }
+
+            /* buffers are cached under the version of whichever graph source the server uses so, carry over both */
+            long[] oldVersions = foodDesertPath == null ? null : networkVersions(database);
+
+            OsmChangeApplier applier = new OsmChangeApplier(changePath);
+            Envelope touched = applier.apply(database);
+            System.out.println("Applied " + applier.nodeChangeCount() + " node and " + applier.wayChangeCount()
+                    + " way changes.");
+            if(touched.isNull()) {
+                System.out.println("The walking network did not change.");
+                return;
+            }
+            System.out.println("Touched area (EPSG 3857): " + touched.getMinX() + " " + touched.getMinY() + " "
+                    + touched.getMaxX() + " " + touched.getMaxY());
+
+            if(foodDesertPath != null) {
+                long[] newVersions = networkVersions(database);
+                try (FoodDesertDatabase foodDesertDatabase = new FoodDesertDatabase(foodDesertPath.toString())) {
+                    int deleted = 0;
+                    for(int v = 0; v < oldVersions.length; v++) {
+                        for(double radius : foodDesertDatabase.selectStoreBufferRadii(oldVersions[v])) {
+                            deleted += foodDesertDatabase.retagStoreBuffers(oldVersions[v], newVersions[v], radius,
+                                                                            touched, reach(radius, touched));
+                        }
+                    }
+                    System.out.println("Deleted " + deleted + " store buffers that reach the touched area.");
+                }
+            }
+        }
+    }
+
+    /* The version of a whole graph and of subgraphs or tiles loaded from the database, see RoadGraphSource. */
+    private static long[] networkVersions(NetworkDatabase database) throws SQLException, ParseException {
+        return new long[]{database.loadRoadGraph().fingerprint(), database.networkVersion()};
+    }
+
+    /**
+     * @return WebMercator distance from area within which a walk of radius meters can start and still reach the area.
+     */
+    static double reach(double radius, Envelope area) {
+        return WebMercator.reach(radius, area.getMinY(), area.getMaxY());
+    }
+
+    int nodeChangeCount() {
+        return nodeChanges.size();
+    }
+
+    int wayChangeCount() {
+        return wayChanges.size();
+    }
+
+    /**
+     * Read the change file and apply it to the network in a single transaction. An applier can only be used once.
+     *
+     * @return Bounding box of every node and edge that was added, moved or removed. It is a null envelope if nothing changed.
+     */
+    public Envelope apply(NetworkDatabase database) throws IOException, SQLException, ParseException {
+        readChanges();
+
+        Envelope touched = new Envelope();
+        database.setAutoCommit(false);
+        try {
+            /* OSM nodes that moved or started or stopped ending edges. Every way using one has to be cut again. */
+            Set<Long> changedNodes = new HashSet<>();
+            Set<Long> changedWays = new LinkedHashSet<>();
+
+            /* Only nodes used by walkable ways are kept. Other nodes matter only if a changed way starts using them. */
+            Map<Long, double[]> unusedNodes = new HashMap<>();
+            for(Map.Entry<Long, double[]> change : nodeChanges.entrySet()) {
+                long osmId = change.getKey();
+                double[] xy = change.getValue();
+                double[] old = database.selectOsmNode(osmId);
+                if(old == null) {
+                    if(xy != null) {
+                        unusedNodes.put(osmId, xy);
+                    }
+                    continue;
+                }
+
+                touched.expandToInclude(old[0], old[1]);
+                if(xy == null) {
+                    database.deleteOsmNode(osmId);
+                } else {
+                    database.upsertOsmNode(osmId, xy[0], xy[1]);
+                    touched.expandToInclude(xy[0], xy[1]);
+                }
+                changedNodes.add(osmId);
+                movedNodes.add(osmId);
+            }
+
+            /* Whether each node of a changed way ended edges before the change. Ways using a node that starts or
+             * stops ending edges have to be cut again, other ways using it keep their edges. */
+            Map<Long, OsmWay> oldWays = new HashMap<>();
+            Map<Long, Boolean> wayNodes = new HashMap<>();
+            for(Map.Entry<Long, OsmWay> change : wayChanges.entrySet()) {
+                OsmWay old = database.selectOsmWay(change.getKey());
+                oldWays.put(change.getKey(), old);
+                for(OsmWay way : Arrays.asList(old, change.getValue())) {
+                    if(way != null) {
+                        for(long nodeId : way.getNodeIds()) {
+                            if(!wayNodes.containsKey(nodeId)) {
+                                wayNodes.put(nodeId, database.countOsmNodeUses(nodeId) >= 2);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for(Map.Entry<Long, OsmWay> change : wayChanges.entrySet()) {
+                long wayId = change.getKey();
+                OsmWay way = change.getValue();
+                if(oldWays.get(wayId) == null && way == null) {
+                    continue;
+                }
+
+                if(way == null) {
+                    database.deleteOsmWay(wayId);
+                } else {
+                    database.replaceOsmWay(way);
+                    for(long nodeId : way.getNodeIds()) {
+                        double[] xy = unusedNodes.remove(nodeId);
+                        if(xy != null) {
+                            database.upsertOsmNode(nodeId, xy[0], xy[1]);
+                        }
+                    }
+                }
+                changedWays.add(wayId);
+            }
+
+            for(Map.Entry<Long, Boolean> node : wayNodes.entrySet()) {
+                if(endsEdges(database, node.getKey()) != node.getValue()) {
+                    changedNodes.add(node.getKey());
+                }
+            }
+            for(long nodeId : changedNodes) {
+                for(long wayId : database.selectWaysUsingNode(nodeId)) {
+                    changedWays.add(wayId);
+                }
+            }
+
+            Set<Integer> changedNetworkNodes = new HashSet<>();
+            for(long wayId : changedWays) {
+                cutWay(database, wayId, touched, changedNetworkNodes);
+            }
+            for(int nodeId : changedNetworkNodes) {
+                database.refreshNetworkNode(nodeId);
+            }
+
+            /* drop the nodes that no walkable way uses anymore */
+            for(long nodeId : wayNodes.keySet()) {
+                if(database.countOsmNodeUses(nodeId) == 0) {
+                    database.deleteOsmNode(nodeId);
+                }
+            }
+
+            database.commit();
+        } catch (IOException | SQLException | ParseException | RuntimeException e) {
+            database.rollback();
+            throw e;
+        } finally {
+            database.setAutoCommit(true);
+        }
+        return touched;
+    }
+
+    /* Replace the edges of a way with the edges of its current version, if it still has one. */
+    private void cutWay(NetworkDatabase database, long wayId, Envelope touched, Set<Integer> changedNetworkNodes)
+            throws IOException, SQLException, ParseException {
+        for(Edge edge : database.selectEdgesOfWay(wayId)) {
+            touched.expandToInclude(edge.getGeometry().getEnvelopeInternal());
+            changedNetworkNodes.add(edge.getNode_from());
+            changedNetworkNodes.add(edge.getNode_to());
+        }
+        database.deleteEdgesOfWay(wayId);
+
+        OsmWay way = database.selectOsmWay(wayId);
+        if(way == null) {
+            return;
+        }
+
+        long[] ids = way.getNodeIds();
+        double[] xs = new double[ids.length];
+        double[] ys = new double[ids.length];
+        boolean[] ends = new boolean[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            double[] xy = database.selectOsmNode(ids[i]);
+            xs[i] = xy == null ? Double.NaN : xy[0];
+            ys[i] = xy == null ? Double.NaN : xy[1];
+            ends[i] = endsEdges(database, ids[i]);
+        }
+
+        cutter.cut(ids, xs, ys, ends, ids.length, (from, to, length, coordinates, points) -> {
+            int nodeFrom = networkNodeId(database, ids[from], xs[from], ys[from]);
+            int nodeTo = networkNodeId(database, ids[to], xs[to], ys[to]);
+            LineString geometry = factory.createLineString(
+                    new PackedCoordinateSequence.Double(Arrays.copyOf(coordinates, 2 * points), 2));
+            database.insertEdge(wayId, way.getHighwayClass(), way.getName(), nodeFrom, nodeTo, length, geometry);
+
+            touched.expandToInclude(geometry.getEnvelopeInternal());
+            changedNetworkNodes.add(nodeFrom);
+            changedNetworkNodes.add(nodeTo);
+        });
+    }
+
+    private boolean endsEdges(NetworkDatabase database, long osmId) throws SQLException, ParseException {
+        Boolean ends = nodeEnds.get(osmId);
+        if(ends == null) {
+            ends = database.countOsmNodeUses(osmId) >= 2;
+            nodeEnds.put(osmId, ends);
+        }
+        return ends;
+    }
+
+    /* Id of the network node made from an OSM node, creating or moving the node as needed. Its cardinality is fixed
+     * once every way has been cut. */
+    private int networkNodeId(NetworkDatabase database, long osmId, double x, double y) throws SQLException {
+        Integer nodeId = networkNodeIds.get(osmId);
+        if(nodeId == null) {
+            nodeId = database.selectNetworkNodeId(osmId);
+            if(nodeId < 0) {
+                nodeId = database.insertNetworkNode(osmId, x, y);
+            } else if(movedNodes.contains(osmId)) {
+                database.moveNetworkNode(nodeId, x, y);
+            }
+            networkNodeIds.put(osmId, nodeId);
+        }
+        return nodeId;
+    }
+
+    /* Read every node and way change of the file, later changes of an element replace earlier ones. */
+    private void readChanges() throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(changeFile), 1 << 16);
+        if(changeFile.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+
+        try (InputStream input = in) {
+            XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
+            /* change files never need a DTD and resolving one would read from the network */
+            xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            xmlFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader xml = xmlFactory.createXMLStreamReader(input);
+            try {
+                parse(xml);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Could not read change file " + changeFile + ".", e);
+        }
+    }
+
+    private void parse(XMLStreamReader xml) throws XMLStreamException {
+        boolean deleting = false;
+        long wayId = 0;
+        boolean inWay = false;
+        List<Long> wayRefs = new ArrayList<>();
+        Map<String, String> tags = new HashMap<>();
+
+        while(xml.hasNext()) {
+            int event = xml.next();
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                String element = xml.getLocalName();
+                if(element.equals("create") || element.equals("modify") || element.equals("delete")) {
+                    deleting = element.equals("delete");
+                } else if(element.equals("node")) {
+                    long id = Long.parseLong(xml.getAttributeValue(null, "id"));
+                    if(deleting) {
+                        nodeChanges.put(id, null);
+                    } else {
+                        double lon = Double.parseDouble(xml.getAttributeValue(null, "lon"));
+                        double lat = Double.parseDouble(xml.getAttributeValue(null, "lat"));
+                        nodeChanges.put(id, new double[]{OsmNetworkImporter.projectX(lon),
+                                                         OsmNetworkImporter.projectY(lat)});
+                    }
+                } else if(element.equals("way")) {
+                    inWay = true;
+                    wayId = Long.parseLong(xml.getAttributeValue(null, "id"));
+                    wayRefs.clear();
+                    tags.clear();
+                } else if(inWay && element.equals("nd")) {
+                    wayRefs.add(Long.parseLong(xml.getAttributeValue(null, "ref")));
+                } else if(inWay && element.equals("tag")) {
+                    tags.put(xml.getAttributeValue(null, "k"), xml.getAttributeValue(null, "v"));
+                }
+            } else if(event == XMLStreamConstants.END_ELEMENT && inWay && xml.getLocalName().equals("way")) {
+                inWay = false;
+                /* a way that is no longer walkable leaves the network just like a deleted one */
+                if(deleting || wayRefs.size() < 2 || !OsmNetworkImporter.isWalkable(tags)) {
+                    wayChanges.put(wayId, null);
+                } else {
+                    long[] refs = wayRefs.stream().mapToLong(Long::longValue).toArray();
+                    wayChanges.put(wayId, new OsmWay(wayId, tags.get("highway"), tags.get("name"), refs));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package osmnetwork;
+
+import database.network.NetworkDatabase;
+import database.network.OsmWay;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import roadgraph.ArrayRoadGraph;
+import roadgraph.RoadGraph;
+import roadgraph.RoadGraphFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line tool that builds the walking network from an OSM XML extract. It replaces the spatialite_osm_net,
+ * ST_Transform and VACUUM pipeline that mknetwork used to run and, writes either a network database that can be used
+ * anywhere one created by that pipeline could, or a binary graph file like the one written by mkgraph. This is
+ * normally run through the mknetwork script.
+ *
+ * The file is streamed twice. The first pass reads only the walkable ways and counts how many times each of their
+ * nodes is used. The second pass projects the coordinates of those nodes then cuts every walkable way into edges at
+ * its end points and at every node shared with another way. Memory is proportional to the walkable network rather
+ * than to the extract. Parsing runs on its own thread (see OsmReader) while projection, edge building and inserts run
+ * on the calling thread.
+ *
+ * OSM files list every node before any way. Ways referencing nodes that are missing from the extract, as happens at
+ * the border of a clipped extract, are cut at the missing nodes.
+ *
+ * A network database also receives the walkable ways and their nodes as they are in OSM so that OsmChangeApplier can
+ * later re-cut the ways touched by a change file without a new import.
+ */
+public class OsmNetworkImporter {
+
+    /* Radius of the WGS84 sphere used by WebMercator. */
+    private static final double EARTH_RADIUS = 6378137;
+
+    /* WebMercator is undefined at the poles and, EPSG 3857 clips latitude to this value. */
+    private static final double MAX_LATITUDE = 85.0511287798;
+
+    /* highway values that are never walkable or, are not roads at all */
+    private static final Set<String> EXCLUDED_HIGHWAYS = new HashSet<>(Arrays.asList("motorway", "motorway_link",
+            "construction", "proposed", "abandoned", "raceway", "bus_guideway", "escape", "rest_area", "services",
+            "platform"));
+
+    private final Path osmFile;
+
+    /* Dense index of every node used by a walkable way along with its OSM id and, the number of times it is used. The
+     * end points of a way count twice so, every node used at least twice ends an edge. */
+    private final LongIntHashMap nodeIndices = new LongIntHashMap(1 << 16);
+    private long[] osmIds = new long[1024];
+    private int[] useCounts = new int[1024];
+    private int indexCount;
+
+    /* Per index: projected coordinates, id in the output network or 0 if the node does not end an edge and, the
+     * number of edges ending at the node. */
+    private double[] xs;
+    private double[] ys;
+    private int[] nodeIds;
+    private int[] cardinalities;
+
+    private int nodeCount;
+    private int edgeCount;
+
+    /* Nodes of the way being cut: index, OSM id, coordinates and whether they end edges. */
+    private final WayCutter cutter = new WayCutter();
+    private int[] wayIndices = new int[256];
+    private long[] wayIds = new long[256];
+    private double[] wayXs = new double[256];
+    private double[] wayYs = new double[256];
+    private boolean[] wayEnds = new boolean[256];
+
+    public OsmNetworkImporter(Path osmFile) {
+        this.osmFile = osmFile;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: mknetwork [--graph] output_file osm_file");
+        System.out.println("\t--graph: Write a binary graph file instead of a network database.");
+        System.out.println("\toutput_file: Network database or graph file to create.");
+        System.out.println("\tosm_file: OSM XML extract, optionally gzip compressed.");
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        boolean writeGraph = args.length > 0 && args[0].equals("--graph");
+        int argIndex = writeGraph ? 1 : 0;
+        if(args.length < argIndex + 2) {
+            printUsage();
+            return;
+        }
+
+        Path outputPath = Paths.get(args[argIndex]);
+        Path osmPath = Paths.get(args[argIndex + 1]);
+
+        if(!Files.exists(osmPath, LinkOption.NOFOLLOW_LINKS)) {
+            System.out.println("OSM file " + osmPath + " does not exist.");
+            return;
+        }
+        if(!writeGraph && Files.exists(outputPath, LinkOption.NOFOLLOW_LINKS)) {
+            System.out.println("Network database " + outputPath + " already exists.");
+            return;
+        }
+
+        OsmNetworkImporter importer = new OsmNetworkImporter(osmPath);
+        if(writeGraph) {
+            GraphSink sink = new GraphSink();
+            importer.importNetwork(sink);
+            RoadGraph graph = sink.build();
+            RoadGraphFile.write(graph, outputPath);
+        } else {
+            try (NetworkDatabase database = NetworkDatabase.createDatabase(outputPath.toString())) {
+                try (NetworkDatabase.NetworkWriter writer = database.openWriter()) {
+                    importer.importNetwork(new DatabaseSink(writer));
+                    writer.finish();
+                }
+                database.createIndices();
+            }
+        }
+        System.out.println("Wrote " + importer.nodeCount() + " nodes and " + importer.edgeCount() + " edges to "
+                + outputPath);
+    }
+
+    /**
+     * @return True if a way with these tags can be walked along. This keeps every highway except the ones closed to
+     *         pedestrians by their type or by an access tag.
+     */
+    static boolean isWalkable(Map<String, String> tags) {
+        String highway = tags.get("highway");
+        if(highway == null || EXCLUDED_HIGHWAYS.contains(highway) || "yes".equals(tags.get("area"))) {
+            return false;
+        }
+
+        String foot = tags.get("foot");
+        if("no".equals(foot) || "private".equals(foot)) {
+            return false;
+        }
+        String access = tags.get("access");
+        boolean footAllowed = "yes".equals(foot) || "designated".equals(foot) || "permissive".equals(foot);
+        return footAllowed || !("no".equals(access) || "private".equals(access));
+    }
+
+    static double projectX(double lon) {
+        return EARTH_RADIUS * Math.toRadians(lon);
+    }
+
+    static double projectY(double lat) {
+        double clipped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+        return EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(clipped) / 2));
+    }
+
+    /**
+     * Read the OSM file and send the walking network to sink. An importer can only be used once.
+     */
+    void importNetwork(NetworkSink sink) throws IOException, SQLException {
+        countNodeUses();
+        buildEdges(sink);
+
+        for(int index = 0; index < indexCount; index++) {
+            if(nodeIds[index] != 0) {
+                sink.addNode(nodeIds[index], osmIds[index], cardinalities[index], xs[index], ys[index]);
+            }
+            if(!Double.isNaN(xs[index])) {
+                sink.addOsmNode(osmIds[index], xs[index], ys[index]);
+            }
+        }
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    private void countNodeUses() throws IOException {
+        try (OsmReader reader = new OsmReader(osmFile, false, true, OsmNetworkImporter::isWalkable)) {
+            OsmReader.Batch batch;
+            while((batch = reader.next()) != null) {
+                for(int w = 0; w < batch.wayCount; w++) {
+                    int first = batch.refOffsets[w];
+                    int last = batch.refOffsets[w + 1] - 1;
+                    for(int r = first; r <= last; r++) {
+                        int index = indexOf(batch.refs[r]);
+                        useCounts[index] += r == first || r == last ? 2 : 1;
+                    }
+                }
+            }
+        }
+
+        xs = new double[indexCount];
+        ys = new double[indexCount];
+        Arrays.fill(xs, Double.NaN);
+        Arrays.fill(ys, Double.NaN);
+        nodeIds = new int[indexCount];
+        cardinalities = new int[indexCount];
+    }
+
+    private int indexOf(long osmId) {
+        int index = nodeIndices.get(osmId);
+        if(index == LongIntHashMap.MISSING) {
+            index = indexCount++;
+            nodeIndices.put(osmId, index);
+            if(index == osmIds.length) {
+                osmIds = Arrays.copyOf(osmIds, 2 * index);
+                useCounts = Arrays.copyOf(useCounts, 2 * index);
+            }
+            osmIds[index] = osmId;
+        }
+        return index;
+    }
+
+    private void buildEdges(NetworkSink sink) throws IOException, SQLException {
+        try (OsmReader reader = new OsmReader(osmFile, true, true, OsmNetworkImporter::isWalkable)) {
+            OsmReader.Batch batch;
+            while((batch = reader.next()) != null) {
+                for(int n = 0; n < batch.nodeCount; n++) {
+                    int index = nodeIndices.get(batch.nodeIds[n]);
+                    if(index != LongIntHashMap.MISSING) {
+                        xs[index] = projectX(batch.lons[n]);
+                        ys[index] = projectY(batch.lats[n]);
+                    }
+                }
+                for(int w = 0; w < batch.wayCount; w++) {
+                    cutWay(batch, w, sink);
+                }
+            }
+        }
+    }
+
+    /* Cut a way into edges at every node used more than once. */
+    private void cutWay(OsmReader.Batch batch, int way, NetworkSink sink) throws IOException, SQLException {
+        int first = batch.refOffsets[way];
+        int count = batch.refOffsets[way + 1] - first;
+        sink.addOsmWay(batch.wayIds[way], batch.highways[way], batch.names[way], batch.refs, first, count);
+
+        if(count > wayIndices.length) {
+            int capacity = Math.max(count, 2 * wayIndices.length);
+            wayIndices = new int[capacity];
+            wayIds = new long[capacity];
+            wayXs = new double[capacity];
+            wayYs = new double[capacity];
+            wayEnds = new boolean[capacity];
+        }
+        for(int i = 0; i < count; i++) {
+            int index = nodeIndices.get(batch.refs[first + i]);
+            wayIndices[i] = index;
+            wayIds[i] = batch.refs[first + i];
+            wayXs[i] = xs[index];
+            wayYs[i] = ys[index];
+            wayEnds[i] = useCounts[index] >= 2;
+        }
+
+        cutter.cut(wayIds, wayXs, wayYs, wayEnds, count, (from, to, length, coordinates, points) -> {
+            int fromIndex = wayIndices[from];
+            int toIndex = wayIndices[to];
+            sink.addEdge(++edgeCount, batch.wayIds[way], batch.highways[way], batch.names[way], nodeId(fromIndex),
+                         nodeId(toIndex), length, coordinates, points);
+            cardinalities[fromIndex]++;
+            cardinalities[toIndex]++;
+        });
+    }
+
+    private int nodeId(int index) {
+        if(nodeIds[index] == 0) {
+            nodeIds[index] = ++nodeCount;
+        }
+        return nodeIds[index];
+    }
+
+    /* Writes into the tables of a new network database. */
+    private static class DatabaseSink implements NetworkSink {
+        private final NetworkDatabase.NetworkWriter writer;
+        private final GeometryFactory factory = new GeometryFactory();
+
+        DatabaseSink(NetworkDatabase.NetworkWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void addNode(int nodeId, long osmId, int cardinality, double x, double y) throws SQLException {
+            writer.addNode(nodeId, osmId, cardinality, x, y);
+        }
+
+        @Override
+        public void addEdge(int edgeId, long osmId, String highwayClass, String name, int nodeFrom, int nodeTo,
+                            double length, double[] coordinates, int points) throws SQLException {
+            double[] packed = Arrays.copyOf(coordinates, 2 * points);
+            writer.addEdge(edgeId, osmId, highwayClass, name, nodeFrom, nodeTo, length,
+                           factory.createLineString(new PackedCoordinateSequence.Double(packed, 2)));
+        }
+
+        @Override
+        public void addOsmNode(long osmId, double x, double y) throws SQLException {
+            writer.addOsmNode(osmId, x, y);
+        }
+
+        @Override
+        public void addOsmWay(long osmId, String highwayClass, String name, long[] nodeIds, int start, int count)
+                throws SQLException {
+            writer.addOsmWay(new OsmWay(osmId, highwayClass, name, Arrays.copyOfRange(nodeIds, start, start + count)));
+        }
+    }
+
+    /* Collects the network into an in memory graph. */
+    static class GraphSink implements NetworkSink {
+        private final ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+
+        @Override
+        public void addNode(int nodeId, long osmId, int cardinality, double x, double y) {
+            builder.addNode(nodeId, x, y);
+        }
+
+        @Override
+        public void addEdge(int edgeId, long osmId, String highwayClass, String name, int nodeFrom, int nodeTo,
+                            double length, double[] coordinates, int points) {
+            builder.addEdge(edgeId, nodeFrom, nodeTo, length, coordinates, 0, points);
+        }
+
+        ArrayRoadGraph build() {
+            /* number nodes along a Hilbert curve like NetworkDatabase.loadRoadGraph does for mkgraph */
+            return ArrayRoadGraph.hilbertOrdered(builder.build());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package osmnetwork;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the nodes and ways of an OSM XML file. The file is parsed with StAX on a background thread that hands
+ * elements to the caller in batches through a bounded queue so, parsing overlaps with whatever the caller does with
+ * the previous batches and, at most QUEUE_CAPACITY batches are held in memory however large the file is.
+ *
+ * Relations and the tags of nodes are skipped. Ways are filtered by their tags on the parsing thread and only the
+ * highway and name tags of the ways that pass are kept. Files ending in .gz are decompressed on the fly.
+ *
+ * This class is not thread safe. Use it from one thread and close it when done, even if it was not read to the end.
+ */
+final class OsmReader implements AutoCloseable {
+
+    static final int BATCH_SIZE = 4096;
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * A run of consecutive elements from the file. Node coordinates are in degrees of WGS84. The node ids of way i are
+     * at [refOffsets[i], refOffsets[i+1]) of refs.
+     */
+    static final class Batch {
+        int nodeCount;
+        long[] nodeIds = new long[BATCH_SIZE];
+        double[] lons = new double[BATCH_SIZE];
+        double[] lats = new double[BATCH_SIZE];
+
+        int wayCount;
+        long[] wayIds = new long[BATCH_SIZE];
+        String[] highways = new String[BATCH_SIZE];
+        String[] names = new String[BATCH_SIZE];
+        int[] refOffsets = new int[BATCH_SIZE + 1];
+        long[] refs = new long[4 * BATCH_SIZE];
+
+        boolean isFull() {
+            return nodeCount == BATCH_SIZE || wayCount == BATCH_SIZE;
+        }
+
+        private void addNode(long id, double lon, double lat) {
+            nodeIds[nodeCount] = id;
+            lons[nodeCount] = lon;
+            lats[nodeCount] = lat;
+            nodeCount++;
+        }
+
+        private void addWay(long id, String highway, String name, long[] wayRefs, int refCount) {
+            int start = refOffsets[wayCount];
+            if(start + refCount > refs.length) {
+                refs = Arrays.copyOf(refs, Math.max(2 * refs.length, start + refCount));
+            }
+            System.arraycopy(wayRefs, 0, refs, start, refCount);
+            wayIds[wayCount] = id;
+            highways[wayCount] = highway;
+            names[wayCount] = name;
+            wayCount++;
+            refOffsets[wayCount] = start + refCount;
+        }
+    }
+
+    /* Put on the queue after the last batch. */
+    private static final Batch END = new Batch();
+
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread parser;
+    private volatile Exception failure;
+    private boolean finished;
+
+    /**
+     * Start parsing a file.
+     *
+     * @param readNodes If false, nodes are skipped without reading their attributes.
+     * @param readWays If false, ways are skipped.
+     * @param wayFilter Tags of a way to whether the way is kept.
+     */
+    OsmReader(Path file, boolean readNodes, boolean readWays, Predicate<Map<String, String>> wayFilter)
+            throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        if(file.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        InputStream input = in;
+
+        parser = new Thread(() -> {
+            try (InputStream stream = input) {
+                parse(stream, readNodes, readWays, wayFilter);
+                queue.put(END);
+            } catch (InterruptedException e) {
+                /* the reader was closed early */
+            } catch (Exception e) {
+                failure = e;
+                queue.clear();
+                queue.offer(END);
+            }
+        }, "osm-parser");
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    /**
+     * @return The next batch of elements or null once the whole file has been read.
+     * @throws IOException If the file could not be read or is not valid OSM XML.
+     */
+    Batch next() throws IOException {
+        if(finished) {
+            return null;
+        }
+        Batch batch;
+        try {
+            batch = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading OSM data.", e);
+        }
+        if(batch == END) {
+            finished = true;
+            if(failure != null) {
+                throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+            }
+            return null;
+        }
+        return batch;
+    }
+
+    private void parse(InputStream input, boolean readNodes, boolean readWays,
+                       Predicate<Map<String, String>> wayFilter) throws XMLStreamException, InterruptedException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        /* OSM files never need a DTD and resolving one would read from the network */
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader xml = factory.createXMLStreamReader(input);
+
+        Batch batch = new Batch();
+        long wayId = 0;
+        boolean inWay = false;
+        long[] wayRefs = new long[256];
+        int refCount = 0;
+        Map<String, String> tags = new HashMap<>();
+
+        try {
+            while(xml.hasNext()) {
+                int event = xml.next();
+                if(event == XMLStreamConstants.START_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if(readNodes && element.equals("node")) {
+                        batch.addNode(Long.parseLong(xml.getAttributeValue(null, "id")),
+                                      Double.parseDouble(xml.getAttributeValue(null, "lon")),
+                                      Double.parseDouble(xml.getAttributeValue(null, "lat")));
+                    } else if(readWays && element.equals("way")) {
+                        inWay = true;
+                        wayId = Long.parseLong(xml.getAttributeValue(null, "id"));
+                        refCount = 0;
+                        tags.clear();
+                    } else if(inWay && element.equals("nd")) {
+                        if(refCount == wayRefs.length) {
+                            wayRefs = Arrays.copyOf(wayRefs, 2 * refCount);
+                        }
+                        wayRefs[refCount++] = Long.parseLong(xml.getAttributeValue(null, "ref"));
+                    } else if(inWay && element.equals("tag")) {
+                        tags.put(xml.getAttributeValue(null, "k"), xml.getAttributeValue(null, "v"));
+                    } else if(element.equals("relation") && !readWays) {
+                        /* relations come last in an OSM file so, there is nothing left to read */
+                        break;
+                    }
+                } else if(event == XMLStreamConstants.END_ELEMENT && inWay && xml.getLocalName().equals("way")) {
+                    inWay = false;
+                    if(refCount >= 2 && wayFilter.test(tags)) {
+                        batch.addWay(wayId, tags.get("highway"), tags.get("name"), wayRefs, refCount);
+                    }
+                } else {
+                    continue;
+                }
+
+                if(batch.isFull()) {
+                    queue.put(batch);
+                    batch = new Batch();
+                }
+            }
+        } finally {
+            xml.close();
+        }
+
+        if(batch.nodeCount > 0 || batch.wayCount > 0) {
+            queue.put(batch);
+        }
+    }
+
+    /**
+     * Stop parsing. Any batches not read yet are discarded.
+     */
+    @Override
+    public void close() {
+        parser.interrupt();
+        queue.clear();
+    }
+}
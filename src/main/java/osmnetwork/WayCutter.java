@@ -0,0 +1,97 @@
+package osmnetwork;
+
+import roadgraph.WebMercator;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Cuts an OSM way into the edges of the walking network. An edge runs between two nodes of the way that end edges,
+ * which are the nodes shared with another way and the end points of the way, and its geometry holds every node in
+ * between. Nodes without coordinates, because they are missing from the extract, cut the way: the part before them ends
+ * at the last node that has coordinates and, the part after them starts at the next one.
+ *
+ * Used by both OsmNetworkImporter and OsmChangeApplier so that a way re-cut after a change gives the same edges it
+ * would have had in a fresh import. This class is not thread safe.
+ */
+final class WayCutter {
+
+    @FunctionalInterface
+    interface EdgeConsumer {
+        /**
+         * @param from Position in the way of the first node of the edge.
+         * @param to Position in the way of the last node of the edge.
+         * @param length Length of the edge in meters.
+         * @param coordinates Packed x,y pairs of the edge geometry. Only valid until the consumer returns.
+         * @param points Number of leading points of coordinates in the edge geometry.
+         */
+        void accept(int from, int to, double length, double[] coordinates, int points) throws IOException, SQLException;
+    }
+
+    /* Geometry of the edge being built as packed x,y pairs. */
+    private double[] points = new double[256];
+    private int pointCount;
+
+    /**
+     * @param ids OSM ids of the nodes of the way. Repeated consecutive nodes are skipped.
+     * @param xs WebMercator x of each node or NaN if the node is missing.
+     * @param ys WebMercator y of each node.
+     * @param ends True for the nodes, besides the first and last, that end edges.
+     * @param count Number of nodes in the way.
+     */
+    void cut(long[] ids, double[] xs, double[] ys, boolean[] ends, int count, EdgeConsumer consumer)
+            throws IOException, SQLException {
+        int from = -1;
+        int previous = -1;
+        double length = 0;
+        pointCount = 0;
+
+        for(int i = 0; i < count; i++) {
+            if(Double.isNaN(xs[i])) {
+                /* keep the part of the way before the missing node and start over after it */
+                if(previous != from) {
+                    consumer.accept(from, previous, length, points, pointCount);
+                }
+                from = -1;
+                previous = -1;
+                continue;
+            }
+            if(previous >= 0 && ids[i] == ids[previous]) {
+                continue;
+            }
+
+            if(from < 0) {
+                from = i;
+                length = 0;
+                pointCount = 0;
+            } else {
+                length += WebMercator.groundDistance(xs[previous], ys[previous], xs[i], ys[i]);
+            }
+            addPoint(xs[i], ys[i]);
+
+            if(previous >= 0 && ends[i]) {
+                consumer.accept(from, i, length, points, pointCount);
+                from = i;
+                length = 0;
+                pointCount = 0;
+                addPoint(xs[i], ys[i]);
+            }
+            previous = i;
+        }
+
+        /* the last node of a way always ends an edge */
+        if(previous != from) {
+            consumer.accept(from, previous, length, points, pointCount);
+        }
+    }
+
+    private void addPoint(double x, double y) {
+        if(2 * pointCount + 2 > points.length) {
+            points = Arrays.copyOf(points, 2 * points.length);
+        }
+        points[2 * pointCount] = x;
+        points[2 * pointCount + 1] = y;
+        pointCount++;
+    }
+}
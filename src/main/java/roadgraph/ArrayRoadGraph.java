@@ -0,0 +1,383 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A RoadGraph held entirely in primitive arrays using a compressed sparse row layout. The arcs of node n are stored
+ * at positions [arcOffsets[n], arcOffsets[n+1]) of arcTargets, arcLengths and arcEdges.
+ *
+ * Edge geometry is kept as packed x,y pairs and is only turned into JTS objects when it is requested.
+ *
+ * Instances are immutable once built and therefore are thread safe. Use ArrayRoadGraph.Builder to construct one and,
+ * hilbertOrdered to renumber one for faster searches.
+ */
+public class ArrayRoadGraph implements RoadGraph {
+
+    private final int[] nodeIds;
+    private final double[] nodeCoordinates;
+
+    /* node ids sorted ascending along with the index of the node that has that id. Used for id lookups. */
+    private final int[] sortedNodeIds;
+    private final int[] sortedNodeIndices;
+
+    private final int[] arcOffsets;
+    private final int[] arcTargets;
+    private final float[] arcLengths;
+    private final int[] arcEdges;
+
+    private final int[] edgeIds;
+    private final int[] geometryOffsets;
+    private final double[] geometryCoordinates;
+
+    private volatile NodeKdTree nodeTree;
+
+    /* computed on first use since, it requires a pass over the whole graph */
+    private volatile long fingerprint;
+    private volatile boolean hasFingerprint;
+
+    private ArrayRoadGraph(int[] nodeIds, int[] sortedNodeIds, int[] sortedNodeIndices, double[] nodeCoordinates,
+                           int[] arcOffsets, int[] arcTargets, float[] arcLengths, int[] arcEdges, int[] edgeIds,
+                           int[] geometryOffsets, double[] geometryCoordinates) {
+        this.nodeIds = nodeIds;
+        this.sortedNodeIds = sortedNodeIds;
+        this.sortedNodeIndices = sortedNodeIndices;
+        this.nodeCoordinates = nodeCoordinates;
+        this.arcOffsets = arcOffsets;
+        this.arcTargets = arcTargets;
+        this.arcLengths = arcLengths;
+        this.arcEdges = arcEdges;
+        this.edgeIds = edgeIds;
+        this.geometryOffsets = geometryOffsets;
+        this.geometryCoordinates = geometryCoordinates;
+    }
+
+    /* Fill sortedIds and sortedIndices so that sortedIds is ascending and sortedIds[i] == ids[sortedIndices[i]].
+     * Ids and indices are packed into a single long so that a primitive sort can be used. */
+    static void sortIdIndex(int[] ids, int[] sortedIds, int[] sortedIndices) {
+        long[] packed = new long[ids.length];
+        for(int i = 0; i < ids.length; i++) {
+            packed[i] = ((long) ids[i] << 32) | (i & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+        for(int i = 0; i < packed.length; i++) {
+            sortedIds[i] = (int) (packed[i] >> 32);
+            sortedIndices[i] = (int) packed[i];
+        }
+    }
+
+    /**
+     * Copy a graph, numbering its nodes along a Hilbert curve over their coordinates and its edges in the order of
+     * their first end point along that curve. Network node ids follow OSM ids, which are scattered across space, so
+     * a search of a graph numbered by id jumps all over its arrays. In this order the nodes, arcs and geometry near a
+     * search are mostly in the same cache lines and pages.
+     *
+     * Node and edge ids are unchanged so, nodeId, nodeIndex and edgeId still translate between indices and the ids
+     * of the network database.
+     */
+    public static ArrayRoadGraph hilbertOrdered(RoadGraph graph) {
+        int[] order = HilbertCurve.sortNodes(graph);
+        Builder builder = new Builder();
+        for(int node : order) {
+            builder.addNode(graph.nodeId(node), graph.nodeX(node), graph.nodeY(node));
+        }
+
+        GeometryFactory factory = new GeometryFactory();
+        boolean[] added = new boolean[graph.edgeCount()];
+        for(int node : order) {
+            for(int i = 0; i < graph.degree(node); i++) {
+                int edge = graph.arcEdge(node, i);
+                if(added[edge]) {
+                    continue;
+                }
+                added[edge] = true;
+
+                /* the geometry starts at the from node of the edge, which may be either end of the arc */
+                int neighbor = graph.neighbor(node, i);
+                CoordinateSequence geometry = graph.edgeGeometry(edge, factory).getCoordinateSequence();
+                double x = geometry.getX(0);
+                double y = geometry.getY(0);
+                boolean forward = Math.hypot(x - graph.nodeX(node), y - graph.nodeY(node))
+                        <= Math.hypot(x - graph.nodeX(neighbor), y - graph.nodeY(neighbor));
+                int from = forward ? node : neighbor;
+                int to = forward ? neighbor : node;
+                builder.addEdge(graph.edgeId(edge), graph.nodeId(from), graph.nodeId(to), graph.arcLength(node, i),
+                                geometry);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return Number of bytes held by the arrays of this graph, not counting the nearest node index.
+     */
+    long sizeInBytes() {
+        return 4L * (nodeIds.length + sortedNodeIds.length + sortedNodeIndices.length + arcOffsets.length
+                     + arcTargets.length + arcLengths.length + arcEdges.length + edgeIds.length
+                     + geometryOffsets.length)
+                + 8L * (nodeCoordinates.length + geometryCoordinates.length);
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    @Override
+    public int nodeId(int node) {
+        return nodeIds[node];
+    }
+
+    @Override
+    public int nodeIndex(int nodeId) {
+        int i = Arrays.binarySearch(sortedNodeIds, nodeId);
+        return i < 0 ? -1 : sortedNodeIndices[i];
+    }
+
+    @Override
+    public double nodeX(int node) {
+        return nodeCoordinates[2 * node];
+    }
+
+    @Override
+    public double nodeY(int node) {
+        return nodeCoordinates[2 * node + 1];
+    }
+
+    @Override
+    public int degree(int node) {
+        return arcOffsets[node + 1] - arcOffsets[node];
+    }
+
+    @Override
+    public int neighbor(int node, int i) {
+        return arcTargets[arcOffsets[node] + i];
+    }
+
+    @Override
+    public double arcLength(int node, int i) {
+        return arcLengths[arcOffsets[node] + i];
+    }
+
+    @Override
+    public int arcEdge(int node, int i) {
+        return arcEdges[arcOffsets[node] + i];
+    }
+
+    @Override
+    public int edgeId(int edge) {
+        return edgeIds[edge];
+    }
+
+    @Override
+    public LineString edgeGeometry(int edge, GeometryFactory factory) {
+        int from = geometryOffsets[edge];
+        int to = geometryOffsets[edge + 1];
+        double[] coordinates = Arrays.copyOfRange(geometryCoordinates, 2 * from, 2 * to);
+        CoordinateSequence sequence = new PackedCoordinateSequence.Double(coordinates, 2);
+        return factory.createLineString(sequence);
+    }
+
+    @Override
+    public int nearestNode(double x, double y, double maxDistance) {
+        return nodeTree().nearest(x, y, maxDistance);
+    }
+
+    @Override
+    public int kNearestNodes(double x, double y, int k, double maxDistance, int[] result) {
+        return nodeTree().kNearest(x, y, k, maxDistance, result);
+    }
+
+    @Override
+    public void nearestNodes(double[] xs, double[] ys, int count, double maxDistance, int[] result) {
+        nodeTree().nearest(xs, ys, count, maxDistance, result);
+    }
+
+    @Override
+    public void nodesInside(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        nodeTree().inside(minX, minY, maxX, maxY, action);
+    }
+
+    /* The tree is built on first use so that graphs that are never snapped to do not pay for it. Racing threads may
+     * each build a tree but, they are identical. */
+    private NodeKdTree nodeTree() {
+        NodeKdTree tree = nodeTree;
+        if(tree == null) {
+            tree = new NodeKdTree(this);
+            nodeTree = tree;
+        }
+        return tree;
+    }
+
+    @Override
+    public long fingerprint() {
+        /* racing threads compute the same value so, no locking is needed */
+        if(!hasFingerprint) {
+            fingerprint = GraphFingerprint.of(this);
+            hasFingerprint = true;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Collects nodes and edges in any order then packs them into an ArrayRoadGraph. Nodes are indexed in the order
+     * they are added. Edges referencing a node_id that was never added are dropped when the graph is built since a
+     * search could never reach them.
+     *
+     * This class is not thread safe.
+     */
+    public static class Builder {
+        private int nodeCount;
+        private int[] nodeIds = new int[16];
+        private double[] nodeCoordinates = new double[32];
+
+        private int edgeCount;
+        private int[] edgeIds = new int[16];
+        private int[] edgeFromIds = new int[16];
+        private int[] edgeToIds = new int[16];
+        private float[] edgeLengths = new float[16];
+
+        private int[] geometryOffsets = new int[17];
+        private int geometryCount;
+        private double[] geometryCoordinates = new double[64];
+
+        public Builder addNode(int nodeId, double x, double y) {
+            if(nodeCount == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * nodeCount);
+                nodeCoordinates = Arrays.copyOf(nodeCoordinates, 4 * nodeCount);
+            }
+            nodeIds[nodeCount] = nodeId;
+            nodeCoordinates[2 * nodeCount] = x;
+            nodeCoordinates[2 * nodeCount + 1] = y;
+            nodeCount++;
+            return this;
+        }
+
+        /**
+         * @param geometry Packed x,y pairs of the edge geometry. The geometry should start at nodeFrom and end at
+         *                 nodeTo.
+         */
+        public Builder addEdge(int edgeId, int nodeFrom, int nodeTo, double length, double[] geometry) {
+            return addEdge(edgeId, nodeFrom, nodeTo, length, geometry, 0, geometry.length / 2);
+        }
+
+        /**
+         * @param coordinates Packed x,y pairs holding the edge geometry.
+         * @param start Index of the first point of the edge geometry in coordinates.
+         * @param points Number of points in the edge geometry.
+         */
+        public Builder addEdge(int edgeId, int nodeFrom, int nodeTo, double length, double[] coordinates, int start,
+                               int points) {
+            if(edgeCount == edgeIds.length) {
+                int capacity = 2 * edgeCount;
+                edgeIds = Arrays.copyOf(edgeIds, capacity);
+                edgeFromIds = Arrays.copyOf(edgeFromIds, capacity);
+                edgeToIds = Arrays.copyOf(edgeToIds, capacity);
+                edgeLengths = Arrays.copyOf(edgeLengths, capacity);
+                geometryOffsets = Arrays.copyOf(geometryOffsets, capacity + 1);
+            }
+            edgeIds[edgeCount] = edgeId;
+            edgeFromIds[edgeCount] = nodeFrom;
+            edgeToIds[edgeCount] = nodeTo;
+            edgeLengths[edgeCount] = (float) length;
+
+            while(2 * (geometryCount + points) > geometryCoordinates.length) {
+                geometryCoordinates = Arrays.copyOf(geometryCoordinates, 2 * geometryCoordinates.length);
+            }
+            System.arraycopy(coordinates, 2 * start, geometryCoordinates, 2 * geometryCount, 2 * points);
+            geometryCount += points;
+            edgeCount++;
+            geometryOffsets[edgeCount] = geometryCount;
+            return this;
+        }
+
+        public Builder addEdge(int edgeId, int nodeFrom, int nodeTo, double length, CoordinateSequence geometry) {
+            double[] packed = new double[2 * geometry.size()];
+            for(int i = 0; i < geometry.size(); i++) {
+                packed[2 * i] = geometry.getX(i);
+                packed[2 * i + 1] = geometry.getY(i);
+            }
+            return addEdge(edgeId, nodeFrom, nodeTo, length, packed);
+        }
+
+        public ArrayRoadGraph build() {
+            int[] nodeIds = Arrays.copyOf(this.nodeIds, nodeCount);
+            double[] nodeCoordinates = Arrays.copyOf(this.nodeCoordinates, 2 * nodeCount);
+
+            int[] sortedIds = new int[nodeCount];
+            int[] sortedIndices = new int[nodeCount];
+            sortIdIndex(nodeIds, sortedIds, sortedIndices);
+
+            /* resolve node ids of every edge to indices, dropping edges that leave the graph. */
+            int[] from = new int[edgeCount];
+            int[] to = new int[edgeCount];
+            int[] keptEdges = new int[edgeCount];
+            int kept = 0;
+            int[] degree = new int[nodeCount];
+            for(int e = 0; e < edgeCount; e++) {
+                int f = Arrays.binarySearch(sortedIds, edgeFromIds[e]);
+                int t = Arrays.binarySearch(sortedIds, edgeToIds[e]);
+                if(f >= 0 && t >= 0) {
+                    from[kept] = sortedIndices[f];
+                    to[kept] = sortedIndices[t];
+                    keptEdges[kept] = e;
+                    degree[from[kept]]++;
+                    degree[to[kept]]++;
+                    kept++;
+                }
+            }
+
+            int[] arcOffsets = new int[nodeCount + 1];
+            for(int n = 0; n < nodeCount; n++) {
+                arcOffsets[n + 1] = arcOffsets[n] + degree[n];
+            }
+
+            int arcCount = arcOffsets[nodeCount];
+            int[] arcTargets = new int[arcCount];
+            float[] arcLengths = new float[arcCount];
+            int[] arcEdges = new int[arcCount];
+            int[] next = Arrays.copyOf(arcOffsets, nodeCount);
+
+            int[] edgeIds = new int[kept];
+            int[] geometryOffsets = new int[kept + 1];
+            int keptPoints = 0;
+            for(int k = 0; k < kept; k++) {
+                keptPoints += this.geometryOffsets[keptEdges[k] + 1] - this.geometryOffsets[keptEdges[k]];
+            }
+            double[] geometryCoordinates = new double[2 * keptPoints];
+
+            for(int k = 0; k < kept; k++) {
+                int e = keptEdges[k];
+                edgeIds[k] = this.edgeIds[e];
+
+                int a = next[from[k]]++;
+                arcTargets[a] = to[k];
+                arcLengths[a] = edgeLengths[e];
+                arcEdges[a] = k;
+
+                int b = next[to[k]]++;
+                arcTargets[b] = from[k];
+                arcLengths[b] = edgeLengths[e];
+                arcEdges[b] = k;
+
+                int points = this.geometryOffsets[e + 1] - this.geometryOffsets[e];
+                System.arraycopy(this.geometryCoordinates, 2 * this.geometryOffsets[e],
+                                 geometryCoordinates, 2 * geometryOffsets[k], 2 * points);
+                geometryOffsets[k + 1] = geometryOffsets[k] + points;
+            }
+
+            return new ArrayRoadGraph(nodeIds, sortedIds, sortedIndices, nodeCoordinates, arcOffsets, arcTargets,
+                                      arcLengths, arcEdges, edgeIds, geometryOffsets, geometryCoordinates);
+        }
+    }
+}
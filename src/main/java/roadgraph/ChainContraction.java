@@ -0,0 +1,206 @@
+package roadgraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A RoadGraph with its chains of degree 2 nodes merged into single edges, along with a mapping from the merged edges
+ * back to the nodes they replaced.
+ *
+ * Most nodes of an OSM derived network only join two edges of the same street. They offer no routing choice but each
+ * one costs a search a heap operation. Merging the chain between two junctions into one edge, whose length is the sum
+ * of the chain and whose geometry is the whole chain, gives a graph with the same distances between the remaining
+ * nodes and with far fewer nodes to settle. A merged edge keeps the id of the first edge of its chain.
+ *
+ * The contracted nodes are no longer nodes of the graph so, points snap to the nearest junction instead. To bound the
+ * error this adds to snapping and to the edges reached at the edge of a buffer, chains are cut into edges no longer
+ * than a maximum length. The nodes at the cuts are kept.
+ *
+ * The contracted graph is numbered along a Hilbert curve, see ArrayRoadGraph.hilbertOrdered.
+ *
+ * Contraction is done when a graph file is compiled (see RoadGraphCompiler and the mkgraph script). Instances are
+ * immutable and therefore are thread safe.
+ */
+public final class ChainContraction {
+
+    /* "FDCC" */
+    private static final int MAGIC = 0x43434446;
+    private static final int FORMAT_VERSION = 1;
+
+    private final RoadGraph graph;
+    private final int originalNodeCount;
+
+    /* Contracted nodes of edge e, in order along its geometry, are at [viaOffsets[e], viaOffsets[e+1]). */
+    private final int[] viaOffsets;
+    private final int[] viaNodeIds;
+    private final float[] viaDistances;
+
+    /* Contracted node ids sorted ascending along with their position in viaNodeIds. Used for id lookups. */
+    private final int[] sortedViaNodeIds;
+    private final int[] sortedViaPositions;
+
+    ChainContraction(RoadGraph graph, int originalNodeCount, int[] viaOffsets, int[] viaNodeIds,
+                     float[] viaDistances) {
+        this.graph = graph;
+        this.originalNodeCount = originalNodeCount;
+        this.viaOffsets = viaOffsets;
+        this.viaNodeIds = viaNodeIds;
+        this.viaDistances = viaDistances;
+
+        this.sortedViaNodeIds = new int[viaNodeIds.length];
+        this.sortedViaPositions = new int[viaNodeIds.length];
+        ArrayRoadGraph.sortIdIndex(viaNodeIds, sortedViaNodeIds, sortedViaPositions);
+    }
+
+    /**
+     * Merge the chains of degree 2 nodes of a graph.
+     *
+     * @param maxChainLength Chains longer than this, in meters, are cut into several edges. Use
+     *                       Double.POSITIVE_INFINITY to merge whole chains.
+     * @param tolerance The geometry of merged edges is simplified with Douglas-Peucker using this tolerance in ground
+     *                  meters, see WebMercator. Use 0 to only drop points that lie exactly on a straight line.
+     */
+    public static ChainContraction contract(RoadGraph graph, double maxChainLength, double tolerance) {
+        return new ChainContractor(graph, maxChainLength, tolerance).contract();
+    }
+
+    /**
+     * @return The contracted graph.
+     */
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return Number of nodes in the graph before contraction.
+     */
+    public int originalNodeCount() {
+        return originalNodeCount;
+    }
+
+    /**
+     * @return Number of nodes that were merged into an edge.
+     */
+    public int viaNodeCount() {
+        return viaNodeIds.length;
+    }
+
+    /**
+     * @return Number of contracted nodes along an edge of the contracted graph.
+     */
+    public int viaNodeCount(int edge) {
+        return viaOffsets[edge + 1] - viaOffsets[edge];
+    }
+
+    /**
+     * @return node_id of the i'th contracted node along edge, counting from the start of its geometry.
+     */
+    public int viaNodeId(int edge, int i) {
+        return viaNodeIds[viaOffsets[edge] + i];
+    }
+
+    /**
+     * @return Walking distance from the start of the geometry of edge to its i'th contracted node.
+     */
+    public double viaDistance(int edge, int i) {
+        return viaDistances[viaOffsets[edge] + i];
+    }
+
+    /**
+     * @return Index of the edge of the contracted graph that a node was merged into or -1 if the node is still a node
+     *         of the contracted graph or, was never part of the network.
+     */
+    public int contractedEdge(int nodeId) {
+        int i = Arrays.binarySearch(sortedViaNodeIds, nodeId);
+        if(i < 0) {
+            return -1;
+        }
+        int position = sortedViaPositions[i];
+        /* the last edge whose range starts at or before position. Edges without contracted nodes have empty ranges
+         * that start at the same offset as the next edge so, they are skipped. */
+        int low = 0;
+        int high = viaOffsets.length - 2;
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(viaOffsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Write the node mapping to a file that can be read back with read. The graph itself is not written, use
+     * RoadGraphFile for that.
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(graph.fingerprint());
+            out.writeInt(graph.edgeCount());
+            out.writeInt(originalNodeCount);
+            out.writeInt(viaNodeIds.length);
+
+            for(int offset : viaOffsets) {
+                out.writeInt(offset);
+            }
+            for(int nodeId : viaNodeIds) {
+                out.writeInt(nodeId);
+            }
+            for(float distance : viaDistances) {
+                out.writeFloat(distance);
+            }
+        }
+    }
+
+    /**
+     * Read a node mapping written by write.
+     *
+     * @param graph The contracted graph, usually mapped from the graph file written alongside the mapping.
+     * @throws IOException If the file is not a node mapping or, it was written for a different graph.
+     */
+    public static ChainContraction read(Path path, RoadGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if(in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a chain contraction file.");
+            }
+            int version = in.readInt();
+            if(version != FORMAT_VERSION) {
+                throw new IOException(path + " has chain contraction format version " + version + " but, version "
+                        + FORMAT_VERSION + " is required. Rebuild it with mkgraph.");
+            }
+            long graphFingerprint = in.readLong();
+            int edgeCount = in.readInt();
+            int originalNodeCount = in.readInt();
+            int viaCount = in.readInt();
+
+            if(edgeCount != graph.edgeCount() || graphFingerprint != graph.fingerprint()) {
+                throw new IOException(path + " was written for a different graph. Rebuild it with mkgraph.");
+            }
+
+            int[] viaOffsets = new int[edgeCount + 1];
+            for(int i = 0; i <= edgeCount; i++) {
+                viaOffsets[i] = in.readInt();
+            }
+            int[] viaNodeIds = new int[viaCount];
+            for(int i = 0; i < viaCount; i++) {
+                viaNodeIds[i] = in.readInt();
+            }
+            float[] viaDistances = new float[viaCount];
+            for(int i = 0; i < viaCount; i++) {
+                viaDistances[i] = in.readFloat();
+            }
+
+            return new ChainContraction(graph, originalNodeCount, viaOffsets, viaNodeIds, viaDistances);
+        }
+    }
+}
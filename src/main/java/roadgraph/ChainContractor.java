@@ -0,0 +1,277 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.Arrays;
+
+/**
+ * Builds a ChainContraction by walking the chains of degree 2 nodes between the nodes that are kept.
+ *
+ * A node is kept if it is a junction or a dead end (any degree other than 2) or, if it carries a self loop. Every
+ * other node has exactly two edges and only passes a walk from one of them to the other. A walk starts at a kept node,
+ * follows the chain until it reaches another kept node and emits one edge for the whole chain. When following the
+ * chain any further would make the edge longer than the maximum chain length, the node the walk stopped at is kept as
+ * well and a new walk starts from it. Rings of degree 2 nodes have no kept node to start from so, one of their nodes
+ * is kept.
+ *
+ * This class is not thread safe. A contractor can only be used once.
+ */
+final class ChainContractor {
+
+    private final RoadGraph graph;
+    private final double maxChainLength;
+    private final double tolerance;
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private final boolean[] kept;
+    private final boolean[] visitedEdges;
+    private int[] stack = new int[64];
+    private int stackSize;
+
+    private final ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+    private int edgeCount;
+
+    /* Contracted nodes of every emitted edge. The nodes of edge e are at [viaOffsets[e], viaOffsets[e+1]). */
+    private int[] viaOffsets = new int[17];
+    private int[] viaNodeIds = new int[64];
+    private float[] viaDistances = new float[64];
+    private int viaCount;
+
+    /* Geometry of the chain being walked as packed x,y pairs. */
+    private double[] points = new double[64];
+    private int pointCount;
+
+    ChainContractor(RoadGraph graph, double maxChainLength, double tolerance) {
+        this.graph = graph;
+        this.maxChainLength = maxChainLength;
+        this.tolerance = tolerance;
+        this.kept = new boolean[graph.nodeCount()];
+        this.visitedEdges = new boolean[graph.edgeCount()];
+    }
+
+    ChainContraction contract() {
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            if(!isChainNode(node)) {
+                keep(node);
+            }
+        }
+        walkFromKeptNodes();
+
+        /* whatever is left are rings without a kept node */
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            if(!kept[node] && !visitedEdges[graph.arcEdge(node, 0)]) {
+                keep(node);
+                walkFromKeptNodes();
+            }
+        }
+
+        return hilbertOrdered(builder.build());
+    }
+
+    /* Kept nodes are added in the order the walks reach them, which scatters them across the graph. Renumber the
+     * contracted graph along a Hilbert curve, like the graph it was contracted from, and move the contracted nodes of
+     * every edge along with it. Merged edges have unique ids so, the ids match the edges of both numberings. */
+    private ChainContraction hilbertOrdered(ArrayRoadGraph contracted) {
+        ArrayRoadGraph ordered = ArrayRoadGraph.hilbertOrdered(contracted);
+
+        int[] edgeIds = new int[edgeCount];
+        for(int edge = 0; edge < edgeCount; edge++) {
+            edgeIds[edge] = contracted.edgeId(edge);
+        }
+        int[] sortedEdgeIds = new int[edgeCount];
+        int[] sortedEdges = new int[edgeCount];
+        ArrayRoadGraph.sortIdIndex(edgeIds, sortedEdgeIds, sortedEdges);
+
+        int[] orderedOffsets = new int[edgeCount + 1];
+        int[] orderedNodeIds = new int[viaCount];
+        float[] orderedDistances = new float[viaCount];
+        int via = 0;
+        for(int edge = 0; edge < edgeCount; edge++) {
+            int original = sortedEdges[Arrays.binarySearch(sortedEdgeIds, ordered.edgeId(edge))];
+            int count = viaOffsets[original + 1] - viaOffsets[original];
+            System.arraycopy(viaNodeIds, viaOffsets[original], orderedNodeIds, via, count);
+            System.arraycopy(viaDistances, viaOffsets[original], orderedDistances, via, count);
+            orderedOffsets[edge] = via;
+            via += count;
+        }
+        orderedOffsets[edgeCount] = via;
+
+        return new ChainContraction(ordered, graph.nodeCount(), orderedOffsets, orderedNodeIds, orderedDistances);
+    }
+
+    private boolean isChainNode(int node) {
+        return graph.degree(node) == 2 && graph.neighbor(node, 0) != node && graph.neighbor(node, 1) != node;
+    }
+
+    private void keep(int node) {
+        kept[node] = true;
+        builder.addNode(graph.nodeId(node), graph.nodeX(node), graph.nodeY(node));
+        if(stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stackSize);
+        }
+        stack[stackSize++] = node;
+    }
+
+    private void walkFromKeptNodes() {
+        while(stackSize > 0) {
+            int node = stack[--stackSize];
+            for(int i = 0; i < graph.degree(node); i++) {
+                if(!visitedEdges[graph.arcEdge(node, i)]) {
+                    walk(node, i);
+                }
+            }
+        }
+    }
+
+    /* Follow the chain that starts with the i'th arc of start and emit it as one edge. */
+    private void walk(int start, int i) {
+        int edgeId = graph.edgeId(graph.arcEdge(start, i));
+        int firstVia = viaCount;
+        pointCount = 0;
+        double length = 0;
+
+        int current = start;
+        int arc = i;
+        while(true) {
+            int edge = graph.arcEdge(current, arc);
+            int next = graph.neighbor(current, arc);
+            visitedEdges[edge] = true;
+            length += graph.arcLength(current, arc);
+            appendGeometry(edge, current);
+
+            if(kept[next]) {
+                current = next;
+                break;
+            }
+
+            int nextArc = graph.arcEdge(next, 0) == edge ? 1 : 0;
+            if(length + graph.arcLength(next, nextArc) > maxChainLength) {
+                keep(next);
+                current = next;
+                break;
+            }
+
+            addVia(graph.nodeId(next), length);
+            current = next;
+            arc = nextArc;
+        }
+
+        /* the tolerance is on the ground and, the points are in WebMercator units. A chain is short enough that the
+         * scale at its start holds along all of it. */
+        int simplifiedCount = simplify(points, pointCount, tolerance * WebMercator.scale(graph.nodeY(start)));
+        builder.addEdge(edgeId, graph.nodeId(start), graph.nodeId(current), length, points, 0, simplifiedCount);
+
+        if(edgeCount + 1 == viaOffsets.length) {
+            viaOffsets = Arrays.copyOf(viaOffsets, 2 * viaOffsets.length);
+        }
+        viaOffsets[edgeCount] = firstVia;
+        edgeCount++;
+        viaOffsets[edgeCount] = viaCount;
+    }
+
+    private void addVia(int nodeId, double distance) {
+        if(viaCount == viaNodeIds.length) {
+            viaNodeIds = Arrays.copyOf(viaNodeIds, 2 * viaCount);
+            viaDistances = Arrays.copyOf(viaDistances, 2 * viaCount);
+        }
+        viaNodeIds[viaCount] = nodeId;
+        viaDistances[viaCount] = (float) distance;
+        viaCount++;
+    }
+
+    /* Append the geometry of edge to the chain, oriented so that it starts at from. The first point is dropped unless
+     * this is the first edge of the chain since, it repeats the last point of the previous edge. */
+    private void appendGeometry(int edge, int from) {
+        CoordinateSequence sequence = graph.edgeGeometry(edge, factory).getCoordinateSequence();
+        int size = sequence.size();
+        double x = graph.nodeX(from);
+        double y = graph.nodeY(from);
+        boolean forward = distanceSq(sequence.getX(0), sequence.getY(0), x, y)
+                <= distanceSq(sequence.getX(size - 1), sequence.getY(size - 1), x, y);
+
+        while(2 * (pointCount + size) > points.length) {
+            points = Arrays.copyOf(points, 2 * points.length);
+        }
+        for(int p = pointCount == 0 ? 0 : 1; p < size; p++) {
+            int s = forward ? p : size - 1 - p;
+            points[2 * pointCount] = sequence.getX(s);
+            points[2 * pointCount + 1] = sequence.getY(s);
+            pointCount++;
+        }
+    }
+
+    private static double distanceSq(double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Douglas-Peucker simplification of packed x,y pairs in place. The first and last points are always kept.
+     *
+     * @return Number of leading points of coordinates that hold the simplified line.
+     */
+    static int simplify(double[] coordinates, int count, double tolerance) {
+        if(count <= 2) {
+            return count;
+        }
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+
+        int[] ranges = new int[64];
+        int rangeCount = 0;
+        ranges[rangeCount++] = 0;
+        ranges[rangeCount++] = count - 1;
+        while(rangeCount > 0) {
+            int last = ranges[--rangeCount];
+            int first = ranges[--rangeCount];
+
+            int farthest = -1;
+            double farthestDistance = tolerance;
+            for(int p = first + 1; p < last; p++) {
+                double distance = segmentDistance(coordinates, p, first, last);
+                if(distance > farthestDistance) {
+                    farthest = p;
+                    farthestDistance = distance;
+                }
+            }
+
+            if(farthest >= 0) {
+                keep[farthest] = true;
+                if(rangeCount + 4 > ranges.length) {
+                    ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+                }
+                ranges[rangeCount++] = first;
+                ranges[rangeCount++] = farthest;
+                ranges[rangeCount++] = farthest;
+                ranges[rangeCount++] = last;
+            }
+        }
+
+        int kept = 0;
+        for(int p = 0; p < count; p++) {
+            if(keep[p]) {
+                coordinates[2 * kept] = coordinates[2 * p];
+                coordinates[2 * kept + 1] = coordinates[2 * p + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /* Distance from point p to the segment between points a and b. */
+    private static double segmentDistance(double[] coordinates, int p, int a, int b) {
+        double px = coordinates[2 * p], py = coordinates[2 * p + 1];
+        double ax = coordinates[2 * a], ay = coordinates[2 * a + 1];
+        double bx = coordinates[2 * b], by = coordinates[2 * b + 1];
+
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        return Math.sqrt(distanceSq(px, py, ax + t * dx, ay + t * dy));
+    }
+}
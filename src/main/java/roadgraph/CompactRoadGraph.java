@@ -0,0 +1,417 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A RoadGraph that holds a network in a fraction of the memory of an ArrayRoadGraph, for networks too large to load
+ * otherwise.
+ *
+ * Coordinates, of nodes and of edge geometry, are quantized to whole decimeters of WebMercator which, moves them by
+ * at most 5 cm. Arc lengths are 16 bit fixed point decimeters and, the few arcs longer than 6.5 km keep a 32 bit length
+ * in a side table. The arcs of a node are a run of variable length integers: each arc stores the difference between
+ * its target and the previous target (the node itself for the first arc) and between its edge and the previous edge.
+ * Edge geometry stores each point as a difference from the one before, the first point from a node whose index is in
+ * the same proportion to the node count as the edge's to the edge count. On a graph numbered along a Hilbert curve (see
+ * ArrayRoadGraph.hilbertOrdered) that node is nearby and, nearly every difference fits in one to three bytes.
+ *
+ * Reading the i'th arc of a node decodes the arcs before it. Nodes of a road network have very few arcs so, this costs
+ * a handful of byte reads.
+ *
+ * Instances are immutable and therefore are thread safe. Use CompactRoadGraph.of to build one from any graph.
+ */
+public final class CompactRoadGraph implements RoadGraph {
+
+    /* Coordinates and lengths are stored in decimeters. */
+    private static final double SCALE = 10;
+
+    /* Arc length marking an arc whose length is in the side table. */
+    private static final int LONG_ARC = 0xFFFF;
+
+    private final int[] nodeIds;
+    private final int[] nodeCoordinates;
+
+    /* node indices sorted by ascending node id. Used for id lookups, which compare nodeIds[sortedNodeIndices[i]]
+     * instead of keeping a sorted copy of the ids. */
+    private final int[] sortedNodeIndices;
+
+    /* The arcs of node n are arcs [arcOffsets[n], arcOffsets[n+1]). Their targets and edges are encoded in arcData
+     * from byte arcDataOffsets[n] on. */
+    private final int[] arcOffsets;
+    private final int[] arcDataOffsets;
+    private final byte[] arcData;
+    private final char[] arcLengths;
+    private final int[] longArcs;
+    private final int[] longArcLengths;
+
+    /* The geometry of edge e is encoded in geometryData from byte geometryOffsets[e] on. */
+    private final int[] edgeIds;
+    private final int[] geometryOffsets;
+    private final byte[] geometryData;
+
+    private volatile NodeKdTree nodeTree;
+
+    /* computed on first use since, it requires a pass over the whole graph */
+    private volatile long fingerprint;
+    private volatile boolean hasFingerprint;
+
+    private CompactRoadGraph(int[] nodeIds, int[] nodeCoordinates, int[] arcOffsets, int[] arcDataOffsets,
+                             byte[] arcData, char[] arcLengths, int[] longArcs, int[] longArcLengths, int[] edgeIds,
+                             int[] geometryOffsets, byte[] geometryData) {
+        this.nodeIds = nodeIds;
+        this.nodeCoordinates = nodeCoordinates;
+        this.arcOffsets = arcOffsets;
+        this.arcDataOffsets = arcDataOffsets;
+        this.arcData = arcData;
+        this.arcLengths = arcLengths;
+        this.longArcs = longArcs;
+        this.longArcLengths = longArcLengths;
+        this.edgeIds = edgeIds;
+        this.geometryOffsets = geometryOffsets;
+        this.geometryData = geometryData;
+
+        this.sortedNodeIndices = new int[nodeIds.length];
+        ArrayRoadGraph.sortIdIndex(nodeIds, new int[nodeIds.length], sortedNodeIndices);
+    }
+
+    /**
+     * Encode a graph. Node and edge indices and ids are the same as in graph, only coordinates and lengths are rounded.
+     * Number the graph along a Hilbert curve first for the smallest encoding.
+     */
+    public static CompactRoadGraph of(RoadGraph graph) {
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+
+        int[] nodeIds = new int[nodeCount];
+        int[] nodeCoordinates = new int[2 * nodeCount];
+        int[] arcOffsets = new int[nodeCount + 1];
+        int[] arcDataOffsets = new int[nodeCount + 1];
+        for(int node = 0; node < nodeCount; node++) {
+            nodeIds[node] = graph.nodeId(node);
+            nodeCoordinates[2 * node] = quantize(graph.nodeX(node));
+            nodeCoordinates[2 * node + 1] = quantize(graph.nodeY(node));
+            arcOffsets[node + 1] = arcOffsets[node] + graph.degree(node);
+        }
+
+        char[] arcLengths = new char[arcOffsets[nodeCount]];
+        int longArcCount = 0;
+        int[] longArcs = new int[16];
+        int[] longArcLengths = new int[16];
+        ByteWriter arcData = new ByteWriter(2 * arcLengths.length);
+        for(int node = 0; node < nodeCount; node++) {
+            int previousTarget = node;
+            int previousEdge = firstEdgeBase(node, nodeCount, edgeCount);
+            for(int i = 0; i < graph.degree(node); i++) {
+                int target = graph.neighbor(node, i);
+                int edge = graph.arcEdge(node, i);
+                arcData.writeSigned(target - previousTarget);
+                arcData.writeSigned(edge - previousEdge);
+                previousTarget = target;
+                previousEdge = edge;
+
+                int arc = arcOffsets[node] + i;
+                long length = Math.round(graph.arcLength(node, i) * SCALE);
+                if(length < LONG_ARC) {
+                    arcLengths[arc] = (char) length;
+                } else {
+                    arcLengths[arc] = (char) LONG_ARC;
+                    if(longArcCount == longArcs.length) {
+                        longArcs = Arrays.copyOf(longArcs, 2 * longArcCount);
+                        longArcLengths = Arrays.copyOf(longArcLengths, 2 * longArcCount);
+                    }
+                    /* arcs are visited in order so, the side table is sorted by arc */
+                    longArcs[longArcCount] = arc;
+                    longArcLengths[longArcCount] = (int) Math.min(Integer.MAX_VALUE, length);
+                    longArcCount++;
+                }
+            }
+            arcDataOffsets[node + 1] = arcData.size();
+        }
+
+        int[] edgeIds = new int[edgeCount];
+        int[] geometryOffsets = new int[edgeCount + 1];
+        ByteWriter geometryData = new ByteWriter(8 * edgeCount);
+        GeometryFactory factory = new GeometryFactory();
+        for(int edge = 0; edge < edgeCount; edge++) {
+            edgeIds[edge] = graph.edgeId(edge);
+
+            CoordinateSequence geometry = graph.edgeGeometry(edge, factory).getCoordinateSequence();
+            int points = geometry.size();
+            geometryData.writeUnsigned(points);
+            int base = geometryBase(edge, nodeCount, edgeCount);
+            int previousX = nodeCoordinates[2 * base];
+            int previousY = nodeCoordinates[2 * base + 1];
+            for(int p = 0; p < points; p++) {
+                int x = quantize(geometry.getX(p));
+                int y = quantize(geometry.getY(p));
+                geometryData.writeSigned(x - previousX);
+                geometryData.writeSigned(y - previousY);
+                previousX = x;
+                previousY = y;
+            }
+            geometryOffsets[edge + 1] = geometryData.size();
+        }
+
+        return new CompactRoadGraph(nodeIds, nodeCoordinates, arcOffsets, arcDataOffsets, arcData.toArray(),
+                                    arcLengths, Arrays.copyOf(longArcs, longArcCount),
+                                    Arrays.copyOf(longArcLengths, longArcCount), edgeIds, geometryOffsets,
+                                    geometryData.toArray());
+    }
+
+    private static int quantize(double coordinate) {
+        return (int) Math.round(coordinate * SCALE);
+    }
+
+    /* The edge that the first arc of a node is encoded against. Edges of a graph numbered along a Hilbert curve are
+     * numbered in the order of their first end point so, this lands close to the edges of the node. */
+    private static int firstEdgeBase(int node, int nodeCount, int edgeCount) {
+        return (int) ((long) node * edgeCount / nodeCount);
+    }
+
+    /* The node that the first point of an edge is encoded against, the inverse of firstEdgeBase. */
+    private static int geometryBase(int edge, int nodeCount, int edgeCount) {
+        return (int) ((long) edge * nodeCount / edgeCount);
+    }
+
+    /**
+     * @return Number of bytes held by the arrays of this graph, not counting the nearest node index.
+     */
+    long sizeInBytes() {
+        return 4L * (nodeIds.length + nodeCoordinates.length + sortedNodeIndices.length
+                     + arcOffsets.length + arcDataOffsets.length + longArcs.length + longArcLengths.length
+                     + edgeIds.length + geometryOffsets.length)
+                + 2L * arcLengths.length + arcData.length + geometryData.length;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    @Override
+    public int nodeId(int node) {
+        return nodeIds[node];
+    }
+
+    @Override
+    public int nodeIndex(int nodeId) {
+        int low = 0;
+        int high = sortedNodeIndices.length - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int node = sortedNodeIndices[middle];
+            if(nodeIds[node] < nodeId) {
+                low = middle + 1;
+            } else if(nodeIds[node] > nodeId) {
+                high = middle - 1;
+            } else {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public double nodeX(int node) {
+        return nodeCoordinates[2 * node] / SCALE;
+    }
+
+    @Override
+    public double nodeY(int node) {
+        return nodeCoordinates[2 * node + 1] / SCALE;
+    }
+
+    @Override
+    public int degree(int node) {
+        return arcOffsets[node + 1] - arcOffsets[node];
+    }
+
+    @Override
+    public int neighbor(int node, int i) {
+        int position = arcDataOffsets[node];
+        int target = node;
+        for(int a = 0; ; a++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = arcData[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            target += (value >>> 1) ^ -(value & 1);
+            if(a == i) {
+                return target;
+            }
+            /* skip the edge of the arc */
+            while(arcData[position++] < 0) {
+            }
+        }
+    }
+
+    @Override
+    public double arcLength(int node, int i) {
+        int arc = arcOffsets[node] + i;
+        int length = arcLengths[arc];
+        if(length == LONG_ARC) {
+            length = longArcLengths[Arrays.binarySearch(longArcs, arc)];
+        }
+        return length / SCALE;
+    }
+
+    @Override
+    public int arcEdge(int node, int i) {
+        int position = arcDataOffsets[node];
+        int edge = firstEdgeBase(node, nodeIds.length, edgeIds.length);
+        for(int a = 0; ; a++) {
+            /* skip the target of the arc */
+            while(arcData[position++] < 0) {
+            }
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = arcData[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            edge += (value >>> 1) ^ -(value & 1);
+            if(a == i) {
+                return edge;
+            }
+        }
+    }
+
+    @Override
+    public int edgeId(int edge) {
+        return edgeIds[edge];
+    }
+
+    @Override
+    public LineString edgeGeometry(int edge, GeometryFactory factory) {
+        ByteReader reader = new ByteReader(geometryData, geometryOffsets[edge]);
+        int points = reader.readUnsigned();
+        double[] coordinates = new double[2 * points];
+        int base = geometryBase(edge, nodeIds.length, edgeIds.length);
+        int x = nodeCoordinates[2 * base];
+        int y = nodeCoordinates[2 * base + 1];
+        for(int p = 0; p < points; p++) {
+            x += reader.readSigned();
+            y += reader.readSigned();
+            coordinates[2 * p] = x / SCALE;
+            coordinates[2 * p + 1] = y / SCALE;
+        }
+        return factory.createLineString(new PackedCoordinateSequence.Double(coordinates, 2));
+    }
+
+    @Override
+    public int nearestNode(double x, double y, double maxDistance) {
+        return nodeTree().nearest(x, y, maxDistance);
+    }
+
+    @Override
+    public int kNearestNodes(double x, double y, int k, double maxDistance, int[] result) {
+        return nodeTree().kNearest(x, y, k, maxDistance, result);
+    }
+
+    @Override
+    public void nearestNodes(double[] xs, double[] ys, int count, double maxDistance, int[] result) {
+        nodeTree().nearest(xs, ys, count, maxDistance, result);
+    }
+
+    @Override
+    public void nodesInside(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        nodeTree().inside(minX, minY, maxX, maxY, action);
+    }
+
+    /* Racing threads may each build a tree but, they are identical. */
+    private NodeKdTree nodeTree() {
+        NodeKdTree tree = nodeTree;
+        if(tree == null) {
+            tree = new NodeKdTree(this);
+            nodeTree = tree;
+        }
+        return tree;
+    }
+
+    @Override
+    public long fingerprint() {
+        /* racing threads compute the same value so, no locking is needed */
+        if(!hasFingerprint) {
+            fingerprint = GraphFingerprint.of(this);
+            hasFingerprint = true;
+        }
+        return fingerprint;
+    }
+
+    /* Appends zigzag encoded LEB128 integers to a growing array. */
+    private static final class ByteWriter {
+        private byte[] bytes;
+        private int size;
+
+        ByteWriter(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeSigned(int value) {
+            writeUnsigned((value << 1) ^ (value >> 31));
+        }
+
+        void writeUnsigned(int value) {
+            if(size + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+            while((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /* Reads the integers written by a ByteWriter. */
+    private static final class ByteReader {
+        private final byte[] bytes;
+        private int position;
+
+        ByteReader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int readSigned() {
+            int value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readUnsigned() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            return value;
+        }
+    }
+}
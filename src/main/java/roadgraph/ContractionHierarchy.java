@@ -0,0 +1,171 @@
+package roadgraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A contraction hierarchy over a RoadGraph. Every node has a rank and, every node has upward arcs to the neighbors of
+ * higher rank that it had when it was contracted. Some of these arcs are shortcuts that stand for a path through lower
+ * ranked nodes. Any shortest path in the road graph has a matching path in the hierarchy that first only goes up in
+ * rank and then only goes down. Since the network is undirected, the same upward arcs, followed backwards, are the
+ * downward arcs. See PhastSearch for the query.
+ *
+ * Nodes keep the indices of the RoadGraph the hierarchy was built from. A hierarchy is tied to that graph by its
+ * fingerprint and must be rebuilt whenever the graph changes.
+ *
+ * Building a hierarchy is expensive so, it is done offline (see ContractionHierarchyCompiler and the mkch script) and
+ * stored in a file. Instances are immutable and therefore are thread safe.
+ */
+public class ContractionHierarchy {
+
+    /* "FDCH" */
+    private static final int MAGIC = 0x46444348;
+    private static final int FORMAT_VERSION = 1;
+
+    private final long graphFingerprint;
+    private final int[] ranks;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upLengths;
+    private final int shortcutCount;
+
+    ContractionHierarchy(long graphFingerprint, int[] ranks, int[] upOffsets, int[] upTargets, double[] upLengths,
+                         int shortcutCount) {
+        this.graphFingerprint = graphFingerprint;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upLengths = upLengths;
+        this.shortcutCount = shortcutCount;
+    }
+
+    /**
+     * Contract every node of a graph. This takes time roughly linear in the size of the graph but with a large
+     * constant, expect minutes for county sized networks.
+     */
+    public static ContractionHierarchy build(RoadGraph graph) {
+        return new ContractionHierarchyBuilder(graph).build();
+    }
+
+    /**
+     * @return True if this hierarchy was built from graph.
+     */
+    public boolean isFor(RoadGraph graph) {
+        return graph.nodeCount() == ranks.length && graph.fingerprint() == graphFingerprint;
+    }
+
+    public int nodeCount() {
+        return ranks.length;
+    }
+
+    /**
+     * @return Position of node in the contraction order. Nodes contracted later have higher ranks.
+     */
+    public int rank(int node) {
+        return ranks[node];
+    }
+
+    public int upDegree(int node) {
+        return upOffsets[node + 1] - upOffsets[node];
+    }
+
+    /**
+     * @return The higher ranked node at the other end of the i'th upward arc of node.
+     */
+    public int upNeighbor(int node, int i) {
+        return upTargets[upOffsets[node] + i];
+    }
+
+    public double upLength(int node, int i) {
+        return upLengths[upOffsets[node] + i];
+    }
+
+    public int arcCount() {
+        return upTargets.length;
+    }
+
+    /**
+     * @return Number of arcs that were added as shortcuts rather than taken from the road graph.
+     */
+    public int shortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * Write this hierarchy to a file that can be read back with read.
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(graphFingerprint);
+            out.writeInt(ranks.length);
+            out.writeInt(upTargets.length);
+            out.writeInt(shortcutCount);
+
+            for(int rank : ranks) {
+                out.writeInt(rank);
+            }
+            for(int offset : upOffsets) {
+                out.writeInt(offset);
+            }
+            for(int target : upTargets) {
+                out.writeInt(target);
+            }
+            for(double length : upLengths) {
+                out.writeDouble(length);
+            }
+        }
+    }
+
+    /**
+     * Read a hierarchy written by write.
+     *
+     * @param graph The graph the hierarchy is going to be used with.
+     * @throws IOException If the file is not a hierarchy or, it was built from a different graph.
+     */
+    public static ContractionHierarchy read(Path path, RoadGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if(in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a contraction hierarchy file.");
+            }
+            int version = in.readInt();
+            if(version != FORMAT_VERSION) {
+                throw new IOException(path + " has contraction hierarchy format version " + version + " but, version "
+                        + FORMAT_VERSION + " is required. Rebuild it with mkch.");
+            }
+            long graphFingerprint = in.readLong();
+            int nodeCount = in.readInt();
+            int arcCount = in.readInt();
+            int shortcutCount = in.readInt();
+
+            if(nodeCount != graph.nodeCount() || graphFingerprint != graph.fingerprint()) {
+                throw new IOException(path + " was built from a different road network. Rebuild it with mkch.");
+            }
+
+            int[] ranks = new int[nodeCount];
+            for(int i = 0; i < nodeCount; i++) {
+                ranks[i] = in.readInt();
+            }
+            int[] upOffsets = new int[nodeCount + 1];
+            for(int i = 0; i <= nodeCount; i++) {
+                upOffsets[i] = in.readInt();
+            }
+            int[] upTargets = new int[arcCount];
+            for(int i = 0; i < arcCount; i++) {
+                upTargets[i] = in.readInt();
+            }
+            double[] upLengths = new double[arcCount];
+            for(int i = 0; i < arcCount; i++) {
+                upLengths[i] = in.readDouble();
+            }
+
+            return new ContractionHierarchy(graphFingerprint, ranks, upOffsets, upTargets, upLengths, shortcutCount);
+        }
+    }
+}
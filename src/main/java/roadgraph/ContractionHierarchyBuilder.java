@@ -0,0 +1,273 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * Builds a ContractionHierarchy by contracting the nodes of a RoadGraph one at a time, cheapest first.
+ *
+ * Contracting a node removes it from the remaining graph and, for every pair of its neighbors whose shortest path runs
+ * through it, adds a shortcut edge between them. A bounded witness search decides if a shortcut is needed; when the
+ * bound is hit a shortcut is added even if it is not strictly needed, which costs space but never correctness.
+ *
+ * Nodes are ordered by priority: the edge difference (shortcuts added minus edges removed), plus the number of
+ * already contracted neighbors and the node's level in the hierarchy, which spread contraction evenly over the graph.
+ * The neighbors of a contracted node have their priority refreshed immediately, every other node is re-checked
+ * lazily when it reaches the top of the queue.
+ *
+ * This class is not thread safe. A builder can only be used once.
+ */
+final class ContractionHierarchyBuilder {
+
+    /* Witness searches give up after settling this many nodes. Priorities only need an estimate of the shortcut count
+     * so, their searches give up sooner than the ones that decide which shortcuts are added. */
+    private static final int CONTRACT_SETTLE_LIMIT = 100;
+    private static final int PRIORITY_SETTLE_LIMIT = 30;
+
+    private final int nodeCount;
+    private final long graphFingerprint;
+
+    /* Adjacency of the remaining graph. Contracted nodes are removed from the lists of their neighbors. */
+    private final int[][] adjacentNodes;
+    private final double[][] adjacentWeights;
+    private final int[] adjacentCounts;
+
+    private final int[] contractedNeighbors;
+    private final int[] levels;
+
+    /* Witness search state. Stamps avoid clearing the distances between searches. */
+    private final IndexedMinHeap witnessHeap;
+    private final double[] witnessDistances;
+    private final int[] witnessStamps;
+    private int witnessStamp;
+
+    /* Neighbors of the node being contracted that a witness search still has to settle. */
+    private final int[] targetStamps;
+    private int targetStamp;
+
+    /* Arcs from each contracted node to its neighbors that were still in the graph when it was contracted. */
+    private final int[] ranks;
+    private final int[][] upNodes;
+    private final double[][] upWeights;
+
+    private int shortcutCount;
+
+    ContractionHierarchyBuilder(RoadGraph graph) {
+        nodeCount = graph.nodeCount();
+        graphFingerprint = graph.fingerprint();
+
+        adjacentNodes = new int[nodeCount][];
+        adjacentWeights = new double[nodeCount][];
+        adjacentCounts = new int[nodeCount];
+        for(int node = 0; node < nodeCount; node++) {
+            adjacentNodes[node] = new int[Math.max(graph.degree(node), 2)];
+            adjacentWeights[node] = new double[Math.max(graph.degree(node), 2)];
+        }
+        for(int node = 0; node < nodeCount; node++) {
+            for(int i = 0; i < graph.degree(node); i++) {
+                int neighbor = graph.neighbor(node, i);
+                if(neighbor != node) {
+                    addOrLower(node, neighbor, graph.arcLength(node, i));
+                }
+            }
+        }
+
+        contractedNeighbors = new int[nodeCount];
+        levels = new int[nodeCount];
+
+        witnessHeap = new IndexedMinHeap(nodeCount);
+        witnessDistances = new double[nodeCount];
+        witnessStamps = new int[nodeCount];
+        targetStamps = new int[nodeCount];
+
+        ranks = new int[nodeCount];
+        upNodes = new int[nodeCount][];
+        upWeights = new double[nodeCount][];
+    }
+
+    ContractionHierarchy build() {
+        IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+        for(int node = 0; node < nodeCount; node++) {
+            queue.insert(node, priority(node));
+        }
+
+        int rank = 0;
+        while(!queue.isEmpty()) {
+            int node = queue.poll();
+
+            /* priorities only go stale by rising so, re-check before contracting */
+            double priority = priority(node);
+            if(!queue.isEmpty() && priority > queue.peekKey()) {
+                queue.insert(node, priority);
+                continue;
+            }
+
+            int[] neighbors = Arrays.copyOf(adjacentNodes[node], adjacentCounts[node]);
+            contract(node);
+            ranks[node] = rank++;
+
+            /* contracting a node changes the remaining graph around it the most so, refresh its neighbors now rather
+             * than waiting for the lazy check */
+            for(int neighbor : neighbors) {
+                queue.changeKey(neighbor, priority(neighbor));
+            }
+        }
+
+        int[] upOffsets = new int[nodeCount + 1];
+        for(int node = 0; node < nodeCount; node++) {
+            upOffsets[node + 1] = upOffsets[node] + upNodes[node].length;
+        }
+        int[] upTargets = new int[upOffsets[nodeCount]];
+        double[] upLengths = new double[upOffsets[nodeCount]];
+        for(int node = 0; node < nodeCount; node++) {
+            System.arraycopy(upNodes[node], 0, upTargets, upOffsets[node], upNodes[node].length);
+            System.arraycopy(upWeights[node], 0, upLengths, upOffsets[node], upWeights[node].length);
+        }
+
+        return new ContractionHierarchy(graphFingerprint, ranks, upOffsets, upTargets, upLengths, shortcutCount);
+    }
+
+    private double priority(int node) {
+        int shortcuts = processShortcuts(node, false);
+        return shortcuts - adjacentCounts[node] + contractedNeighbors[node] + levels[node];
+    }
+
+    private void contract(int node) {
+        shortcutCount += processShortcuts(node, true);
+
+        int count = adjacentCounts[node];
+        upNodes[node] = Arrays.copyOf(adjacentNodes[node], count);
+        upWeights[node] = Arrays.copyOf(adjacentWeights[node], count);
+
+        for(int i = 0; i < count; i++) {
+            int neighbor = adjacentNodes[node][i];
+            remove(neighbor, node);
+            contractedNeighbors[neighbor]++;
+            levels[neighbor] = Math.max(levels[neighbor], levels[node] + 1);
+        }
+        adjacentCounts[node] = 0;
+    }
+
+    /**
+     * Find the shortcuts needed to contract node.
+     *
+     * @param add If true the shortcuts are added to the graph, otherwise they are only counted.
+     * @return Number of shortcuts needed.
+     */
+    private int processShortcuts(int node, boolean add) {
+        int count = adjacentCounts[node];
+        int[] neighbors = Arrays.copyOf(adjacentNodes[node], count);
+        double[] weights = Arrays.copyOf(adjacentWeights[node], count);
+
+        int shortcuts = 0;
+        for(int i = 0; i < count - 1; i++) {
+            double maxVia = 0;
+            for(int j = i + 1; j < count; j++) {
+                maxVia = Math.max(maxVia, weights[i] + weights[j]);
+            }
+
+            if(++targetStamp == Integer.MAX_VALUE) {
+                Arrays.fill(targetStamps, 0);
+                targetStamp = 1;
+            }
+            for(int j = i + 1; j < count; j++) {
+                targetStamps[neighbors[j]] = targetStamp;
+            }
+            witnessSearch(neighbors[i], node, maxVia, count - 1 - i,
+                    add ? CONTRACT_SETTLE_LIMIT : PRIORITY_SETTLE_LIMIT);
+
+            for(int j = i + 1; j < count; j++) {
+                double via = weights[i] + weights[j];
+                if(witnessDistance(neighbors[j]) > via) {
+                    shortcuts++;
+                    if(add) {
+                        addOrLower(neighbors[i], neighbors[j], via);
+                        addOrLower(neighbors[j], neighbors[i], via);
+                    }
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    /* Dijkstra from source in the remaining graph without passing through excluded. Stops early once the targets, the
+     * nodes stamped in targetStamps, are all settled. */
+    private void witnessSearch(int source, int excluded, double maxDistance, int targetCount, int settleLimit) {
+        witnessHeap.clear();
+        witnessStamp++;
+        if(witnessStamp == Integer.MAX_VALUE) {
+            Arrays.fill(witnessStamps, 0);
+            witnessStamp = 1;
+        }
+
+        witnessStamps[source] = witnessStamp;
+        witnessDistances[source] = 0;
+        witnessHeap.insert(source, 0);
+
+        int settled = 0;
+        while(!witnessHeap.isEmpty() && settled < settleLimit && targetCount > 0) {
+            double distance = witnessHeap.peekKey();
+            if(distance > maxDistance) {
+                break;
+            }
+            int current = witnessHeap.poll();
+            settled++;
+            if(targetStamps[current] == targetStamp) {
+                targetCount--;
+            }
+
+            for(int i = 0; i < adjacentCounts[current]; i++) {
+                int next = adjacentNodes[current][i];
+                if(next == excluded) {
+                    continue;
+                }
+                double newDistance = distance + adjacentWeights[current][i];
+                if(witnessStamps[next] != witnessStamp) {
+                    witnessStamps[next] = witnessStamp;
+                    witnessDistances[next] = newDistance;
+                    witnessHeap.insert(next, newDistance);
+                } else if(newDistance < witnessDistances[next]) {
+                    witnessDistances[next] = newDistance;
+                    witnessHeap.insertOrDecrease(next, newDistance);
+                }
+            }
+        }
+    }
+
+    private double witnessDistance(int node) {
+        return witnessStamps[node] == witnessStamp ? witnessDistances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /* Add an arc from node to neighbor or lower the weight of the existing one. */
+    private void addOrLower(int node, int neighbor, double weight) {
+        int count = adjacentCounts[node];
+        int[] nodes = adjacentNodes[node];
+        for(int i = 0; i < count; i++) {
+            if(nodes[i] == neighbor) {
+                if(weight < adjacentWeights[node][i]) {
+                    adjacentWeights[node][i] = weight;
+                }
+                return;
+            }
+        }
+        if(count == nodes.length) {
+            adjacentNodes[node] = Arrays.copyOf(nodes, 2 * count);
+            adjacentWeights[node] = Arrays.copyOf(adjacentWeights[node], 2 * count);
+        }
+        adjacentNodes[node][count] = neighbor;
+        adjacentWeights[node][count] = weight;
+        adjacentCounts[node] = count + 1;
+    }
+
+    private void remove(int node, int neighbor) {
+        int last = adjacentCounts[node] - 1;
+        int[] nodes = adjacentNodes[node];
+        for(int i = 0; i <= last; i++) {
+            if(nodes[i] == neighbor) {
+                nodes[i] = nodes[last];
+                adjacentWeights[node][i] = adjacentWeights[node][last];
+                adjacentCounts[node] = last;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package roadgraph;
+
+import database.network.NetworkDatabase;
+import org.locationtech.jts.io.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * Command line tool that builds a contraction hierarchy for a road network and writes it to a file that the server
+ * reads at startup with the --ch option. This is normally run through the mkch script.
+ */
+public class ContractionHierarchyCompiler {
+
+    private static void printUsage() {
+        System.out.println("Usage: mkch network_file ch_file");
+        System.out.println("\tnetwork_file: SqLite database file created by mknetwork or a graph file compiled from one by");
+        System.out.println("\t\tmkgraph. The server must be started with the same network.");
+        System.out.println("\tch_file: Contraction hierarchy file to create. An existing file is overwritten.");
+    }
+
+    public static void main(String[] args) throws IOException, SQLException, ParseException {
+        if(args.length < 2) {
+            printUsage();
+            return;
+        }
+
+        Path networkPath = Paths.get(args[0]);
+        Path chPath = Paths.get(args[1]);
+
+        if(!Files.exists(networkPath, LinkOption.NOFOLLOW_LINKS)) {
+            System.out.println("Network file " + networkPath + " does not exist.");
+            return;
+        }
+
+        RoadGraph graph;
+        if(RoadGraphFile.isGraphFile(networkPath)) {
+            graph = RoadGraphFile.map(networkPath);
+        } else {
+            try (NetworkDatabase networkDatabase = new NetworkDatabase(networkPath.toString())) {
+                graph = networkDatabase.loadRoadGraph();
+            }
+        }
+
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        long seconds = (System.nanoTime() - start) / 1000000000;
+
+        hierarchy.write(chPath);
+        System.out.println("Contracted " + graph.nodeCount() + " nodes in " + seconds + " s, added "
+                + hierarchy.shortcutCount() + " shortcuts. Wrote " + hierarchy.arcCount() + " arcs to " + chPath);
+    }
+}
@@ -0,0 +1,225 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Label setting shortest path search over a RoadGraph. Every node is settled at most once, in order of increasing
+ * walking distance, and the search stops expanding at a radius.
+ *
+ * Besides distances, the search records the reached edges: an edge is reached when one of its end points is settled
+ * at a distance d such that d plus the length of the edge is less than the radius and, the other end point passes the
+ * node filter. These are the edges used to build a walking distance buffer.
+ *
+ * A search may start from several sources at once. In that case the distance of a node is the distance to its
+ * nearest source and, each settled node and reached edge is labelled with the source it was reached from.
+ *
+ * A DijkstraSearch holds per node state sized to its graph. Reuse one instance for many searches rather than creating
+ * one per search; starting a new search only costs time proportional to the previous search, not to the graph.
+ *
+ * This class is not thread safe. Use one instance per thread.
+ */
+public class DijkstraSearch implements NetworkSearch {
+
+    private final RoadGraph graph;
+    private final IndexedMinHeap heap;
+
+    /* A node or edge belongs to the current search iff its stamp equals currentStamp. This avoids clearing the arrays
+     * between searches. */
+    private int currentStamp;
+    private final int[] nodeStamps;
+    private final int[] edgeStamps;
+
+    /* Distance of each node in the current search. Nodes rejected by the node filter have an infinite distance. */
+    private final double[] distances;
+
+    /* Position in the source array of the source that each node was reached from. */
+    private final int[] origins;
+
+    private int[] settledNodes = new int[64];
+    private int settledCount;
+
+    private int[] reachedEdges = new int[64];
+    private int[] reachedEdgeOrigins = new int[64];
+    private int reachedEdgeCount;
+
+    private final int[] singleSource = new int[1];
+
+    public DijkstraSearch(RoadGraph graph) {
+        this.graph = graph;
+        this.heap = new IndexedMinHeap(graph.nodeCount());
+        this.nodeStamps = new int[graph.nodeCount()];
+        this.edgeStamps = new int[graph.edgeCount()];
+        this.distances = new double[graph.nodeCount()];
+        this.origins = new int[graph.nodeCount()];
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Run a search from a single node.
+     *
+     * @param source Node the search starts from. The source is not tested against the filter.
+     * @param radius Nodes at this distance or further from the source are not reached.
+     * @param nodeFilter Nodes failing this test are never entered. Use node -> true to search everywhere.
+     */
+    @Override
+    public void search(int source, double radius, IntPredicate nodeFilter) {
+        singleSource[0] = source;
+        search(singleSource, 1, radius, nodeFilter);
+    }
+
+    /**
+     * Run one search from many nodes at once. This computes, for every node, the distance to the nearest source in
+     * a single pass so, the cost does not grow with the number of sources.
+     *
+     * @param sources Nodes the search starts from. Sources are not tested against the filter. A node may appear more
+     *                than once, only its first appearance is used as a label.
+     * @param sourceCount Number of leading entries of sources to use.
+     * @param radius Nodes at this distance or further from every source are not reached.
+     * @param nodeFilter Nodes failing this test are never entered.
+     */
+    @Override
+    public void search(int[] sources, int sourceCount, double radius, IntPredicate nodeFilter) {
+        startSearch();
+
+        for(int s = 0; s < sourceCount; s++) {
+            int source = sources[s];
+            if(nodeStamps[source] != currentStamp) {
+                nodeStamps[source] = currentStamp;
+                distances[source] = 0;
+                origins[source] = s;
+                heap.insert(source, 0);
+            }
+        }
+
+        while(!heap.isEmpty()) {
+            double distance = heap.peekKey();
+            int current = heap.poll();
+            int origin = origins[current];
+            addSettled(current);
+
+            for(int i = 0; i < graph.degree(current); i++) {
+                double newDistance = distance + graph.arcLength(current, i);
+                if(newDistance >= radius) {
+                    continue;
+                }
+
+                int next = graph.neighbor(current, i);
+                if(nodeStamps[next] != currentStamp) {
+                    nodeStamps[next] = currentStamp;
+                    if(!nodeFilter.test(next)) {
+                        distances[next] = Double.POSITIVE_INFINITY;
+                        continue;
+                    }
+                    distances[next] = newDistance;
+                    origins[next] = origin;
+                    heap.insert(next, newDistance);
+                } else if(distances[next] == Double.POSITIVE_INFINITY) {
+                    continue;
+                } else if(newDistance < distances[next]) {
+                    distances[next] = newDistance;
+                    origins[next] = origin;
+                    heap.decreaseKey(next, newDistance);
+                }
+
+                addReachedEdge(graph.arcEdge(current, i), origin);
+            }
+        }
+    }
+
+    private void startSearch() {
+        heap.clear();
+        settledCount = 0;
+        reachedEdgeCount = 0;
+
+        currentStamp++;
+        if(currentStamp == Integer.MAX_VALUE) {
+            /* stamps wrapped around, old stamps could collide with new ones */
+            Arrays.fill(nodeStamps, 0);
+            Arrays.fill(edgeStamps, 0);
+            currentStamp = 1;
+        }
+    }
+
+    private void addSettled(int node) {
+        if(settledCount == settledNodes.length) {
+            settledNodes = Arrays.copyOf(settledNodes, 2 * settledCount);
+        }
+        settledNodes[settledCount++] = node;
+    }
+
+    private void addReachedEdge(int edge, int origin) {
+        if(edgeStamps[edge] != currentStamp) {
+            edgeStamps[edge] = currentStamp;
+            if(reachedEdgeCount == reachedEdges.length) {
+                reachedEdges = Arrays.copyOf(reachedEdges, 2 * reachedEdgeCount);
+                reachedEdgeOrigins = Arrays.copyOf(reachedEdgeOrigins, 2 * reachedEdgeCount);
+            }
+            reachedEdges[reachedEdgeCount] = edge;
+            reachedEdgeOrigins[reachedEdgeCount] = origin;
+            reachedEdgeCount++;
+        }
+    }
+
+    /**
+     * @return True if node was settled by the last search.
+     */
+    @Override
+    public boolean isReached(int node) {
+        return nodeStamps[node] == currentStamp && distances[node] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return Walking distance from the source to node or positive infinity if node was not reached by the last search.
+     */
+    @Override
+    public double distance(int node) {
+        return isReached(node) ? distances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return Position in the source array of the source nearest to a node reached by the last search.
+     */
+    @Override
+    public int origin(int node) {
+        return origins[node];
+    }
+
+    /**
+     * @return Number of nodes settled by the last search. Since each node is settled once, this is also the number of
+     *         node expansions.
+     */
+    public int settledCount() {
+        return settledCount;
+    }
+
+    /**
+     * @return The i'th node settled by the last search. Nodes are in order of increasing distance.
+     */
+    public int settledNode(int i) {
+        return settledNodes[i];
+    }
+
+    @Override
+    public int reachedEdgeCount() {
+        return reachedEdgeCount;
+    }
+
+    @Override
+    public int reachedEdge(int i) {
+        return reachedEdges[i];
+    }
+
+    /**
+     * @return Position in the source array of the source that the i'th reached edge was reached from. An edge is
+     *         labelled by the first end point to reach it which, is the end point closer to a source.
+     */
+    @Override
+    public int reachedEdgeOrigin(int i) {
+        return reachedEdgeOrigins[i];
+    }
+}
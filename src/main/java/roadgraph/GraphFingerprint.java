@@ -0,0 +1,64 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+
+/**
+ * Computes RoadGraph.fingerprint. The hash covers everything that affects a walking distance buffer: node ids and
+ * coordinates, adjacency, arc lengths, edge ids and edge geometry. It does not depend on how the graph is stored so,
+ * an ArrayRoadGraph and the graph file written from it have the same fingerprint.
+ */
+final class GraphFingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    private GraphFingerprint() {
+    }
+
+    static long of(RoadGraph graph) {
+        GraphFingerprint fingerprint = new GraphFingerprint();
+        fingerprint.add(graph.nodeCount());
+        fingerprint.add(graph.edgeCount());
+
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            fingerprint.add(graph.nodeId(node));
+            fingerprint.add(Double.doubleToLongBits(graph.nodeX(node)));
+            fingerprint.add(Double.doubleToLongBits(graph.nodeY(node)));
+            fingerprint.add(graph.degree(node));
+            for(int i = 0; i < graph.degree(node); i++) {
+                fingerprint.add(graph.neighbor(node, i));
+                fingerprint.add(Float.floatToIntBits((float) graph.arcLength(node, i)));
+                fingerprint.add(graph.arcEdge(node, i));
+            }
+        }
+
+        GeometryFactory factory = new GeometryFactory();
+        for(int edge = 0; edge < graph.edgeCount(); edge++) {
+            fingerprint.add(graph.edgeId(edge));
+            CoordinateSequence geometry = graph.edgeGeometry(edge, factory).getCoordinateSequence();
+            fingerprint.add(geometry.size());
+            for(int i = 0; i < geometry.size(); i++) {
+                fingerprint.add(Double.doubleToLongBits(geometry.getX(i)));
+                fingerprint.add(Double.doubleToLongBits(geometry.getY(i)));
+            }
+        }
+
+        return fingerprint.finish();
+    }
+
+    /* FNV-1a applied to whole longs instead of bytes */
+    private void add(long value) {
+        hash = (hash ^ value) * PRIME;
+    }
+
+    /* FNV mixes the high bits poorly when fed longs, finish with the SplitMix64 finalizer */
+    private long finish() {
+        long z = hash;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,128 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+
+import java.util.Arrays;
+
+/**
+ * The part of a road network that lies in one square cell of a TiledGraphSource. A tile owns the nodes inside its cell
+ * and every edge that starts at one of those nodes, including edges that end in a neighboring cell. Since every edge
+ * belongs to exactly one tile, the tiles around a search can be merged into one graph without duplicates and, edges
+ * crossing cell borders are kept as long as the tiles of both end points are merged.
+ *
+ * Instances are immutable once built and therefore are thread safe. Use GraphTile.Builder to construct one.
+ */
+public final class GraphTile {
+
+    private final int[] nodeIds;
+    private final double[] nodeCoordinates;
+
+    private final int[] edgeIds;
+    private final int[] edgeFromIds;
+    private final int[] edgeToIds;
+    private final double[] edgeLengths;
+    private final int[] geometryOffsets;
+    private final double[] geometryCoordinates;
+
+    private GraphTile(int[] nodeIds, double[] nodeCoordinates, int[] edgeIds, int[] edgeFromIds, int[] edgeToIds,
+                      double[] edgeLengths, int[] geometryOffsets, double[] geometryCoordinates) {
+        this.nodeIds = nodeIds;
+        this.nodeCoordinates = nodeCoordinates;
+        this.edgeIds = edgeIds;
+        this.edgeFromIds = edgeFromIds;
+        this.edgeToIds = edgeToIds;
+        this.edgeLengths = edgeLengths;
+        this.geometryOffsets = geometryOffsets;
+        this.geometryCoordinates = geometryCoordinates;
+    }
+
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    /**
+     * Add every node and edge of this tile to a graph under construction.
+     */
+    void addTo(ArrayRoadGraph.Builder builder) {
+        for(int n = 0; n < nodeIds.length; n++) {
+            builder.addNode(nodeIds[n], nodeCoordinates[2 * n], nodeCoordinates[2 * n + 1]);
+        }
+        for(int e = 0; e < edgeIds.length; e++) {
+            builder.addEdge(edgeIds[e], edgeFromIds[e], edgeToIds[e], edgeLengths[e], geometryCoordinates,
+                            geometryOffsets[e], geometryOffsets[e + 1] - geometryOffsets[e]);
+        }
+    }
+
+    /**
+     * Collects the nodes and edges of a tile. Whoever loads the tile decides which nodes and edges it owns.
+     *
+     * This class is not thread safe.
+     */
+    public static class Builder {
+        private int nodeCount;
+        private int[] nodeIds = new int[16];
+        private double[] nodeCoordinates = new double[32];
+
+        private int edgeCount;
+        private int[] edgeIds = new int[16];
+        private int[] edgeFromIds = new int[16];
+        private int[] edgeToIds = new int[16];
+        private double[] edgeLengths = new double[16];
+
+        private int[] geometryOffsets = new int[17];
+        private int geometryCount;
+        private double[] geometryCoordinates = new double[64];
+
+        public Builder addNode(int nodeId, double x, double y) {
+            if(nodeCount == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * nodeCount);
+                nodeCoordinates = Arrays.copyOf(nodeCoordinates, 4 * nodeCount);
+            }
+            nodeIds[nodeCount] = nodeId;
+            nodeCoordinates[2 * nodeCount] = x;
+            nodeCoordinates[2 * nodeCount + 1] = y;
+            nodeCount++;
+            return this;
+        }
+
+        public Builder addEdge(int edgeId, int nodeFrom, int nodeTo, double length, CoordinateSequence geometry) {
+            if(edgeCount == edgeIds.length) {
+                int capacity = 2 * edgeCount;
+                edgeIds = Arrays.copyOf(edgeIds, capacity);
+                edgeFromIds = Arrays.copyOf(edgeFromIds, capacity);
+                edgeToIds = Arrays.copyOf(edgeToIds, capacity);
+                edgeLengths = Arrays.copyOf(edgeLengths, capacity);
+                geometryOffsets = Arrays.copyOf(geometryOffsets, capacity + 1);
+            }
+            edgeIds[edgeCount] = edgeId;
+            edgeFromIds[edgeCount] = nodeFrom;
+            edgeToIds[edgeCount] = nodeTo;
+            edgeLengths[edgeCount] = length;
+
+            int points = geometry.size();
+            while(2 * (geometryCount + points) > geometryCoordinates.length) {
+                geometryCoordinates = Arrays.copyOf(geometryCoordinates, 2 * geometryCoordinates.length);
+            }
+            for(int i = 0; i < points; i++) {
+                geometryCoordinates[2 * (geometryCount + i)] = geometry.getX(i);
+                geometryCoordinates[2 * (geometryCount + i) + 1] = geometry.getY(i);
+            }
+            geometryCount += points;
+            edgeCount++;
+            geometryOffsets[edgeCount] = geometryCount;
+            return this;
+        }
+
+        public GraphTile build() {
+            return new GraphTile(Arrays.copyOf(nodeIds, nodeCount), Arrays.copyOf(nodeCoordinates, 2 * nodeCount),
+                                 Arrays.copyOf(edgeIds, edgeCount), Arrays.copyOf(edgeFromIds, edgeCount),
+                                 Arrays.copyOf(edgeToIds, edgeCount), Arrays.copyOf(edgeLengths, edgeCount),
+                                 Arrays.copyOf(geometryOffsets, edgeCount + 1),
+                                 Arrays.copyOf(geometryCoordinates, 2 * geometryCount));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Orders the nodes of a graph along a Hilbert curve through their bounding box. Nodes that are close to each other in
+ * space are almost always close to each other along the curve so, a graph numbered in this order keeps the nodes,
+ * arcs and edge geometry touched by a local search in a few short runs of its arrays.
+ *
+ * Any other set of points can be ordered the same way with sortPoints.
+ */
+public final class HilbertCurve {
+
+    /* The bounding box is divided into a 2^ORDER by 2^ORDER grid. At this order, curve positions fit in 32 bits which
+     * leaves room to pack a node index next to them in a long and, cells are a few meters wide for a city and under
+     * 100 meters for a continent. Nodes sharing a cell are kept in index order. */
+    private static final int ORDER = 16;
+    private static final int SIDE = 1 << ORDER;
+
+    private HilbertCurve() {
+    }
+
+    /**
+     * @return Position along the curve of the grid cell (x, y). Both must be in [0, 2^ORDER).
+     */
+    static long position(int x, int y) {
+        long position = 0;
+        for(int s = SIDE / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            position += (long) s * s * ((3 * rx) ^ ry);
+
+            /* rotate the quadrant so that the curve through it starts and ends at the right corners */
+            if(ry == 0) {
+                if(rx == 1) {
+                    x = SIDE - 1 - x;
+                    y = SIDE - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return Every node of graph sorted by its position along the curve.
+     */
+    static int[] sortNodes(RoadGraph graph) {
+        return sort(graph.nodeCount(), graph::nodeX, graph::nodeY);
+    }
+
+    /**
+     * @return The indices of the first count points sorted by their position along the curve through the bounding box
+     *         of the points.
+     */
+    public static int[] sortPoints(double[] xs, double[] ys, int count) {
+        return sort(count, i -> xs[i], i -> ys[i]);
+    }
+
+    private static int[] sort(int nodeCount, IntToDoubleFunction nodeX, IntToDoubleFunction nodeY) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for(int node = 0; node < nodeCount; node++) {
+            minX = Math.min(minX, nodeX.applyAsDouble(node));
+            minY = Math.min(minY, nodeY.applyAsDouble(node));
+            maxX = Math.max(maxX, nodeX.applyAsDouble(node));
+            maxY = Math.max(maxY, nodeY.applyAsDouble(node));
+        }
+        /* square cells keep the curve from favoring one axis */
+        double cellSize = Math.max(maxX - minX, maxY - minY) / SIDE;
+        if(!(cellSize > 0)) {
+            cellSize = 1;
+        }
+
+        long[] packed = new long[nodeCount];
+        for(int node = 0; node < nodeCount; node++) {
+            int x = Math.min(SIDE - 1, (int) ((nodeX.applyAsDouble(node) - minX) / cellSize));
+            int y = Math.min(SIDE - 1, (int) ((nodeY.applyAsDouble(node) - minY) / cellSize));
+            packed[node] = (position(x, y) << 31) | node;
+        }
+        Arrays.sort(packed);
+
+        int[] order = new int[nodeCount];
+        for(int i = 0; i < nodeCount; i++) {
+            order[i] = (int) (packed[i] & Integer.MAX_VALUE);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,199 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of integer handles ordered by double keys. Each handle can be in the heap at most once and, its
+ * key can be lowered in place (decrease-key) because the heap keeps track of where every handle is stored.
+ *
+ * Handles must be in [0, capacity). Nothing is boxed and nothing is allocated after construction unless
+ * ensureCapacity is called.
+ *
+ * This class is not thread safe.
+ */
+public class IndexedMinHeap {
+
+    /* handles and keys in heap order */
+    private int[] handles;
+    private double[] keys;
+    private int size;
+
+    /* position of each handle in the heap or -1 if it is not in the heap */
+    private int[] positions;
+
+    public IndexedMinHeap(int capacity) {
+        handles = new int[Math.max(capacity, 1)];
+        keys = new double[Math.max(capacity, 1)];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Grow the heap so that it accepts handles up to capacity - 1.
+     */
+    public void ensureCapacity(int capacity) {
+        if(capacity > positions.length) {
+            int oldCapacity = positions.length;
+            int newCapacity = Math.max(capacity, 2 * oldCapacity);
+            positions = Arrays.copyOf(positions, newCapacity);
+            Arrays.fill(positions, oldCapacity, newCapacity, -1);
+            handles = Arrays.copyOf(handles, newCapacity);
+            keys = Arrays.copyOf(keys, newCapacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int handle) {
+        return positions[handle] >= 0;
+    }
+
+    /**
+     * @return The key of a handle that is in the heap.
+     */
+    public double key(int handle) {
+        return keys[positions[handle]];
+    }
+
+    public void insert(int handle, double key) {
+        if(contains(handle)) {
+            throw new IllegalArgumentException("Handle " + handle + " is already in the heap.");
+        }
+        handles[size] = handle;
+        keys[size] = key;
+        positions[handle] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Lower the key of a handle that is already in the heap. Raising a key is not supported.
+     */
+    public void decreaseKey(int handle, double key) {
+        int position = positions[handle];
+        if(key > keys[position]) {
+            throw new IllegalArgumentException("New key " + key + " is greater than current key " + keys[position]);
+        }
+        keys[position] = key;
+        siftUp(position);
+    }
+
+    /**
+     * Insert a handle or lower its key if it is already in the heap and the new key is smaller.
+     *
+     * @return True if the heap was changed.
+     */
+    public boolean insertOrDecrease(int handle, double key) {
+        int position = positions[handle];
+        if(position < 0) {
+            insert(handle, key);
+            return true;
+        } else if(key < keys[position]) {
+            keys[position] = key;
+            siftUp(position);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set the key of a handle that is already in the heap to any value, higher or lower.
+     */
+    public void changeKey(int handle, double key) {
+        int position = positions[handle];
+        double oldKey = keys[position];
+        keys[position] = key;
+        if(key < oldKey) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    public int peek() {
+        return handles[0];
+    }
+
+    public double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Remove the handle with the smallest key.
+     *
+     * @return The removed handle.
+     */
+    public int poll() {
+        if(size == 0) {
+            throw new IllegalStateException("Cannot poll an empty heap.");
+        }
+        int min = handles[0];
+        positions[min] = -1;
+        size--;
+        if(size > 0) {
+            handles[0] = handles[size];
+            keys[0] = keys[size];
+            positions[handles[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Remove every handle. This only touches the handles currently in the heap so, it is cheap to call between
+     * searches.
+     */
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            positions[handles[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int handle = handles[position];
+        double key = keys[position];
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(keys[parent] <= key) {
+                break;
+            }
+            handles[position] = handles[parent];
+            keys[position] = keys[parent];
+            positions[handles[position]] = position;
+            position = parent;
+        }
+        handles[position] = handle;
+        keys[position] = key;
+        positions[handle] = position;
+    }
+
+    private void siftDown(int position) {
+        int handle = handles[position];
+        double key = keys[position];
+        int half = size >>> 1;
+        while(position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if(right < size && keys[right] < keys[child]) {
+                child = right;
+            }
+            if(key <= keys[child]) {
+                break;
+            }
+            handles[position] = handles[child];
+            keys[position] = keys[child];
+            positions[handles[position]] = position;
+            position = child;
+        }
+        handles[position] = handle;
+        keys[position] = key;
+        positions[handle] = position;
+    }
+}
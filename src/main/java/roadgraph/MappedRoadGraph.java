@@ -0,0 +1,179 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * A RoadGraph that reads a memory mapped graph file (see RoadGraphFile). The layout is identical to ArrayRoadGraph
+ * except that every array is a view of the mapped file instead of a heap array.
+ *
+ * Only absolute reads are used on the shared buffers so, this class is thread safe.
+ */
+public class MappedRoadGraph implements RoadGraph {
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private final long fingerprint;
+
+    private final IntBuffer nodeIds;
+    private final DoubleBuffer nodeCoordinates;
+    private final IntBuffer sortedNodeIds;
+    private final IntBuffer sortedNodeIndices;
+
+    private final IntBuffer arcOffsets;
+    private final IntBuffer arcTargets;
+    private final FloatBuffer arcLengths;
+    private final IntBuffer arcEdges;
+
+    private final IntBuffer edgeIds;
+    private final IntBuffer geometryOffsets;
+    private final DoubleBuffer geometryCoordinates;
+
+    /* The nearest node index lives on the heap, it is not part of the file. */
+    private volatile NodeKdTree nodeTree;
+
+    MappedRoadGraph(int nodeCount, int edgeCount, long fingerprint, ByteBuffer[] sections) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.fingerprint = fingerprint;
+
+        this.nodeIds = sections[RoadGraphFile.SECTION_NODE_IDS].asIntBuffer();
+        this.nodeCoordinates = sections[RoadGraphFile.SECTION_NODE_COORDINATES].asDoubleBuffer();
+        this.sortedNodeIds = sections[RoadGraphFile.SECTION_SORTED_NODE_IDS].asIntBuffer();
+        this.sortedNodeIndices = sections[RoadGraphFile.SECTION_SORTED_NODE_INDICES].asIntBuffer();
+        this.arcOffsets = sections[RoadGraphFile.SECTION_ARC_OFFSETS].asIntBuffer();
+        this.arcTargets = sections[RoadGraphFile.SECTION_ARC_TARGETS].asIntBuffer();
+        this.arcLengths = sections[RoadGraphFile.SECTION_ARC_LENGTHS].asFloatBuffer();
+        this.arcEdges = sections[RoadGraphFile.SECTION_ARC_EDGES].asIntBuffer();
+        this.edgeIds = sections[RoadGraphFile.SECTION_EDGE_IDS].asIntBuffer();
+        this.geometryOffsets = sections[RoadGraphFile.SECTION_GEOMETRY_OFFSETS].asIntBuffer();
+        this.geometryCoordinates = sections[RoadGraphFile.SECTION_GEOMETRY_COORDINATES].asDoubleBuffer();
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int nodeId(int node) {
+        return nodeIds.get(node);
+    }
+
+    @Override
+    public int nodeIndex(int nodeId) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = sortedNodeIds.get(mid);
+            if(midId < nodeId) {
+                low = mid + 1;
+            } else if(midId > nodeId) {
+                high = mid - 1;
+            } else {
+                return sortedNodeIndices.get(mid);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public double nodeX(int node) {
+        return nodeCoordinates.get(2 * node);
+    }
+
+    @Override
+    public double nodeY(int node) {
+        return nodeCoordinates.get(2 * node + 1);
+    }
+
+    @Override
+    public int degree(int node) {
+        return arcOffsets.get(node + 1) - arcOffsets.get(node);
+    }
+
+    @Override
+    public int neighbor(int node, int i) {
+        return arcTargets.get(arcOffsets.get(node) + i);
+    }
+
+    @Override
+    public double arcLength(int node, int i) {
+        return arcLengths.get(arcOffsets.get(node) + i);
+    }
+
+    @Override
+    public int arcEdge(int node, int i) {
+        return arcEdges.get(arcOffsets.get(node) + i);
+    }
+
+    @Override
+    public int edgeId(int edge) {
+        return edgeIds.get(edge);
+    }
+
+    @Override
+    public LineString edgeGeometry(int edge, GeometryFactory factory) {
+        int from = geometryOffsets.get(edge);
+        int to = geometryOffsets.get(edge + 1);
+        double[] coordinates = new double[2 * (to - from)];
+        for(int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = geometryCoordinates.get(2 * from + i);
+        }
+        CoordinateSequence sequence = new PackedCoordinateSequence.Double(coordinates, 2);
+        return factory.createLineString(sequence);
+    }
+
+    @Override
+    public int nearestNode(double x, double y, double maxDistance) {
+        return nodeTree().nearest(x, y, maxDistance);
+    }
+
+    @Override
+    public int kNearestNodes(double x, double y, int k, double maxDistance, int[] result) {
+        return nodeTree().kNearest(x, y, k, maxDistance, result);
+    }
+
+    @Override
+    public void nearestNodes(double[] xs, double[] ys, int count, double maxDistance, int[] result) {
+        nodeTree().nearest(xs, ys, count, maxDistance, result);
+    }
+
+    @Override
+    public void nodesInside(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        nodeTree().inside(minX, minY, maxX, maxY, action);
+    }
+
+    /* The tree is built on first use so that graphs that are never snapped to do not pay for it. Racing threads may
+     * each build a tree but, they are identical. */
+    private NodeKdTree nodeTree() {
+        NodeKdTree tree = nodeTree;
+        if(tree == null) {
+            tree = new NodeKdTree(this);
+            nodeTree = tree;
+        }
+        return tree;
+    }
+
+    /**
+     * The fingerprint is computed when the file is written so, mapping a graph stays cheap.
+     */
+    @Override
+    public long fingerprint() {
+        return fingerprint;
+    }
+}
@@ -0,0 +1,61 @@
+package roadgraph;
+
+import java.util.function.IntPredicate;
+
+/**
+ * A radius limited one-to-many walking distance search over a RoadGraph. After a search, the reached nodes and edges
+ * are available through the accessors until the next search is started.
+ *
+ * An edge is reached when one of its end points is reached at a distance d such that d plus the length of the edge is
+ * less than the radius and, the other end point passes the node filter. Each reached node and edge is labelled with
+ * the position in the source array of the source nearest to it.
+ *
+ * Implementations hold per node state and are not thread safe. Use one instance per thread.
+ */
+public interface NetworkSearch {
+
+    RoadGraph getGraph();
+
+    /**
+     * Run a search from a single node.
+     *
+     * @param source Node the search starts from. The source is not tested against the filter.
+     * @param radius Nodes at this distance or further from the source are not reached.
+     * @param nodeFilter Nodes failing this test are never reached.
+     */
+    void search(int source, double radius, IntPredicate nodeFilter);
+
+    /**
+     * Run one search from many nodes at once.
+     *
+     * @param sources Nodes the search starts from. Sources are not tested against the filter.
+     * @param sourceCount Number of leading entries of sources to use.
+     * @param radius Nodes at this distance or further from every source are not reached.
+     * @param nodeFilter Nodes failing this test are never reached.
+     */
+    void search(int[] sources, int sourceCount, double radius, IntPredicate nodeFilter);
+
+    /**
+     * @return True if node was reached by the last search.
+     */
+    boolean isReached(int node);
+
+    /**
+     * @return Walking distance from the nearest source to node or positive infinity if node was not reached.
+     */
+    double distance(int node);
+
+    /**
+     * @return Position in the source array of the source nearest to a node reached by the last search.
+     */
+    int origin(int node);
+
+    int reachedEdgeCount();
+
+    int reachedEdge(int i);
+
+    /**
+     * @return Position in the source array of the source nearest to the i'th reached edge.
+     */
+    int reachedEdgeOrigin(int i);
+}
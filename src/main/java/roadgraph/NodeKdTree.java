@@ -0,0 +1,300 @@
+package roadgraph;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A static 2d-tree over the nodes of a RoadGraph used to snap points to the road network without a database query.
+ *
+ * The tree is implicit: nodes are permuted so that the median of every range [lo, hi) splits it on alternating axes,
+ * starting with x. No pointers are stored, only the permuted node indices and their coordinates in the same order.
+ *
+ * Instances are immutable once built and therefore are thread safe.
+ */
+public class NodeKdTree {
+
+    /* Node indices in tree order. */
+    private final int[] nodes;
+
+    /* Coordinates of nodes[i] at 2i and 2i + 1. */
+    private final double[] coordinates;
+
+    public NodeKdTree(RoadGraph graph) {
+        int nodeCount = graph.nodeCount();
+        nodes = new int[nodeCount];
+        coordinates = new double[2 * nodeCount];
+        for(int node = 0; node < nodeCount; node++) {
+            nodes[node] = node;
+            coordinates[2 * node] = graph.nodeX(node);
+            coordinates[2 * node + 1] = graph.nodeY(node);
+        }
+        build(0, nodeCount, 0);
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    private void build(int lo, int hi, int axis) {
+        while(hi - lo > 1) {
+            int median = (lo + hi) >>> 1;
+            select(lo, hi - 1, median, axis);
+            /* recurse on the smaller half, loop on the larger one to bound the stack depth */
+            if(median - lo < hi - median - 1) {
+                build(lo, median, axis ^ 1);
+                lo = median + 1;
+            } else {
+                build(median + 1, hi, axis ^ 1);
+                hi = median;
+            }
+            axis ^= 1;
+        }
+    }
+
+    /* Hoare's selection on the inclusive range [lo, hi]. Places the k'th smallest coordinate on axis at position k with
+     * smaller or equal values before it and greater or equal values after it. Runs of equal coordinates, which are
+     * common in gridded street networks, are split evenly. */
+    private void select(int lo, int hi, int k, int axis) {
+        while(hi > lo) {
+            double pivot = coordinates[2 * k + axis];
+            int i = lo;
+            int j = hi;
+            do {
+                while(coordinates[2 * i + axis] < pivot) {
+                    i++;
+                }
+                while(pivot < coordinates[2 * j + axis]) {
+                    j--;
+                }
+                if(i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            } while(i <= j);
+            if(j < k) {
+                lo = i;
+            }
+            if(k < i) {
+                hi = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int node = nodes[i];
+        nodes[i] = nodes[j];
+        nodes[j] = node;
+
+        double x = coordinates[2 * i];
+        double y = coordinates[2 * i + 1];
+        coordinates[2 * i] = coordinates[2 * j];
+        coordinates[2 * i + 1] = coordinates[2 * j + 1];
+        coordinates[2 * j] = x;
+        coordinates[2 * j + 1] = y;
+    }
+
+    /**
+     * Find the node closest to a point.
+     *
+     * @param maxDistance Nodes further than this from (x,y) are ignored.
+     * @return Index of the closest node or -1 if there is no node within maxDistance.
+     */
+    public int nearest(double x, double y, double maxDistance) {
+        Query query = new Query(1);
+        query.reset(x, y, maxDistance);
+        search(0, nodes.length, 0, query);
+        return query.count > 0 ? query.heapNodes[0] : -1;
+    }
+
+    /**
+     * Find up to k nodes closest to a point.
+     *
+     * @param k Maximum number of nodes to find.
+     * @param maxDistance Nodes further than this from (x,y) are ignored.
+     * @param result Receives the found nodes in order of increasing distance. Must have room for k nodes.
+     * @return The number of nodes found. This is less than k if fewer than k nodes are within maxDistance.
+     */
+    public int kNearest(double x, double y, int k, double maxDistance, int[] result) {
+        if(k <= 0) {
+            return 0;
+        }
+        Query query = new Query(k);
+        query.reset(x, y, maxDistance);
+        search(0, nodes.length, 0, query);
+        return query.drainSorted(result);
+    }
+
+    /**
+     * Snap many points at once. This gives the same answers as calling nearest for each point but reuses the query
+     * state across points.
+     *
+     * @param xs X coordinates of the points.
+     * @param ys Y coordinates of the points.
+     * @param count Number of leading points of xs and ys to snap.
+     * @param maxDistance Nodes further than this from a point are ignored.
+     * @param result Receives the nearest node of each point or -1 if there is none within maxDistance.
+     */
+    public void nearest(double[] xs, double[] ys, int count, double maxDistance, int[] result) {
+        Query query = new Query(1);
+        for(int i = 0; i < count; i++) {
+            query.reset(xs[i], ys[i], maxDistance);
+            search(0, nodes.length, 0, query);
+            result[i] = query.count > 0 ? query.heapNodes[0] : -1;
+        }
+    }
+
+    /**
+     * Visit every node inside a rectangle, borders included, in no particular order.
+     */
+    public void inside(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        inside(0, nodes.length, 0, minX, minY, maxX, maxY, action);
+    }
+
+    private void inside(int lo, int hi, int axis, double minX, double minY, double maxX, double maxY,
+                        IntConsumer action) {
+        while(lo < hi) {
+            int median = (lo + hi) >>> 1;
+            double x = coordinates[2 * median];
+            double y = coordinates[2 * median + 1];
+            if(x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                action.accept(nodes[median]);
+            }
+
+            double split = axis == 0 ? x : y;
+            double min = axis == 0 ? minX : minY;
+            double max = axis == 0 ? maxX : maxY;
+            boolean visitLow = min <= split;
+            boolean visitHigh = max >= split;
+            if(visitLow && visitHigh) {
+                inside(lo, median, axis ^ 1, minX, minY, maxX, maxY, action);
+                lo = median + 1;
+            } else if(visitLow) {
+                hi = median;
+            } else {
+                lo = median + 1;
+            }
+            axis ^= 1;
+        }
+    }
+
+    private void search(int lo, int hi, int axis, Query query) {
+        while(lo < hi) {
+            int median = (lo + hi) >>> 1;
+            double dx = query.x - coordinates[2 * median];
+            double dy = query.y - coordinates[2 * median + 1];
+            query.offer(nodes[median], dx * dx + dy * dy);
+
+            double diff = axis == 0 ? dx : dy;
+            int nearLo, nearHi, farLo, farHi;
+            if(diff < 0) {
+                nearLo = lo;
+                nearHi = median;
+                farLo = median + 1;
+                farHi = hi;
+            } else {
+                nearLo = median + 1;
+                nearHi = hi;
+                farLo = lo;
+                farHi = median;
+            }
+
+            search(nearLo, nearHi, axis ^ 1, query);
+
+            /* the far side can only hold a closer node if the splitting line is within the current bound */
+            if(diff * diff > query.bound()) {
+                return;
+            }
+            lo = farLo;
+            hi = farHi;
+            axis ^= 1;
+        }
+    }
+
+    /* State of one query: the query point and a bounded max-heap of the best nodes found so far, keyed by squared
+     * distance. */
+    private static final class Query {
+        private final int k;
+        private final int[] heapNodes;
+        private final double[] heapDistances;
+        private int count;
+
+        private double x, y;
+        private double maxDistanceSq;
+
+        Query(int k) {
+            this.k = k;
+            this.heapNodes = new int[k];
+            this.heapDistances = new double[k];
+        }
+
+        void reset(double x, double y, double maxDistance) {
+            this.x = x;
+            this.y = y;
+            this.maxDistanceSq = maxDistance * maxDistance;
+            this.count = 0;
+        }
+
+        /* Squared distance that a node must be within to be offered. */
+        double bound() {
+            return count < k ? maxDistanceSq : heapDistances[0];
+        }
+
+        void offer(int node, double distanceSq) {
+            if(distanceSq > bound()) {
+                return;
+            }
+            if(count < k) {
+                siftUp(count++, node, distanceSq);
+            } else if(distanceSq < heapDistances[0]) {
+                siftDown(0, node, distanceSq);
+            }
+        }
+
+        private void siftUp(int position, int node, double distanceSq) {
+            while(position > 0) {
+                int parent = (position - 1) >>> 1;
+                if(heapDistances[parent] >= distanceSq) {
+                    break;
+                }
+                heapNodes[position] = heapNodes[parent];
+                heapDistances[position] = heapDistances[parent];
+                position = parent;
+            }
+            heapNodes[position] = node;
+            heapDistances[position] = distanceSq;
+        }
+
+        private void siftDown(int position, int node, double distanceSq) {
+            int half = count >>> 1;
+            while(position < half) {
+                int child = 2 * position + 1;
+                int right = child + 1;
+                if(right < count && heapDistances[right] > heapDistances[child]) {
+                    child = right;
+                }
+                if(distanceSq >= heapDistances[child]) {
+                    break;
+                }
+                heapNodes[position] = heapNodes[child];
+                heapDistances[position] = heapDistances[child];
+                position = child;
+            }
+            heapNodes[position] = node;
+            heapDistances[position] = distanceSq;
+        }
+
+        /* Empty the heap into result, nearest first. */
+        int drainSorted(int[] result) {
+            int found = count;
+            while(count > 0) {
+                int node = heapNodes[0];
+                count--;
+                if(count > 0) {
+                    siftDown(0, heapNodes[count], heapDistances[count]);
+                }
+                result[count] = node;
+            }
+            return found;
+        }
+    }
+}
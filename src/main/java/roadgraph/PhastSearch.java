@@ -0,0 +1,355 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * One-to-many walking distance search over a ContractionHierarchy, in the style of PHAST restricted to a set of
+ * target nodes (RPHAST).
+ *
+ * A search has three phases:
+ *
+ *   1. An upward Dijkstra search from the sources that only follows arcs to higher ranked nodes. This settles few
+ *      nodes because the hierarchy quickly climbs to a small set of important nodes.
+ *   2. Selection of the targets plus every node reachable from them by upward arcs. Only these nodes can carry a
+ *      shortest path down to a target.
+ *   3. A linear sweep over the selected nodes in order of decreasing rank, relaxing each node from its higher ranked
+ *      neighbors. After the sweep every target holds its exact distance to the nearest source.
+ *
+ * Paths are not restricted by the node filter, it only decides which nodes are targets. When the filter is a region
+ * containing everything within the radius of the sources, as it is for walking distance buffers, this gives the same
+ * result as DijkstraSearch.
+ *
+ * This class is not thread safe. Use one instance per thread.
+ */
+public class PhastSearch implements NetworkSearch {
+
+    private final RoadGraph graph;
+    private final ContractionHierarchy hierarchy;
+    private final IndexedMinHeap heap;
+
+    /* Nodes with the current stamp have a distance from the current search. */
+    private int currentStamp;
+    private final int[] nodeStamps;
+    private final double[] distances;
+    private final int[] origins;
+
+    /* Nodes with the current stamp are targets or have been selected for the sweep. */
+    private final int[] targetStamps;
+    private final int[] selectedStamps;
+    private final int[] edgeStamps;
+
+    private int[] targets = new int[64];
+    private int targetCount;
+
+    /* Selected nodes packed as (rank << 32 | node) so that sorting them gives the sweep order. */
+    private long[] selected = new long[64];
+    private int selectedCount;
+
+    private int[] stack = new int[64];
+
+    private final int[] singleSource = new int[1];
+
+    private double radius;
+    private int upwardSettledCount;
+
+    private int[] reachedEdges = new int[64];
+    private int[] reachedEdgeOrigins = new int[64];
+    private int reachedEdgeCount;
+
+    public PhastSearch(RoadGraph graph, ContractionHierarchy hierarchy) {
+        if(!hierarchy.isFor(graph)) {
+            throw new IllegalArgumentException("Contraction hierarchy was not built from this graph.");
+        }
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.heap = new IndexedMinHeap(graph.nodeCount());
+        this.nodeStamps = new int[graph.nodeCount()];
+        this.distances = new double[graph.nodeCount()];
+        this.origins = new int[graph.nodeCount()];
+        this.targetStamps = new int[graph.nodeCount()];
+        this.selectedStamps = new int[graph.nodeCount()];
+        this.edgeStamps = new int[graph.edgeCount()];
+    }
+
+    @Override
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public void search(int source, double radius, IntPredicate nodeFilter) {
+        singleSource[0] = source;
+        search(singleSource, 1, radius, nodeFilter);
+    }
+
+    /**
+     * Search the nodes passing the filter that lie within Euclidean reach of the sources. Since WebMercator stretches
+     * distances by 1 / cos(latitude), the reach is the radius scaled by that factor.
+     */
+    @Override
+    public void search(int[] sources, int sourceCount, double radius, IntPredicate nodeFilter) {
+        startSearch();
+        this.radius = radius;
+        if(sourceCount == 0) {
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for(int s = 0; s < sourceCount; s++) {
+            minX = Math.min(minX, graph.nodeX(sources[s]));
+            minY = Math.min(minY, graph.nodeY(sources[s]));
+            maxX = Math.max(maxX, graph.nodeX(sources[s]));
+            maxY = Math.max(maxY, graph.nodeY(sources[s]));
+        }
+        double reach = WebMercator.reach(radius, minY, maxY);
+
+        for(int s = 0; s < sourceCount; s++) {
+            addTarget(sources[s]);
+        }
+        graph.nodesInside(minX - reach, minY - reach, maxX + reach, maxY + reach, node -> {
+            if(nodeFilter.test(node)) {
+                addTarget(node);
+            }
+        });
+
+        run(sources, sourceCount, radius);
+    }
+
+    /**
+     * Compute distances from the sources to an explicit set of targets, for example the nodes of nearby stores. Only
+     * edges between targets are reported as reached.
+     */
+    public void search(int[] sources, int sourceCount, double radius, int[] targetNodes, int targetNodeCount) {
+        startSearch();
+        for(int s = 0; s < sourceCount; s++) {
+            addTarget(sources[s]);
+        }
+        for(int t = 0; t < targetNodeCount; t++) {
+            addTarget(targetNodes[t]);
+        }
+        run(sources, sourceCount, radius);
+    }
+
+    private void startSearch() {
+        heap.clear();
+        targetCount = 0;
+        selectedCount = 0;
+        reachedEdgeCount = 0;
+        upwardSettledCount = 0;
+
+        currentStamp++;
+        if(currentStamp == Integer.MAX_VALUE) {
+            /* stamps wrapped around, old stamps could collide with new ones */
+            Arrays.fill(nodeStamps, 0);
+            Arrays.fill(targetStamps, 0);
+            Arrays.fill(selectedStamps, 0);
+            Arrays.fill(edgeStamps, 0);
+            currentStamp = 1;
+        }
+    }
+
+    private void addTarget(int node) {
+        if(targetStamps[node] != currentStamp) {
+            targetStamps[node] = currentStamp;
+            if(targetCount == targets.length) {
+                targets = Arrays.copyOf(targets, 2 * targetCount);
+            }
+            targets[targetCount++] = node;
+        }
+    }
+
+    private void run(int[] sources, int sourceCount, double radius) {
+        this.radius = radius;
+        upwardSearch(sources, sourceCount, radius);
+        selectNodes();
+        sweep();
+        collectReachedEdges(radius);
+    }
+
+    private void upwardSearch(int[] sources, int sourceCount, double radius) {
+        for(int s = 0; s < sourceCount; s++) {
+            int source = sources[s];
+            if(nodeStamps[source] != currentStamp) {
+                nodeStamps[source] = currentStamp;
+                distances[source] = 0;
+                origins[source] = s;
+                heap.insert(source, 0);
+            }
+        }
+
+        while(!heap.isEmpty()) {
+            double distance = heap.peekKey();
+            int current = heap.poll();
+            int origin = origins[current];
+            upwardSettledCount++;
+
+            for(int i = 0; i < hierarchy.upDegree(current); i++) {
+                double newDistance = distance + hierarchy.upLength(current, i);
+                if(newDistance >= radius) {
+                    continue;
+                }
+                int next = hierarchy.upNeighbor(current, i);
+                if(nodeStamps[next] != currentStamp) {
+                    nodeStamps[next] = currentStamp;
+                    distances[next] = newDistance;
+                    origins[next] = origin;
+                    heap.insert(next, newDistance);
+                } else if(newDistance < distances[next]) {
+                    distances[next] = newDistance;
+                    origins[next] = origin;
+                    heap.decreaseKey(next, newDistance);
+                }
+            }
+        }
+    }
+
+    /* Select the targets and everything above them then sort the selection by decreasing rank. */
+    private void selectNodes() {
+        int stackSize = 0;
+        for(int t = 0; t < targetCount; t++) {
+            int target = targets[t];
+            if(selectedStamps[target] == currentStamp) {
+                continue;
+            }
+            selectedStamps[target] = currentStamp;
+            stack = push(stack, stackSize++, target);
+
+            while(stackSize > 0) {
+                int node = stack[--stackSize];
+                addSelected(node);
+                for(int i = 0; i < hierarchy.upDegree(node); i++) {
+                    int up = hierarchy.upNeighbor(node, i);
+                    if(selectedStamps[up] != currentStamp) {
+                        selectedStamps[up] = currentStamp;
+                        stack = push(stack, stackSize++, up);
+                    }
+                }
+            }
+        }
+
+        /* ascending sort then walk backwards to go from high rank to low rank */
+        Arrays.sort(selected, 0, selectedCount);
+    }
+
+    private static int[] push(int[] stack, int size, int node) {
+        if(size == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * size);
+        }
+        stack[size] = node;
+        return stack;
+    }
+
+    private void addSelected(int node) {
+        if(selectedCount == selected.length) {
+            selected = Arrays.copyOf(selected, 2 * selectedCount);
+        }
+        selected[selectedCount++] = ((long) hierarchy.rank(node) << 32) | node;
+    }
+
+    private void sweep() {
+        for(int s = selectedCount - 1; s >= 0; s--) {
+            int node = (int) selected[s];
+            double distance = nodeStamps[node] == currentStamp ? distances[node] : Double.POSITIVE_INFINITY;
+            int origin = origins[node];
+
+            for(int i = 0; i < hierarchy.upDegree(node); i++) {
+                int up = hierarchy.upNeighbor(node, i);
+                if(nodeStamps[up] == currentStamp) {
+                    double newDistance = distances[up] + hierarchy.upLength(node, i);
+                    if(newDistance < distance) {
+                        distance = newDistance;
+                        origin = origins[up];
+                    }
+                }
+            }
+
+            if(distance != Double.POSITIVE_INFINITY) {
+                nodeStamps[node] = currentStamp;
+                distances[node] = distance;
+                origins[node] = origin;
+            }
+        }
+    }
+
+    /* An edge between two targets is reported from its closer end point, which is the one DijkstraSearch would have
+     * settled first. */
+    private void collectReachedEdges(double radius) {
+        for(int t = 0; t < targetCount; t++) {
+            int node = targets[t];
+            double distance = distance(node);
+            if(distance >= radius) {
+                continue;
+            }
+            for(int i = 0; i < graph.degree(node); i++) {
+                int next = graph.neighbor(node, i);
+                if(targetStamps[next] != currentStamp || distance + graph.arcLength(node, i) >= radius) {
+                    continue;
+                }
+                double nextDistance = distance(next);
+                if(nextDistance < distance || (nextDistance == distance && next < node)) {
+                    continue;
+                }
+                int edge = graph.arcEdge(node, i);
+                if(edgeStamps[edge] != currentStamp) {
+                    edgeStamps[edge] = currentStamp;
+                    if(reachedEdgeCount == reachedEdges.length) {
+                        reachedEdges = Arrays.copyOf(reachedEdges, 2 * reachedEdgeCount);
+                        reachedEdgeOrigins = Arrays.copyOf(reachedEdgeOrigins, 2 * reachedEdgeCount);
+                    }
+                    reachedEdges[reachedEdgeCount] = edge;
+                    reachedEdgeOrigins[reachedEdgeCount] = origins[node];
+                    reachedEdgeCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if node is a target of the last search and is within its radius.
+     */
+    @Override
+    public boolean isReached(int node) {
+        return targetStamps[node] == currentStamp && nodeStamps[node] == currentStamp && distances[node] < radius;
+    }
+
+    @Override
+    public double distance(int node) {
+        return isReached(node) ? distances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public int origin(int node) {
+        return origins[node];
+    }
+
+    /**
+     * @return Number of nodes settled by the upward search of the last search.
+     */
+    public int upwardSettledCount() {
+        return upwardSettledCount;
+    }
+
+    /**
+     * @return Number of nodes relaxed by the sweep of the last search.
+     */
+    public int sweptCount() {
+        return selectedCount;
+    }
+
+    @Override
+    public int reachedEdgeCount() {
+        return reachedEdgeCount;
+    }
+
+    @Override
+    public int reachedEdge(int i) {
+        return reachedEdges[i];
+    }
+
+    @Override
+    public int reachedEdgeOrigin(int i) {
+        return reachedEdgeOrigins[i];
+    }
+}
@@ -0,0 +1,107 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A read only view of the road network that can be searched without talking to a database.
+ *
+ * Nodes and edges are addressed by dense integer indices in [0, nodeCount()) and [0, edgeCount()). These indices are
+ * internal to a graph instance and are unrelated to the ids stored in the network database. Use nodeId/nodeIndex and
+ * edgeId to translate between the two. Whole networks are numbered along a Hilbert curve (see
+ * ArrayRoadGraph.hilbertOrdered) so, nearby nodes usually have nearby indices.
+ *
+ * The network is undirected so, every edge appears as an arc in the adjacency of both of its end points. The arcs of
+ * a node are addressed by their position i in [0, degree(node)).
+ *
+ * All coordinates are in WebMercator (EPSG 3857), the same projection used by the network and food desert databases.
+ * Edge lengths are in meters as computed by mknetwork.
+ *
+ * Implementations must be safe to read from multiple threads.
+ */
+public interface RoadGraph {
+
+    int nodeCount();
+
+    int edgeCount();
+
+    /**
+     * @return The node_id of a node in the network_nodes table.
+     */
+    int nodeId(int node);
+
+    /**
+     * @return The index of the node with the given node_id or -1 if this graph does not contain it.
+     */
+    int nodeIndex(int nodeId);
+
+    double nodeX(int node);
+
+    double nodeY(int node);
+
+    int degree(int node);
+
+    /**
+     * @return The node at the other end of the i'th arc of node.
+     */
+    int neighbor(int node, int i);
+
+    /**
+     * @return Length in meters of the i'th arc of node.
+     */
+    double arcLength(int node, int i);
+
+    /**
+     * @return Index of the edge that the i'th arc of node was created from.
+     */
+    int arcEdge(int node, int i);
+
+    /**
+     * @return The id of an edge in the network table.
+     */
+    int edgeId(int edge);
+
+    /**
+     * Build the geometry of an edge. Edge geometry is only needed once a search has finished so, implementations are
+     * free to store it in whatever form is cheapest and build a LineString on request.
+     */
+    LineString edgeGeometry(int edge, GeometryFactory factory);
+
+    /**
+     * Find the node closest to a point.
+     *
+     * @param maxDistance Nodes further than this from (x,y) are ignored.
+     * @return Index of the closest node or -1 if there is no node within maxDistance.
+     */
+    int nearestNode(double x, double y, double maxDistance);
+
+    /**
+     * Find up to k nodes closest to a point.
+     *
+     * @param result Receives the found nodes in order of increasing distance. Must have room for k nodes.
+     * @return The number of nodes found.
+     */
+    int kNearestNodes(double x, double y, int k, double maxDistance, int[] result);
+
+    /**
+     * Snap a whole list of points at once, for example every store in a search frame.
+     *
+     * @param count Number of leading points of xs and ys to snap.
+     * @param result Receives the nearest node of each point or -1 if there is none within maxDistance.
+     */
+    void nearestNodes(double[] xs, double[] ys, int count, double maxDistance, int[] result);
+
+    /**
+     * Visit every node inside a rectangle, borders included, in no particular order.
+     */
+    void nodesInside(double minX, double minY, double maxX, double maxY, IntConsumer action);
+
+    /**
+     * A hash of the contents of the graph. Two graphs with the same fingerprint produce the same walking distance
+     * buffers so, it is used to version anything derived from the graph, such as cached store buffers. Any change to
+     * the network database or graph file changes the fingerprint.
+     */
+    long fingerprint();
+}
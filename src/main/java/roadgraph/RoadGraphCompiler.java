@@ -0,0 +1,87 @@
+package roadgraph;
+
+import database.network.NetworkDatabase;
+import org.locationtech.jts.io.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * Command line tool that compiles a network database created by mknetwork into a binary graph file that the server
+ * can memory map at startup. This is normally run through the mkgraph script.
+ *
+ * With --contract, chains of degree 2 nodes are merged into single edges before the graph is written (see
+ * ChainContraction) and, the mapping from merged edges back to network nodes is written next to the graph file.
+ */
+public class RoadGraphCompiler {
+
+    /* Merged edge geometry is simplified to within this many ground meters of the original streets. This is well
+     * below the accuracy of the OSM data. */
+    private static final double SIMPLIFY_TOLERANCE = 0.5;
+
+    private static void printUsage() {
+        System.out.println("Usage: mkgraph [--contract max_chain_length] network_database_file graph_file");
+        System.out.println("\t--contract: Merge chains of degree 2 nodes into edges of up to max_chain_length meters.");
+        System.out.println("\t\tThe node mapping is written to graph_file.chains.");
+        System.out.println("\tnetwork_database_file: SqLite database file created by mknetwork.");
+        System.out.println("\tgraph_file: Binary graph file to create. An existing file is overwritten.");
+    }
+
+    public static void main(String[] args) throws IOException, SQLException, ParseException {
+        double maxChainLength = 0;
+        int argIndex = 0;
+        if(args.length > 0 && args[0].equals("--contract")) {
+            if(args.length < 2) {
+                printUsage();
+                return;
+            }
+            try {
+                maxChainLength = Double.parseDouble(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("Maximum chain length " + args[1] + " is not a number.");
+                return;
+            }
+            if(!(maxChainLength > 0)) {
+                System.out.println("Maximum chain length must be positive.");
+                return;
+            }
+            argIndex = 2;
+        }
+
+        if(args.length < argIndex + 2) {
+            printUsage();
+            return;
+        }
+
+        Path networkDbPath = Paths.get(args[argIndex]);
+        Path graphPath = Paths.get(args[argIndex + 1]);
+
+        if(!Files.exists(networkDbPath, LinkOption.NOFOLLOW_LINKS)) {
+            System.out.println("Network database " + networkDbPath + " does not exist.");
+            return;
+        }
+
+        RoadGraph graph;
+        try (NetworkDatabase networkDatabase = new NetworkDatabase(networkDbPath.toString())) {
+            graph = networkDatabase.loadRoadGraph();
+        }
+
+        if(maxChainLength > 0) {
+            ChainContraction contraction = ChainContraction.contract(graph, maxChainLength, SIMPLIFY_TOLERANCE);
+            System.out.println("Merged " + contraction.viaNodeCount() + " of " + graph.nodeCount()
+                    + " nodes into edges.");
+            graph = contraction.getGraph();
+
+            Path chainsPath = Paths.get(graphPath + ".chains");
+            contraction.write(chainsPath);
+            System.out.println("Wrote node mapping to " + chainsPath);
+        }
+
+        RoadGraphFile.write(graph, graphPath);
+        System.out.println("Wrote " + graph.nodeCount() + " nodes and " + graph.edgeCount() + " edges to " + graphPath);
+    }
+}
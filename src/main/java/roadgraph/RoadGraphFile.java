@@ -0,0 +1,310 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the binary road graph format. A graph file holds the same arrays as an ArrayRoadGraph so, it can
+ * be memory mapped and searched directly without any parsing at startup.
+ *
+ * Layout (all values little-endian):
+ *
+ *   header:   int MAGIC, int FORMAT_VERSION, int nodeCount, int edgeCount, int arcCount, int geometryPointCount,
+ *             long fingerprint (see RoadGraph.fingerprint)
+ *   sections: SECTION_COUNT pairs of (long offset, long length in bytes), in the order of the SECTION_* constants
+ *   data:     each section starts on an 8 byte boundary
+ *
+ * Edge geometry is the last section of the file. It is mapped separately from the rest of the graph so that it is
+ * only paged in by the OS when a hull is actually built.
+ */
+public final class RoadGraphFile {
+
+    /* "FDRG" */
+    static final int MAGIC = 0x47524446;
+    static final int FORMAT_VERSION = 2;
+
+    static final int SECTION_NODE_IDS = 0;
+    static final int SECTION_NODE_COORDINATES = 1;
+    static final int SECTION_SORTED_NODE_IDS = 2;
+    static final int SECTION_SORTED_NODE_INDICES = 3;
+    static final int SECTION_ARC_OFFSETS = 4;
+    static final int SECTION_ARC_TARGETS = 5;
+    static final int SECTION_ARC_LENGTHS = 6;
+    static final int SECTION_ARC_EDGES = 7;
+    static final int SECTION_EDGE_IDS = 8;
+    static final int SECTION_GEOMETRY_OFFSETS = 9;
+    static final int SECTION_GEOMETRY_COORDINATES = 10;
+    static final int SECTION_COUNT = 11;
+
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + Long.BYTES + SECTION_COUNT * 2 * Long.BYTES;
+
+    private RoadGraphFile() {
+    }
+
+    /**
+     * @return True if path starts with the magic number of a graph file. Used to tell graph files apart from
+     *         SqLite network databases.
+     */
+    public static boolean isGraphFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while(magic.hasRemaining() && channel.read(magic) >= 0) {
+                /* keep reading until the buffer is full or the file ends */
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Map a graph file into memory. The returned graph reads directly from the OS page cache so, several processes
+     * mapping the same file share one copy of it.
+     */
+    public static MappedRoadGraph map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining() && channel.read(header) >= 0) {
+                /* keep reading until the header is full or the file ends */
+            }
+            if(header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a road graph file.");
+            }
+            header.flip();
+            header.getInt();
+            int version = header.getInt();
+            if(version != FORMAT_VERSION) {
+                throw new IOException(path + " has graph format version " + version + " but, version "
+                        + FORMAT_VERSION + " is required. Recompile it with mkgraph.");
+            }
+            int nodeCount = header.getInt();
+            int edgeCount = header.getInt();
+            header.getInt();
+            header.getInt();
+            long fingerprint = header.getLong();
+
+            ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+            for(int i = 0; i < SECTION_COUNT; i++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                sections[i] = mapSection(channel, offset, length);
+            }
+
+            /* the mapping stays valid after the channel is closed */
+            return new MappedRoadGraph(nodeCount, edgeCount, fingerprint, sections);
+        }
+    }
+
+    private static ByteBuffer mapSection(FileChannel channel, long offset, long length) throws IOException {
+        if(length > Integer.MAX_VALUE) {
+            throw new IOException("Road graph section of " + length + " bytes is too large to map.");
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return mapped.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write any RoadGraph to a file that can later be opened with map. Node and edge indices are preserved.
+     */
+    public static void write(RoadGraph graph, Path path) throws IOException {
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+
+        int[] nodeIds = new int[nodeCount];
+        int arcCount = 0;
+        for(int node = 0; node < nodeCount; node++) {
+            nodeIds[node] = graph.nodeId(node);
+            arcCount += graph.degree(node);
+        }
+        int[] sortedNodeIds = new int[nodeCount];
+        int[] sortedNodeIndices = new int[nodeCount];
+        ArrayRoadGraph.sortIdIndex(nodeIds, sortedNodeIds, sortedNodeIndices);
+
+        GeometryFactory factory = new GeometryFactory();
+        int[] geometryOffsets = new int[edgeCount + 1];
+        for(int edge = 0; edge < edgeCount; edge++) {
+            geometryOffsets[edge + 1] = geometryOffsets[edge] + graph.edgeGeometry(edge, factory).getNumPoints();
+        }
+        int geometryPointCount = geometryOffsets[edgeCount];
+
+        long[] lengths = new long[SECTION_COUNT];
+        lengths[SECTION_NODE_IDS] = (long) Integer.BYTES * nodeCount;
+        lengths[SECTION_NODE_COORDINATES] = (long) Double.BYTES * 2 * nodeCount;
+        lengths[SECTION_SORTED_NODE_IDS] = (long) Integer.BYTES * nodeCount;
+        lengths[SECTION_SORTED_NODE_INDICES] = (long) Integer.BYTES * nodeCount;
+        lengths[SECTION_ARC_OFFSETS] = (long) Integer.BYTES * (nodeCount + 1);
+        lengths[SECTION_ARC_TARGETS] = (long) Integer.BYTES * arcCount;
+        lengths[SECTION_ARC_LENGTHS] = (long) Float.BYTES * arcCount;
+        lengths[SECTION_ARC_EDGES] = (long) Integer.BYTES * arcCount;
+        lengths[SECTION_EDGE_IDS] = (long) Integer.BYTES * edgeCount;
+        lengths[SECTION_GEOMETRY_OFFSETS] = (long) Integer.BYTES * (edgeCount + 1);
+        lengths[SECTION_GEOMETRY_COORDINATES] = (long) Double.BYTES * 2 * geometryPointCount;
+
+        long[] offsets = new long[SECTION_COUNT];
+        long position = align(HEADER_BYTES);
+        for(int i = 0; i < SECTION_COUNT; i++) {
+            offsets[i] = position;
+            position = align(position + lengths[i]);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter out = new SectionWriter(channel);
+
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+            out.putInt(nodeCount);
+            out.putInt(edgeCount);
+            out.putInt(arcCount);
+            out.putInt(geometryPointCount);
+            out.putLong(graph.fingerprint());
+            for(int i = 0; i < SECTION_COUNT; i++) {
+                out.putLong(offsets[i]);
+                out.putLong(lengths[i]);
+            }
+
+            out.seek(offsets[SECTION_NODE_IDS]);
+            for(int node = 0; node < nodeCount; node++) {
+                out.putInt(nodeIds[node]);
+            }
+
+            out.seek(offsets[SECTION_NODE_COORDINATES]);
+            for(int node = 0; node < nodeCount; node++) {
+                out.putDouble(graph.nodeX(node));
+                out.putDouble(graph.nodeY(node));
+            }
+
+            out.seek(offsets[SECTION_SORTED_NODE_IDS]);
+            for(int i = 0; i < nodeCount; i++) {
+                out.putInt(sortedNodeIds[i]);
+            }
+
+            out.seek(offsets[SECTION_SORTED_NODE_INDICES]);
+            for(int i = 0; i < nodeCount; i++) {
+                out.putInt(sortedNodeIndices[i]);
+            }
+
+            out.seek(offsets[SECTION_ARC_OFFSETS]);
+            int arcOffset = 0;
+            out.putInt(arcOffset);
+            for(int node = 0; node < nodeCount; node++) {
+                arcOffset += graph.degree(node);
+                out.putInt(arcOffset);
+            }
+
+            out.seek(offsets[SECTION_ARC_TARGETS]);
+            for(int node = 0; node < nodeCount; node++) {
+                for(int i = 0; i < graph.degree(node); i++) {
+                    out.putInt(graph.neighbor(node, i));
+                }
+            }
+
+            out.seek(offsets[SECTION_ARC_LENGTHS]);
+            for(int node = 0; node < nodeCount; node++) {
+                for(int i = 0; i < graph.degree(node); i++) {
+                    out.putFloat((float) graph.arcLength(node, i));
+                }
+            }
+
+            out.seek(offsets[SECTION_ARC_EDGES]);
+            for(int node = 0; node < nodeCount; node++) {
+                for(int i = 0; i < graph.degree(node); i++) {
+                    out.putInt(graph.arcEdge(node, i));
+                }
+            }
+
+            out.seek(offsets[SECTION_EDGE_IDS]);
+            for(int edge = 0; edge < edgeCount; edge++) {
+                out.putInt(graph.edgeId(edge));
+            }
+
+            out.seek(offsets[SECTION_GEOMETRY_OFFSETS]);
+            for(int edge = 0; edge <= edgeCount; edge++) {
+                out.putInt(geometryOffsets[edge]);
+            }
+
+            out.seek(offsets[SECTION_GEOMETRY_COORDINATES]);
+            for(int edge = 0; edge < edgeCount; edge++) {
+                CoordinateSequence geometry = graph.edgeGeometry(edge, factory).getCoordinateSequence();
+                for(int i = 0; i < geometry.size(); i++) {
+                    out.putDouble(geometry.getX(i));
+                    out.putDouble(geometry.getY(i));
+                }
+            }
+
+            out.flush();
+        }
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /* Buffers little-endian writes to a channel. Sections are written in order so seek only ever moves forward over
+     * alignment padding. */
+    private static class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if(buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(Float.BYTES);
+            buffer.putFloat(value);
+            position += Float.BYTES;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+            position += Double.BYTES;
+        }
+
+        void seek(long target) throws IOException {
+            if(target < position) {
+                throw new IllegalStateException("Graph sections must be written in order.");
+            }
+            while(position < target) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+
+import java.sql.SQLException;
+
+/**
+ * Supplies the road graph that a search over an area runs on. Depending on the implementation this is either one
+ * graph of the whole network, loaded once, or a graph of just the area, loaded per request.
+ *
+ * Implementations must be thread safe.
+ */
+public interface RoadGraphSource {
+
+    /**
+     * @param bounds Area that will be searched.
+     * @return A graph containing at least every node inside bounds and every edge between those nodes.
+     */
+    RoadGraph graphFor(Geometry bounds) throws SQLException, ParseException;
+
+    /**
+     * @return Version of the network that graphs are built from. Anything derived from a graph should be tagged with
+     *         this so, it can be discarded when the network changes.
+     */
+    long version();
+
+    /**
+     * @return The graph of the whole network if this source holds it, otherwise null. Sources that load the network
+     *         piece by piece return null.
+     */
+    default RoadGraph wholeGraph() {
+        return null;
+    }
+
+    /**
+     * @return A source that answers every request with the same graph.
+     */
+    static RoadGraphSource of(RoadGraph graph) {
+        long version = graph.fingerprint();
+        return new RoadGraphSource() {
+            @Override
+            public RoadGraph graphFor(Geometry bounds) {
+                return graph;
+            }
+
+            @Override
+            public long version() {
+                return version;
+            }
+
+            @Override
+            public RoadGraph wholeGraph() {
+                return graph;
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package roadgraph;
+
+import java.util.ArrayDeque;
+import java.util.function.Function;
+
+/**
+ * A pool of reusable searches over one graph. A search holds arrays sized to the whole graph so, creating one per
+ * request allocates memory proportional to the network every time. Taking a search from the pool instead makes a
+ * request allocate almost nothing beyond its results.
+ *
+ * A search taken with acquire is confined to the calling thread until it is handed back with release. At most
+ * maxIdle searches are kept between requests, any beyond that are left to the garbage collector.
+ *
+ * This class is thread safe.
+ *
+ * @param <S> Type of search in the pool.
+ */
+public class SearchPool<S extends NetworkSearch> {
+
+    private final RoadGraph graph;
+    private final Function<RoadGraph, S> factory;
+    private final int maxIdle;
+
+    private final ArrayDeque<S> idle = new ArrayDeque<>();
+    private int createdCount;
+
+    /**
+     * @param factory Creates a new search over graph when the pool is empty.
+     * @param maxIdle Maximum number of searches kept in the pool. Use the number of threads that search at once.
+     */
+    public SearchPool(RoadGraph graph, Function<RoadGraph, S> factory, int maxIdle) {
+        this.graph = graph;
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return A search over the graph of this pool. The caller owns it until it is passed to release.
+     */
+    public S acquire() {
+        synchronized (this) {
+            S search = idle.pollFirst();
+            if(search != null) {
+                return search;
+            }
+            createdCount++;
+        }
+        /* creating a search allocates its arrays, do it outside of the lock */
+        return factory.apply(graph);
+    }
+
+    /**
+     * Hand a search back to the pool. The caller must not use it afterwards.
+     */
+    public void release(S search) {
+        if(search.getGraph() != graph) {
+            throw new IllegalArgumentException("Search does not belong to the graph of this pool.");
+        }
+        synchronized (this) {
+            if(idle.size() < maxIdle) {
+                /* most recently used first, its arrays are the most likely to still be in cache */
+                idle.addFirst(search);
+            }
+        }
+    }
+
+    /**
+     * @return Number of searches created by this pool so far.
+     */
+    public synchronized int createdCount() {
+        return createdCount;
+    }
+
+    /**
+     * @return Number of searches waiting in the pool.
+     */
+    public synchronized int idleCount() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,85 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The walking distance from every node of a RoadGraph to its nearest grocery store, up to a radius. This turns "is
+ * there a store within walking distance of this point" into a nearest node lookup and an array read.
+ *
+ * The field is built by one search started from every store node at once. Adding stores only ever lowers distances
+ * so, new stores are added with a search bounded by the radius around them alone rather than a new search of the
+ * whole network.
+ *
+ * Distances are stored as floats, which is well under a meter of error at walking distances. Reads are thread safe
+ * and, may run during addStores: a concurrent reader sees either the old or the new distance of a node.
+ */
+public class StoreDistanceField {
+
+    private final RoadGraph graph;
+    private final double radius;
+
+    /* Distance to the nearest store or positive infinity if there is none within the radius. */
+    private final float[] distances;
+
+    private final DijkstraSearch search;
+
+    /**
+     * Create a field with no stores, every node is at an infinite distance.
+     *
+     * @param radius Distances of this much or more are not recorded.
+     */
+    public StoreDistanceField(RoadGraph graph, double radius) {
+        this.graph = graph;
+        this.radius = radius;
+        this.distances = new float[graph.nodeCount()];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        this.search = new DijkstraSearch(graph);
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return Walking distance from node to the nearest store or positive infinity if it is at least the radius.
+     */
+    public double distance(int node) {
+        return distances[node];
+    }
+
+    /**
+     * Lower the distance of a node, for example to restore a field that was saved earlier.
+     */
+    public synchronized void lower(int node, double distance) {
+        if(distance < radius && distance < distances[node]) {
+            distances[node] = (float) distance;
+        }
+    }
+
+    /**
+     * Add stores to the field with one search bounded by the radius around them.
+     *
+     * @param storeNodes Nodes the new stores are located at.
+     * @param storeCount Number of leading entries of storeNodes to use.
+     * @param changed Receives every node whose distance was lowered.
+     */
+    public synchronized void addStores(int[] storeNodes, int storeCount, IntConsumer changed) {
+        if(storeCount == 0) {
+            return;
+        }
+        search.search(storeNodes, storeCount, radius, node -> true);
+        for(int i = 0; i < search.settledCount(); i++) {
+            int node = search.settledNode(i);
+            float distance = (float) search.distance(node);
+            if(distance < distances[node]) {
+                distances[node] = distance;
+                changed.accept(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package roadgraph;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A RoadGraphSource that splits the network into square tiles on a fixed WebMercator grid and loads each tile the
+ * first time a search needs it. Loaded tiles are kept in memory with least recently used eviction so, a server can
+ * cover a network far larger than its heap as long as the tiles in active use fit.
+ *
+ * The graph for a search is merged from every tile overlapping its bounds. Each edge belongs to the tile of its start
+ * node so, edges crossing tile borders are part of the merged graph and searches continue across borders as if the
+ * network had been loaded in one piece. The most recently merged graphs are kept as well since, searches that follow
+ * each other usually cover the same tiles.
+ *
+ * This class is thread safe. Only the cache bookkeeping is done under its lock, tiles are loaded and merged outside
+ * it so, a search over tiles already in memory never waits for another search's load. A search that needs a tile or
+ * merged graph that another search is still building waits for it instead of building it again.
+ */
+public class TiledGraphSource implements RoadGraphSource {
+
+    /**
+     * Loads the part of the network inside one tile. The tile must own the nodes with minX <= x < maxX and
+     * minY <= y < maxY and, every edge that starts at one of those nodes.
+     */
+    @FunctionalInterface
+    public interface TileLoader {
+        GraphTile loadTile(double minX, double minY, double maxX, double maxY) throws SQLException, ParseException;
+    }
+
+    /* Merged graphs of this many tile ranges are kept on top of the tiles themselves. */
+    private static final int MERGED_GRAPH_CACHE_SIZE = 4;
+
+    private final TileLoader loader;
+    private final long version;
+    private final double tileSize;
+
+    /* Tiles and merged graphs, each as a future that completes once it is built. Guarded by this. */
+    private final Map<Long, CompletableFuture<GraphTile>> tiles;
+    private final Map<TileRange, CompletableFuture<RoadGraph>> mergedGraphs;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param version Version of the network the tiles are loaded from.
+     * @param tileSize Side length of a tile in meters.
+     * @param capacity Maximum number of tiles kept in memory.
+     */
+    public TiledGraphSource(TileLoader loader, long version, double tileSize, int capacity) {
+        this.loader = loader;
+        this.version = version;
+        this.tileSize = tileSize;
+        this.tiles = new LinkedHashMap<Long, CompletableFuture<GraphTile>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<GraphTile>> eldest) {
+                if(size() > capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.mergedGraphs = new LinkedHashMap<TileRange, CompletableFuture<RoadGraph>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileRange, CompletableFuture<RoadGraph>> eldest) {
+                return size() > MERGED_GRAPH_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * @return A graph of every tile overlapping bounds.
+     */
+    @Override
+    public RoadGraph graphFor(Geometry bounds) throws SQLException, ParseException {
+        Envelope envelope = bounds.getEnvelopeInternal();
+        TileRange range = new TileRange(tileIndex(envelope.getMinX()), tileIndex(envelope.getMinY()),
+                                        tileIndex(envelope.getMaxX()), tileIndex(envelope.getMaxY()));
+
+        CompletableFuture<RoadGraph> merged;
+        boolean building = false;
+        synchronized (this) {
+            merged = mergedGraphs.get(range);
+            if(merged != null) {
+                /* count the reuse as a hit on every tile and keep the tiles fresh in the LRU order */
+                for(int ty = range.minY; ty <= range.maxY; ty++) {
+                    for(int tx = range.minX; tx <= range.maxX; tx++) {
+                        tiles.get(tileKey(tx, ty));
+                        hitCount++;
+                    }
+                }
+            } else {
+                merged = new CompletableFuture<>();
+                mergedGraphs.put(range, merged);
+                building = true;
+            }
+        }
+        if(!building) {
+            return await(merged);
+        }
+
+        try {
+            ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+            for(int ty = range.minY; ty <= range.maxY; ty++) {
+                for(int tx = range.minX; tx <= range.maxX; tx++) {
+                    tile(tx, ty).addTo(builder);
+                }
+            }
+            RoadGraph graph = builder.build();
+            merged.complete(graph);
+            return graph;
+        } catch (Throwable e) {
+            synchronized (this) {
+                mergedGraphs.remove(range, merged);
+            }
+            merged.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private int tileIndex(double coordinate) {
+        return (int) Math.floor(coordinate / tileSize);
+    }
+
+    private static long tileKey(int tx, int ty) {
+        return ((long) tx << 32) | (ty & 0xFFFFFFFFL);
+    }
+
+    private GraphTile tile(int tx, int ty) throws SQLException, ParseException {
+        long key = tileKey(tx, ty);
+        CompletableFuture<GraphTile> tile;
+        boolean loading = false;
+        synchronized (this) {
+            tile = tiles.get(key);
+            if(tile != null) {
+                hitCount++;
+            } else {
+                missCount++;
+                tile = new CompletableFuture<>();
+                tiles.put(key, tile);
+                loading = true;
+            }
+        }
+        if(!loading) {
+            return await(tile);
+        }
+
+        try {
+            GraphTile loaded = loader.loadTile(tx * tileSize, ty * tileSize, (tx + 1) * tileSize, (ty + 1) * tileSize);
+            tile.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            /* drop the failed load so that the next search tries again */
+            synchronized (this) {
+                tiles.remove(key, tile);
+            }
+            tile.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /* Wait for a tile or merged graph that another search is building and pass on its errors. */
+    private static <T> T await(CompletableFuture<T> future) throws SQLException, ParseException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if(cause instanceof ParseException) {
+                throw (ParseException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    public double getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return Number of tiles currently in memory.
+     */
+    public synchronized int tileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * @return Number of times a tile was needed by a search and was already in memory, either on its own or as part
+     *         of a merged graph.
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Number of times a tile was needed by a search and had to be loaded.
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Number of tiles dropped from memory to make room for others.
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /* Inclusive range of tile indices. */
+    private static final class TileRange {
+        private final int minX, minY, maxX, maxY;
+
+        TileRange(int minX, int minY, int maxX, int maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(o == null || getClass() != o.getClass()) return false;
+            TileRange range = (TileRange) o;
+            return minX == range.minX && minY == range.minY && maxX == range.maxX && maxY == range.maxY;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(minX, minY, maxX, maxY);
+        }
+    }
+}
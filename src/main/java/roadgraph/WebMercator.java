@@ -0,0 +1,41 @@
+package roadgraph;
+
+/**
+ * Converts between ground meters, which is what edge lengths and walking distances are measured in, and WebMercator
+ * (EPSG 3857) units, which is what node coordinates are in. WebMercator stretches lengths by cosh(y / EARTH_RADIUS)
+ * at y, about 1.29 at 39 degrees north, so a ground distance has to be scaled before it is compared to coordinates.
+ */
+public final class WebMercator {
+
+    /* Radius of the WGS84 sphere used by WebMercator. */
+    public static final double EARTH_RADIUS = 6378137;
+
+    private WebMercator() {
+    }
+
+    /**
+     * @return Number of WebMercator units that one ground meter spans at y.
+     */
+    public static double scale(double y) {
+        return Math.cosh(y / EARTH_RADIUS);
+    }
+
+    /**
+     * @return Ground meters between two points in WebMercator coordinates. The scale is taken at their middle, which
+     *         is accurate to well under a millimeter for points a mile apart.
+     */
+    public static double groundDistance(double x0, double y0, double x1, double y1) {
+        return Math.hypot(x1 - x0, y1 - y0) / scale((y0 + y1) / 2);
+    }
+
+    /**
+     * @return WebMercator distance from the rows minY to maxY within which every point that is at most radius ground
+     *         meters away from them lies.
+     */
+    public static double reach(double radius, double minY, double maxY) {
+        /* the scale grows away from the equator. Take it at the far edge of the reach. */
+        double maxAbsY = Math.max(Math.abs(minY), Math.abs(maxY));
+        double reach = radius * scale(maxAbsY);
+        return radius * scale(maxAbsY + reach);
+    }
+}
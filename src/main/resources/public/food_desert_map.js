@@ -184,27 +184,77 @@ function handleQueryButtonClick(){
  * API call functions
  ****************************************/
 
-/* Place a call to the server that will return an array of polygons that represents the area within the query bounds
- * that is a food desert. */
+/* Food desert tiles are served from MIN_TILE_ZOOM to MAX_TILE_ZOOM (see FoodDesertQueryHandler.getFoodDesertTile).
+ * Queries use the deepest zoom level that covers the query bounds with at most MAX_TILES tiles. Every tile may cost
+ * the server Places API calls so, bounds that need more tiles than that even at MIN_TILE_ZOOM are not queried. */
+var MIN_TILE_ZOOM = 10;
+var MAX_TILE_ZOOM = 20;
+var MAX_TILES = 16;
+
+/* Place calls to the server for the food desert tiles covering the query bounds. Each tile returns an array of polygons
+ * that represents the area within the tile that is a food desert. Tiles are cached by the server so, querying an area
+ * that was seen before is fast. The statistics cover every tile received so far. */
 function foodDesertQuery(bounds){
+    var northEast = bounds.getNorthEast();
+    var southWest = bounds.getSouthWest();
+
+    var zoom = MAX_TILE_ZOOM;
+    var minTile, maxTile;
+    for(;;) {
+        minTile = tileOf(northEast.lat(), southWest.lng(), zoom);
+        maxTile = tileOf(southWest.lat(), northEast.lng(), zoom);
+        var tileCount = (maxTile.x - minTile.x + 1) * (maxTile.y - minTile.y + 1);
+        if (tileCount <= MAX_TILES) {
+            break;
+        }
+        if (zoom === MIN_TILE_ZOOM) {
+            alert('The query rectangle is too large for food desert queries. Zoom in or shrink the rectangle.');
+            return;
+        }
+        zoom--;
+    }
+
+    var foodDesertArea = 0;
+    var totalArea = 0;
+    for (var x = minTile.x; x <= maxTile.x; x++) {
+        for (var y = minTile.y; y <= maxTile.y; y++) {
+            foodDesertTileQuery(zoom, x, y, function (result) {
+                foodDesertArea += result.desert_area;
+                totalArea += result.total_area;
+                updateFoodDesertStats(foodDesertArea, totalArea);
+
+                result.desert_geom.forEach(addFoodDesertPolygon);
+            });
+        }
+    }
+}
+
+/* Place a call to the server for the food deserts of one tile. callback is invoked with the result. */
+function foodDesertTileQuery(zoom, x, y, callback){
     var xhr = new XMLHttpRequest();
-    var request = '/food_deserts?' + prepareEnvelopeQuery(bounds);
+    var request = '/food_deserts/tiles/' + zoom + '/' + x + '/' + y;
 
     xhr.open('GET', request, true);
     xhr.onload = function (e) {
         if (xhr.readyState === 4 && xhr.status === 200){
-            var result = JSON.parse(xhr.responseText);
-
-            var foodDesertArea = result.desert_area;
-            var totalArea = result.total_area;
-            updateFoodDesertStats(foodDesertArea, totalArea);
-
-            result.desert_geom.forEach(addFoodDesertPolygon);
+            callback(JSON.parse(xhr.responseText));
         }
     }
     xhr.send(null);
 }
 
+/* Column and row of the slippy map tile containing a point at a zoom level. */
+function tileOf(lat, lng, zoom){
+    var n = Math.pow(2, zoom);
+    var latRad = lat * Math.PI / 180;
+    var x = Math.floor((lng + 180) / 360 * n);
+    var y = Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n);
+    return {
+        x: Math.min(n - 1, Math.max(0, x)),
+        y: Math.min(n - 1, Math.max(0, y))
+    };
+}
+
 /* Place a call to the server that will return an array of polygons representing the polygons of a Voronoi diagram
  * generated from the grocery stores with the area specified by bounds. callback is invoked once for each polygon. */
 function storeVoronoiQuery(bounds){
@@ -6,7 +6,10 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import database.fooddesert.FoodDesertDatabase;
 import org.junit.AfterClass;
@@ -19,6 +22,7 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.io.ParseException;
 
+import fooddesertserver.FoodDesertGeometry;
 import fooddesertserver.GroceryStore;
 
 import static org.junit.Assert.*;
@@ -120,6 +124,34 @@ public class FoodDesertDatabaseTest {
         assertEquals(2,result.size());
     }
 
+    /**
+     * insertAll should only return the stores that were not in the database yet.
+     */
+    @Test
+    public void testInsertAllReturnsNewStores() throws SQLException, ParseException {
+        dbInterface.insertStore(testStoreName);
+
+        List<GroceryStore> inserted = dbInterface.insertAll(testStoreName, testStoreNullName);
+        assertEquals(1, inserted.size());
+        assertEquals(testStoreNullName.getLocation(), inserted.get(0).getLocation());
+        assertTrue(inserted.get(0).hasId());
+        assertEquals(2, dbInterface.countStores());
+    }
+
+    /**
+     * Stores inserted later should have larger ids.
+     */
+    @Test
+    public void testMaxStoreId() throws SQLException, ParseException {
+        assertEquals(-1, dbInterface.selectMaxStoreId());
+
+        GroceryStore first = dbInterface.insertStore(testStoreName);
+        assertEquals(first.getId(), dbInterface.selectMaxStoreId());
+        GroceryStore second = dbInterface.insertStore(testStoreNullName);
+        assertTrue(second.getId() > first.getId());
+        assertEquals(second.getId(), dbInterface.selectMaxStoreId());
+    }
+
 
     /**
      * test that a spatial query can correctly return more than one store
@@ -298,4 +330,103 @@ public class FoodDesertDatabaseTest {
         assertTrue(unsearchedBuffer.isEmpty());
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Store buffers should round trip through the database and only be found for the radius, shape and network version
+     * they were stored with.
+     */
+    @Test
+    public void testStoreBuffer() throws SQLException, ParseException {
+        Geometry buffer = searchFrame;
+        dbInterface.insertStoreBuffer(7, 1609.34, "hull", 42L, buffer);
+
+        Geometry selected = dbInterface.selectStoreBuffer(7, 1609.34, "hull", 42L);
+        assertNotNull(selected);
+        assertTrue(buffer.equalsExact(selected));
+
+        assertNull(dbInterface.selectStoreBuffer(7, 1000, "hull", 42L));
+        assertNull(dbInterface.selectStoreBuffer(7, 1609.34, "edges", 42L));
+        assertNull(dbInterface.selectStoreBuffer(7, 1609.34, "hull", 43L));
+        assertNull(dbInterface.selectStoreBuffer(8, 1609.34, "hull", 42L));
+    }
+
+    /**
+     * Deleting stale buffers should remove buffers of every other network version and keep the current ones.
+     */
+    @Test
+    public void testDeleteStaleStoreBuffers() throws SQLException, ParseException {
+        dbInterface.insertStoreBuffer(1, 1609.34, "hull", 1L, searchFrame);
+        dbInterface.insertStoreBuffer(2, 1609.34, "hull", 1L, searchFrame);
+        dbInterface.insertStoreBuffer(1, 1609.34, "hull", 2L, searchFrame);
+
+        assertEquals(2, dbInterface.deleteStaleStoreBuffers(2L));
+        assertNull(dbInterface.selectStoreBuffer(1, 1609.34, "hull", 1L));
+        assertNotNull(dbInterface.selectStoreBuffer(1, 1609.34, "hull", 2L));
+    }
+
+    /**
+     * Tiles should round trip through the database and only be found for the network version they were stored with
+     * and, if their stored extent covers the requested one.
+     */
+    @Test
+    public void testFoodDesertTile() throws SQLException, ParseException {
+        FoodDesertGeometry tile = new FoodDesertGeometry(searchFrame, 25, 100);
+        Envelope extent = new Envelope(-10, 10, -10, 10);
+        dbInterface.insertFoodDesertTile(12, 1171, 1566, 42L, extent, tile);
+
+        FoodDesertGeometry selected = dbInterface.selectFoodDesertTile(12, 1171, 1566, 42L, extent);
+        assertNotNull(selected);
+        assertTrue(searchFrame.equalsExact(selected.getFoodDesertGeometry()));
+        assertEquals(25, selected.getFoodDesertArea(), 0);
+        assertEquals(100, selected.getQueriedArea(), 0);
+        assertNotNull(dbInterface.selectFoodDesertTile(12, 1171, 1566, 42L, new Envelope(-5, 5, -5, 5)));
+
+        assertNull(dbInterface.selectFoodDesertTile(12, 1171, 1566, 43L, extent));
+        assertNull(dbInterface.selectFoodDesertTile(12, 1172, 1566, 42L, extent));
+        assertNull(dbInterface.selectFoodDesertTile(13, 1171, 1566, 42L, extent));
+        assertNull(dbInterface.selectFoodDesertTile(12, 1171, 1566, 42L, new Envelope(-10, 12, -10, 10)));
+    }
+
+    /**
+     * Adding a store should delete the tiles whose extent contains it and keep the others.
+     */
+    @Test
+    public void testDeleteFoodDesertTiles() throws SQLException, ParseException {
+        FoodDesertGeometry tile = new FoodDesertGeometry(searchFrame, 25, 100);
+        dbInterface.insertFoodDesertTile(12, 0, 0, 42L, new Envelope(-10, 10, -10, 10), tile);
+        dbInterface.insertFoodDesertTile(12, 1, 0, 42L, new Envelope(10, 30, -10, 10), tile);
+
+        GroceryStore store = new GroceryStore("test", new Coordinate(5, 5));
+        assertEquals(1, dbInterface.deleteFoodDesertTiles(Collections.singletonList(store)));
+        assertNull(dbInterface.selectFoodDesertTile(12, 0, 0, 42L, new Envelope(-10, 10, -10, 10)));
+        assertNotNull(dbInterface.selectFoodDesertTile(12, 1, 0, 42L, new Envelope(10, 30, -10, 10)));
+
+        assertEquals(1, dbInterface.deleteStaleFoodDesertTiles(43L));
+        assertNull(dbInterface.selectFoodDesertTile(12, 1, 0, 42L, new Envelope(10, 30, -10, 10)));
+    }
+
+    /**
+     * Distance fields should round trip through the database and be dropped once the store count no longer matches.
+     */
+    @Test
+    public void testStoreDistances() throws SQLException, ParseException {
+        assertEquals(-1, dbInterface.selectStoreDistanceFieldStoreCount(42L, 1609.34));
+
+        dbInterface.insertStoreDistances(42L, 1609.34, 1, new int[]{10, 11, 12}, new double[]{0, 50, 100}, 2);
+        dbInterface.insertStoreDistances(42L, 1609.34, 2, new int[]{11}, new double[]{25}, 1);
+        assertEquals(2, dbInterface.selectStoreDistanceFieldStoreCount(42L, 1609.34));
+
+        Map<Integer, Double> distances = new HashMap<>();
+        dbInterface.selectStoreDistances(42L, 1609.34, distances::put);
+        assertEquals(2, distances.size());
+        assertEquals(0, distances.get(10), 0);
+        assertEquals(25, distances.get(11), 0);
+
+        /* the field was computed from 2 stores but, there are 3 now */
+        dbInterface.deleteStaleStoreDistances(42L, 1609.34, 3);
+        assertEquals(-1, dbInterface.selectStoreDistanceFieldStoreCount(42L, 1609.34));
+        distances.clear();
+        dbInterface.selectStoreDistances(42L, 1609.34, distances::put);
+        assertTrue(distances.isEmpty());
+    }
+}
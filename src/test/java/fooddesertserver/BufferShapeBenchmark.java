@@ -0,0 +1,85 @@
+package fooddesertserver;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import roadgraph.ArrayRoadGraph;
+import roadgraph.DijkstraSearch;
+import roadgraph.TestGraphs;
+
+import java.util.Random;
+
+/**
+ * Compares the run time of each BufferShape on the edges reached by a one mile walking distance search along with how
+ * far its area is from a finely drawn edge buffer of the same width. Results are printed to standard out.
+ * Skipped unless the benchmark system property is set, run it with gradle benchmark.
+ */
+public class BufferShapeBenchmark {
+
+    private static final double RADIUS = 1609.34;
+    private static final int BUFFERS = 20;
+    private static final int WARM_UP_BUFFERS = 10;
+
+    private static final BufferShape[] SHAPES = {BufferShape.HULL, BufferShape.EDGES};
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    /* the edges widened with round ends of 16 segments per quarter circle, taken to be the true walking area */
+    private static final BufferShape REFERENCE = new EdgeBufferShape(50, 16);
+
+    private static void benchmark(String name, ArrayRoadGraph graph) {
+        GeometryFactory factory = new GeometryFactory();
+        DijkstraSearch search = new DijkstraSearch(graph);
+        Random random = new Random(17);
+
+        Geometry[][] inputs = new Geometry[BUFFERS][];
+        for (int i = 0; i < BUFFERS; i++) {
+            search.search(random.nextInt(graph.nodeCount()), RADIUS, node -> true);
+            inputs[i] = new Geometry[search.reachedEdgeCount()];
+            for (int e = 0; e < inputs[i].length; e++) {
+                inputs[i][e] = graph.edgeGeometry(search.reachedEdge(e), factory);
+            }
+        }
+
+        Geometry[] references = new Geometry[BUFFERS];
+        for (int i = 0; i < BUFFERS; i++) {
+            references[i] = REFERENCE.shape(inputs[i], factory);
+        }
+
+        System.out.println(name + ", " + BUFFERS + " buffers of radius " + RADIUS);
+        for (BufferShape shape : SHAPES) {
+            /* let the JIT compile the shape before timing it */
+            for (int i = 0; i < WARM_UP_BUFFERS; i++) {
+                shape.shape(inputs[i], factory);
+            }
+
+            long nanos = 0;
+            double error = 0;
+            for (int i = 0; i < BUFFERS; i++) {
+                long start = System.nanoTime();
+                Geometry buffer = shape.shape(inputs[i], factory);
+                nanos += System.nanoTime() - start;
+
+                error += buffer.symDifference(references[i]).getArea() / references[i].getArea();
+            }
+            System.out.println(String.format("\t%-6s %6d us per buffer, area off by %.1f%%",
+                    shape.name() + ":", nanos / BUFFERS / 1000, 100 * error / BUFFERS));
+        }
+    }
+
+    @Test
+    public void benchmarkDenseGrid() {
+        /* city blocks, every point is within the width of some street */
+        benchmark("Dense grid", TestGraphs.grid(100, 100, 80, new Random(7)));
+    }
+
+    @Test
+    public void benchmarkSparseGrid() {
+        /* rural roads, most of the area between streets is out of reach */
+        benchmark("Sparse grid", TestGraphs.grid(30, 30, 400, new Random(7)));
+    }
+}
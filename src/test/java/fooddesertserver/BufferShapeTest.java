@@ -0,0 +1,68 @@
+package fooddesertserver;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import static org.junit.Assert.*;
+
+public class BufferShapeTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    /* An L shaped pair of streets, each 500 meters long. */
+    private Geometry[] corner() {
+        return new Geometry[]{
+                factory.createLineString(new Coordinate[]{new Coordinate(0, 0), new Coordinate(500, 0)}),
+                factory.createLineString(new Coordinate[]{new Coordinate(0, 0), new Coordinate(0, 500)})
+        };
+    }
+
+    @Test
+    public void testParse() {
+        assertSame(BufferShape.HULL, BufferShape.parse(null));
+        assertSame(BufferShape.HULL, BufferShape.parse("hull"));
+        assertSame(BufferShape.EDGES, BufferShape.parse("Edges"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseUnknown() {
+        BufferShape.parse("circle");
+    }
+
+    /**
+     * Shapes with different parameters must be cached under different names.
+     */
+    @Test
+    public void testNamesAreDistinct() {
+        assertNotEquals(BufferShape.HULL.name(), BufferShape.EDGES.name());
+        assertNotEquals(BufferShape.HULL.name(), new ConcaveHullShape(50).name());
+        assertNotEquals(BufferShape.EDGES.name(), new EdgeBufferShape(50, 16).name());
+    }
+
+    /**
+     * The edge buffer should cover every edge and nothing further than its width from them. The inside of the corner
+     * is not reached.
+     */
+    @Test
+    public void testEdgeBuffer() {
+        Geometry[] edges = corner();
+        Geometry buffer = BufferShape.EDGES.shape(edges, factory);
+
+        for (Geometry edge : edges) {
+            assertTrue(buffer.covers(edge));
+        }
+        assertFalse(buffer.contains(factory.createPoint(new Coordinate(250, 250))));
+        assertFalse(buffer.contains(factory.createPoint(new Coordinate(560, 0))));
+
+        /* two 500 x 100 rectangles sharing a 50 x 50 square at the corner, plus rounded ends */
+        double area = 2 * 500 * 100 + Math.PI * 50 * 50 - 50 * 50;
+        assertEquals(area, buffer.getArea(), 0.05 * area);
+    }
+
+    @Test
+    public void testEmptyEdgeBuffer() {
+        assertTrue(BufferShape.EDGES.shape(new Geometry[0], factory).isEmpty());
+    }
+}
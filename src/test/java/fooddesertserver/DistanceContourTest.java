@@ -0,0 +1,81 @@
+package fooddesertserver;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import roadgraph.ArrayRoadGraph;
+import roadgraph.TestGraphs;
+
+import static org.junit.Assert.*;
+
+public class DistanceContourTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+    private final DistanceContour contour = new DistanceContour(factory);
+
+    /* 3 x 3 nodes spaced 100 meters apart, covering [0, 200] x [0, 200] */
+    private final ArrayRoadGraph grid = TestGraphs.grid(3, 3, 100, null);
+    private final Envelope frame = new Envelope(0, 200, 0, 200);
+
+    private boolean contains(Geometry geometry, double x, double y) {
+        return geometry.contains(factory.createPoint(new Coordinate(x, y)));
+    }
+
+    @Test
+    public void testNoStoreInReach() {
+        Geometry reachable = contour.reachable(grid, frame, node -> Double.POSITIVE_INFINITY, 150);
+        assertTrue(reachable.isEmpty());
+    }
+
+    /**
+     * Linear interpolation is exact for a distance that grows linearly so, the contour should be a straight line.
+     */
+    @Test
+    public void testLinearDistance() {
+        Geometry reachable = contour.reachable(grid, frame, grid::nodeX, 150);
+        assertEquals(150 * 200, reachable.getArea(), 1e-6);
+        assertTrue(contains(reachable, 140, 100));
+        assertFalse(contains(reachable, 160, 100));
+    }
+
+    /**
+     * Toward a node with no store in reach, the distance should grow as a straight walk from the reached node.
+     */
+    @Test
+    public void testUnreachedNeighbors() {
+        int center = grid.nodeIndex(TestGraphs.gridNodeId(3, 1, 1));
+        Geometry reachable = contour.reachable(grid, frame,
+                node -> node == center ? 0 : Double.POSITIVE_INFINITY, 50);
+        assertTrue(contains(reachable, 100, 100));
+        assertTrue(contains(reachable, 140, 100));
+        assertFalse(contains(reachable, 160, 100));
+        assertTrue(reachable.getArea() < Math.PI * 50 * 50);
+    }
+
+    /**
+     * Contouring several thresholds at once should give the same bands as contouring each on its own.
+     */
+    @Test
+    public void testBands() {
+        double[] thresholds = {50, 150, 250};
+        Geometry[] bands = contour.reachable(grid, frame, grid::nodeX, thresholds);
+        assertEquals(thresholds.length, bands.length);
+        for (int t = 0; t < thresholds.length; t++) {
+            Geometry single = contour.reachable(grid, frame, grid::nodeX, thresholds[t]);
+            assertEquals(single.getArea(), bands[t].getArea(), 1e-6);
+        }
+        assertEquals(50 * 200, bands[0].getArea(), 1e-6);
+        assertEquals(200 * 200, bands[2].getArea(), 1e-6);
+    }
+
+    /**
+     * Nodes outside of the frame should not be triangulated.
+     */
+    @Test
+    public void testFrame() {
+        Geometry reachable = contour.reachable(grid, new Envelope(0, 100, 0, 200), node -> 0, 150);
+        assertEquals(100 * 200, reachable.getArea(), 1e-6);
+    }
+}
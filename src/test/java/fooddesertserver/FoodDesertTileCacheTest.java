@@ -0,0 +1,158 @@
+package fooddesertserver;
+
+import database.fooddesert.FoodDesertDatabase;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.WebMercator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FoodDesertTileCacheTest {
+
+    private static final double HALF_WIDTH = 20037508.342789244;
+    private static final double MILE = 1609.344;
+
+    /* A tile at about 39 degrees north, where a ground mile spans about 1.29 WebMercator miles. */
+    private static final int ZOOM = 12, X = 1171, Y = 1566;
+
+    private static FoodDesertDatabase dbInterface;
+
+    private FoodDesertTileCache cache;
+    private FoodDesertGeometry tile;
+
+    @BeforeClass
+    public static void openDB() throws SQLException, IOException {
+        String testDBName = "test.db";
+
+        Path dbPath = Paths.get(testDBName);
+        if (Files.exists(dbPath, LinkOption.NOFOLLOW_LINKS)) {
+            Files.delete(dbPath);
+        }
+
+        dbInterface = FoodDesertDatabase.createDatabase(testDBName);
+    }
+
+    @AfterClass
+    public static void closeDB() throws SQLException {
+        dbInterface.close();
+    }
+
+    @Before
+    public void setupCache() throws SQLException {
+        dbInterface.truncate();
+        cache = new FoodDesertTileCache(dbInterface, 42L, MILE, 16);
+        Envelope envelope = FoodDesertTileCache.tileEnvelope(ZOOM, X, Y);
+        tile = new FoodDesertGeometry(new GeometryFactory().toGeometry(envelope), 0, envelope.getArea());
+    }
+
+    /* A store the given number of ground miles east of the tile. */
+    private static GroceryStore storeEastOfTile(double miles) {
+        Envelope envelope = FoodDesertTileCache.tileEnvelope(ZOOM, X, Y);
+        double y = envelope.centre().y;
+        return new GroceryStore("test", new Coordinate(envelope.getMaxX() + miles * MILE * WebMercator.scale(y), y));
+    }
+
+    private void putTile() throws SQLException {
+        long generation = cache.start();
+        try {
+            assertTrue(cache.put(ZOOM, X, Y, tile, generation));
+        } finally {
+            cache.finish(generation);
+        }
+    }
+
+    /**
+     * A store within a mile on the ground should delete the tile, even where a ground mile spans more than a mile of
+     * WebMercator units. A store further away should not.
+     */
+    @Test
+    public void testNearbyStoreDeletesTile() throws SQLException, ParseException {
+        putTile();
+        cache.storesAdded(Collections.singletonList(storeEastOfTile(3)));
+        assertNotNull(cache.get(ZOOM, X, Y));
+
+        cache.storesAdded(Collections.singletonList(storeEastOfTile(0.95)));
+        assertNull(cache.get(ZOOM, X, Y));
+    }
+
+    /**
+     * Tiles should be read back from the database by a new cache for the same network.
+     */
+    @Test
+    public void testTileSurvivesRestart() throws SQLException, ParseException {
+        putTile();
+        FoodDesertTileCache restarted = new FoodDesertTileCache(dbInterface, 42L, MILE, 16);
+        assertNotNull(restarted.get(ZOOM, X, Y));
+    }
+
+    /**
+     * A tile computed while a store was added should only be dropped if the store is within its extent.
+     */
+    @Test
+    public void testOnlyNearbyStoresDropRunningTile() throws SQLException, ParseException {
+        long generation = cache.start();
+        cache.storesAdded(Collections.singletonList(storeEastOfTile(3)));
+        assertTrue(cache.put(ZOOM, X, Y, tile, generation));
+        cache.finish(generation);
+        assertNotNull(cache.get(ZOOM, X, Y));
+
+        cache.storesAdded(Collections.singletonList(storeEastOfTile(0.95)));
+        generation = cache.start();
+        /* stores added before the tile started are already in it */
+        assertTrue(cache.put(ZOOM, X, Y, tile, generation));
+        cache.storesAdded(Collections.singletonList(storeEastOfTile(0.95)));
+        assertFalse(cache.put(ZOOM, X, Y, tile, generation));
+        cache.finish(generation);
+        assertNull(cache.get(ZOOM, X, Y));
+    }
+
+    @Test
+    public void testWorldTile() {
+        assertEquals(new Envelope(-HALF_WIDTH, HALF_WIDTH, -HALF_WIDTH, HALF_WIDTH),
+                     FoodDesertTileCache.tileEnvelope(0, 0, 0));
+    }
+
+    /**
+     * Columns should count from the west and rows from the north.
+     */
+    @Test
+    public void testTileOrder() {
+        Envelope northEast = FoodDesertTileCache.tileEnvelope(1, 1, 0);
+        assertEquals(0, northEast.getMinX(), 1e-6);
+        assertEquals(HALF_WIDTH, northEast.getMaxX(), 1e-6);
+        assertEquals(0, northEast.getMinY(), 1e-6);
+        assertEquals(HALF_WIDTH, northEast.getMaxY(), 1e-6);
+    }
+
+    /**
+     * The four tiles of the next zoom level should exactly cover their parent.
+     */
+    @Test
+    public void testChildrenCoverParent() {
+        Envelope parent = FoodDesertTileCache.tileEnvelope(12, 1171, 1566);
+        Envelope children = new Envelope();
+        for (int dx = 0; dx < 2; dx++) {
+            for (int dy = 0; dy < 2; dy++) {
+                children.expandToInclude(FoodDesertTileCache.tileEnvelope(13, 2 * 1171 + dx, 2 * 1566 + dy));
+            }
+        }
+        assertEquals(parent.getMinX(), children.getMinX(), 1e-6);
+        assertEquals(parent.getMaxX(), children.getMaxX(), 1e-6);
+        assertEquals(parent.getMinY(), children.getMinY(), 1e-6);
+        assertEquals(parent.getMaxY(), children.getMaxY(), 1e-6);
+    }
+}
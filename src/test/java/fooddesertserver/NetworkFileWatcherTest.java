@@ -0,0 +1,105 @@
+package fooddesertserver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class NetworkFileWatcherTest {
+
+    private Path directory;
+    private Path network;
+    private AtomicInteger loads;
+
+    @Before
+    public void createNetwork() throws IOException {
+        directory = Files.createTempDirectory("watch");
+        network = directory.resolve("network.graph");
+        Files.write(network, "first".getBytes(StandardCharsets.UTF_8));
+        loads = new AtomicInteger();
+    }
+
+    @After
+    public void deleteNetwork() throws IOException {
+        Files.deleteIfExists(network);
+        Files.deleteIfExists(directory.resolve("next.graph"));
+        Files.delete(directory);
+    }
+
+    /* Write a new network next to the old one and move it into place. */
+    private void replaceNetwork(String contents) throws IOException {
+        Path next = directory.resolve("next.graph");
+        Files.write(next, contents.getBytes(StandardCharsets.UTF_8));
+        Files.move(next, network, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Test
+    public void testUnchangedFileIsNotLoaded() {
+        NetworkFileWatcher watcher = new NetworkFileWatcher(Collections.singletonList(network), loads::incrementAndGet);
+        watcher.poll();
+        watcher.poll();
+        assertEquals(0, loads.get());
+    }
+
+    /**
+     * A replaced file should be loaded once, on the first poll that finds it unchanged since the one before.
+     */
+    @Test
+    public void testReplacedFileIsLoadedOnceSettled() throws IOException {
+        NetworkFileWatcher watcher = new NetworkFileWatcher(Collections.singletonList(network), loads::incrementAndGet);
+        replaceNetwork("second");
+        watcher.poll();
+        assertEquals(0, loads.get());
+        watcher.poll();
+        assertEquals(1, loads.get());
+        watcher.poll();
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * A missing file is taken to be in the middle of a replacement and should not be loaded.
+     */
+    @Test
+    public void testMissingFileIsNotLoaded() throws IOException {
+        NetworkFileWatcher watcher = new NetworkFileWatcher(Collections.singletonList(network), loads::incrementAndGet);
+        Files.delete(network);
+        watcher.poll();
+        watcher.poll();
+        assertEquals(0, loads.get());
+
+        replaceNetwork("second");
+        watcher.poll();
+        watcher.poll();
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * A failed load should not be retried until the file changes again.
+     */
+    @Test
+    public void testFailedLoadWaitsForNextChange() throws IOException {
+        NetworkFileWatcher watcher = new NetworkFileWatcher(Collections.singletonList(network), () -> {
+            loads.incrementAndGet();
+            throw new IOException("not a graph file");
+        });
+        replaceNetwork("broken");
+        watcher.poll();
+        watcher.poll();
+        watcher.poll();
+        assertEquals(1, loads.get());
+
+        replaceNetwork("fixed");
+        watcher.poll();
+        watcher.poll();
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,62 @@
+package fooddesertserver;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class RasterGridTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    /* 100 x 50 meters in 10 meter cells */
+    private final RasterGrid grid = new RasterGrid(new Envelope(0, 100, 0, 50), 10);
+
+    @Test
+    public void testResolution() {
+        assertEquals(10, grid.getCellSize(), 1e-9);
+        assertEquals(10, grid.getWidth());
+        assertEquals(5, grid.getHeight());
+    }
+
+    @Test
+    public void testCellsWhere() {
+        BitSet mask = grid.cellsWhere((x, y) -> x < 30);
+        assertEquals(15, mask.cardinality());
+        assertTrue(mask.get(2));
+        assertFalse(mask.get(3));
+        assertEquals(1500, grid.area(mask), 1e-9);
+    }
+
+    @Test
+    public void testCellsInsidePolygon() {
+        Geometry triangle = factory.createPolygon(new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(100, 0), new Coordinate(0, 50), new Coordinate(0, 0)});
+        BitSet mask = grid.cellsInside(triangle, factory);
+        /* every cell whose center is below the diagonal */
+        assertEquals(25, mask.cardinality());
+    }
+
+    /**
+     * A mask with a hole should come back as one polygon with one hole and the area of its cells.
+     */
+    @Test
+    public void testPolygonize() {
+        BitSet mask = grid.cellsWhere((x, y) -> !(x > 40 && x < 60 && y > 20 && y < 30));
+        Geometry polygons = grid.polygonize(mask, factory);
+        assertEquals(1, polygons.getNumGeometries());
+        assertEquals(1, ((Polygon) polygons.getGeometryN(0)).getNumInteriorRing());
+        assertEquals(grid.area(mask), polygons.getArea(), 1e-6);
+    }
+
+    @Test
+    public void testPolygonizeEmpty() {
+        assertTrue(grid.polygonize(new BitSet(), factory).isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package fooddesertserver;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares unioning store buffers one at a time into a growing union with TreeUnion on one thread and on every core.
+ * Results are printed to standard out.
+ * Skipped unless the benchmark system property is set, run it with gradle benchmark.
+ */
+public class TreeUnionBenchmark {
+
+    private static final double RADIUS = 1609.34;
+    private static final int RUNS = 3;
+
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    /* Irregular one mile buffers, like concave hulls of a street network, around stores scattered over a city. */
+    private static List<Geometry> storeBuffers(int stores, double citySize, GeometryFactory factory, Random random) {
+        List<Geometry> buffers = new ArrayList<>(stores);
+        for (int i = 0; i < stores; i++) {
+            double x = random.nextDouble() * citySize;
+            double y = random.nextDouble() * citySize;
+            Coordinate[] ring = new Coordinate[65];
+            for (int p = 0; p < 64; p++) {
+                double angle = 2 * Math.PI * p / 64;
+                double reach = RADIUS * (0.6 + 0.4 * random.nextDouble());
+                ring[p] = new Coordinate(x + reach * Math.cos(angle), y + reach * Math.sin(angle));
+            }
+            ring[64] = ring[0];
+            buffers.add(factory.createPolygon(ring));
+        }
+        return buffers;
+    }
+
+    private static Geometry sequentialUnion(List<Geometry> buffers, GeometryFactory factory) {
+        Geometry union = factory.createGeometryCollection();
+        for (Geometry buffer : buffers) {
+            union = union.union(buffer);
+        }
+        return union;
+    }
+
+    private static void benchmark(int stores) {
+        GeometryFactory factory = new GeometryFactory();
+        List<Geometry> buffers = storeBuffers(stores, 30000, factory, new Random(7));
+        TreeUnion serial = new TreeUnion(new ForkJoinPool(1), factory);
+        TreeUnion parallel = new TreeUnion(ForkJoinPool.commonPool(), factory);
+
+        /* let the JIT compile the overlay before timing it */
+        sequentialUnion(buffers.subList(0, stores / 4), factory);
+        serial.union(buffers);
+
+        long sequentialNanos = 0, serialNanos = 0, parallelNanos = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Geometry expected = sequentialUnion(buffers, factory);
+            sequentialNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Geometry serialUnion = serial.union(buffers);
+            serialNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Geometry parallelUnion = parallel.union(buffers);
+            parallelNanos += System.nanoTime() - start;
+
+            assertEquals(expected.getArea(), serialUnion.getArea(), 1e-6 * expected.getArea());
+            assertEquals(expected.getArea(), parallelUnion.getArea(), 1e-6 * expected.getArea());
+        }
+
+        System.out.println("Union of " + stores + " store buffers");
+        System.out.println(String.format("\tone at a time:         %d ms", sequentialNanos / RUNS / 1000000));
+        System.out.println(String.format("\ttree union, 1 thread:  %d ms", serialNanos / RUNS / 1000000));
+        System.out.println(String.format("\ttree union, %d threads: %d ms",
+                ForkJoinPool.commonPool().getParallelism(), parallelNanos / RUNS / 1000000));
+    }
+
+    @Test
+    public void benchmarkUnion() {
+        benchmark(100);
+        benchmark(400);
+    }
+}
@@ -0,0 +1,75 @@
+package fooddesertserver;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TreeUnionTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+    private final TreeUnion treeUnion = new TreeUnion(new ForkJoinPool(4), factory);
+
+    @Test
+    public void testEmpty() {
+        assertTrue(treeUnion.union(Collections.emptyList()).isEmpty());
+    }
+
+    /**
+     * A row of overlapping squares long enough to be split into several tasks should union into one rectangle.
+     */
+    @Test
+    public void testOverlappingSquares() {
+        List<Geometry> squares = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            squares.add(factory.toGeometry(new Envelope(i * 10, i * 10 + 20, 0, 20)));
+        }
+        Collections.shuffle(squares, new java.util.Random(3));
+
+        Geometry union = treeUnion.union(squares);
+        assertEquals(1, union.getNumGeometries());
+        assertEquals(1010 * 20, union.getArea(), 1e-6);
+    }
+
+    /**
+     * Scattered circles that overlap in clusters should union to the same area as adding them one at a time.
+     */
+    @Test
+    public void testSameAreaAsSequentialUnion() {
+        java.util.Random random = new java.util.Random(7);
+        List<Geometry> circles = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Coordinate center = new Coordinate(random.nextDouble() * 5000, random.nextDouble() * 5000);
+            circles.add(factory.createPoint(center).buffer(300 + random.nextDouble() * 300));
+        }
+
+        Geometry expected = factory.createGeometryCollection();
+        for (Geometry circle : circles) {
+            expected = expected.union(circle);
+        }
+        assertEquals(expected.getArea(), treeUnion.union(circles).getArea(), 1e-6 * expected.getArea());
+    }
+
+    /**
+     * Geometries without area should be left out of the union.
+     */
+    @Test
+    public void testSkipsLines() {
+        List<Geometry> geometries = new ArrayList<>();
+        geometries.add(factory.toGeometry(new Envelope(0, 10, 0, 10)));
+        geometries.add(factory.createLineString(new Coordinate[]{new Coordinate(20, 0), new Coordinate(30, 0)}));
+        geometries.add(factory.createGeometryCollection());
+
+        Geometry union = treeUnion.union(geometries);
+        assertEquals(100, union.getArea(), 1e-6);
+        assertEquals(1, union.getNumGeometries());
+    }
+}
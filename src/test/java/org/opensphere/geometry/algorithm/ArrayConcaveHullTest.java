@@ -0,0 +1,88 @@
+package org.opensphere.geometry.algorithm;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ArrayConcaveHullTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    /**
+     * @return count random streets shaped like the edges reached by a walking distance search: chains of points a
+     *         few dozen meters apart wandering away from a common center.
+     */
+    private Geometry randomStreets(int count, Random random) {
+        Geometry[] streets = new Geometry[count];
+        for (int i = 0; i < count; i++) {
+            Coordinate[] points = new Coordinate[2 + random.nextInt(4)];
+            double x = random.nextDouble() * 2000 - 1000;
+            double y = random.nextDouble() * 2000 - 1000;
+            for (int p = 0; p < points.length; p++) {
+                points[p] = new Coordinate(x, y);
+                x += random.nextDouble() * 80 - 40;
+                y += random.nextDouble() * 80 - 40;
+            }
+            streets[i] = factory.createLineString(points);
+        }
+        return factory.createGeometryCollection(streets);
+    }
+
+    private static void assertSameHull(Geometry edges, double threshold) {
+        Geometry expected = new ConcaveHull(edges, threshold).getConcaveHull();
+        Geometry actual = new ArrayConcaveHull(edges, threshold).getConcaveHull();
+        assertTrue(expected.norm().equalsExact(actual.norm()));
+    }
+
+    /**
+     * Coordinates are random so, no two edges of the triangulation have the same length and the hulls should match.
+     */
+    @Test
+    public void testSameAsConcaveHull() {
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            Geometry edges = randomStreets(10 + random.nextInt(300), random);
+            assertSameHull(edges, 100);
+            assertSameHull(edges, 250);
+        }
+    }
+
+    @Test
+    public void testSmallInputs() {
+        assertTrue(new ArrayConcaveHull(factory.createGeometryCollection(null), 100).getConcaveHull().isEmpty());
+
+        Geometry point = new ArrayConcaveHull(factory.createPoint(new Coordinate(1, 2)), 100).getConcaveHull();
+        assertEquals(new Coordinate(1, 2), point.getCoordinate());
+
+        Geometry line = factory.createLineString(new Coordinate[]{new Coordinate(0, 0), new Coordinate(500, 0)});
+        assertTrue(new ArrayConcaveHull(line, 100).getConcaveHull() instanceof LineString);
+    }
+
+    /**
+     * Every point is on one street so, there is no triangle to remove behind any border edge.
+     */
+    @Test
+    public void testCollinearPoints() {
+        Geometry street = factory.createLineString(new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(150, 0), new Coordinate(300, 0), new Coordinate(450, 0)});
+        Geometry hull = new ArrayConcaveHull(street, 100).getConcaveHull();
+        assertTrue(hull instanceof LineString);
+        assertEquals(450, hull.getLength(), 1e-9);
+    }
+
+    @Test
+    public void testHullCoversPoints() {
+        Geometry edges = randomStreets(200, new Random(8));
+        Geometry hull = new ArrayConcaveHull(edges, 100).getConcaveHull();
+        assertTrue(hull instanceof Polygon);
+        assertTrue(hull.buffer(1e-6).covers(edges));
+        assertTrue(hull.getArea() <= edges.convexHull().getArea());
+    }
+}
@@ -0,0 +1,84 @@
+package org.opensphere.geometry.algorithm;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the run time of ConcaveHull with ArrayConcaveHull on inputs the size of the edges reached by a one mile
+ * walking distance search. Results are printed to standard out. Skipped unless the benchmark system property is set,
+ * run it with gradle benchmark.
+ */
+public class ConcaveHullBenchmark {
+
+    private static final double THRESHOLD = 100;
+    private static final int HULLS = 50;
+    private static final int WARM_UP_HULLS = 20;
+
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    /* A random tree of streets, each a chain of a few points, reaching about a mile from the center. */
+    private static Geometry randomNetwork(int streets, GeometryFactory factory, Random random) {
+        Geometry[] lines = new Geometry[streets];
+        Coordinate[] ends = new Coordinate[streets + 1];
+        ends[0] = new Coordinate(0, 0);
+        for (int i = 0; i < streets; i++) {
+            Coordinate start = ends[random.nextInt(i + 1)];
+            if (Math.hypot(start.x, start.y) > 1600) {
+                start = ends[0];
+            }
+            Coordinate[] points = new Coordinate[2 + random.nextInt(4)];
+            points[0] = start;
+            for (int p = 1; p < points.length; p++) {
+                points[p] = new Coordinate(points[p - 1].x + random.nextDouble() * 60 - 30,
+                                           points[p - 1].y + random.nextDouble() * 60 - 30);
+            }
+            ends[i + 1] = points[points.length - 1];
+            lines[i] = factory.createLineString(points);
+        }
+        return factory.createGeometryCollection(lines);
+    }
+
+    @Test
+    public void benchmarkStoreBuffer() {
+        GeometryFactory factory = new GeometryFactory();
+        Random random = new Random(7);
+        Geometry[] inputs = new Geometry[HULLS];
+        for (int i = 0; i < HULLS; i++) {
+            inputs[i] = randomNetwork(2000, factory, random);
+        }
+
+        /* let the JIT compile both before timing them */
+        for (int i = 0; i < WARM_UP_HULLS; i++) {
+            new ConcaveHull(inputs[i], THRESHOLD).getConcaveHull();
+            new ArrayConcaveHull(inputs[i], THRESHOLD).getConcaveHull();
+        }
+
+        long mapNanos = 0, arrayNanos = 0;
+        for (Geometry input : inputs) {
+            long start = System.nanoTime();
+            Geometry expected = new ConcaveHull(input, THRESHOLD).getConcaveHull();
+            mapNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Geometry actual = new ArrayConcaveHull(input, THRESHOLD).getConcaveHull();
+            arrayNanos += System.nanoTime() - start;
+
+            assertTrue(expected.norm().equalsExact(actual.norm()));
+        }
+
+        System.out.println("Concave hulls of " + inputs[0].getNumPoints() + " points, threshold " + THRESHOLD);
+        System.out.println(String.format("\tConcaveHull:      %d us per hull", mapNanos / HULLS / 1000));
+        System.out.println(String.format("\tArrayConcaveHull: %d us per hull", arrayNanos / HULLS / 1000));
+    }
+}
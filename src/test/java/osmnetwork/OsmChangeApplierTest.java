@@ -0,0 +1,144 @@
+package osmnetwork;
+
+import database.network.NetworkDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.ParseException;
+import roadgraph.ArrayRoadGraph;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class OsmChangeApplierTest {
+
+    /* Main Street is cut at node 3, which it shares with a footway, into two edges. */
+    private static final String OSM =
+            "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<osm version='0.6'>\n" +
+            "  <node id='1' lat='0' lon='0.000'/>\n" +
+            "  <node id='2' lat='0' lon='0.001'/>\n" +
+            "  <node id='3' lat='0' lon='0.002'/>\n" +
+            "  <node id='4' lat='0' lon='0.003'/>\n" +
+            "  <node id='5' lat='0' lon='0.004'/>\n" +
+            "  <node id='6' lat='-0.001' lon='0.002'/>\n" +
+            "  <node id='7' lat='0.001' lon='0.002'/>\n" +
+            "  <way id='100'>\n" +
+            "    <nd ref='1'/><nd ref='2'/><nd ref='3'/><nd ref='4'/><nd ref='5'/>\n" +
+            "    <tag k='highway' v='residential'/><tag k='name' v='Main Street'/>\n" +
+            "  </way>\n" +
+            "  <way id='101'>\n" +
+            "    <nd ref='6'/><nd ref='3'/><nd ref='7'/>\n" +
+            "    <tag k='highway' v='footway'/>\n" +
+            "  </way>\n" +
+            "</osm>\n";
+
+    private Path directory;
+    private NetworkDatabase database;
+
+    @Before
+    public void importNetwork() throws IOException, SQLException, ParseException {
+        directory = Files.createTempDirectory("network");
+        Path osm = write("map.osm", OSM);
+        Path dbPath = directory.resolve("network.db");
+        OsmNetworkImporter.main(new String[]{dbPath.toString(), osm.toString()});
+        database = new NetworkDatabase(dbPath.toString());
+
+        assertTrue(database.hasOsmTables());
+        ArrayRoadGraph graph = database.loadRoadGraph();
+        assertEquals(5, graph.nodeCount());
+        assertEquals(4, graph.edgeCount());
+    }
+
+    @After
+    public void deleteNetwork() throws IOException, SQLException {
+        database.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for(Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private Path write(String name, String contents) throws IOException {
+        Path path = directory.resolve(name);
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    private Envelope apply(String change) throws IOException, SQLException, ParseException {
+        Path path = write("change.osc", "<?xml version='1.0' encoding='UTF-8'?>\n" +
+                "<osmChange version='0.6'>\n" + change + "</osmChange>\n");
+        return new OsmChangeApplier(path).apply(database);
+    }
+
+    @Test
+    public void testDeletedWayJoinsEdges() throws IOException, SQLException, ParseException {
+        Envelope touched = apply("<delete><way id='101'/></delete>");
+
+        /* node 3 no longer ends an edge so, Main Street is a single edge */
+        ArrayRoadGraph graph = database.loadRoadGraph();
+        assertEquals(2, graph.nodeCount());
+        assertEquals(1, graph.edgeCount());
+        assertNull(database.selectOsmWay(101));
+        assertNull(database.selectOsmNode(6));
+        assertEquals(-1, database.selectNetworkNodeId(3));
+
+        assertTrue(touched.contains(OsmNetworkImporter.projectX(0.002), OsmNetworkImporter.projectY(-0.001)));
+        assertTrue(touched.contains(OsmNetworkImporter.projectX(0.002), OsmNetworkImporter.projectY(0.001)));
+    }
+
+    @Test
+    public void testMovedNode() throws IOException, SQLException, ParseException {
+        Envelope touched = apply("<modify><node id='3' lat='0.0005' lon='0.002'/></modify>");
+
+        ArrayRoadGraph graph = database.loadRoadGraph();
+        assertEquals(5, graph.nodeCount());
+        assertEquals(4, graph.edgeCount());
+        int node = database.selectNetworkNodeId(3);
+        assertEquals(4, database.getNode(node).getCardinality());
+        assertEquals(OsmNetworkImporter.projectY(0.0005), database.getNode(node).getGeometry().y, 1e-6);
+
+        /* every edge ends at node 3 so, the area touched is the whole network */
+        assertEquals(OsmNetworkImporter.projectX(0), touched.getMinX(), 1e-6);
+        assertEquals(OsmNetworkImporter.projectX(0.004), touched.getMaxX(), 1e-6);
+    }
+
+    @Test
+    public void testCreatedWay() throws IOException, SQLException, ParseException {
+        Envelope touched = apply(
+                "<create>\n" +
+                "  <node id='-1' lat='0.001' lon='0.004'/>\n" +
+                "  <way id='-2'><nd ref='5'/><nd ref='-1'/><tag k='highway' v='path'/></way>\n" +
+                "  <way id='-3'><nd ref='5'/><nd ref='-1'/><tag k='highway' v='motorway'/></way>\n" +
+                "</create>\n");
+
+        ArrayRoadGraph graph = database.loadRoadGraph();
+        assertEquals(6, graph.nodeCount());
+        assertEquals(5, graph.edgeCount());
+        assertNull(database.selectOsmWay(-3));
+        assertEquals(2, database.getNode(database.selectNetworkNodeId(5)).getCardinality());
+
+        /* Main Street itself was not cut again */
+        assertEquals(OsmNetworkImporter.projectX(0.004), touched.getMinX(), 1e-6);
+    }
+
+    @Test
+    public void testUnchangedNetwork() throws IOException, SQLException, ParseException {
+        long version = database.networkVersion();
+        Envelope touched = apply("<modify><node id='42' lat='1' lon='1'/></modify>" +
+                                 "<delete><way id='43'/></delete>");
+
+        assertTrue(touched.isNull());
+        assertEquals(version, database.networkVersion());
+        assertNull(database.selectOsmNode(42));
+    }
+}
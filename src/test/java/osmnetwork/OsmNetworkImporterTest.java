@@ -0,0 +1,163 @@
+package osmnetwork;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OsmNetworkImporterTest {
+
+    /* Length of one degree of longitude along the equator, where WebMercator does not stretch distances. */
+    private static final double METERS_PER_DEGREE = 6378137 * Math.PI / 180;
+
+    /* Nodes 2 and 4 are shape points of Main Street and, node 3 is shared with a footway. Node 99 is missing. */
+    private static final String OSM =
+            "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<osm version='0.6'>\n" +
+            "  <node id='1' lat='0' lon='0.000'/>\n" +
+            "  <node id='2' lat='0' lon='0.001'/>\n" +
+            "  <node id='3' lat='0' lon='0.002'><tag k='highway' v='crossing'/></node>\n" +
+            "  <node id='4' lat='0' lon='0.003'/>\n" +
+            "  <node id='5' lat='0' lon='0.004'/>\n" +
+            "  <node id='6' lat='-0.001' lon='0.002'/>\n" +
+            "  <node id='7' lat='0.001' lon='0.002'/>\n" +
+            "  <node id='8' lat='0.001' lon='0.004'/>\n" +
+            "  <way id='100'>\n" +
+            "    <nd ref='1'/><nd ref='2'/><nd ref='3'/><nd ref='4'/><nd ref='5'/>\n" +
+            "    <tag k='highway' v='residential'/><tag k='name' v='Main Street'/>\n" +
+            "  </way>\n" +
+            "  <way id='101'>\n" +
+            "    <nd ref='6'/><nd ref='3'/><nd ref='7'/>\n" +
+            "    <tag k='highway' v='footway'/>\n" +
+            "  </way>\n" +
+            "  <way id='102'>\n" +
+            "    <nd ref='5'/><nd ref='8'/>\n" +
+            "    <tag k='highway' v='motorway'/>\n" +
+            "  </way>\n" +
+            "  <way id='103'>\n" +
+            "    <nd ref='5'/><nd ref='8'/><nd ref='99'/>\n" +
+            "    <tag k='highway' v='path'/>\n" +
+            "  </way>\n" +
+            "  <relation id='200'><member type='way' ref='100' role=''/></relation>\n" +
+            "</osm>\n";
+
+    private static class RecordingSink implements NetworkSink {
+        final Map<Long, Integer> nodeIds = new HashMap<>();
+        final Map<Long, Integer> cardinalities = new HashMap<>();
+        final List<long[]> edges = new ArrayList<>();
+        final List<Double> lengths = new ArrayList<>();
+        final List<Integer> pointCounts = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+
+        @Override
+        public void addNode(int nodeId, long osmId, int cardinality, double x, double y) {
+            nodeIds.put(osmId, nodeId);
+            cardinalities.put(osmId, cardinality);
+        }
+
+        @Override
+        public void addEdge(int edgeId, long osmId, String highwayClass, String name, int nodeFrom, int nodeTo,
+                            double length, double[] coordinates, int points) {
+            edges.add(new long[]{osmId, nodeFrom, nodeTo});
+            lengths.add(length);
+            pointCounts.add(points);
+            names.add(name);
+        }
+    }
+
+    private static RecordingSink importOsm(String osm) throws IOException, SQLException {
+        Path path = Files.createTempFile("test", ".osm");
+        try {
+            Files.write(path, osm.getBytes(StandardCharsets.UTF_8));
+            RecordingSink sink = new RecordingSink();
+            new OsmNetworkImporter(path).importNetwork(sink);
+            return sink;
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testWaysAreCutAtSharedNodes() throws IOException, SQLException {
+        RecordingSink sink = importOsm(OSM);
+
+        /* shape points 2 and 4 are not nodes of the network, node 8 ends the path at the missing node */
+        assertEquals(6, sink.nodeIds.size());
+        for(long osmId : new long[]{1, 3, 5, 6, 7, 8}) {
+            assertTrue(sink.nodeIds.containsKey(osmId));
+        }
+        assertEquals(4, (int) sink.cardinalities.get(3L));
+        assertEquals(2, (int) sink.cardinalities.get(5L));
+        assertEquals(1, (int) sink.cardinalities.get(8L));
+
+        assertEquals(5, sink.edges.size());
+        for(int e = 0; e < sink.edges.size(); e++) {
+            long way = sink.edges.get(e)[0];
+            assertNotEquals(102, way);
+            if(way == 100) {
+                /* each half of Main Street keeps its shape point */
+                assertEquals(3, (int) sink.pointCounts.get(e));
+                assertEquals("Main Street", sink.names.get(e));
+                assertEquals(0.002 * METERS_PER_DEGREE, sink.lengths.get(e), 1e-6);
+            } else {
+                assertEquals(2, (int) sink.pointCounts.get(e));
+            }
+        }
+    }
+
+    @Test
+    public void testGraphSink() throws IOException, SQLException {
+        Path path = Files.createTempFile("test", ".osm");
+        try {
+            Files.write(path, OSM.getBytes(StandardCharsets.UTF_8));
+            OsmNetworkImporter.GraphSink sink = new OsmNetworkImporter.GraphSink();
+            new OsmNetworkImporter(path).importNetwork(sink);
+            assertEquals(6, sink.build().nodeCount());
+            assertEquals(5, sink.build().edgeCount());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testIsWalkable() {
+        Map<String, String> tags = new HashMap<>();
+        assertFalse(OsmNetworkImporter.isWalkable(tags));
+
+        tags.put("highway", "residential");
+        assertTrue(OsmNetworkImporter.isWalkable(tags));
+
+        tags.put("access", "private");
+        assertFalse(OsmNetworkImporter.isWalkable(tags));
+        tags.put("foot", "yes");
+        assertTrue(OsmNetworkImporter.isWalkable(tags));
+        tags.put("foot", "no");
+        assertFalse(OsmNetworkImporter.isWalkable(tags));
+
+        tags.clear();
+        tags.put("highway", "motorway");
+        assertFalse(OsmNetworkImporter.isWalkable(tags));
+        tags.put("highway", "pedestrian");
+        tags.put("area", "yes");
+        assertFalse(OsmNetworkImporter.isWalkable(tags));
+    }
+
+    @Test
+    public void testProjection() {
+        assertEquals(0, OsmNetworkImporter.projectX(0), 0);
+        assertEquals(0, OsmNetworkImporter.projectY(0), 1e-9);
+        assertEquals(20037508.34, OsmNetworkImporter.projectX(180), 0.01);
+        assertEquals(20037508.34, OsmNetworkImporter.projectY(85.0511287798), 0.01);
+        /* latitudes past the limit of WebMercator are clipped */
+        assertEquals(OsmNetworkImporter.projectY(85.0511287798), OsmNetworkImporter.projectY(90), 0);
+    }
+}
@@ -0,0 +1,239 @@
+package roadgraph;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ArrayRoadGraphTest {
+
+    private ArrayRoadGraph graph;
+
+    /**
+     * Build a small graph shaped like a T:
+     *
+     *   10 --- 20 --- 30
+     *           |
+     *          40
+     *
+     * Edge 99 references a node that does not exist and should be dropped.
+     */
+    @Before
+    public void buildGraph() {
+        graph = new ArrayRoadGraph.Builder()
+                .addNode(30, 200, 0)
+                .addNode(10, 0, 0)
+                .addNode(20, 100, 0)
+                .addNode(40, 100, -100)
+                .addEdge(1, 10, 20, 100, new double[]{0, 0, 50, 10, 100, 0})
+                .addEdge(2, 20, 30, 100, new double[]{100, 0, 200, 0})
+                .addEdge(99, 20, 50, 100, new double[]{100, 0, 300, 0})
+                .addEdge(3, 40, 20, 120, new double[]{100, -100, 100, 0})
+                .build();
+    }
+
+    @Test
+    public void testCounts() {
+        assertEquals(4, graph.nodeCount());
+        assertEquals(3, graph.edgeCount());
+    }
+
+    /**
+     * Node indices should round trip through node ids.
+     */
+    @Test
+    public void testNodeIndex() {
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(node, graph.nodeIndex(graph.nodeId(node)));
+        }
+        assertEquals(-1, graph.nodeIndex(50));
+    }
+
+    @Test
+    public void testCoordinates() {
+        int node = graph.nodeIndex(40);
+        assertEquals(100, graph.nodeX(node), 0);
+        assertEquals(-100, graph.nodeY(node), 0);
+    }
+
+    /**
+     * Every edge should be present in the adjacency of both end points with the same length.
+     */
+    @Test
+    public void testAdjacency() {
+        int center = graph.nodeIndex(20);
+        assertEquals(3, graph.degree(center));
+
+        Set<Integer> neighbors = new HashSet<>();
+        for(int i = 0; i < graph.degree(center); i++) {
+            int next = graph.neighbor(center, i);
+            neighbors.add(graph.nodeId(next));
+
+            boolean found = false;
+            for(int j = 0; j < graph.degree(next); j++) {
+                if(graph.neighbor(next, j) == center) {
+                    assertEquals(graph.arcEdge(center, i), graph.arcEdge(next, j));
+                    assertEquals(graph.arcLength(center, i), graph.arcLength(next, j), 0);
+                    found = true;
+                }
+            }
+            assertTrue(found);
+        }
+
+        Set<Integer> expected = new HashSet<>();
+        expected.add(10);
+        expected.add(30);
+        expected.add(40);
+        assertEquals(expected, neighbors);
+    }
+
+    @Test
+    public void testEdgeGeometry() {
+        int center = graph.nodeIndex(20);
+        GeometryFactory factory = new GeometryFactory();
+        for(int i = 0; i < graph.degree(center); i++) {
+            if(graph.nodeId(graph.neighbor(center, i)) == 10) {
+                int edge = graph.arcEdge(center, i);
+                assertEquals(1, graph.edgeId(edge));
+
+                LineString line = graph.edgeGeometry(edge, factory);
+                assertEquals(3, line.getNumPoints());
+                assertEquals(new Coordinate(50, 10), line.getCoordinateN(1));
+            }
+        }
+    }
+
+    @Test
+    public void testNearestNode() {
+        assertEquals(graph.nodeIndex(40), graph.nearestNode(90, -80, 50));
+        assertEquals(graph.nodeIndex(10), graph.nearestNode(-5, 5, 50));
+        assertEquals(-1, graph.nearestNode(1000, 1000, 50));
+    }
+
+    /**
+     * The fingerprint identifies the network so, it must be stable for equal graphs and change with any edit that
+     * could change a buffer.
+     */
+    @Test
+    public void testFingerprint() {
+        ArrayRoadGraph same = new ArrayRoadGraph.Builder()
+                .addNode(30, 200, 0)
+                .addNode(10, 0, 0)
+                .addNode(20, 100, 0)
+                .addNode(40, 100, -100)
+                .addEdge(1, 10, 20, 100, new double[]{0, 0, 50, 10, 100, 0})
+                .addEdge(2, 20, 30, 100, new double[]{100, 0, 200, 0})
+                .addEdge(3, 40, 20, 120, new double[]{100, -100, 100, 0})
+                .build();
+        assertEquals(graph.fingerprint(), same.fingerprint());
+
+        ArrayRoadGraph longer = new ArrayRoadGraph.Builder()
+                .addNode(30, 200, 0)
+                .addNode(10, 0, 0)
+                .addNode(20, 100, 0)
+                .addNode(40, 100, -100)
+                .addEdge(1, 10, 20, 100, new double[]{0, 0, 50, 10, 100, 0})
+                .addEdge(2, 20, 30, 100, new double[]{100, 0, 200, 0})
+                .addEdge(3, 40, 20, 125, new double[]{100, -100, 100, 0})
+                .build();
+        assertNotEquals(graph.fingerprint(), longer.fingerprint());
+
+        ArrayRoadGraph moved = new ArrayRoadGraph.Builder()
+                .addNode(30, 200, 0)
+                .addNode(10, 0, 0)
+                .addNode(20, 100, 0)
+                .addNode(40, 100, -100)
+                .addEdge(1, 10, 20, 100, new double[]{0, 0, 50, 20, 100, 0})
+                .addEdge(2, 20, 30, 100, new double[]{100, 0, 200, 0})
+                .addEdge(3, 40, 20, 120, new double[]{100, -100, 100, 0})
+                .build();
+        assertNotEquals(graph.fingerprint(), moved.fingerprint());
+    }
+
+    /**
+     * Renumbering must not change the network: every id keeps its coordinates, neighbors, lengths and geometry.
+     */
+    @Test
+    public void testHilbertOrderedKeepsNetwork() {
+        ArrayRoadGraph ordered = ArrayRoadGraph.hilbertOrdered(graph);
+        assertEquals(graph.nodeCount(), ordered.nodeCount());
+        assertEquals(graph.edgeCount(), ordered.edgeCount());
+
+        GeometryFactory factory = new GeometryFactory();
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            int copy = ordered.nodeIndex(graph.nodeId(node));
+            assertEquals(graph.nodeX(node), ordered.nodeX(copy), 0);
+            assertEquals(graph.nodeY(node), ordered.nodeY(copy), 0);
+            assertEquals(graph.degree(node), ordered.degree(copy));
+
+            for(int i = 0; i < graph.degree(node); i++) {
+                int edgeId = graph.edgeId(graph.arcEdge(node, i));
+                boolean found = false;
+                for(int j = 0; j < ordered.degree(copy); j++) {
+                    int edge = ordered.arcEdge(copy, j);
+                    if(ordered.edgeId(edge) == edgeId) {
+                        assertEquals(graph.nodeId(graph.neighbor(node, i)), ordered.nodeId(ordered.neighbor(copy, j)));
+                        assertEquals(graph.arcLength(node, i), ordered.arcLength(copy, j), 0);
+                        LineString expected = graph.edgeGeometry(graph.arcEdge(node, i), factory);
+                        LineString actual = ordered.edgeGeometry(edge, factory);
+                        assertEquals(expected.getNumPoints(), actual.getNumPoints());
+                        for(int p = 0; p < expected.getNumPoints(); p++) {
+                            assertEquals(expected.getCoordinateN(p), actual.getCoordinateN(p));
+                        }
+                        found = true;
+                    }
+                }
+                assertTrue(found);
+            }
+        }
+    }
+
+    /**
+     * Consecutive nodes along a Hilbert curve are almost always neighbors in the grid.
+     */
+    @Test
+    public void testHilbertOrderIsLocal() {
+        ArrayRoadGraph grid = TestGraphs.grid(64, 64, 10, new Random(3));
+        ArrayRoadGraph ordered = ArrayRoadGraph.hilbertOrdered(grid);
+        double total = 0;
+        for(int node = 1; node < ordered.nodeCount(); node++) {
+            total += Math.hypot(ordered.nodeX(node) - ordered.nodeX(node - 1),
+                                ordered.nodeY(node) - ordered.nodeY(node - 1));
+        }
+        assertEquals(10, total / (ordered.nodeCount() - 1), 1);
+    }
+
+    /**
+     * A search from the same node should reach the same edges whatever order the graph is numbered in.
+     */
+    @Test
+    public void testHilbertOrderedSearchReachesSameEdges() {
+        Random random = new Random(7);
+        ArrayRoadGraph grid = TestGraphs.grid(30, 30, 80, random);
+        ArrayRoadGraph ordered = ArrayRoadGraph.hilbertOrdered(grid);
+        DijkstraSearch gridSearch = new DijkstraSearch(grid);
+        DijkstraSearch orderedSearch = new DijkstraSearch(ordered);
+
+        for(int i = 0; i < 10; i++) {
+            int sourceId = grid.nodeId(random.nextInt(grid.nodeCount()));
+            gridSearch.search(grid.nodeIndex(sourceId), 1609.34, node -> true);
+            orderedSearch.search(ordered.nodeIndex(sourceId), 1609.34, node -> true);
+            assertEquals(reachedEdgeIds(grid, gridSearch), reachedEdgeIds(ordered, orderedSearch));
+        }
+    }
+
+    private static Set<Integer> reachedEdgeIds(RoadGraph graph, NetworkSearch search) {
+        Set<Integer> edges = new HashSet<>();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edges.add(graph.edgeId(search.reachedEdge(i)));
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,258 @@
+package roadgraph;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChainContractionTest {
+
+    private static final double SPACING = 100;
+
+    /**
+     * Build a width x height grid of junctions where every street between two junctions is split into pieces by
+     * pieces - 1 degree 2 nodes. Junction ids are the ids of TestGraphs.grid, the ids of degree 2 nodes follow them.
+     */
+    private static ArrayRoadGraph subdividedGrid(int width, int height, int pieces, Random random) {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                builder.addNode(TestGraphs.gridNodeId(width, x, y), x * SPACING, y * SPACING);
+            }
+        }
+
+        int nextNodeId = width * height + 1;
+        int edgeId = 1;
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                for(int direction = 0; direction < 2; direction++) {
+                    int dx = direction == 0 ? 1 : 0;
+                    int dy = 1 - dx;
+                    if(x + dx >= width || y + dy >= height) {
+                        continue;
+                    }
+                    int previousId = TestGraphs.gridNodeId(width, x, y);
+                    double previousX = x * SPACING, previousY = y * SPACING;
+                    for(int p = 1; p <= pieces; p++) {
+                        int id;
+                        double nodeX, nodeY;
+                        if(p == pieces) {
+                            id = TestGraphs.gridNodeId(width, x + dx, y + dy);
+                            nodeX = (x + dx) * SPACING;
+                            nodeY = (y + dy) * SPACING;
+                        } else {
+                            /* streets wiggle so that simplification cannot drop the via nodes */
+                            id = nextNodeId++;
+                            double wiggle = random.nextDouble() * 10 + 5;
+                            nodeX = x * SPACING + dx * SPACING * p / pieces + dy * wiggle;
+                            nodeY = y * SPACING + dy * SPACING * p / pieces + dx * wiggle;
+                            builder.addNode(id, nodeX, nodeY);
+                        }
+                        double length = Math.hypot(nodeX - previousX, nodeY - previousY);
+                        builder.addEdge(edgeId++, previousId, id, length,
+                                        new double[]{previousX, previousY, nodeX, nodeY});
+                        previousId = id;
+                        previousX = nodeX;
+                        previousY = nodeY;
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testChainsAreMerged() {
+        ArrayRoadGraph graph = subdividedGrid(10, 10, 5, new Random(1));
+        ChainContraction contraction = ChainContraction.contract(graph, Double.POSITIVE_INFINITY, 0);
+        RoadGraph contracted = contraction.getGraph();
+
+        /* the corners of the grid only join two streets so, they are merged too */
+        assertEquals(graph.nodeCount(), contraction.originalNodeCount());
+        assertEquals(96, contracted.nodeCount());
+        assertEquals(176, contracted.edgeCount());
+        assertEquals(graph.nodeCount() - 96, contraction.viaNodeCount());
+
+        GeometryFactory factory = new GeometryFactory();
+        for(int edge = 0; edge < contracted.edgeCount(); edge++) {
+            int viaCount = contraction.viaNodeCount(edge);
+            assertTrue(viaCount == 4 || viaCount == 9);
+            /* no point of a wiggling street lies on a straight line so, the whole chain is kept */
+            LineString geometry = contracted.edgeGeometry(edge, factory);
+            assertEquals(viaCount + 2, geometry.getNumPoints());
+
+            for(int i = 0; i < contraction.viaNodeCount(edge); i++) {
+                int viaId = contraction.viaNodeId(edge, i);
+                assertEquals(-1, contracted.nodeIndex(viaId));
+                assertEquals(edge, contraction.contractedEdge(viaId));
+
+                int original = graph.nodeIndex(viaId);
+                assertEquals(graph.nodeX(original), geometry.getCoordinateN(i + 1).x, 0);
+                assertEquals(graph.nodeY(original), geometry.getCoordinateN(i + 1).y, 0);
+            }
+        }
+
+        for(int node = 0; node < contracted.nodeCount(); node++) {
+            assertEquals(-1, contraction.contractedEdge(contracted.nodeId(node)));
+        }
+    }
+
+    /**
+     * The contracted graph keeps the Hilbert order that graph files are written in.
+     */
+    @Test
+    public void testContractedGraphIsHilbertOrdered() {
+        ArrayRoadGraph graph = ArrayRoadGraph.hilbertOrdered(subdividedGrid(10, 10, 5, new Random(5)));
+        RoadGraph contracted = ChainContraction.contract(graph, 250, 0).getGraph();
+
+        int[] order = HilbertCurve.sortNodes(contracted);
+        for(int i = 0; i < order.length; i++) {
+            assertEquals(i, order[i]);
+        }
+    }
+
+    /**
+     * Distances between the nodes that survive contraction must not change.
+     */
+    @Test
+    public void testDistancesArePreserved() {
+        Random random = new Random(2);
+        ArrayRoadGraph graph = subdividedGrid(15, 15, 4, random);
+        ChainContraction contraction = ChainContraction.contract(graph, 250, 0);
+        RoadGraph contracted = contraction.getGraph();
+
+        DijkstraSearch originalSearch = new DijkstraSearch(graph);
+        DijkstraSearch contractedSearch = new DijkstraSearch(contracted);
+        for(int s = 0; s < 10; s++) {
+            int source = random.nextInt(contracted.nodeCount());
+            originalSearch.search(graph.nodeIndex(contracted.nodeId(source)), 1000, node -> true);
+            contractedSearch.search(source, 1000, node -> true);
+
+            for(int node = 0; node < contracted.nodeCount(); node++) {
+                int original = graph.nodeIndex(contracted.nodeId(node));
+                /* lengths are stored as floats */
+                assertEquals(originalSearch.distance(original), contractedSearch.distance(node), 1e-2);
+            }
+        }
+    }
+
+    @Test
+    public void testLongChainsAreCut() {
+        ArrayRoadGraph graph = subdividedGrid(4, 4, 10, new Random(3));
+        ChainContraction contraction = ChainContraction.contract(graph, 45, 0);
+        RoadGraph contracted = contraction.getGraph();
+
+        assertTrue(contracted.nodeCount() > 16);
+        assertTrue(contracted.nodeCount() < graph.nodeCount());
+        for(int node = 0; node < contracted.nodeCount(); node++) {
+            for(int i = 0; i < contracted.degree(node); i++) {
+                int edge = contracted.arcEdge(node, i);
+                /* a single piece is never longer than the limit so, a chain is only ever cut before it */
+                assertTrue(contracted.arcLength(node, i) <= 45);
+                for(int v = 0; v < contraction.viaNodeCount(edge); v++) {
+                    assertTrue(contraction.viaDistance(edge, v) < contracted.arcLength(node, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRingKeepsOneNode() {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        int nodes = 8;
+        for(int n = 0; n < nodes; n++) {
+            double angle = 2 * Math.PI * n / nodes;
+            builder.addNode(n + 1, 100 * Math.cos(angle), 100 * Math.sin(angle));
+        }
+        double ringLength = 0;
+        for(int n = 0; n < nodes; n++) {
+            int next = (n + 1) % nodes;
+            double angle0 = 2 * Math.PI * n / nodes;
+            double angle1 = 2 * Math.PI * next / nodes;
+            double[] geometry = {100 * Math.cos(angle0), 100 * Math.sin(angle0),
+                                 100 * Math.cos(angle1), 100 * Math.sin(angle1)};
+            double length = Math.hypot(geometry[2] - geometry[0], geometry[3] - geometry[1]);
+            ringLength += length;
+            builder.addEdge(n + 1, n + 1, next + 1, length, geometry);
+        }
+
+        ChainContraction contraction = ChainContraction.contract(builder.build(), Double.POSITIVE_INFINITY, 0);
+        RoadGraph contracted = contraction.getGraph();
+        assertEquals(1, contracted.nodeCount());
+        assertEquals(1, contracted.edgeCount());
+        assertEquals(nodes - 1, contraction.viaNodeCount(0));
+        assertEquals(ringLength, contracted.arcLength(0, 0), 1e-3);
+    }
+
+    @Test
+    public void testSimplify() {
+        double[] line = {0, 0, 10, 0.1, 20, 0, 30, 5, 40, 0};
+        assertEquals(5, ChainContractor.simplify(line.clone(), 5, 0));
+
+        double[] simplified = line.clone();
+        assertEquals(4, ChainContractor.simplify(simplified, 5, 0.5));
+        assertArrayEquals(new double[]{0, 0, 20, 0, 30, 5, 40, 0}, Arrays.copyOf(simplified, 8), 0);
+    }
+
+    /**
+     * The simplification tolerance is in ground meters. At 39 degrees north a ground meter spans about 1.29
+     * WebMercator units so, a point 0.45 ground meters off the street is dropped and one 0.55 ground meters off is
+     * kept, even though both are more than 0.5 WebMercator units off.
+     */
+    @Test
+    public void testToleranceIsOnTheGround() {
+        double y0 = 4.71e6;
+        double scale = WebMercator.scale(y0);
+        for(double offset : new double[]{0.45, 0.55}) {
+            ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+            builder.addNode(1, 0, y0);
+            builder.addNode(2, 50, y0 + offset * scale);
+            builder.addNode(3, 100, y0);
+            builder.addEdge(1, 1, 2, 50, new double[]{0, y0, 50, y0 + offset * scale});
+            builder.addEdge(2, 2, 3, 50, new double[]{50, y0 + offset * scale, 100, y0});
+
+            ChainContraction contraction = ChainContraction.contract(builder.build(), Double.POSITIVE_INFINITY, 0.5);
+            RoadGraph contracted = contraction.getGraph();
+            assertEquals(1, contracted.edgeCount());
+            LineString geometry = contracted.edgeGeometry(0, new GeometryFactory());
+            assertEquals(offset < 0.5 ? 2 : 3, geometry.getNumPoints());
+        }
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        ArrayRoadGraph graph = subdividedGrid(6, 6, 3, new Random(4));
+        ChainContraction contraction = ChainContraction.contract(graph, Double.POSITIVE_INFINITY, 0);
+
+        Path path = Files.createTempFile("test", ".chains");
+        try {
+            contraction.write(path);
+            ChainContraction read = ChainContraction.read(path, contraction.getGraph());
+            assertEquals(contraction.originalNodeCount(), read.originalNodeCount());
+            assertEquals(contraction.viaNodeCount(), read.viaNodeCount());
+            for(int edge = 0; edge < contraction.getGraph().edgeCount(); edge++) {
+                assertEquals(contraction.viaNodeCount(edge), read.viaNodeCount(edge));
+                for(int i = 0; i < contraction.viaNodeCount(edge); i++) {
+                    assertEquals(contraction.viaNodeId(edge, i), read.viaNodeId(edge, i));
+                    assertEquals(contraction.viaDistance(edge, i), read.viaDistance(edge, i), 0);
+                }
+            }
+
+            try {
+                ChainContraction.read(path, graph);
+                fail("A mapping must not be read for a different graph.");
+            } catch (IOException e) {
+                /* expected */
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package roadgraph;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the memory held by an ArrayRoadGraph with the same graph in a CompactRoadGraph, along with the run time of
+ * the search behind a network buffer and how far its distances move. Results are printed to standard out.
+ * Skipped unless the benchmark system property is set, run it with gradle benchmark.
+ */
+public class CompactRoadGraphBenchmark {
+
+    private static final double RADIUS = 1609.34;
+    private static final int SEARCHES = 200;
+    private static final int WARM_UP_SEARCHES = 200;
+
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    private static void benchmark(String name, ArrayRoadGraph graph) {
+        ArrayRoadGraph array = ArrayRoadGraph.hilbertOrdered(graph);
+        CompactRoadGraph compact = CompactRoadGraph.of(array);
+
+        DijkstraSearch arraySearch = new DijkstraSearch(array);
+        DijkstraSearch compactSearch = new DijkstraSearch(compact);
+        int[] sources = new int[SEARCHES];
+        Random random = new Random(17);
+        for(int i = 0; i < SEARCHES; i++) {
+            sources[i] = random.nextInt(array.nodeCount());
+        }
+
+        /* let the JIT compile the search before timing it */
+        for(int i = 0; i < WARM_UP_SEARCHES; i++) {
+            arraySearch.search(sources[i % SEARCHES], RADIUS, node -> true);
+            compactSearch.search(sources[i % SEARCHES], RADIUS, node -> true);
+        }
+
+        long arrayNanos = 0, compactNanos = 0;
+        double maxError = 0;
+        for(int source : sources) {
+            long start = System.nanoTime();
+            arraySearch.search(source, RADIUS, node -> true);
+            arrayNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            compactSearch.search(source, RADIUS, node -> true);
+            compactNanos += System.nanoTime() - start;
+
+            for(int i = 0; i < arraySearch.settledCount(); i++) {
+                int node = arraySearch.settledNode(i);
+                if(compactSearch.isReached(node)) {
+                    maxError = Math.max(maxError, Math.abs(arraySearch.distance(node) - compactSearch.distance(node)));
+                }
+            }
+        }
+        /* each arc is rounded by at most 5 cm */
+        assertTrue(maxError < 2);
+
+        System.out.println(name + ", " + graph.nodeCount() + " nodes, " + SEARCHES + " searches of radius " + RADIUS);
+        System.out.println(String.format("\tarray graph:   %d MB, %d us per search",
+                array.sizeInBytes() >> 20, arrayNanos / SEARCHES / 1000));
+        System.out.println(String.format("\tcompact graph: %d MB, %d us per search, distances within %.2f m",
+                compact.sizeInBytes() >> 20, compactNanos / SEARCHES / 1000, maxError));
+    }
+
+    @Test
+    public void benchmarkWeightedGrid() {
+        /* large enough that the graph does not fit in the CPU caches */
+        benchmark("Weighted grid", TestGraphs.grid(1000, 1000, 80, new Random(7)));
+    }
+}
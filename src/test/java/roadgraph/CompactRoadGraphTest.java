@@ -0,0 +1,140 @@
+package roadgraph;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompactRoadGraphTest {
+
+    /* rounding to decimeters moves each coordinate by at most half of one */
+    private static final double COORDINATE_TOLERANCE = 0.05 + 1e-9;
+
+    private ArrayRoadGraph graph;
+    private CompactRoadGraph compact;
+
+    @Before
+    public void buildGraph() {
+        /* offset from the origin so, coordinates look like WebMercator meters rather than small integers and, bent
+         * through three extra points like most streets */
+        ArrayRoadGraph grid = TestGraphs.grid(60, 60, 73.31, new Random(11));
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        Random random = new Random(3);
+        for(int node = 0; node < grid.nodeCount(); node++) {
+            builder.addNode(grid.nodeId(node), grid.nodeX(node) - 8571234.567, grid.nodeY(node) + 4712345.678);
+        }
+        for(int node = 0; node < grid.nodeCount(); node++) {
+            for(int i = 0; i < grid.degree(node); i++) {
+                int target = grid.neighbor(node, i);
+                if(node < target) {
+                    double[] coordinates = new double[10];
+                    for(int p = 0; p < 5; p++) {
+                        double t = p / 4.0;
+                        double bend = p == 0 || p == 4 ? 0 : random.nextDouble() * 5;
+                        coordinates[2 * p] = grid.nodeX(node) + t * (grid.nodeX(target) - grid.nodeX(node))
+                                             + bend - 8571234.567;
+                        coordinates[2 * p + 1] = grid.nodeY(node) + t * (grid.nodeY(target) - grid.nodeY(node))
+                                                 + bend + 4712345.678;
+                    }
+                    builder.addEdge(grid.edgeId(grid.arcEdge(node, i)), grid.nodeId(node), grid.nodeId(target),
+                                    grid.arcLength(node, i), coordinates);
+                }
+            }
+        }
+        graph = ArrayRoadGraph.hilbertOrdered(builder.build());
+        compact = CompactRoadGraph.of(graph);
+    }
+
+    @Test
+    public void testNodes() {
+        assertEquals(graph.nodeCount(), compact.nodeCount());
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(graph.nodeId(node), compact.nodeId(node));
+            assertEquals(node, compact.nodeIndex(graph.nodeId(node)));
+            assertEquals(graph.nodeX(node), compact.nodeX(node), COORDINATE_TOLERANCE);
+            assertEquals(graph.nodeY(node), compact.nodeY(node), COORDINATE_TOLERANCE);
+        }
+        assertEquals(-1, compact.nodeIndex(-5));
+    }
+
+    @Test
+    public void testArcs() {
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(graph.degree(node), compact.degree(node));
+            for(int i = 0; i < graph.degree(node); i++) {
+                assertEquals(graph.neighbor(node, i), compact.neighbor(node, i));
+                assertEquals(graph.arcEdge(node, i), compact.arcEdge(node, i));
+                assertEquals(graph.arcLength(node, i), compact.arcLength(node, i), COORDINATE_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeGeometry() {
+        GeometryFactory factory = new GeometryFactory();
+        assertEquals(graph.edgeCount(), compact.edgeCount());
+        for(int edge = 0; edge < graph.edgeCount(); edge++) {
+            assertEquals(graph.edgeId(edge), compact.edgeId(edge));
+            LineString expected = graph.edgeGeometry(edge, factory);
+            LineString actual = compact.edgeGeometry(edge, factory);
+            assertEquals(expected.getNumPoints(), actual.getNumPoints());
+            for(int p = 0; p < expected.getNumPoints(); p++) {
+                assertEquals(expected.getCoordinateN(p).x, actual.getCoordinateN(p).x, COORDINATE_TOLERANCE);
+                assertEquals(expected.getCoordinateN(p).y, actual.getCoordinateN(p).y, COORDINATE_TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * Arcs too long for 16 bits should keep their length through the side table.
+     */
+    @Test
+    public void testLongArc() {
+        ArrayRoadGraph graph = new ArrayRoadGraph.Builder()
+                .addNode(1, 0, 0)
+                .addNode(2, 10000, 0)
+                .addNode(3, 10000, 10)
+                .addEdge(1, 1, 2, 12345.67, new double[]{0, 0, 5000, 3000, 10000, 0})
+                .addEdge(2, 2, 3, 10, new double[]{10000, 0, 10000, 10})
+                .build();
+        CompactRoadGraph compact = CompactRoadGraph.of(graph);
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            for(int i = 0; i < graph.degree(node); i++) {
+                assertEquals(graph.arcLength(node, i), compact.arcLength(node, i), COORDINATE_TOLERANCE);
+            }
+        }
+        assertEquals(12345.7, compact.arcLength(compact.nodeIndex(1), 0), 1e-9);
+    }
+
+    /**
+     * Searches over the compact graph should find the same nodes at the same distance, less the rounding of each arc.
+     */
+    @Test
+    public void testSearchDistances() {
+        DijkstraSearch expected = new DijkstraSearch(graph);
+        DijkstraSearch actual = new DijkstraSearch(compact);
+        Random random = new Random(5);
+        for(int s = 0; s < 20; s++) {
+            int source = random.nextInt(graph.nodeCount());
+            expected.search(source, 1609, node -> true);
+            actual.search(source, 1609, node -> true);
+            for(int i = 0; i < expected.settledCount(); i++) {
+                int node = expected.settledNode(i);
+                /* a path of 1609 meters crosses at most 22 arcs of at least 73 meters */
+                if(expected.distance(node) < 1609 - 22 * 0.05) {
+                    assertTrue(actual.isReached(node));
+                    assertEquals(expected.distance(node), actual.distance(node), 22 * 0.05);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSmallerThanArrays() {
+        assertTrue(compact.sizeInBytes() * 2 < graph.sizeInBytes());
+    }
+}
@@ -0,0 +1,96 @@
+package roadgraph;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares settled nodes and run time of PhastSearch with DijkstraSearch on the same graph. Results are printed to
+ * standard out. Skipped unless the benchmark system property is set, run it with gradle benchmark.
+ *
+ * Each search is a walking distance buffer: the node filter is the envelope around the source that the query handler
+ * uses for store buffers. For PHAST, settled nodes are the nodes settled by the upward search plus the nodes swept.
+ */
+public class ContractionHierarchyBenchmark {
+
+    private static final double RADIUS = 1609.34;
+    private static final int SEARCHES = 50;
+    private static final int WARM_UP_SEARCHES = 200;
+
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    private static IntPredicate envelope(RoadGraph graph, int source) {
+        double x = graph.nodeX(source);
+        double y = graph.nodeY(source);
+        return node -> Math.abs(graph.nodeX(node) - x) <= RADIUS && Math.abs(graph.nodeY(node) - y) <= RADIUS;
+    }
+
+    private static BitSet reachedEdges(NetworkSearch search) {
+        BitSet edges = new BitSet();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edges.set(search.reachedEdge(i));
+        }
+        return edges;
+    }
+
+    private static void benchmark(String name, RoadGraph graph) {
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        long buildMillis = (System.nanoTime() - start) / 1000000;
+
+        DijkstraSearch dijkstra = new DijkstraSearch(graph);
+        PhastSearch phast = new PhastSearch(graph, hierarchy);
+        int[] source = new int[1];
+        Random random = new Random(13);
+
+        /* let the JIT compile both searches before timing them */
+        for(int i = 0; i < WARM_UP_SEARCHES; i++) {
+            source[0] = random.nextInt(graph.nodeCount());
+            dijkstra.search(source, 1, RADIUS, envelope(graph, source[0]));
+            phast.search(source, 1, RADIUS, envelope(graph, source[0]));
+        }
+
+        long dijkstraSettled = 0, upwardSettled = 0, swept = 0;
+        long dijkstraNanos = 0, phastNanos = 0;
+        for(int i = 0; i < SEARCHES; i++) {
+            source[0] = random.nextInt(graph.nodeCount());
+            IntPredicate filter = envelope(graph, source[0]);
+
+            start = System.nanoTime();
+            dijkstra.search(source, 1, RADIUS, filter);
+            dijkstraNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            phast.search(source, 1, RADIUS, filter);
+            phastNanos += System.nanoTime() - start;
+
+            dijkstraSettled += dijkstra.settledCount();
+            upwardSettled += phast.upwardSettledCount();
+            swept += phast.sweptCount();
+
+            assertEquals(reachedEdges(dijkstra), reachedEdges(phast));
+        }
+
+        System.out.println(name + ", " + graph.nodeCount() + " nodes, " + SEARCHES + " searches of radius " + RADIUS);
+        System.out.println(String.format("\thierarchy:       built in %d ms, %d arcs of which %d shortcuts",
+                buildMillis, hierarchy.arcCount(), hierarchy.shortcutCount()));
+        System.out.println(String.format("\tdijkstra search: %d settled, %d us per search",
+                dijkstraSettled / SEARCHES, dijkstraNanos / SEARCHES / 1000));
+        System.out.println(String.format("\tphast search:    %d settled upward + %d swept, %d us per search",
+                upwardSettled / SEARCHES, swept / SEARCHES, phastNanos / SEARCHES / 1000));
+    }
+
+    @Test
+    public void benchmarkWeightedGrid() {
+        benchmark("Weighted grid", TestGraphs.grid(200, 200, 80, new Random(7)));
+    }
+}
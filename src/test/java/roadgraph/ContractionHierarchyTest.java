@@ -0,0 +1,171 @@
+package roadgraph;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.*;
+
+public class ContractionHierarchyTest {
+
+    private static final Path CH_FILE = Paths.get("test.ch");
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(CH_FILE);
+    }
+
+    private static BitSet reachedEdges(NetworkSearch search) {
+        BitSet edges = new BitSet();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edges.set(search.reachedEdge(i));
+        }
+        return edges;
+    }
+
+    /**
+     * Every upward arc must lead to a node of higher rank and ranks must be a permutation.
+     */
+    @Test
+    public void testRanks() {
+        RoadGraph graph = TestGraphs.grid(20, 20, 100, new Random(1));
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+
+        BitSet ranks = new BitSet();
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            ranks.set(hierarchy.rank(node));
+            for(int i = 0; i < hierarchy.upDegree(node); i++) {
+                assertTrue(hierarchy.rank(hierarchy.upNeighbor(node, i)) > hierarchy.rank(node));
+            }
+        }
+        assertEquals(graph.nodeCount(), ranks.cardinality());
+        assertEquals(graph.nodeCount() - 1, ranks.length() - 1);
+    }
+
+    /**
+     * PHAST should find the same distances as Dijkstra for every node within the radius.
+     */
+    @Test
+    public void testDistancesMatchDijkstra() {
+        Random random = new Random(2);
+        RoadGraph graph = TestGraphs.grid(40, 40, 100, random);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+
+        DijkstraSearch dijkstra = new DijkstraSearch(graph);
+        PhastSearch phast = new PhastSearch(graph, hierarchy);
+
+        for(int i = 0; i < 20; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            dijkstra.search(source, 1200, node -> true);
+            phast.search(new int[]{source}, 1, 1200, node -> true);
+
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                assertEquals(dijkstra.isReached(node), phast.isReached(node));
+                if(dijkstra.isReached(node)) {
+                    assertEquals(dijkstra.distance(node), phast.distance(node), 1e-6);
+                }
+            }
+            assertEquals(reachedEdges(dijkstra), reachedEdges(phast));
+        }
+    }
+
+    /**
+     * Store buffers bound the search by an envelope around the source. PHAST should reach the same edges as Dijkstra
+     * under that filter.
+     */
+    @Test
+    public void testFilteredEdgesMatchDijkstra() {
+        Random random = new Random(7);
+        RoadGraph graph = TestGraphs.grid(40, 40, 80, random);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+
+        DijkstraSearch dijkstra = new DijkstraSearch(graph);
+        PhastSearch phast = new PhastSearch(graph, hierarchy);
+
+        for(int i = 0; i < 10; i++) {
+            int[] source = {random.nextInt(graph.nodeCount())};
+            double x = graph.nodeX(source[0]);
+            double y = graph.nodeY(source[0]);
+            IntPredicate envelope = node -> Math.abs(graph.nodeX(node) - x) <= 1000
+                                            && Math.abs(graph.nodeY(node) - y) <= 1000;
+
+            dijkstra.search(source, 1, 1609.34, envelope);
+            phast.search(source, 1, 1609.34, envelope);
+            assertEquals(reachedEdges(dijkstra), reachedEdges(phast));
+        }
+    }
+
+    @Test
+    public void testMultiSourceMatchesDijkstra() {
+        Random random = new Random(3);
+        RoadGraph graph = TestGraphs.tree(2000, random);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+
+        DijkstraSearch dijkstra = new DijkstraSearch(graph);
+        PhastSearch phast = new PhastSearch(graph, hierarchy);
+
+        int[] sources = {random.nextInt(2000), random.nextInt(2000), random.nextInt(2000)};
+        dijkstra.search(sources, sources.length, 800, node -> true);
+        phast.search(sources, sources.length, 800, node -> true);
+
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(dijkstra.isReached(node), phast.isReached(node));
+            if(dijkstra.isReached(node)) {
+                assertEquals(dijkstra.distance(node), phast.distance(node), 1e-6);
+            }
+        }
+        assertEquals(reachedEdges(dijkstra), reachedEdges(phast));
+    }
+
+    /**
+     * A search for explicit targets only reports those targets.
+     */
+    @Test
+    public void testTargets() {
+        RoadGraph graph = TestGraphs.grid(30, 30, 100, null);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        PhastSearch phast = new PhastSearch(graph, hierarchy);
+
+        int source = graph.nodeIndex(TestGraphs.gridNodeId(30, 5, 5));
+        int near = graph.nodeIndex(TestGraphs.gridNodeId(30, 8, 9));
+        int far = graph.nodeIndex(TestGraphs.gridNodeId(30, 25, 25));
+        int other = graph.nodeIndex(TestGraphs.gridNodeId(30, 6, 5));
+
+        phast.search(new int[]{source}, 1, 1000, new int[]{near, far}, 2);
+        assertEquals(700, phast.distance(near), 1e-6);
+        assertFalse(phast.isReached(far));
+        assertFalse(phast.isReached(other));
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        RoadGraph graph = TestGraphs.grid(15, 15, 100, new Random(4));
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        hierarchy.write(CH_FILE);
+
+        ContractionHierarchy read = ContractionHierarchy.read(CH_FILE, graph);
+        assertEquals(hierarchy.arcCount(), read.arcCount());
+        assertEquals(hierarchy.shortcutCount(), read.shortcutCount());
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(hierarchy.rank(node), read.rank(node));
+            assertEquals(hierarchy.upDegree(node), read.upDegree(node));
+            for(int i = 0; i < hierarchy.upDegree(node); i++) {
+                assertEquals(hierarchy.upNeighbor(node, i), read.upNeighbor(node, i));
+                assertEquals(hierarchy.upLength(node, i), read.upLength(node, i), 0);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherGraph() throws IOException {
+        ContractionHierarchy.build(TestGraphs.grid(10, 10, 100, new Random(5))).write(CH_FILE);
+        ContractionHierarchy.read(CH_FILE, TestGraphs.grid(10, 10, 100, new Random(6)));
+    }
+}
@@ -0,0 +1,84 @@
+package roadgraph;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares node expansions and run time of DijkstraSearch with the queue based search it replaced. Results are
+ * printed to standard out. Skipped unless the benchmark system property is set, run it with gradle benchmark.
+ *
+ * The queue search expands some nodes more than once but, it also drops shorter paths to nodes that are already
+ * queued so, on weighted graphs it misses nodes that are inside the radius. Expansions per reached node is the fair
+ * comparison.
+ */
+public class DijkstraSearchBenchmark {
+
+    private static final double RADIUS = 1609.34;
+    private static final int SEARCHES = 50;
+
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    private static void benchmark(String name, RoadGraph graph) {
+        DijkstraSearch search = new DijkstraSearch(graph);
+        QueueBufferSearch reference = new QueueBufferSearch(graph);
+        Random random = new Random(11);
+
+        /* let the JIT compile both searches before timing them */
+        for(int i = 0; i < SEARCHES; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            reference.search(source, RADIUS, node -> true);
+            search.search(source, RADIUS, node -> true);
+        }
+
+        long queueExpansions = 0, queueReached = 0, queueMissed = 0, dijkstraExpansions = 0;
+        long queueNanos = 0, dijkstraNanos = 0;
+        for(int i = 0; i < SEARCHES; i++) {
+            int source = random.nextInt(graph.nodeCount());
+
+            long start = System.nanoTime();
+            reference.search(source, RADIUS, node -> true);
+            queueNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            search.search(source, RADIUS, node -> true);
+            dijkstraNanos += System.nanoTime() - start;
+
+            queueExpansions += reference.expansions();
+            queueReached += reference.visitedNodes().cardinality();
+            queueMissed += search.settledCount() - reference.visitedNodes().cardinality();
+            dijkstraExpansions += search.settledCount();
+
+            /* each node is expanded once by the new search */
+            for(int n = 0; n < graph.nodeCount(); n++) {
+                assertTrue(!reference.visitedNodes().get(n) || search.isReached(n));
+            }
+        }
+
+        System.out.println(name + ", " + SEARCHES + " searches of radius " + RADIUS);
+        System.out.println(String.format("\tqueue search:    %d expansions (%.2f per reached node, %d nodes missed), %d us per search",
+                queueExpansions / SEARCHES, (double) queueExpansions / queueReached, queueMissed / SEARCHES,
+                queueNanos / SEARCHES / 1000));
+        System.out.println(String.format("\tdijkstra search: %d expansions (1.00 per reached node), %d us per search",
+                dijkstraExpansions / SEARCHES, dijkstraNanos / SEARCHES / 1000));
+    }
+
+    @Test
+    public void benchmarkWeightedGrid() {
+        /* roughly a city block grid with streets that are not perfectly straight */
+        benchmark("Weighted grid", TestGraphs.grid(200, 200, 80, new Random(7)));
+    }
+
+    @Test
+    public void benchmarkDenseWeightedGrid() {
+        /* short, irregular blocks produce many alternative paths of similar length */
+        benchmark("Dense weighted grid", TestGraphs.grid(300, 300, 30, new Random(8)));
+    }
+}
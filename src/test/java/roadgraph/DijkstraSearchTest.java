@@ -0,0 +1,249 @@
+package roadgraph;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DijkstraSearchTest {
+
+    private static BitSet reachedEdges(DijkstraSearch search) {
+        BitSet edges = new BitSet();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edges.set(search.reachedEdge(i));
+        }
+        return edges;
+    }
+
+    /* Bellman-Ford distances used to check the search. */
+    private static double[] referenceDistances(RoadGraph graph, int source) {
+        double[] distance = new double[graph.nodeCount()];
+        java.util.Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        distance[source] = 0;
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                for(int i = 0; i < graph.degree(node); i++) {
+                    double d = distance[node] + graph.arcLength(node, i);
+                    if(d < distance[graph.neighbor(node, i)]) {
+                        distance[graph.neighbor(node, i)] = d;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Every node closer than the radius should be reached with its exact shortest path distance.
+     */
+    @Test
+    public void testDistances() {
+        RoadGraph graph = TestGraphs.grid(30, 30, 100, new Random(1));
+        int source = graph.nodeIndex(TestGraphs.gridNodeId(30, 12, 17));
+        double radius = 1200;
+
+        DijkstraSearch search = new DijkstraSearch(graph);
+        search.search(source, radius, node -> true);
+
+        double[] expected = referenceDistances(graph, source);
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            if(expected[node] < radius) {
+                assertTrue(search.isReached(node));
+                assertEquals(expected[node], search.distance(node), 1e-6);
+            } else {
+                assertFalse(search.isReached(node));
+            }
+        }
+    }
+
+    /**
+     * Nodes are settled exactly once and in order of increasing distance.
+     */
+    @Test
+    public void testSettledOnce() {
+        RoadGraph graph = TestGraphs.grid(40, 40, 100, new Random(2));
+        DijkstraSearch search = new DijkstraSearch(graph);
+        search.search(graph.nodeIndex(TestGraphs.gridNodeId(40, 20, 20)), 1500, node -> true);
+
+        BitSet settled = new BitSet();
+        double last = 0;
+        for(int i = 0; i < search.settledCount(); i++) {
+            int node = search.settledNode(i);
+            assertFalse(settled.get(node));
+            settled.set(node);
+            assertTrue(search.distance(node) >= last);
+            last = search.distance(node);
+        }
+    }
+
+    /**
+     * On a grid with uniform edge lengths the old queue based search visits nodes in order of distance so, it finds
+     * correct distances. The new search must reach exactly the same edges there.
+     */
+    @Test
+    public void testSameEdgesAsQueueSearchOnUniformGrid() {
+        RoadGraph graph = TestGraphs.grid(50, 50, 80, null);
+        DijkstraSearch search = new DijkstraSearch(graph);
+        QueueBufferSearch reference = new QueueBufferSearch(graph);
+
+        for(int source : new int[]{0, 1234, 2499, 1275}) {
+            search.search(source, 1609.34, node -> true);
+            reference.search(source, 1609.34, node -> true);
+            assertEquals(reference.reachedEdges(), reachedEdges(search));
+        }
+    }
+
+    /**
+     * A tree has a single path to every node so, both searches must agree on any tree.
+     */
+    @Test
+    public void testSameEdgesAsQueueSearchOnTree() {
+        Random random = new Random(3);
+        for(int trial = 0; trial < 10; trial++) {
+            RoadGraph graph = TestGraphs.tree(500, random);
+            DijkstraSearch search = new DijkstraSearch(graph);
+            QueueBufferSearch reference = new QueueBufferSearch(graph);
+
+            int source = random.nextInt(graph.nodeCount());
+            search.search(source, 400, node -> true);
+            reference.search(source, 400, node -> true);
+            assertEquals(reference.reachedEdges(), reachedEdges(search));
+        }
+    }
+
+    /**
+     * On a weighted grid the queue search drops shorter paths to nodes it already queued and misses some nodes. The
+     * new search must still reach every node the queue search reaches.
+     */
+    @Test
+    public void testReachesQueueSearchNodesOnWeightedGrid() {
+        RoadGraph graph = TestGraphs.grid(40, 40, 80, new Random(7));
+        DijkstraSearch search = new DijkstraSearch(graph);
+        QueueBufferSearch reference = new QueueBufferSearch(graph);
+
+        Random random = new Random(11);
+        for(int trial = 0; trial < 5; trial++) {
+            int source = random.nextInt(graph.nodeCount());
+            search.search(source, 1609.34, node -> true);
+            reference.search(source, 1609.34, node -> true);
+            for(int n = 0; n < graph.nodeCount(); n++) {
+                assertTrue(!reference.visitedNodes().get(n) || search.isReached(n));
+            }
+        }
+    }
+
+    /**
+     * Both searches must also agree when a bounds filter cuts the grid.
+     */
+    @Test
+    public void testSameEdgesWithFilter() {
+        RoadGraph graph = TestGraphs.grid(50, 50, 80, null);
+        DijkstraSearch search = new DijkstraSearch(graph);
+        QueueBufferSearch reference = new QueueBufferSearch(graph);
+
+        int source = graph.nodeIndex(TestGraphs.gridNodeId(50, 25, 25));
+        search.search(source, 1609.34, node -> graph.nodeX(node) < 2200);
+        reference.search(source, 1609.34, node -> graph.nodeX(node) < 2200);
+
+        assertEquals(reference.reachedEdges(), reachedEdges(search));
+        for(int i = 0; i < search.settledCount(); i++) {
+            int node = search.settledNode(i);
+            assertTrue(node == source || graph.nodeX(node) < 2200);
+        }
+    }
+
+    /**
+     * A search instance can be reused and later searches must not see state from earlier ones.
+     */
+    @Test
+    public void testReuse() {
+        RoadGraph graph = TestGraphs.grid(20, 20, 100, null);
+        DijkstraSearch search = new DijkstraSearch(graph);
+
+        search.search(0, 1000, node -> true);
+        int firstEdges = search.reachedEdgeCount();
+
+        search.search(graph.nodeCount() - 1, 150, node -> true);
+        assertFalse(search.isReached(0));
+        assertEquals(3, search.settledCount());
+        assertEquals(2, search.reachedEdgeCount());
+
+        search.search(0, 1000, node -> true);
+        assertEquals(firstEdges, search.reachedEdgeCount());
+    }
+
+    /**
+     * A multi-source search should find, for every node, the distance to the nearest source and label the node with
+     * that source.
+     */
+    @Test
+    public void testMultiSourceDistances() {
+        RoadGraph graph = TestGraphs.grid(30, 30, 100, new Random(3));
+        int[] sources = {
+                graph.nodeIndex(TestGraphs.gridNodeId(30, 5, 5)),
+                graph.nodeIndex(TestGraphs.gridNodeId(30, 20, 8)),
+                graph.nodeIndex(TestGraphs.gridNodeId(30, 14, 25)),
+                graph.nodeIndex(TestGraphs.gridNodeId(30, 5, 5))
+        };
+        double radius = 900;
+
+        double[][] expected = new double[sources.length][];
+        for(int s = 0; s < sources.length; s++) {
+            expected[s] = referenceDistances(graph, sources[s]);
+        }
+
+        DijkstraSearch search = new DijkstraSearch(graph);
+        search.search(sources, sources.length, radius, node -> true);
+
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            double nearest = Double.POSITIVE_INFINITY;
+            for(int s = 0; s < sources.length; s++) {
+                nearest = Math.min(nearest, expected[s][node]);
+            }
+
+            if(nearest < radius) {
+                assertTrue(search.isReached(node));
+                assertEquals(nearest, search.distance(node), 1e-6);
+                int origin = search.origin(node);
+                assertTrue(origin < 3);
+                assertEquals(nearest, expected[origin][node], 1e-6);
+            } else {
+                assertFalse(search.isReached(node));
+            }
+        }
+    }
+
+    /**
+     * The edges reached by a multi-source search are the union of the edges reached by a search from each source.
+     */
+    @Test
+    public void testMultiSourceEdgesAreUnion() {
+        RoadGraph graph = TestGraphs.grid(40, 40, 100, new Random(4));
+        int[] sources = {
+                graph.nodeIndex(TestGraphs.gridNodeId(40, 10, 10)),
+                graph.nodeIndex(TestGraphs.gridNodeId(40, 18, 12)),
+                graph.nodeIndex(TestGraphs.gridNodeId(40, 30, 30))
+        };
+        double radius = 1000;
+
+        DijkstraSearch search = new DijkstraSearch(graph);
+        BitSet union = new BitSet();
+        for(int source : sources) {
+            search.search(source, radius, node -> true);
+            union.or(reachedEdges(search));
+        }
+
+        search.search(sources, sources.length, radius, node -> true);
+        assertEquals(union, reachedEdges(search));
+
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            int origin = search.reachedEdgeOrigin(i);
+            assertTrue(origin >= 0 && origin < sources.length);
+        }
+    }
+}
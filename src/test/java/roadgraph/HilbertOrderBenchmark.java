@@ -0,0 +1,144 @@
+package roadgraph;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the run time of the search behind a network buffer on a graph numbered in random order, like one loaded by
+ * node id from an OSM import, with the same graph numbered along a Hilbert curve. Results are printed to standard out.
+ * Skipped unless the benchmark system property is set, run it with gradle benchmark.
+ *
+ * Java cannot count cache misses so, the footprint of a search is reported instead: the number of distinct 4 KB
+ * pages of the node coordinate array that the settled nodes fall on. Every page is at least one cache miss.
+ */
+public class HilbertOrderBenchmark {
+
+    private static final double RADIUS = 1609.34;
+    private static final int SEARCHES = 200;
+    private static final int WARM_UP_SEARCHES = 200;
+
+    @BeforeClass
+    public static void onlyWhenBenchmarking() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    /* 4 KB of x,y pairs of doubles */
+    private static final int NODES_PER_PAGE = 256;
+
+    /* Copy graph with its nodes and edges added in random order. */
+    private static ArrayRoadGraph shuffled(RoadGraph graph, Random random) {
+        int[] nodes = permutation(graph.nodeCount(), random);
+        int[] edges = permutation(graph.edgeCount(), random);
+
+        /* find one end point of every edge */
+        int[] edgeFrom = new int[graph.edgeCount()];
+        int[] edgeTo = new int[graph.edgeCount()];
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            for(int i = 0; i < graph.degree(node); i++) {
+                edgeFrom[graph.arcEdge(node, i)] = node;
+                edgeTo[graph.arcEdge(node, i)] = graph.neighbor(node, i);
+            }
+        }
+
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        for(int node : nodes) {
+            builder.addNode(graph.nodeId(node), graph.nodeX(node), graph.nodeY(node));
+        }
+        for(int edge : edges) {
+            int from = edgeFrom[edge];
+            int to = edgeTo[edge];
+            double length = 0;
+            for(int i = 0; i < graph.degree(from); i++) {
+                if(graph.arcEdge(from, i) == edge) {
+                    length = graph.arcLength(from, i);
+                }
+            }
+            builder.addEdge(graph.edgeId(edge), graph.nodeId(from), graph.nodeId(to), length,
+                            new double[]{graph.nodeX(from), graph.nodeY(from), graph.nodeX(to), graph.nodeY(to)});
+        }
+        return builder.build();
+    }
+
+    private static int[] permutation(int count, Random random) {
+        int[] order = new int[count];
+        for(int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for(int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    private static BitSet reachedEdgeIds(RoadGraph graph, NetworkSearch search) {
+        BitSet edges = new BitSet();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edges.set(graph.edgeId(search.reachedEdge(i)));
+        }
+        return edges;
+    }
+
+    private static int pages(DijkstraSearch search) {
+        BitSet pages = new BitSet();
+        for(int i = 0; i < search.settledCount(); i++) {
+            pages.set(search.settledNode(i) / NODES_PER_PAGE);
+        }
+        return pages.cardinality();
+    }
+
+    private static void benchmark(String name, ArrayRoadGraph graph) {
+        ArrayRoadGraph random = shuffled(graph, new Random(5));
+        ArrayRoadGraph ordered = ArrayRoadGraph.hilbertOrdered(random);
+
+        DijkstraSearch randomSearch = new DijkstraSearch(random);
+        DijkstraSearch orderedSearch = new DijkstraSearch(ordered);
+        int[] sourceIds = new int[SEARCHES];
+        Random sources = new Random(17);
+        for(int i = 0; i < SEARCHES; i++) {
+            sourceIds[i] = graph.nodeId(sources.nextInt(graph.nodeCount()));
+        }
+
+        /* let the JIT compile the search before timing it */
+        for(int i = 0; i < WARM_UP_SEARCHES; i++) {
+            int sourceId = sourceIds[i % SEARCHES];
+            randomSearch.search(random.nodeIndex(sourceId), RADIUS, node -> true);
+            orderedSearch.search(ordered.nodeIndex(sourceId), RADIUS, node -> true);
+        }
+
+        long randomNanos = 0, orderedNanos = 0, randomPages = 0, orderedPages = 0;
+        for(int sourceId : sourceIds) {
+            long start = System.nanoTime();
+            randomSearch.search(random.nodeIndex(sourceId), RADIUS, node -> true);
+            randomNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            orderedSearch.search(ordered.nodeIndex(sourceId), RADIUS, node -> true);
+            orderedNanos += System.nanoTime() - start;
+
+            randomPages += pages(randomSearch);
+            orderedPages += pages(orderedSearch);
+            assertEquals(reachedEdgeIds(random, randomSearch), reachedEdgeIds(ordered, orderedSearch));
+        }
+
+        System.out.println(name + ", " + graph.nodeCount() + " nodes, " + SEARCHES + " searches of radius " + RADIUS);
+        System.out.println(String.format("\trandom order:  %d pages touched, %d us per search",
+                randomPages / SEARCHES, randomNanos / SEARCHES / 1000));
+        System.out.println(String.format("\thilbert order: %d pages touched, %d us per search",
+                orderedPages / SEARCHES, orderedNanos / SEARCHES / 1000));
+    }
+
+    @Test
+    public void benchmarkWeightedGrid() {
+        /* large enough that the graph does not fit in the CPU caches */
+        benchmark("Weighted grid", TestGraphs.grid(1000, 1000, 80, new Random(7)));
+    }
+}
@@ -0,0 +1,118 @@
+package roadgraph;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedMinHeapTest {
+
+    @Test
+    public void testPollOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap(5);
+        heap.insert(0, 5);
+        heap.insert(1, 1);
+        heap.insert(2, 3);
+        heap.insert(3, 4);
+        heap.insert(4, 2);
+
+        assertEquals(1, heap.poll());
+        assertEquals(4, heap.poll());
+        assertEquals(2, heap.poll());
+        assertEquals(3, heap.poll());
+        assertEquals(0, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testDecreaseKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(3);
+        heap.insert(0, 1);
+        heap.insert(1, 2);
+        heap.insert(2, 3);
+
+        heap.decreaseKey(2, 0.5);
+        assertEquals(0.5, heap.key(2), 0);
+        assertEquals(2, heap.peek());
+
+        assertFalse(heap.insertOrDecrease(1, 10));
+        assertTrue(heap.insertOrDecrease(1, 0.25));
+        assertEquals(1, heap.poll());
+    }
+
+    @Test
+    public void testContains() {
+        IndexedMinHeap heap = new IndexedMinHeap(2);
+        assertFalse(heap.contains(0));
+        heap.insert(0, 1);
+        assertTrue(heap.contains(0));
+        heap.poll();
+        assertFalse(heap.contains(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoubleInsert() {
+        IndexedMinHeap heap = new IndexedMinHeap(1);
+        heap.insert(0, 1);
+        heap.insert(0, 2);
+    }
+
+    @Test
+    public void testClear() {
+        IndexedMinHeap heap = new IndexedMinHeap(3);
+        heap.insert(0, 1);
+        heap.insert(2, 2);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(0));
+        assertFalse(heap.contains(2));
+        heap.insert(2, 1);
+        assertEquals(2, heap.poll());
+    }
+
+    @Test
+    public void testEnsureCapacity() {
+        IndexedMinHeap heap = new IndexedMinHeap(1);
+        heap.insert(0, 2);
+        heap.ensureCapacity(10);
+        heap.insert(9, 1);
+        assertEquals(9, heap.poll());
+        assertEquals(0, heap.poll());
+    }
+
+    /**
+     * A long random sequence of inserts, decreases and polls should produce the same keys as a PriorityQueue.
+     */
+    @Test
+    public void testRandomOperations() {
+        final int CAPACITY = 200;
+        Random random = new Random(42);
+        IndexedMinHeap heap = new IndexedMinHeap(CAPACITY);
+        double[] keys = new double[CAPACITY];
+        PriorityQueue<Double> reference = new PriorityQueue<>();
+
+        for(int step = 0; step < 10000; step++) {
+            int handle = random.nextInt(CAPACITY);
+            int op = random.nextInt(3);
+            if(op == 0 && !heap.contains(handle)) {
+                keys[handle] = random.nextDouble() * 1000;
+                heap.insert(handle, keys[handle]);
+                reference.add(keys[handle]);
+            } else if(op == 1 && heap.contains(handle)) {
+                double newKey = keys[handle] - random.nextDouble() * 100;
+                reference.remove(keys[handle]);
+                reference.add(newKey);
+                keys[handle] = newKey;
+                heap.decreaseKey(handle, newKey);
+            } else if(op == 2 && !heap.isEmpty()) {
+                double expected = reference.poll();
+                assertEquals(expected, heap.peekKey(), 0);
+                int polled = heap.poll();
+                assertEquals(expected, keys[polled], 0);
+            }
+            assertEquals(reference.size(), heap.size());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package roadgraph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NodeKdTreeTest {
+
+    private static double distanceSq(RoadGraph graph, int node, double x, double y) {
+        double dx = graph.nodeX(node) - x;
+        double dy = graph.nodeY(node) - y;
+        return dx * dx + dy * dy;
+    }
+
+    /* Brute force nearest distance used to check the tree. Distances are compared rather than nodes because ties may
+     * be broken differently. */
+    private static double nearestDistanceSq(RoadGraph graph, double x, double y, double maxDistance) {
+        double best = Double.POSITIVE_INFINITY;
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            double d = distanceSq(graph, node, x, y);
+            if(d <= maxDistance * maxDistance) {
+                best = Math.min(best, d);
+            }
+        }
+        return best;
+    }
+
+    private static RoadGraph randomPoints(int count, Random random) {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        for(int i = 0; i < count; i++) {
+            builder.addNode(i, random.nextDouble() * 10000, random.nextDouble() * 10000);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testNearestRandom() {
+        Random random = new Random(1);
+        RoadGraph graph = randomPoints(5000, random);
+        NodeKdTree tree = new NodeKdTree(graph);
+
+        for(int i = 0; i < 1000; i++) {
+            double x = random.nextDouble() * 12000 - 1000;
+            double y = random.nextDouble() * 12000 - 1000;
+            double maxDistance = random.nextDouble() * 300;
+
+            int nearest = tree.nearest(x, y, maxDistance);
+            double expected = nearestDistanceSq(graph, x, y, maxDistance);
+            if(expected == Double.POSITIVE_INFINITY) {
+                assertEquals(-1, nearest);
+            } else {
+                assertEquals(expected, distanceSq(graph, nearest, x, y), 0);
+            }
+        }
+    }
+
+    /**
+     * Gridded networks have long runs of equal coordinates which the tree must split correctly.
+     */
+    @Test
+    public void testNearestOnGrid() {
+        RoadGraph graph = TestGraphs.grid(50, 50, 100, null);
+        NodeKdTree tree = new NodeKdTree(graph);
+        Random random = new Random(2);
+
+        for(int i = 0; i < 1000; i++) {
+            double x = random.nextDouble() * 5000;
+            double y = random.nextDouble() * 5000;
+            int nearest = tree.nearest(x, y, 1000);
+            assertEquals(nearestDistanceSq(graph, x, y, 1000), distanceSq(graph, nearest, x, y), 0);
+        }
+    }
+
+    @Test
+    public void testKNearest() {
+        Random random = new Random(3);
+        RoadGraph graph = randomPoints(2000, random);
+        NodeKdTree tree = new NodeKdTree(graph);
+
+        int k = 8;
+        int[] result = new int[k];
+        for(int i = 0; i < 200; i++) {
+            double x = random.nextDouble() * 10000;
+            double y = random.nextDouble() * 10000;
+            assertEquals(k, tree.kNearest(x, y, k, Double.POSITIVE_INFINITY, result));
+
+            double[] expected = new double[graph.nodeCount()];
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                expected[node] = distanceSq(graph, node, x, y);
+            }
+            Arrays.sort(expected);
+            for(int j = 0; j < k; j++) {
+                assertEquals(expected[j], distanceSq(graph, result[j], x, y), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testKNearestWithinDistance() {
+        RoadGraph graph = TestGraphs.grid(10, 10, 100, null);
+        NodeKdTree tree = new NodeKdTree(graph);
+
+        /* only the 4 corners of the cell around the point are within 80 meters */
+        int[] result = new int[10];
+        assertEquals(4, tree.kNearest(450, 450, 10, 80, result));
+        assertEquals(0, tree.kNearest(-500, -500, 10, 80, result));
+    }
+
+    @Test
+    public void testBulkNearest() {
+        Random random = new Random(4);
+        RoadGraph graph = randomPoints(3000, random);
+        NodeKdTree tree = new NodeKdTree(graph);
+
+        int count = 500;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for(int i = 0; i < count; i++) {
+            xs[i] = random.nextDouble() * 11000;
+            ys[i] = random.nextDouble() * 11000;
+        }
+
+        int[] result = new int[count];
+        tree.nearest(xs, ys, count, 150, result);
+        for(int i = 0; i < count; i++) {
+            assertEquals(tree.nearest(xs[i], ys[i], 150), result[i]);
+        }
+    }
+
+    @Test
+    public void testInside() {
+        Random random = new Random(5);
+        RoadGraph graph = randomPoints(2000, random);
+        NodeKdTree tree = new NodeKdTree(graph);
+
+        for(int i = 0; i < 100; i++) {
+            double minX = random.nextDouble() * 10000;
+            double minY = random.nextDouble() * 10000;
+            double maxX = minX + random.nextDouble() * 3000;
+            double maxY = minY + random.nextDouble() * 3000;
+
+            BitSet expected = new BitSet();
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                double x = graph.nodeX(node);
+                double y = graph.nodeY(node);
+                if(x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    expected.set(node);
+                }
+            }
+
+            BitSet found = new BitSet();
+            tree.inside(minX, minY, maxX, maxY, node -> {
+                assertFalse(found.get(node));
+                found.set(node);
+            });
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        NodeKdTree tree = new NodeKdTree(new ArrayRoadGraph.Builder().build());
+        assertEquals(-1, tree.nearest(0, 0, 100));
+    }
+}
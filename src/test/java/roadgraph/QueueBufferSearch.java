@@ -0,0 +1,80 @@
+package roadgraph;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.function.IntPredicate;
+
+/**
+ * The first in first out search that networkBuffer used before DijkstraSearch. A node that is found to have a shorter
+ * distance after it was visited is removed from the visited set and queued again so, nodes can be expanded many times.
+ *
+ * It is kept here as a reference for checking and benchmarking DijkstraSearch.
+ */
+class QueueBufferSearch {
+
+    private final RoadGraph graph;
+
+    private BitSet reachedEdges;
+    private BitSet visitedNodes;
+    private int expansions;
+
+    QueueBufferSearch(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    void search(int source, double radius, IntPredicate nodeFilter) {
+        Deque<double[]> queue = new ArrayDeque<>();
+        double[] distance = new double[graph.nodeCount()];
+        boolean[] visited = new boolean[graph.nodeCount()];
+        reachedEdges = new BitSet(graph.edgeCount());
+        visitedNodes = new BitSet(graph.nodeCount());
+        expansions = 0;
+
+        queue.offer(new double[]{source, 0});
+        while(!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int current = (int) entry[0];
+            if(visited[current]) {
+                continue;
+            }
+            visited[current] = true;
+            distance[current] = entry[1];
+            visitedNodes.set(current);
+            expansions++;
+
+            for(int i = 0; i < graph.degree(current); i++) {
+                double newDistance = distance[current] + graph.arcLength(current, i);
+                int next = graph.neighbor(current, i);
+                if(visited[next]) {
+                    if(newDistance < distance[next]) {
+                        distance[next] = newDistance;
+                        visited[next] = false;
+                        queue.offer(new double[]{next, newDistance});
+                    }
+                } else if(newDistance < radius && nodeFilter.test(next)) {
+                    queue.offer(new double[]{next, newDistance});
+                    reachedEdges.set(graph.arcEdge(current, i));
+                }
+            }
+        }
+    }
+
+    BitSet reachedEdges() {
+        return reachedEdges;
+    }
+
+    /**
+     * @return Every node expanded at least once by the last search.
+     */
+    BitSet visitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * @return Number of times a node was taken off the queue and expanded in the last search.
+     */
+    int expansions() {
+        return expansions;
+    }
+}
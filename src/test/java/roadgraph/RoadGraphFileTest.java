@@ -0,0 +1,98 @@
+package roadgraph;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class RoadGraphFileTest {
+
+    private static final Path GRAPH_FILE = Paths.get("test.graph");
+
+    private ArrayRoadGraph graph;
+
+    @Before
+    public void buildGraph() throws IOException {
+        Files.deleteIfExists(GRAPH_FILE);
+
+        graph = new ArrayRoadGraph.Builder()
+                .addNode(7, 0, 0)
+                .addNode(3, 100, 0)
+                .addNode(5, 100, 100)
+                .addEdge(11, 7, 3, 100.5, new double[]{0, 0, 50, 5, 100, 0})
+                .addEdge(12, 3, 5, 99.25, new double[]{100, 0, 100, 100})
+                .addEdge(13, 5, 7, 141, new double[]{100, 100, 0, 0})
+                .build();
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(GRAPH_FILE);
+    }
+
+    /**
+     * A graph written to a file and mapped back in should be indistinguishable from the original.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        RoadGraphFile.write(graph, GRAPH_FILE);
+        assertTrue(RoadGraphFile.isGraphFile(GRAPH_FILE));
+
+        RoadGraph mapped = RoadGraphFile.map(GRAPH_FILE);
+        assertEquals(graph.nodeCount(), mapped.nodeCount());
+        assertEquals(graph.edgeCount(), mapped.edgeCount());
+
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(graph.nodeId(node), mapped.nodeId(node));
+            assertEquals(node, mapped.nodeIndex(graph.nodeId(node)));
+            assertEquals(graph.nodeX(node), mapped.nodeX(node), 0);
+            assertEquals(graph.nodeY(node), mapped.nodeY(node), 0);
+            assertEquals(graph.degree(node), mapped.degree(node));
+
+            for(int i = 0; i < graph.degree(node); i++) {
+                assertEquals(graph.neighbor(node, i), mapped.neighbor(node, i));
+                assertEquals(graph.arcLength(node, i), mapped.arcLength(node, i), 0);
+                assertEquals(graph.arcEdge(node, i), mapped.arcEdge(node, i));
+            }
+        }
+        assertEquals(-1, mapped.nodeIndex(4));
+
+        GeometryFactory factory = new GeometryFactory();
+        for(int edge = 0; edge < graph.edgeCount(); edge++) {
+            assertEquals(graph.edgeId(edge), mapped.edgeId(edge));
+
+            LineString expected = graph.edgeGeometry(edge, factory);
+            LineString actual = mapped.edgeGeometry(edge, factory);
+            assertEquals(expected.getNumPoints(), actual.getNumPoints());
+            for(int i = 0; i < expected.getNumPoints(); i++) {
+                assertEquals(expected.getCoordinateN(i), actual.getCoordinateN(i));
+            }
+        }
+
+        assertEquals(graph.nearestNode(90, 90, 50), mapped.nearestNode(90, 90, 50));
+        assertEquals(graph.fingerprint(), mapped.fingerprint());
+    }
+
+    /**
+     * Files that are not graph files should be rejected so, the server can fall back to treating them as databases.
+     */
+    @Test
+    public void testNotGraphFile() throws IOException {
+        Files.write(GRAPH_FILE, "SQLite format 3".getBytes("UTF-8"));
+        assertFalse(RoadGraphFile.isGraphFile(GRAPH_FILE));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMapRejectsOtherFiles() throws IOException {
+        Files.write(GRAPH_FILE, "SQLite format 3".getBytes("UTF-8"));
+        RoadGraphFile.map(GRAPH_FILE);
+    }
+}
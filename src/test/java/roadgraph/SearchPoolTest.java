@@ -0,0 +1,75 @@
+package roadgraph;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SearchPoolTest {
+
+    @Test
+    public void testReuse() {
+        RoadGraph graph = TestGraphs.grid(10, 10, 100, null);
+        SearchPool<DijkstraSearch> pool = new SearchPool<>(graph, DijkstraSearch::new, 2);
+
+        DijkstraSearch first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        assertEquals(1, pool.createdCount());
+    }
+
+    @Test
+    public void testConcurrentSearchesAreDistinct() {
+        RoadGraph graph = TestGraphs.grid(10, 10, 100, null);
+        SearchPool<DijkstraSearch> pool = new SearchPool<>(graph, DijkstraSearch::new, 2);
+
+        DijkstraSearch a = pool.acquire();
+        DijkstraSearch b = pool.acquire();
+        DijkstraSearch c = pool.acquire();
+        assertNotSame(a, b);
+        assertNotSame(b, c);
+        assertNotSame(a, c);
+        assertEquals(3, pool.createdCount());
+
+        /* only two are kept */
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+        assertEquals(2, pool.idleCount());
+    }
+
+    /**
+     * A reused search should give the same result as a fresh one no matter what the previous search left behind.
+     */
+    @Test
+    public void testReusedSearchMatchesFreshSearch() {
+        RoadGraph graph = TestGraphs.grid(30, 30, 100, new Random(4));
+        SearchPool<DijkstraSearch> pool = new SearchPool<>(graph, DijkstraSearch::new, 1);
+        Random random = new Random(5);
+
+        for(int i = 0; i < 20; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            double radius = 200 + random.nextDouble() * 1000;
+
+            DijkstraSearch reused = pool.acquire();
+            reused.search(source, radius, node -> true);
+            DijkstraSearch fresh = new DijkstraSearch(graph);
+            fresh.search(source, radius, node -> true);
+
+            assertEquals(fresh.reachedEdgeCount(), reused.reachedEdgeCount());
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                assertEquals(fresh.distance(node), reused.distance(node), 0);
+            }
+            pool.release(reused);
+        }
+        assertEquals(1, pool.createdCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseToWrongPool() {
+        RoadGraph graph = TestGraphs.grid(10, 10, 100, null);
+        SearchPool<DijkstraSearch> pool = new SearchPool<>(graph, DijkstraSearch::new, 2);
+        pool.release(new DijkstraSearch(TestGraphs.grid(5, 5, 100, null)));
+    }
+}
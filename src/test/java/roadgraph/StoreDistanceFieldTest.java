@@ -0,0 +1,100 @@
+package roadgraph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StoreDistanceFieldTest {
+
+    private static final double RADIUS = 1000;
+
+    /* Distance from each node to the nearest store by a separate search per store. */
+    private static double[] bruteForce(RoadGraph graph, int[] stores, int storeCount) {
+        double[] expected = new double[graph.nodeCount()];
+        Arrays.fill(expected, Double.POSITIVE_INFINITY);
+        DijkstraSearch search = new DijkstraSearch(graph);
+        for(int s = 0; s < storeCount; s++) {
+            search.search(stores[s], RADIUS, node -> true);
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                expected[node] = Math.min(expected[node], search.distance(node));
+            }
+        }
+        return expected;
+    }
+
+    private static void assertField(double[] expected, StoreDistanceField field) {
+        for(int node = 0; node < expected.length; node++) {
+            if(expected[node] == Double.POSITIVE_INFINITY) {
+                assertEquals(Double.POSITIVE_INFINITY, field.distance(node), 0);
+            } else {
+                /* distances are stored as floats */
+                assertEquals(expected[node], field.distance(node), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyField() {
+        RoadGraph graph = TestGraphs.grid(10, 10, 100, null);
+        StoreDistanceField field = new StoreDistanceField(graph, RADIUS);
+        for(int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals(Double.POSITIVE_INFINITY, field.distance(node), 0);
+        }
+    }
+
+    /**
+     * Adding stores a few at a time should give the same field as a search from every store at once.
+     */
+    @Test
+    public void testIncrementalMatchesBruteForce() {
+        Random random = new Random(1);
+        RoadGraph graph = TestGraphs.grid(40, 40, 100, random);
+        int[] stores = new int[12];
+        for(int s = 0; s < stores.length; s++) {
+            stores[s] = random.nextInt(graph.nodeCount());
+        }
+
+        StoreDistanceField field = new StoreDistanceField(graph, RADIUS);
+        for(int s = 0; s < stores.length; s += 3) {
+            int[] added = Arrays.copyOfRange(stores, s, s + 3);
+            field.addStores(added, added.length, node -> { });
+            assertField(bruteForce(graph, stores, s + 3), field);
+        }
+    }
+
+    /**
+     * Only nodes that moved closer to a store should be reported as changed.
+     */
+    @Test
+    public void testChangedNodes() {
+        RoadGraph graph = TestGraphs.grid(20, 1, 100, null);
+        StoreDistanceField field = new StoreDistanceField(graph, RADIUS);
+        field.addStores(new int[]{0}, 1, node -> { });
+
+        /* a store at node 5 is closer to nodes 3 and up but, node 2 is as close to node 0 as to node 5 */
+        int[] changed = new int[1];
+        field.addStores(new int[]{5}, 1, node -> {
+            assertTrue(node >= 3);
+            changed[0]++;
+        });
+        /* nodes 3 to 14 are within the radius of node 5 */
+        assertEquals(12, changed[0]);
+        assertEquals(100, field.distance(4), 1e-3);
+        assertEquals(900, field.distance(14), 1e-3);
+        assertEquals(Double.POSITIVE_INFINITY, field.distance(15), 0);
+    }
+
+    @Test
+    public void testLower() {
+        RoadGraph graph = TestGraphs.grid(5, 5, 100, null);
+        StoreDistanceField field = new StoreDistanceField(graph, RADIUS);
+        field.lower(3, 250);
+        field.lower(3, 400);
+        field.lower(4, 2000);
+        assertEquals(250, field.distance(3), 0);
+        assertEquals(Double.POSITIVE_INFINITY, field.distance(4), 0);
+    }
+}
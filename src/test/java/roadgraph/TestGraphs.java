@@ -0,0 +1,72 @@
+package roadgraph;
+
+import java.util.Random;
+
+/**
+ * Synthetic road graphs used by the graph tests and benchmarks.
+ */
+public class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Build a width x height grid of nodes spaced spacing meters apart. Every node is connected to its right and upper
+     * neighbor. Node ids and edge ids start at 1.
+     *
+     * @param random If not null, each edge length is scaled by a random factor in [1, 2) to model streets that are
+     *               not straight. If null every edge is exactly spacing meters long.
+     */
+    public static ArrayRoadGraph grid(int width, int height, double spacing, Random random) {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                builder.addNode(gridNodeId(width, x, y), x * spacing, y * spacing);
+            }
+        }
+
+        int edgeId = 1;
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                if(x + 1 < width) {
+                    addGridEdge(builder, edgeId++, width, x, y, x + 1, y, spacing, random);
+                }
+                if(y + 1 < height) {
+                    addGridEdge(builder, edgeId++, width, x, y, x, y + 1, spacing, random);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public static int gridNodeId(int width, int x, int y) {
+        return y * width + x + 1;
+    }
+
+    private static void addGridEdge(ArrayRoadGraph.Builder builder, int edgeId, int width, int x0, int y0,
+                                    int x1, int y1, double spacing, Random random) {
+        double length = random == null ? spacing : spacing * (1 + random.nextDouble());
+        builder.addEdge(edgeId, gridNodeId(width, x0, y0), gridNodeId(width, x1, y1), length,
+                        new double[]{x0 * spacing, y0 * spacing, x1 * spacing, y1 * spacing});
+    }
+
+    /**
+     * Build a random tree. Since there is only one path between any two nodes, every search order finds the same
+     * distances.
+     */
+    public static ArrayRoadGraph tree(int nodes, Random random) {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        double[] x = new double[nodes];
+        double[] y = new double[nodes];
+        builder.addNode(1, 0, 0);
+        for(int n = 1; n < nodes; n++) {
+            int parent = random.nextInt(n);
+            x[n] = x[parent] + random.nextDouble() * 200 - 100;
+            y[n] = y[parent] + random.nextDouble() * 200 - 100;
+            builder.addNode(n + 1, x[n], y[n]);
+            builder.addEdge(n, parent + 1, n + 1, 10 + random.nextDouble() * 100,
+                            new double[]{x[parent], y[parent], x[n], y[n]});
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,180 @@
+package roadgraph;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.*;
+
+public class TiledGraphSourceTest {
+
+    private static final GeometryFactory geoFactory = new GeometryFactory();
+
+    /**
+     * Cut tiles out of a graph in memory the way NetworkDatabase.loadTile cuts them out of the network tables.
+     */
+    private static TiledGraphSource.TileLoader loaderFor(RoadGraph graph) {
+        return (minX, minY, maxX, maxY) -> {
+            GraphTile.Builder builder = new GraphTile.Builder();
+            for(int node = 0; node < graph.nodeCount(); node++) {
+                double x = graph.nodeX(node);
+                double y = graph.nodeY(node);
+                if(x < minX || x >= maxX || y < minY || y >= maxY) {
+                    continue;
+                }
+                builder.addNode(graph.nodeId(node), x, y);
+                for(int i = 0; i < graph.degree(node); i++) {
+                    LineString line = graph.edgeGeometry(graph.arcEdge(node, i), geoFactory);
+                    /* an edge belongs to the tile of the node its geometry starts at */
+                    if(line.getCoordinateN(0).equals2D(new Coordinate(x, y))) {
+                        builder.addEdge(graph.edgeId(graph.arcEdge(node, i)), graph.nodeId(node),
+                                        graph.nodeId(graph.neighbor(node, i)), graph.arcLength(node, i),
+                                        line.getCoordinateSequence());
+                    }
+                }
+            }
+            return builder.build();
+        };
+    }
+
+    private static Geometry square(double x, double y, double radius) {
+        Envelope envelope = new Envelope(x - radius, x + radius, y - radius, y + radius);
+        return geoFactory.toGeometry(envelope);
+    }
+
+    private static Set<Integer> reachedEdgeIds(RoadGraph graph, double x, double y, double radius) {
+        DijkstraSearch search = new DijkstraSearch(graph);
+        IntPredicate all = node -> true;
+        search.search(graph.nearestNode(x, y, radius), radius, all);
+
+        Set<Integer> edgeIds = new HashSet<>();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edgeIds.add(graph.edgeId(search.reachedEdge(i)));
+        }
+        return edgeIds;
+    }
+
+    /**
+     * A search on the merged tiles should reach exactly the edges that it reaches on the whole graph, including edges
+     * that cross tile borders.
+     */
+    @Test
+    public void testSearchAcrossTileBorders() throws Exception {
+        RoadGraph graph = TestGraphs.grid(60, 60, 100, new Random(1));
+        TiledGraphSource source = new TiledGraphSource(loaderFor(graph), graph.fingerprint(), 1000, 64);
+
+        double radius = 1500;
+        double[][] centers = {{3000, 3000}, {2950, 1000}, {500, 5500}};
+        for(double[] center : centers) {
+            RoadGraph tiled = source.graphFor(square(center[0], center[1], radius));
+            assertTrue(tiled.nodeCount() < graph.nodeCount());
+            assertEquals(reachedEdgeIds(graph, center[0], center[1], radius),
+                         reachedEdgeIds(tiled, center[0], center[1], radius));
+        }
+    }
+
+    /**
+     * Every edge of the graph should belong to exactly one tile.
+     */
+    @Test
+    public void testTilesPartitionGraph() throws Exception {
+        RoadGraph graph = TestGraphs.grid(30, 30, 100, null);
+        TiledGraphSource source = new TiledGraphSource(loaderFor(graph), graph.fingerprint(), 700, 64);
+
+        RoadGraph merged = source.graphFor(square(1450, 1450, 1500));
+        assertEquals(graph.nodeCount(), merged.nodeCount());
+        assertEquals(graph.edgeCount(), merged.edgeCount());
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        RoadGraph graph = TestGraphs.grid(60, 60, 100, null);
+        int[] loads = new int[1];
+        TiledGraphSource.TileLoader loader = loaderFor(graph);
+        TiledGraphSource source = new TiledGraphSource((minX, minY, maxX, maxY) -> {
+            loads[0]++;
+            return loader.loadTile(minX, minY, maxX, maxY);
+        }, graph.fingerprint(), 1000, 3);
+
+        /* two tiles, both loaded */
+        source.graphFor(square(1000, 500, 100));
+        assertEquals(0, source.hitCount());
+        assertEquals(2, source.missCount());
+
+        /* one of the tiles again */
+        source.graphFor(square(500, 500, 100));
+        assertEquals(1, source.hitCount());
+        assertEquals(2, source.missCount());
+        assertEquals(2, loads[0]);
+
+        /* two new tiles, the least recently used one is evicted */
+        source.graphFor(square(3000, 500, 100));
+        assertEquals(4, source.missCount());
+        assertEquals(1, source.evictionCount());
+        assertEquals(3, source.tileCount());
+        assertEquals(4, loads[0]);
+    }
+
+    /**
+     * A search over other tiles should not wait for a slow load and, a search that needs the tile being loaded should
+     * wait for that load rather than load the tile again.
+     */
+    @Test(timeout = 10000)
+    public void testLoadsOutsideLock() throws Exception {
+        RoadGraph graph = TestGraphs.grid(60, 60, 100, null);
+        TiledGraphSource.TileLoader loader = loaderFor(graph);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger slowLoads = new AtomicInteger();
+        TiledGraphSource source = new TiledGraphSource((minX, minY, maxX, maxY) -> {
+            if(minX == 0 && minY == 0) {
+                slowLoads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return loader.loadTile(minX, minY, maxX, maxY);
+        }, graph.fingerprint(), 1000, 64);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<RoadGraph> first = executor.submit(() -> source.graphFor(square(500, 500, 100)));
+            loading.await();
+            Future<RoadGraph> second = executor.submit(() -> source.graphFor(square(500, 500, 100)));
+
+            assertTrue(source.graphFor(square(3500, 3500, 100)).nodeCount() > 0);
+            assertFalse(first.isDone());
+
+            release.countDown();
+            assertSame(first.get(), second.get());
+            assertEquals(1, slowLoads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testLoaderErrorsArePassedOn() throws Exception {
+        TiledGraphSource source = new TiledGraphSource((minX, minY, maxX, maxY) -> {
+            throw new SQLException("no network");
+        }, 0, 1000, 4);
+        source.graphFor(square(0, 0, 10));
+    }
+}
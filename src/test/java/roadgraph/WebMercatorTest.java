@@ -0,0 +1,84 @@
+package roadgraph;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.*;
+
+public class WebMercatorTest {
+
+    /* About 39 degrees north, where WebMercator stretches lengths by about 1.29. */
+    private static final double Y0 = 4.71e6;
+    private static final double SPACING = 100;
+    private static final int SIDE = 60;
+    private static final double MILE = 1609.344;
+
+    /* A SIDE x SIDE grid spaced SPACING WebMercator units apart with edge lengths in ground meters. */
+    private static RoadGraph mercatorGrid() {
+        ArrayRoadGraph.Builder builder = new ArrayRoadGraph.Builder();
+        for(int y = 0; y < SIDE; y++) {
+            for(int x = 0; x < SIDE; x++) {
+                builder.addNode(TestGraphs.gridNodeId(SIDE, x, y), x * SPACING, Y0 + y * SPACING);
+            }
+        }
+        int edgeId = 1;
+        for(int y = 0; y < SIDE; y++) {
+            for(int x = 0; x < SIDE; x++) {
+                if(x + 1 < SIDE) {
+                    addEdge(builder, edgeId++, x, y, x + 1, y);
+                }
+                if(y + 1 < SIDE) {
+                    addEdge(builder, edgeId++, x, y, x, y + 1);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addEdge(ArrayRoadGraph.Builder builder, int edgeId, int x0, int y0, int x1, int y1) {
+        double length = SPACING / WebMercator.scale(Y0 + (y0 + y1) * SPACING / 2);
+        builder.addEdge(edgeId, TestGraphs.gridNodeId(SIDE, x0, y0), TestGraphs.gridNodeId(SIDE, x1, y1), length,
+                        new double[]{x0 * SPACING, Y0 + y0 * SPACING, x1 * SPACING, Y0 + y1 * SPACING});
+    }
+
+    private static BitSet reachedEdges(RoadGraph graph, int source, IntPredicate nodeFilter) {
+        DijkstraSearch search = new DijkstraSearch(graph);
+        search.search(source, MILE, nodeFilter);
+        BitSet edges = new BitSet();
+        for(int i = 0; i < search.reachedEdgeCount(); i++) {
+            edges.set(search.reachedEdge(i));
+        }
+        return edges;
+    }
+
+    /* Nodes within distance of (x, y) along both axes. */
+    private static IntPredicate within(RoadGraph graph, double x, double y, double distance) {
+        return node -> Math.abs(graph.nodeX(node) - x) <= distance && Math.abs(graph.nodeY(node) - y) <= distance;
+    }
+
+    @Test
+    public void testScale() {
+        assertEquals(1, WebMercator.scale(0), 1e-12);
+        assertEquals(1.29, WebMercator.scale(Y0), 0.01);
+        assertEquals(WebMercator.scale(Y0), WebMercator.scale(-Y0), 1e-12);
+    }
+
+    /**
+     * A search bounded by the reach of its source, like a cached store buffer, should reach the same edges as a search
+     * with no bounds at all. Bounding it by the radius in WebMercator units instead clips it.
+     */
+    @Test
+    public void testReachDoesNotClipSearch() {
+        RoadGraph graph = mercatorGrid();
+        int source = graph.nodeIndex(TestGraphs.gridNodeId(SIDE, SIDE / 2, SIDE / 2));
+        double x = graph.nodeX(source);
+        double y = graph.nodeY(source);
+
+        BitSet unbounded = reachedEdges(graph, source, node -> true);
+        double reach = WebMercator.reach(MILE, y, y);
+        assertEquals(unbounded, reachedEdges(graph, source, within(graph, x, y, reach)));
+        assertNotEquals(unbounded, reachedEdges(graph, source, within(graph, x, y, MILE)));
+    }
+}